@@ -25,25 +25,37 @@ import org.wso2.carbon.data.provider.bean.DataModel;
 import org.wso2.carbon.data.provider.bean.DataSetMetadata;
 import org.wso2.carbon.data.provider.endpoint.DataProviderEndPoint;
 import org.wso2.carbon.data.provider.exception.DataProviderException;
+import org.wso2.carbon.data.provider.scheduler.DataProviderScheduler;
+import org.wso2.carbon.data.provider.scheduler.ProviderTaskMetrics;
+import org.wso2.carbon.data.provider.scheduler.ScheduledProviderTask;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Abstract data provider class.
  */
 public abstract class AbstractDataProvider implements DataProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractDataProvider.class);
+    private static final Gson GSON = new Gson();
     private String topic;
     private String sessionId;
-    private ScheduledExecutorService dataPublishingExecutorService = Executors.newSingleThreadScheduledExecutor();
-    private ScheduledExecutorService dataPurgingExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledProviderTask publishingTask;
+    private ScheduledProviderTask purgingTask;
     private long publishingInterval;
     private long purgingInterval;
     private boolean isPurgingEnable;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Object publishLock = new Object();
+    private List<Object[]> lastPublishedData;
 
     public DataProvider init(String topic, String sessionId, ProviderConfig providerConfig)
             throws DataProviderException {
@@ -53,6 +65,7 @@ public abstract class AbstractDataProvider implements DataProvider {
             this.publishingInterval = providerConfig.getPublishingInterval();
             this.purgingInterval = providerConfig.getPurgingInterval();
             this.isPurgingEnable = providerConfig.isPurgingEnable();
+            this.subscribers.add(new Subscriber(topic, sessionId));
             setProviderConfig(providerConfig);
             return this;
         } else {
@@ -63,27 +76,198 @@ public abstract class AbstractDataProvider implements DataProvider {
 
     @Override
     public void stop() {
-        dataPublishingExecutorService.shutdown();
-        dataPurgingExecutorService.shutdown();
+        if (publishingTask != null) {
+            publishingTask.cancel();
+            logMetrics(publishingTask);
+        }
+        if (purgingTask != null) {
+            purgingTask.cancel();
+            logMetrics(purgingTask);
+        }
     }
 
     @Override
     public void start() {
-        dataPublishingExecutorService.scheduleAtFixedRate(() -> {
-
-            publish(this.topic, this.sessionId);
-        }, 0, publishingInterval, TimeUnit.SECONDS);
+        synchronized (publishLock) {
+            for (Subscriber subscriber : subscribers) {
+                sendInitialData(subscriber.topic, subscriber.sessionId);
+            }
+        }
+        DataProviderScheduler scheduler = DataProviderScheduler.getInstance();
+        publishingTask = scheduler.scheduleAtFixedRate(providerName() + " publishing for " + this.sessionId,
+                () -> publish(this.topic, this.sessionId), 0, publishingInterval, TimeUnit.SECONDS);
         if (isPurgingEnable) {
-            dataPublishingExecutorService.scheduleAtFixedRate(() -> {
-                purging();
-            }, 0, purgingInterval, TimeUnit.SECONDS);
+            purgingTask = scheduler.scheduleAtFixedRate(providerName() + " purging for " + this.sessionId,
+                    this::purging, 0, purgingInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Get the metrics of the publishing task, such as the query duration and the number of skipped runs.
+     *
+     * @return publishing task metrics or null if the provider is not started.
+     */
+    public ProviderTaskMetrics getPublishingMetrics() {
+        return publishingTask == null ? null : publishingTask.getMetrics();
+    }
+
+    /**
+     * Get the metrics of the purging task.
+     *
+     * @return purging task metrics or null if purging is not enabled.
+     */
+    public ProviderTaskMetrics getPurgingMetrics() {
+        return purgingTask == null ? null : purgingTask.getMetrics();
+    }
+
+    private static void logMetrics(ScheduledProviderTask task) {
+        ProviderTaskMetrics metrics = task.getMetrics();
+        if (metrics.getOverrunCount() > 0) {
+            LOGGER.warn("Data provider task '{}' stopped, {}. Consider a longer interval as its runs did not " +
+                    "finish within the interval.", task.getName(), metrics);
+        } else if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Data provider task '{}' stopped, {}.", task.getName(), metrics);
         }
     }
 
+    /**
+     * Add a session to the receivers of the data published by this provider. The session first receives the data
+     * retained from the previous publishing, so that it does not wait for the next publishing interval.
+     *
+     * @param topic     topic of the subscription.
+     * @param sessionId session to publish the data to.
+     */
+    public void addSubscriber(String topic, String sessionId) {
+        synchronized (publishLock) {
+            sendInitialData(topic, sessionId);
+            subscribers.add(new Subscriber(topic, sessionId));
+        }
+    }
+
+    /**
+     * Remove a session from the receivers of the data published by this provider.
+     *
+     * @param topic     topic of the subscription.
+     * @param sessionId session the data was published to.
+     * @return true if no session receives the data of this provider anymore.
+     */
+    public boolean removeSubscriber(String topic, String sessionId) {
+        synchronized (publishLock) {
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.sessionId.equals(sessionId) && subscriber.topic.equals(topic)) {
+                    subscribers.remove(subscriber);
+                    break;
+                }
+            }
+            return subscribers.isEmpty();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Publish the data to every session subscribed to this provider. The message is serialized once per topic.
+     *
+     * @param data      data to publish.
+     * @param sessionId session of the subscription that initialized this provider.
+     * @param topic     topic of the subscription that initialized this provider.
+     */
     public void publishToEndPoint(ArrayList<Object[]> data, String sessionId, String topic) {
-        DataModel dataModel = new DataModel(getMetadata(), data.toArray(new Object[0][0]), -1, topic);
+        synchronized (publishLock) {
+            retainPublishedData(data);
+            publishToSubscribers(subscriberTopic -> toJson(data, subscriberTopic));
+        }
+    }
+
+    /**
+     * Send a text message to every session subscribed to this provider.
+     *
+     * @param messageOfTopic creates the message of a topic, called once per topic.
+     */
+    protected void publishToSubscribers(Function<String, String> messageOfTopic) {
+        synchronized (publishLock) {
+            Map<String, String> messages = new HashMap<>();
+            for (Subscriber subscriber : subscribers) {
+                sendText(subscriber.sessionId, messages.computeIfAbsent(subscriber.topic, messageOfTopic));
+            }
+        }
+    }
+
+    /**
+     * Send a binary message to every session subscribed to this provider.
+     *
+     * @param messageOfTopic creates the message of a topic, called once per topic.
+     */
+    protected void publishBinaryToSubscribers(Function<String, ByteBuffer> messageOfTopic) {
+        synchronized (publishLock) {
+            Map<String, ByteBuffer> messages = new HashMap<>();
+            for (Subscriber subscriber : subscribers) {
+                sendBinary(subscriber.sessionId, messages.computeIfAbsent(subscriber.topic, messageOfTopic)
+                        .duplicate());
+            }
+        }
+    }
+
+    /**
+     * Get the lock held while publishing. Providers retaining data for the sessions subscribing later should update
+     * it while holding this lock, so that a new session receives either the retained data or the published data.
+     *
+     * @return publishing lock.
+     */
+    protected Object getPublishLock() {
+        return publishLock;
+    }
+
+    /**
+     * Send the data a session needs before it receives the published data. Called when the provider starts and when
+     * a session subscribes to a started provider. By default the retained data is sent.
+     *
+     * @param topic     topic of the subscription.
+     * @param sessionId session to send the data to.
+     */
+    protected void sendInitialData(String topic, String sessionId) {
+        List<Object[]> retainedData = getRetainedData();
+        if (retainedData != null) {
+            sendText(sessionId, toJson(retainedData, topic));
+        }
+    }
+
+    /**
+     * Keep the published data to send to the sessions subscribing later. By default the last published data is
+     * kept, providers publishing only the data added since the previous publishing should accumulate it instead.
+     *
+     * @param data data being published.
+     */
+    protected void retainPublishedData(List<Object[]> data) {
+        lastPublishedData = Collections.unmodifiableList(data);
+    }
+
+    /**
+     * Get the data to send to a session subscribing to a provider that already published.
+     *
+     * @return retained data or null if nothing is published yet.
+     */
+    protected List<Object[]> getRetainedData() {
+        return lastPublishedData;
+    }
+
+    private String toJson(List<Object[]> data, String topic) {
+        return GSON.toJson(new DataModel(getMetadata(), data.toArray(new Object[0][0]), -1, topic));
+    }
+
+    protected static void sendText(String sessionId, String message) {
         try {
-            DataProviderEndPoint.sendText(sessionId, new Gson().toJson(dataModel));
+            DataProviderEndPoint.sendText(sessionId, message);
+        } catch (IOException e) {
+            LOGGER.error("Failed to deliver message to client " + e.getMessage(), e);
+        }
+    }
+
+    protected static void sendBinary(String sessionId, ByteBuffer message) {
+        try {
+            DataProviderEndPoint.sendBinary(sessionId, message);
         } catch (IOException e) {
             LOGGER.error("Failed to deliver message to client " + e.getMessage(), e);
         }
@@ -110,4 +294,17 @@ public abstract class AbstractDataProvider implements DataProvider {
      * @return rdbms meta data object.
      */
     public abstract DataSetMetadata getMetadata();
+
+    /**
+     * Session and topic a provider publishes its data to.
+     */
+    private static class Subscriber {
+        private final String topic;
+        private final String sessionId;
+
+        private Subscriber(String topic, String sessionId) {
+            this.topic = topic;
+            this.sessionId = sessionId;
+        }
+    }
 }
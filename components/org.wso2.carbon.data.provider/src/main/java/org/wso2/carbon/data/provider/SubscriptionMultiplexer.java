@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.data.provider;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.wso2.carbon.data.provider.utils.DataProviderValueHolder.getDataProviderHelper;
+
+/**
+ * Shares a data provider between the subscriptions with the same provider configuration.
+ * <p>
+ * Subscriptions are identified by a fingerprint of the provider name and the normalized provider configuration, so
+ * the dashboards showing the same widget run its query once per publishing interval, and the result is sent to every
+ * subscribed session. The provider is stopped once its last subscription is removed. Providers which do not extend
+ * {@link AbstractDataProvider} push their data instead of querying it and are not shared.
+ */
+public class SubscriptionMultiplexer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionMultiplexer.class);
+    private static final String QUERY_DATA = "queryData";
+    private static final String QUERY = "query";
+    private static final SubscriptionMultiplexer INSTANCE = new SubscriptionMultiplexer();
+    private final Map<String, SharedSubscription> sharedSubscriptions = new ConcurrentHashMap<>();
+    private final Map<DataProvider, SharedSubscription> providerSubscriptions = new ConcurrentHashMap<>();
+
+    public static SubscriptionMultiplexer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Subscribe a session to the data of a provider, starting the provider if no other session subscribed with the
+     * same configuration.
+     *
+     * @param providerName   name of the data provider.
+     * @param topic          topic of the subscription.
+     * @param sessionId      session to publish the data to.
+     * @param providerConfig provider configuration message in json format.
+     * @return data provider publishing to the session.
+     * @throws DataProviderException  if the data provider cannot be initialized.
+     * @throws IllegalAccessException if the data provider cannot be instantiated.
+     * @throws InstantiationException if the data provider cannot be instantiated.
+     */
+    public DataProvider subscribe(String providerName, String topic, String sessionId, JsonElement providerConfig)
+            throws DataProviderException, IllegalAccessException, InstantiationException {
+        DataProvider dataProvider = getDataProviderHelper().getDataProvider(providerName);
+        if (!(dataProvider instanceof AbstractDataProvider)) {
+            dataProvider.init(topic, sessionId, providerConfig).start();
+            return dataProvider;
+        }
+        String fingerprint = getFingerprint(providerName, providerConfig);
+        while (true) {
+            SharedSubscription sharedSubscription = sharedSubscriptions.computeIfAbsent(fingerprint,
+                    SharedSubscription::new);
+            synchronized (sharedSubscription) {
+                if (sharedSubscription.closed) {
+                    // last subscription removed concurrently, retry with a new provider
+                    continue;
+                }
+                if (sharedSubscription.dataProvider == null) {
+                    try {
+                        dataProvider.init(topic, sessionId, providerConfig).start();
+                    } catch (DataProviderException | RuntimeException e) {
+                        close(sharedSubscription);
+                        throw e;
+                    }
+                    sharedSubscription.dataProvider = (AbstractDataProvider) dataProvider;
+                    providerSubscriptions.put(dataProvider, sharedSubscription);
+                } else {
+                    sharedSubscription.dataProvider.addSubscriber(topic, sessionId);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Session {} subscribed to the shared {} of {} sessions.", sessionId,
+                                providerName, sharedSubscription.dataProvider.getSubscriberCount());
+                    }
+                }
+                return sharedSubscription.dataProvider;
+            }
+        }
+    }
+
+    /**
+     * Unsubscribe a session from the data of a provider, stopping the provider if no other session is subscribed.
+     *
+     * @param topic        topic of the subscription.
+     * @param sessionId    session the data was published to.
+     * @param dataProvider data provider returned when subscribing.
+     */
+    public void unsubscribe(String topic, String sessionId, DataProvider dataProvider) {
+        SharedSubscription sharedSubscription = providerSubscriptions.get(dataProvider);
+        if (sharedSubscription == null) {
+            dataProvider.stop();
+            return;
+        }
+        synchronized (sharedSubscription) {
+            if (!sharedSubscription.closed && sharedSubscription.dataProvider.removeSubscriber(topic, sessionId)) {
+                close(sharedSubscription);
+                dataProvider.stop();
+            }
+        }
+    }
+
+    /**
+     * @return number of providers shared by the subscriptions.
+     */
+    public int getSharedProviderCount() {
+        return providerSubscriptions.size();
+    }
+
+    private void close(SharedSubscription sharedSubscription) {
+        sharedSubscription.closed = true;
+        sharedSubscriptions.remove(sharedSubscription.fingerprint, sharedSubscription);
+        if (sharedSubscription.dataProvider != null) {
+            providerSubscriptions.remove(sharedSubscription.dataProvider);
+        }
+    }
+
+    /**
+     * Get the fingerprint of a subscription, which is the same for configurations that differ only in the order of
+     * the fields, the formatting of numbers, the white spaces and comments of the queries or the client side query
+     * inputs.
+     */
+    static String getFingerprint(String providerName, JsonElement providerConfig) {
+        StringBuilder canonicalConfig = new StringBuilder(providerName).append('\n');
+        appendCanonical(providerConfig, null, canonicalConfig);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonicalConfig.toString()
+                    .getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                fingerprint.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException("SHA-256 is not available. " + e.getMessage(), e);
+        }
+    }
+
+    private static void appendCanonical(JsonElement element, String memberName, StringBuilder builder) {
+        if (element == null || element.isJsonNull()) {
+            builder.append("null");
+        } else if (element.isJsonObject()) {
+            Map<String, JsonElement> sortedMembers = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> member : ((JsonObject) element).entrySet()) {
+                // the query functions and widget inputs are resolved into the query by the client
+                if (!QUERY_DATA.equals(memberName) || QUERY.equals(member.getKey())) {
+                    sortedMembers.put(member.getKey(), member.getValue());
+                }
+            }
+            builder.append('{');
+            for (Map.Entry<String, JsonElement> member : sortedMembers.entrySet()) {
+                appendString(member.getKey(), builder);
+                builder.append(':');
+                appendCanonical(member.getValue(), member.getKey(), builder);
+                builder.append(',');
+            }
+            builder.append('}');
+        } else if (element.isJsonArray()) {
+            builder.append('[');
+            for (JsonElement item : element.getAsJsonArray()) {
+                appendCanonical(item, null, builder);
+                builder.append(',');
+            }
+            builder.append(']');
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isNumber()) {
+                builder.append(primitive.getAsBigDecimal().stripTrailingZeros().toPlainString());
+            } else if (primitive.isBoolean()) {
+                builder.append(primitive.getAsBoolean());
+            } else {
+                appendString(normalizeWhiteSpaces(primitive.getAsString(), QUERY.equals(memberName)), builder);
+            }
+        }
+    }
+
+    private static void appendString(String value, StringBuilder builder) {
+        builder.append('"').append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+
+    /**
+     * Trim the value and collapse the white spaces outside quoted literals into a single space. The line and block
+     * comments of a query are removed first, as a line comment would otherwise swallow the line following it.
+     */
+    private static String normalizeWhiteSpaces(String value, boolean isQuery) {
+        StringBuilder normalized = new StringBuilder(value.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (quote == 0) {
+                if (Character.isWhitespace(c)) {
+                    pendingSpace = normalized.length() > 0;
+                    continue;
+                } else if (isQuery && value.startsWith("--", i)) {
+                    int end = i + 2;
+                    while (end < value.length() && value.charAt(end) != '\n' && value.charAt(end) != '\r') {
+                        end++;
+                    }
+                    pendingSpace = normalized.length() > 0;
+                    i = end - 1;
+                    continue;
+                } else if (isQuery && value.startsWith("/*", i)) {
+                    int end = value.indexOf("*/", i + 2);
+                    pendingSpace = normalized.length() > 0;
+                    i = end == -1 ? value.length() : end + 1;
+                    continue;
+                }
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (quote == 0 && (c == '\'' || c == '"' || c == '`')) {
+                quote = c;
+            } else if (c == quote) {
+                quote = 0;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Data provider shared by the subscriptions with the same fingerprint.
+     */
+    private static class SharedSubscription {
+        private final String fingerprint;
+        private AbstractDataProvider dataProvider;
+        private boolean closed;
+
+        private SharedSubscription(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.data.provider.bean;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Column oriented frame of data rows, a compact alternative to the row oriented {@link DataModel}.
+ * <p>
+ * Linear and time columns are kept as {@code double} values and the other columns as strings, so the values are not
+ * boxed. The metadata is not part of the frame, it is sent once per subscription with {@link #metadataToJson}.
+ * <p>
+ * A JSON frame has the form {@code {"topic":"t","rows":2,"columns":[[1.0,2.0],["a","b"]]}}, with null for missing
+ * values. A binary frame is laid out in big-endian order as:
+ * <pre>
+ * byte    format version (1)
+ * short   length of the UTF-8 topic, followed by the topic
+ * int     row count
+ * short   column count
+ * per column:
+ *   byte  column kind, 0 for double values and 1 for string values
+ *   rows  8 byte doubles (NaN for missing values) or, for strings,
+ *         an int length (-1 for missing values) followed by the UTF-8 bytes
+ * </pre>
+ */
+public class ColumnFrame {
+    public static final byte BINARY_FORMAT_VERSION = 1;
+    private static final byte DOUBLE_COLUMN = 0;
+    private static final byte STRING_COLUMN = 1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final boolean[] doubleColumns;
+    private final double[][] doubleValues;
+    private final String[][] stringValues;
+    private int rowCount;
+
+    private ColumnFrame(boolean[] doubleColumns, int capacity) {
+        this.doubleColumns = doubleColumns;
+        this.doubleValues = new double[doubleColumns.length][];
+        this.stringValues = new String[doubleColumns.length][];
+        for (int i = 0; i < doubleColumns.length; i++) {
+            if (doubleColumns[i]) {
+                doubleValues[i] = new double[capacity];
+            } else {
+                stringValues[i] = new String[capacity];
+            }
+        }
+    }
+
+    /**
+     * Create an empty frame for the columns of the given metadata.
+     *
+     * @param metadata metadata of the columns.
+     */
+    public ColumnFrame(DataSetMetadata metadata) {
+        this(toDoubleColumns(metadata), INITIAL_CAPACITY);
+    }
+
+    /**
+     * Append the current row of the result set.
+     *
+     * @param resultSet result set positioned at a row.
+     * @throws SQLException if the values cannot be read.
+     */
+    public void appendRow(ResultSet resultSet) throws SQLException {
+        ensureCapacity(rowCount + 1);
+        for (int i = 0; i < doubleColumns.length; i++) {
+            if (doubleColumns[i]) {
+                double value = resultSet.getDouble(i + 1);
+                doubleValues[i][rowCount] = resultSet.wasNull() ? Double.NaN : value;
+            } else {
+                Object value = resultSet.getObject(i + 1);
+                stringValues[i][rowCount] = value == null ? null : value.toString();
+            }
+        }
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return doubleColumns.length;
+    }
+
+    /**
+     * Create a frame with the rows of this frame followed by the rows of the older frame, up to the row limit.
+     *
+     * @param olderFrame frame with older rows, may be null.
+     * @param rowLimit   maximum number of rows.
+     * @return merged frame.
+     */
+    public ColumnFrame prependTo(ColumnFrame olderFrame, int rowLimit) {
+        int olderRowCount = olderFrame == null ? 0 : olderFrame.rowCount;
+        int mergedRowCount = Math.min(rowLimit, rowCount + olderRowCount);
+        ColumnFrame merged = new ColumnFrame(doubleColumns, Math.max(mergedRowCount, 1));
+        int fromThis = Math.min(rowCount, mergedRowCount);
+        int fromOlder = mergedRowCount - fromThis;
+        for (int i = 0; i < doubleColumns.length; i++) {
+            if (doubleColumns[i]) {
+                System.arraycopy(doubleValues[i], 0, merged.doubleValues[i], 0, fromThis);
+                if (fromOlder > 0) {
+                    System.arraycopy(olderFrame.doubleValues[i], 0, merged.doubleValues[i], fromThis, fromOlder);
+                }
+            } else {
+                System.arraycopy(stringValues[i], 0, merged.stringValues[i], 0, fromThis);
+                if (fromOlder > 0) {
+                    System.arraycopy(olderFrame.stringValues[i], 0, merged.stringValues[i], fromThis, fromOlder);
+                }
+            }
+        }
+        merged.rowCount = mergedRowCount;
+        return merged;
+    }
+
+    /**
+     * Serialize the frame as a JSON text message.
+     *
+     * @param topic topic of the subscription.
+     * @return JSON frame.
+     */
+    public String toJson(String topic) {
+        StringWriter stringWriter = new StringWriter(64 + rowCount * doubleColumns.length * 8);
+        try (JsonWriter writer = new JsonWriter(stringWriter)) {
+            writer.beginObject();
+            writer.name("topic").value(topic);
+            writer.name("rows").value(rowCount);
+            writer.name("columns").beginArray();
+            for (int i = 0; i < doubleColumns.length; i++) {
+                writer.beginArray();
+                for (int row = 0; row < rowCount; row++) {
+                    if (doubleColumns[i]) {
+                        double value = doubleValues[i][row];
+                        if (Double.isNaN(value) || Double.isInfinite(value)) {
+                            writer.nullValue();
+                        } else {
+                            writer.value(value);
+                        }
+                    } else {
+                        writer.value(stringValues[i][row]);
+                    }
+                }
+                writer.endArray();
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            // not thrown when writing to a string
+            throw new UncheckedIOException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Serialize the frame as a binary message.
+     *
+     * @param topic topic of the subscription.
+     * @return binary frame.
+     */
+    public ByteBuffer toBinary(String topic) {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream(64 + rowCount * doubleColumns.length * 8);
+        try (DataOutputStream out = new DataOutputStream(byteStream)) {
+            byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(BINARY_FORMAT_VERSION);
+            out.writeShort(topicBytes.length);
+            out.write(topicBytes);
+            out.writeInt(rowCount);
+            out.writeShort(doubleColumns.length);
+            for (int i = 0; i < doubleColumns.length; i++) {
+                if (doubleColumns[i]) {
+                    out.writeByte(DOUBLE_COLUMN);
+                    for (int row = 0; row < rowCount; row++) {
+                        out.writeDouble(doubleValues[i][row]);
+                    }
+                } else {
+                    out.writeByte(STRING_COLUMN);
+                    for (int row = 0; row < rowCount; row++) {
+                        String value = stringValues[i][row];
+                        if (value == null) {
+                            out.writeInt(-1);
+                        } else {
+                            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                            out.writeInt(bytes.length);
+                            out.write(bytes);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // not thrown when writing to a byte array
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(byteStream.toByteArray());
+    }
+
+    /**
+     * Serialize the metadata sent before the frames of a subscription.
+     *
+     * @param metadata metadata of the columns.
+     * @param topic    topic of the subscription.
+     * @return JSON metadata message.
+     */
+    public static String metadataToJson(DataSetMetadata metadata, String topic) {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(stringWriter)) {
+            writer.beginObject();
+            writer.name("topic").value(topic);
+            writer.name("metadata").beginObject();
+            writer.name("names").beginArray();
+            for (String name : metadata.getNames()) {
+                writer.value(name);
+            }
+            writer.endArray();
+            writer.name("types").beginArray();
+            for (DataSetMetadata.Types type : metadata.getTypes()) {
+                writer.value(type.toString());
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            // not thrown when writing to a string
+            throw new UncheckedIOException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    private void ensureCapacity(int capacity) {
+        for (int i = 0; i < doubleColumns.length; i++) {
+            if (doubleColumns[i] && doubleValues[i].length < capacity) {
+                doubleValues[i] = Arrays.copyOf(doubleValues[i], Math.max(capacity, doubleValues[i].length * 2));
+            } else if (!doubleColumns[i] && stringValues[i].length < capacity) {
+                stringValues[i] = Arrays.copyOf(stringValues[i], Math.max(capacity, stringValues[i].length * 2));
+            }
+        }
+    }
+
+    private static boolean[] toDoubleColumns(DataSetMetadata metadata) {
+        boolean[] doubleColumns = new boolean[metadata.getColumnCount()];
+        for (int i = 0; i < doubleColumns.length; i++) {
+            doubleColumns[i] = metadata.getTypes()[i] == DataSetMetadata.Types.LINEAR
+                    || metadata.getTypes()[i] == DataSetMetadata.Types.TIME;
+        }
+        return doubleColumns;
+    }
+}
@@ -27,11 +27,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.config.provider.ConfigProvider;
 import org.wso2.carbon.data.provider.DataProvider;
+import org.wso2.carbon.data.provider.SubscriptionMultiplexer;
 import org.wso2.carbon.data.provider.bean.DataProviderConfigRoot;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.msf4j.websocket.WebSocketEndpoint;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,6 +41,7 @@ import javax.websocket.OnClose;
 import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
+import javax.websocket.SendHandler;
 import javax.websocket.Session;
 import javax.websocket.server.ServerEndpoint;
 
@@ -106,10 +109,9 @@ public class DataProviderEndPoint implements WebSocketEndpoint {
             if (dataProviderConfigRoot.getAction().equalsIgnoreCase(DataProviderConfigRoot.Types.SUBSCRIBE.toString()
             )) {
                 getDataProviderHelper().removeTopicIfExist(session.getId(), dataProviderConfigRoot.getTopic());
-                DataProvider dataProvider = getDataProviderHelper().getDataProvider(dataProviderConfigRoot
-                        .getProviderName());
-                dataProvider.init(dataProviderConfigRoot.getTopic(), session.getId(),
-                        dataProviderConfigRoot.getDataProviderConfiguration()).start();
+                DataProvider dataProvider = SubscriptionMultiplexer.getInstance().subscribe(dataProviderConfigRoot
+                        .getProviderName(), dataProviderConfigRoot.getTopic(), session.getId(),
+                        dataProviderConfigRoot.getDataProviderConfiguration());
                 getDataProviderHelper().addDataProviderToSessionMap(session.getId(), dataProviderConfigRoot.getTopic(),
                         dataProvider);
             } else if (dataProviderConfigRoot.getAction().equalsIgnoreCase(DataProviderConfigRoot.Types.UNSUBSCRIBE
@@ -168,6 +170,37 @@ public class DataProviderEndPoint implements WebSocketEndpoint {
         }
     }
 
+    /**
+     * Send message to specific client without waiting for it to be delivered.
+     *
+     * @param sessionId sessionId of the client.
+     * @param text      String message to be sent to the client.
+     * @param handler   handler notified once the message is delivered or fails to be delivered.
+     * @return false if the client is not connected, in which case the handler is not notified.
+     */
+    public static boolean sendTextAsync(String sessionId, String text, SendHandler handler) {
+        Session session = sessionMap.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.getAsyncRemote().sendText(text, handler);
+        return true;
+    }
+
+    /**
+     * Send binary message to specific client.
+     *
+     * @param sessionId sessionId of the client.
+     * @param data      binary message to be sent to the client.
+     * @throws IOException If there is a problem delivering the message.
+     */
+    public static void sendBinary(String sessionId, ByteBuffer data) throws IOException {
+        Session session = sessionMap.get(sessionId);
+        if (session != null) {
+            session.getBasicRemote().sendBinary(data);
+        }
+    }
+
     public static Map<String, Session> getSessionMap() {
         return sessionMap;
     }
@@ -28,6 +28,7 @@ import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.data.provider.DataProvider;
+import org.wso2.carbon.data.provider.scheduler.DataProviderScheduler;
 import org.wso2.carbon.uiserver.api.App;
 import org.wso2.carbon.uiserver.spi.RestApiProvider;
 import org.wso2.msf4j.Microservice;
@@ -53,6 +54,7 @@ public class DashboardRestApiProvider implements RestApiProvider {
 
     @Deactivate
     protected void deactivate(BundleContext bundleContext) {
+        DataProviderScheduler.getInstance().shutdown();
         LOGGER.debug("{} deactivated.", this.getClass().getName());
     }
 
@@ -307,6 +307,10 @@ public class AbstractRDBMSDataProvider extends AbstractDataProvider {
         renderingHints.put("incrementalColumn", "Column of the table that is used to identify the incremental data");
         renderingTypes.put("timeColumns", InputFieldTypes.TEXT_FIELD);
         renderingHints.put("timeColumns", "Columns of the table that contain timestamps");
+        renderingTypes.put("publishingFormat", InputFieldTypes.TEXT_FIELD);
+        renderingHints.put("publishingFormat", "Format of the data sent by the streaming provider: rows, columns " +
+                "or binary. Columns and binary formats send the metadata once and then only the new rows as " +
+                "column frames");
         return new Gson().toJson(new Object[]{renderingTypes, new RDBMSDataProviderConf(), renderingHints,
                 providerDescription});
     }
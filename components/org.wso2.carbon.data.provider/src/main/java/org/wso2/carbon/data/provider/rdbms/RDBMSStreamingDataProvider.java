@@ -15,37 +15,81 @@
  */
 package org.wso2.carbon.data.provider.rdbms;
 
+import com.google.gson.JsonElement;
 import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.carbon.data.provider.DataProvider;
+import org.wso2.carbon.data.provider.bean.ColumnFrame;
 import org.wso2.carbon.data.provider.bean.DataSetMetadata;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
 import org.wso2.carbon.datasource.core.exception.DataSourceException;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 import static org.wso2.carbon.data.provider.rdbms.utils.RDBMSProviderConstants.LAST_RECORD_VALUE_PLACEHOLDER;
 
-/**
- * RDBMS streaming data provider instance.
- */
 @Component(
         service = DataProvider.class,
         immediate = true
 )
 public class RDBMSStreamingDataProvider extends AbstractRDBMSDataProvider {
     private static final Logger LOGGER = LoggerFactory.getLogger(RDBMSStreamingDataProvider.class);
-    private double lastRecordValue = 0;
+    private final Watermark watermark = new Watermark();
+    private String incrementalQuery;
+    private PublishingFormat publishingFormat;
+    private List<Object[]> retainedData;
+    private ColumnFrame retainedFrame;
+
+    /**
+     * Formats of the data sent to the subscribed sessions.
+     */
+    private enum PublishingFormat {
+        /**
+         * Rows of data along with the metadata in every message, as sent by the other providers.
+         */
+        ROWS,
+        /**
+         * Metadata once, then JSON column frames of the new rows.
+         */
+        COLUMNS,
+        /**
+         * Metadata once, then binary column frames of the new rows.
+         */
+        BINARY
+    }
+
+    @Override
+    public DataProvider init(String topic, String sessionId, JsonElement jsonElement) throws DataProviderException {
+        super.init(topic, sessionId, jsonElement);
+        if (getGreaterThanWhereSQLQuery() != null) {
+            // the last record value is bound as a parameter, so the statement is the same on every publishing
+            incrementalQuery = getGreaterThanWhereSQLQuery().replace(LAST_RECORD_VALUE_PLACEHOLDER, "?");
+        }
+        String format = getRdbmsProviderConfig().getPublishingFormat();
+        try {
+            publishingFormat = format == null || format.isEmpty() ? PublishingFormat.ROWS :
+                    PublishingFormat.valueOf(format.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new DataProviderException("Invalid publishing format '" + format + "' given, valid formats are " +
+                    "rows, columns and binary.", e);
+        }
+        return this;
+    }
 
     @Override
     public void publish(String topic, String sessionId) {
         String customQuery = getRecordLimitQuery();
         DataSetMetadata metadata = getMetadata();
-        int columnCount = getColumnCount();
         if (customQuery != null) {
             Connection connection;
             try {
@@ -53,43 +97,31 @@ public class RDBMSStreamingDataProvider extends AbstractRDBMSDataProvider {
                 PreparedStatement statement = null;
                 ResultSet resultSet = null;
                 try {
-                    if (lastRecordValue > 0) {
-                        String greaterThanWhereQuery = getGreaterThanWhereSQLQuery().replace
-                                (LAST_RECORD_VALUE_PLACEHOLDER,
-                                        Double.toString(lastRecordValue));
-                        statement = connection.prepareStatement(greaterThanWhereQuery);
+                    boolean isIncremental = watermark.isSet() && incrementalQuery != null;
+                    if (isIncremental) {
+                        statement = connection.prepareStatement(incrementalQuery);
+                        watermark.bind(statement, 1);
                     } else {
                         statement = connection.prepareStatement(customQuery);
                     }
                     resultSet = statement.executeQuery();
-                    ArrayList<Object[]> data = new ArrayList<>();
-                    while (resultSet.next()) {
-                        Object[] rowData = new Object[columnCount];
-                        for (int i = 0; i < columnCount; i++) {
-                            if (metadata.getTypes()[i].equals(DataSetMetadata.Types.LINEAR)) {
-                                rowData[i] = resultSet.getDouble(i + 1);
-                            } else if (metadata.getTypes()[i].equals(DataSetMetadata.Types.ORDINAL)) {
-                                rowData[i] = resultSet.getString(i + 1);
-                            } else if (metadata.getTypes()[i].equals(DataSetMetadata.Types.TIME)) {
-                                rowData[i] = resultSet.getDouble(i + 1);
-                            } else {
-                                if (LOGGER.isDebugEnabled()) {
-                                    LOGGER.debug("Meta Data type not defined, added value of the given column as a " +
-                                            "java object.");
-                                }
-                                rowData[i] = resultSet.getObject(i + 1);
-                            }
-                            if (metadata.getNames()[i].equalsIgnoreCase(getRdbmsProviderConfig()
-                                    .getIncrementalColumn())) {
-                                if (lastRecordValue < (double) rowData[i]) {
-                                    lastRecordValue = (double) rowData[i];
-                                }
-                            }
-                        }
-                        data.add(rowData);
+                    if (!watermark.isResolved()) {
+                        watermark.resolve(resultSet.getMetaData(), getRdbmsProviderConfig().getIncrementalColumn());
                     }
-                    if (!data.isEmpty() || lastRecordValue == 0) {
-                        publishToEndPoint(data, sessionId, topic);
+                    if (publishingFormat == PublishingFormat.ROWS) {
+                        ArrayList<Object[]> data = readRows(resultSet, metadata);
+                        if (!data.isEmpty() || !isIncremental) {
+                            publishToEndPoint(data, sessionId, topic);
+                        }
+                    } else {
+                        ColumnFrame frame = new ColumnFrame(metadata);
+                        while (resultSet.next()) {
+                            frame.appendRow(resultSet);
+                            watermark.update(resultSet);
+                        }
+                        if (frame.getRowCount() > 0 || !isIncremental) {
+                            publishFrame(frame);
+                        }
                     }
                 } catch (SQLException e) {
                     LOGGER.error("SQL exception occurred " + e.getMessage(), e);
@@ -101,4 +133,180 @@ public class RDBMSStreamingDataProvider extends AbstractRDBMSDataProvider {
             }
         }
     }
+
+    private ArrayList<Object[]> readRows(ResultSet resultSet, DataSetMetadata metadata) throws SQLException {
+        int columnCount = getColumnCount();
+        ArrayList<Object[]> data = new ArrayList<>();
+        while (resultSet.next()) {
+            Object[] rowData = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                if (metadata.getTypes()[i].equals(DataSetMetadata.Types.LINEAR)) {
+                    rowData[i] = resultSet.getDouble(i + 1);
+                } else if (metadata.getTypes()[i].equals(DataSetMetadata.Types.ORDINAL)) {
+                    rowData[i] = resultSet.getString(i + 1);
+                } else if (metadata.getTypes()[i].equals(DataSetMetadata.Types.TIME)) {
+                    rowData[i] = resultSet.getDouble(i + 1);
+                } else {
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Meta Data type not defined, added value of the given column as a " +
+                                "java object.");
+                    }
+                    rowData[i] = resultSet.getObject(i + 1);
+                }
+            }
+            watermark.update(resultSet);
+            data.add(rowData);
+        }
+        return data;
+    }
+
+    private void publishFrame(ColumnFrame frame) {
+        synchronized (getPublishLock()) {
+            retainedFrame = frame.prependTo(retainedFrame, getPublishingLimit());
+            if (publishingFormat == PublishingFormat.BINARY) {
+                publishBinaryToSubscribers(frame::toBinary);
+            } else {
+                publishToSubscribers(frame::toJson);
+            }
+        }
+    }
+
+    @Override
+    protected void sendInitialData(String topic, String sessionId) {
+        if (publishingFormat == PublishingFormat.ROWS) {
+            super.sendInitialData(topic, sessionId);
+            return;
+        }
+        sendText(sessionId, ColumnFrame.metadataToJson(getMetadata(), topic));
+        if (retainedFrame != null) {
+            if (publishingFormat == PublishingFormat.BINARY) {
+                sendBinary(sessionId, retainedFrame.toBinary(topic));
+            } else {
+                sendText(sessionId, retainedFrame.toJson(topic));
+            }
+        }
+    }
+
+    /**
+     * Keep the latest records up to the publishing limit, the same records a new subscription would query first.
+     */
+    @Override
+    protected void retainPublishedData(List<Object[]> data) {
+        List<Object[]> latestData = new ArrayList<>(data);
+        if (retainedData != null) {
+            latestData.addAll(retainedData);
+        }
+        int publishingLimit = getPublishingLimit();
+        if (latestData.size() > publishingLimit) {
+            latestData = new ArrayList<>(latestData.subList(0, publishingLimit));
+        }
+        retainedData = latestData;
+    }
+
+    @Override
+    protected List<Object[]> getRetainedData() {
+        return retainedData;
+    }
+
+    private int getPublishingLimit() {
+        return (int) Math.min(Integer.MAX_VALUE, getRdbmsProviderConfig().getPublishingLimit());
+    }
+
+    /**
+     * Largest value of the incremental column published so far, kept in the type of the column so that it is
+     * compared by the database without losing precision.
+     */
+    private static class Watermark {
+        private int columnIndex = -1;
+        private int sqlType;
+        private boolean isResolved;
+        private boolean isSet;
+        private long longValue;
+        private double doubleValue;
+        private Timestamp timestampValue;
+
+        private boolean isResolved() {
+            return isResolved;
+        }
+
+        private boolean isSet() {
+            return isSet;
+        }
+
+        private void resolve(ResultSetMetaData resultSetMetaData, String incrementalColumn) throws SQLException {
+            isResolved = true;
+            for (int i = 1; i <= resultSetMetaData.getColumnCount(); i++) {
+                if (resultSetMetaData.getColumnLabel(i).equalsIgnoreCase(incrementalColumn)
+                        || resultSetMetaData.getColumnName(i).equalsIgnoreCase(incrementalColumn)) {
+                    columnIndex = i;
+                    sqlType = toWatermarkType(resultSetMetaData.getColumnType(i), resultSetMetaData.getPrecision(i),
+                            resultSetMetaData.getScale(i));
+                    return;
+                }
+            }
+            LOGGER.warn("Incremental column '" + incrementalColumn + "' is not in the result of the query, all " +
+                    "records will be queried on every publishing.");
+        }
+
+        private void update(ResultSet resultSet) throws SQLException {
+            if (columnIndex < 0) {
+                return;
+            }
+            switch (sqlType) {
+                case Types.BIGINT:
+                    long longRecordValue = resultSet.getLong(columnIndex);
+                    if (!resultSet.wasNull() && (!isSet || longRecordValue > longValue)) {
+                        longValue = longRecordValue;
+                        isSet = true;
+                    }
+                    break;
+                case Types.TIMESTAMP:
+                    Timestamp timestampRecordValue = resultSet.getTimestamp(columnIndex);
+                    if (timestampRecordValue != null && (!isSet || timestampRecordValue.after(timestampValue))) {
+                        timestampValue = timestampRecordValue;
+                        isSet = true;
+                    }
+                    break;
+                default:
+                    double doubleRecordValue = resultSet.getDouble(columnIndex);
+                    if (!resultSet.wasNull() && (!isSet || doubleRecordValue > doubleValue)) {
+                        doubleValue = doubleRecordValue;
+                        isSet = true;
+                    }
+            }
+        }
+
+        private void bind(PreparedStatement statement, int parameterIndex) throws SQLException {
+            switch (sqlType) {
+                case Types.BIGINT:
+                    statement.setLong(parameterIndex, longValue);
+                    break;
+                case Types.TIMESTAMP:
+                    statement.setTimestamp(parameterIndex, timestampValue);
+                    break;
+                default:
+                    statement.setDouble(parameterIndex, doubleValue);
+            }
+        }
+
+        private static int toWatermarkType(int columnType, int precision, int scale) {
+            switch (columnType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return Types.BIGINT;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    // integral values that fit in a long
+                    return scale == 0 && precision > 0 && precision <= 18 ? Types.BIGINT : Types.DOUBLE;
+                case Types.DATE:
+                case Types.TIMESTAMP:
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    return Types.TIMESTAMP;
+                default:
+                    return Types.DOUBLE;
+            }
+        }
+    }
 }
@@ -33,6 +33,7 @@ public class RDBMSDataProviderConf implements ProviderConfig {
     private long publishingLimit;
     private long purgingLimit;
     private boolean isPurgingEnable;
+    private String publishingFormat;
 
     public RDBMSDataProviderConf() {
         this.publishingInterval = 1;
@@ -45,6 +46,7 @@ public class RDBMSDataProviderConf implements ProviderConfig {
         this.tableName = "";
         this.incrementalColumn = "";
         this.timeColumns = "";
+        this.publishingFormat = "rows";
     }
 
     public String getDatasourceName() {
@@ -75,6 +77,10 @@ public class RDBMSDataProviderConf implements ProviderConfig {
         return timeColumns;
     }
 
+    public String getPublishingFormat() {
+        return publishingFormat;
+    }
+
     @Override
     public long getPublishingInterval() {
         return publishingInterval;
@@ -0,0 +1,249 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.data.provider.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scheduler shared by all data providers to run their periodic publishing and purging tasks.
+ * <p>
+ * A single timer thread keeps the tasks in a hashed timer wheel and hands the due tasks to a bounded pool of worker
+ * threads, so the number of threads does not grow with the number of widget subscriptions. A task that is still
+ * running when it is due again is not queued a second time, the run is skipped and counted as an overrun.
+ */
+public class DataProviderScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataProviderScheduler.class);
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int WHEEL_SIZE = 512;
+    private static final int WORKER_QUEUE_CAPACITY = 10000;
+    private static final DataProviderScheduler INSTANCE = new DataProviderScheduler(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private final int workerPoolSize;
+    private final long tickNanos;
+    private volatile ThreadPoolExecutor workerExecutor;
+    private volatile TimerWheel timerWheel;
+    private Thread timerThread;
+
+    DataProviderScheduler(int workerPoolSize) {
+        this(workerPoolSize, TICK_NANOS);
+    }
+
+    DataProviderScheduler(int workerPoolSize, long tickNanos) {
+        this.workerPoolSize = workerPoolSize;
+        this.tickNanos = tickNanos;
+    }
+
+    public static DataProviderScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules a task to run at a fixed rate.
+     *
+     * @param name         name of the task, used in logs
+     * @param task         task to run
+     * @param initialDelay delay before the first run
+     * @param period       period between the starts of two runs
+     * @param timeUnit     unit of the delay and the period
+     * @return handle to cancel the task and read its metrics
+     */
+    public ScheduledProviderTask scheduleAtFixedRate(String name, Runnable task, long initialDelay, long period,
+                                                     TimeUnit timeUnit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period of task '" + name + "' should be positive, found " + period);
+        }
+        TimerWheel wheel = ensureStarted();
+        ScheduledProviderTask scheduledTask = new ScheduledProviderTask(name, task,
+                System.nanoTime() + timeUnit.toNanos(Math.max(0, initialDelay)),
+                Math.max(tickNanos, timeUnit.toNanos(period)));
+        wheel.pendingTasks.offer(scheduledTask);
+        return scheduledTask;
+    }
+
+    public int getWorkerPoolSize() {
+        return workerPoolSize;
+    }
+
+    /**
+     * @return number of runs waiting for a free worker
+     */
+    public int getQueuedRunCount() {
+        ThreadPoolExecutor executor = workerExecutor;
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * @return number of tasks kept in the timer wheel, including cancelled tasks it has not reached yet
+     */
+    public int getScheduledTaskCount() {
+        TimerWheel wheel = timerWheel;
+        return wheel == null ? 0 : wheel.scheduledTaskCount.get();
+    }
+
+    /**
+     * Stops the timer and the workers. Tasks scheduled afterwards start them again.
+     */
+    public synchronized void shutdown() {
+        if (timerWheel != null) {
+            timerWheel = null;
+            LockSupport.unpark(timerThread);
+            workerExecutor.shutdown();
+            timerThread = null;
+            workerExecutor = null;
+        }
+    }
+
+    private synchronized TimerWheel ensureStarted() {
+        if (timerWheel != null) {
+            return timerWheel;
+        }
+        AtomicInteger workerCount = new AtomicInteger();
+        workerExecutor = new ThreadPoolExecutor(workerPoolSize, workerPoolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(WORKER_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "DataProviderWorker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workerExecutor.allowCoreThreadTimeOut(true);
+        timerWheel = new TimerWheel(workerExecutor);
+        timerThread = new Thread(timerWheel, "DataProviderTimer");
+        timerThread.setDaemon(true);
+        timerThread.start();
+        return timerWheel;
+    }
+
+    /**
+     * Timer wheel owned by a single timer thread. Each start of the scheduler gets its own wheel, so that a timer
+     * that is still finishing after a shutdown never sees the tasks of the next one.
+     */
+    private class TimerWheel implements Runnable {
+        private final ThreadPoolExecutor executor;
+        private final Queue<ScheduledProviderTask> pendingTasks = new ConcurrentLinkedQueue<>();
+        private final List<ArrayDeque<ScheduledProviderTask>> slots = new ArrayList<>(WHEEL_SIZE);
+        private final AtomicInteger scheduledTaskCount = new AtomicInteger();
+        private long startNanos;
+        private long currentTick;
+
+        private TimerWheel(ThreadPoolExecutor executor) {
+            this.executor = executor;
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                slots.add(new ArrayDeque<>());
+            }
+        }
+
+        @Override
+        public void run() {
+            startNanos = System.nanoTime();
+            List<ScheduledProviderTask> dueTasks = new ArrayList<>();
+            while (isCurrent()) {
+                placePendingTasks();
+                for (Iterator<ScheduledProviderTask> iterator = slots.get((int) (currentTick % WHEEL_SIZE))
+                        .iterator(); iterator.hasNext(); ) {
+                    ScheduledProviderTask task = iterator.next();
+                    if (task.isCancelled()) {
+                        iterator.remove();
+                        scheduledTaskCount.decrementAndGet();
+                    } else if (task.remainingRounds > 0) {
+                        task.remainingRounds--;
+                    } else {
+                        iterator.remove();
+                        dueTasks.add(task);
+                    }
+                }
+                currentTick++;
+                for (ScheduledProviderTask task : dueTasks) {
+                    dispatch(task, executor);
+                    task.deadlineNanos += task.periodNanos;
+                    place(task);
+                }
+                dueTasks.clear();
+                waitUntil(startNanos + currentTick * tickNanos);
+            }
+        }
+
+        private boolean isCurrent() {
+            return timerWheel == this;
+        }
+
+        private void placePendingTasks() {
+            ScheduledProviderTask task;
+            while ((task = pendingTasks.poll()) != null) {
+                if (!task.isCancelled()) {
+                    place(task);
+                    scheduledTaskCount.incrementAndGet();
+                }
+            }
+        }
+
+        private void place(ScheduledProviderTask task) {
+            long deadlineTick = (task.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+            if (deadlineTick < currentTick) {
+                // fell behind, run in the next slot instead of waiting for a whole rotation of the wheel
+                deadlineTick = currentTick;
+            }
+            task.remainingRounds = (deadlineTick - currentTick) / WHEEL_SIZE;
+            slots.get((int) (deadlineTick % WHEEL_SIZE)).add(task);
+        }
+
+        private void waitUntil(long wakeUpNanos) {
+            long remainingNanos;
+            while (isCurrent() && (remainingNanos = wakeUpNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remainingNanos);
+            }
+        }
+    }
+
+    private void dispatch(ScheduledProviderTask task, ThreadPoolExecutor executor) {
+        if (!task.tryStart()) {
+            task.getMetrics().recordOverrun();
+            if (task.getMetrics().getOverrunCount() == 1) {
+                LOGGER.warn("Skipping run of data provider task '" + task.getName() + "' as its previous run is " +
+                        "still in progress. Further skipped runs of the task are logged at debug level.");
+            } else if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Skipping run of data provider task '" + task.getName() + "' as its previous run " +
+                        "is still in progress.");
+            }
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.finish();
+            task.getMetrics().recordOverrun();
+            LOGGER.warn("Skipping run of data provider task '" + task.getName() + "' as all " + workerPoolSize +
+                    " workers are busy and " + WORKER_QUEUE_CAPACITY + " runs are queued.");
+        }
+    }
+}
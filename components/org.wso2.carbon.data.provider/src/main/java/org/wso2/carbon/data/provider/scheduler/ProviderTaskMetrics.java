@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.data.provider.scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution metrics of a {@link ScheduledProviderTask}: how often it ran, how long its runs took and how many runs
+ * were skipped because the previous run was still in progress or no worker was free.
+ */
+public class ProviderTaskMetrics {
+
+    private final LongAdder executionCount = new LongAdder();
+    private final LongAdder totalDurationNanos = new LongAdder();
+    private final AtomicLong maxDurationNanos = new AtomicLong();
+    private final AtomicLong lastDurationNanos = new AtomicLong();
+    private final LongAdder overrunCount = new LongAdder();
+
+    void recordExecution(long durationNanos) {
+        executionCount.increment();
+        totalDurationNanos.add(durationNanos);
+        lastDurationNanos.set(durationNanos);
+        maxDurationNanos.accumulateAndGet(durationNanos, Math::max);
+    }
+
+    void recordOverrun() {
+        overrunCount.increment();
+    }
+
+    public long getExecutionCount() {
+        return executionCount.sum();
+    }
+
+    public long getOverrunCount() {
+        return overrunCount.sum();
+    }
+
+    public long getLastDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastDurationNanos.get());
+    }
+
+    public long getMaxDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDurationNanos.get());
+    }
+
+    public double getMeanDurationMillis() {
+        long count = executionCount.sum();
+        return count == 0 ? 0 : totalDurationNanos.sum() / (count * 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return "executions: " + getExecutionCount() + ", overruns: " + getOverrunCount() + ", mean: " +
+                String.format("%.2f", getMeanDurationMillis()) + " ms, max: " + getMaxDurationMillis() + " ms";
+    }
+}
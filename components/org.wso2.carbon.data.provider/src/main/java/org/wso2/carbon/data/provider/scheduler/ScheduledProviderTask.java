@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.data.provider.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodic task registered with the {@link DataProviderScheduler}.
+ */
+public class ScheduledProviderTask implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScheduledProviderTask.class);
+
+    private final String name;
+    private final Runnable task;
+    private final ProviderTaskMetrics metrics = new ProviderTaskMetrics();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelled;
+    // owned by the timer thread
+    long deadlineNanos;
+    final long periodNanos;
+    long remainingRounds;
+
+    ScheduledProviderTask(String name, Runnable task, long deadlineNanos, long periodNanos) {
+        this.name = name;
+        this.task = task;
+        this.deadlineNanos = deadlineNanos;
+        this.periodNanos = periodNanos;
+    }
+
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            if (!cancelled) {
+                task.run();
+            }
+        } catch (Throwable e) {
+            // an exception should not stop the next runs of the task
+            LOGGER.error("Error in running data provider task '" + name + "'. " + e.getMessage(), e);
+        } finally {
+            metrics.recordExecution(System.nanoTime() - start);
+            finish();
+        }
+    }
+
+    /**
+     * Stops the next runs of the task. A run that is in progress is not interrupted.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ProviderTaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    boolean tryStart() {
+        return running.compareAndSet(false, true);
+    }
+
+    void finish() {
+        running.set(false);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.data.provider.siddhi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.execution.query.StoreQuery;
+import org.wso2.siddhi.query.compiler.SiddhiCompiler;
+import org.wso2.siddhi.query.compiler.exception.SiddhiParserException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Siddhi app runtimes shared by the Siddhi store data providers.
+ * <p>
+ * Runtimes are keyed by the hash of the Siddhi app text and reference counted, so the widgets querying the same app
+ * share one runtime, which is shut down when the last of them stops. Store queries are parsed once per runtime and
+ * executed in their compiled form.
+ */
+public class SiddhiAppRuntimeCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SiddhiAppRuntimeCache.class);
+    private static final SiddhiAppRuntimeCache INSTANCE = new SiddhiAppRuntimeCache();
+    private final Map<String, SharedSiddhiAppRuntime> runtimes = new HashMap<>();
+    private SiddhiManager siddhiManager;
+
+    public static SiddhiAppRuntimeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the runtime of a Siddhi app, creating and starting it if no provider uses it. Each call should be followed
+     * by a call to {@link #release} once the runtime is no longer used.
+     *
+     * @param siddhiApp Siddhi app text.
+     * @return shared runtime.
+     * @throws DataProviderException if the Siddhi app is invalid.
+     */
+    public synchronized SharedSiddhiAppRuntime acquire(String siddhiApp) throws DataProviderException {
+        String key = hash(siddhiApp);
+        SharedSiddhiAppRuntime sharedRuntime = runtimes.get(key);
+        if (sharedRuntime != null && sharedRuntime.siddhiApp.equals(siddhiApp)) {
+            sharedRuntime.referenceCount++;
+            return sharedRuntime;
+        }
+        SiddhiAppRuntime siddhiAppRuntime;
+        try {
+            siddhiAppRuntime = getSiddhiManager().createSiddhiAppRuntime(siddhiApp);
+        } catch (SiddhiParserException e) {
+            throw new DataProviderException("Invalid Siddhi App Context", e);
+        }
+        siddhiAppRuntime.setPurgingEnabled(false);
+        siddhiAppRuntime.start();
+        sharedRuntime = new SharedSiddhiAppRuntime(key, siddhiApp, siddhiAppRuntime);
+        if (!runtimes.containsKey(key)) {
+            runtimes.put(key, sharedRuntime);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Started Siddhi app runtime " + siddhiAppRuntime.getName() + " for data providers, " +
+                    runtimes.size() + " runtimes in use.");
+        }
+        return sharedRuntime;
+    }
+
+    /**
+     * Release a runtime acquired with {@link #acquire}, shutting it down if no other provider uses it.
+     *
+     * @param sharedRuntime runtime to release.
+     */
+    public synchronized void release(SharedSiddhiAppRuntime sharedRuntime) {
+        if (--sharedRuntime.referenceCount == 0) {
+            runtimes.remove(sharedRuntime.key, sharedRuntime);
+            sharedRuntime.siddhiAppRuntime.shutdown();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Shut down Siddhi app runtime " + sharedRuntime.siddhiAppRuntime.getName() +
+                        " of data providers, " + runtimes.size() + " runtimes in use.");
+            }
+        }
+    }
+
+    public synchronized int getRuntimeCount() {
+        return runtimes.size();
+    }
+
+    private SiddhiManager getSiddhiManager() {
+        if (siddhiManager == null) {
+            siddhiManager = new SiddhiManager();
+        }
+        return siddhiManager;
+    }
+
+    private static String hash(String siddhiApp) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256")
+                    .digest(siddhiApp.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException("SHA-256 is not available. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Siddhi app runtime shared by the providers with the same Siddhi app, along with its compiled store queries.
+     */
+    public static class SharedSiddhiAppRuntime {
+        private final String key;
+        private final String siddhiApp;
+        private final SiddhiAppRuntime siddhiAppRuntime;
+        private final Map<String, StoreQuery> storeQueries = new ConcurrentHashMap<>();
+        private final Map<StoreQuery, Attribute[]> outputAttributes = new ConcurrentHashMap<>();
+        private int referenceCount = 1;
+
+        private SharedSiddhiAppRuntime(String key, String siddhiApp, SiddhiAppRuntime siddhiAppRuntime) {
+            this.key = key;
+            this.siddhiApp = siddhiApp;
+            this.siddhiAppRuntime = siddhiAppRuntime;
+        }
+
+        public SiddhiAppRuntime getSiddhiAppRuntime() {
+            return siddhiAppRuntime;
+        }
+
+        /**
+         * Get the compiled form of a store query, parsing it only the first time it is used with this runtime.
+         *
+         * @param query store query text.
+         * @return compiled store query.
+         * @throws DataProviderException if the store query is invalid.
+         */
+        public StoreQuery getStoreQuery(String query) throws DataProviderException {
+            StoreQuery storeQuery = storeQueries.get(query);
+            if (storeQuery == null) {
+                try {
+                    storeQuery = SiddhiCompiler.parseStoreQuery(query);
+                } catch (SiddhiParserException e) {
+                    throw new DataProviderException("Invalid Siddhi store query: " + e.getMessage(), e);
+                }
+                // output attributes are cached per compiled query, so every caller uses the query compiled first
+                StoreQuery parsedStoreQuery = storeQueries.putIfAbsent(query, storeQuery);
+                if (parsedStoreQuery != null) {
+                    storeQuery = parsedStoreQuery;
+                }
+            }
+            return storeQuery;
+        }
+
+        public Attribute[] getOutputAttributes(StoreQuery storeQuery) {
+            return outputAttributes.computeIfAbsent(storeQuery, siddhiAppRuntime::getStoreQueryOutputAttributes);
+        }
+    }
+}
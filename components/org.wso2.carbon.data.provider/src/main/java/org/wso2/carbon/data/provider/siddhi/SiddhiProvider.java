@@ -28,14 +28,11 @@ import org.wso2.carbon.data.provider.InputFieldTypes;
 import org.wso2.carbon.data.provider.ProviderConfig;
 import org.wso2.carbon.data.provider.bean.DataSetMetadata;
 import org.wso2.carbon.data.provider.exception.DataProviderException;
+import org.wso2.carbon.data.provider.siddhi.SiddhiAppRuntimeCache.SharedSiddhiAppRuntime;
 import org.wso2.carbon.data.provider.siddhi.config.SiddhiDataProviderConfig;
-import org.wso2.siddhi.core.SiddhiAppRuntime;
-import org.wso2.siddhi.core.SiddhiManager;
 import org.wso2.siddhi.core.event.Event;
 import org.wso2.siddhi.query.api.definition.Attribute;
 import org.wso2.siddhi.query.api.execution.query.StoreQuery;
-import org.wso2.siddhi.query.compiler.SiddhiCompiler;
-import org.wso2.siddhi.query.compiler.exception.SiddhiParserException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -58,8 +55,10 @@ public class SiddhiProvider extends AbstractDataProvider {
     private static final String QUERY = "query";
     private SiddhiDataProviderConfig siddhiDataProviderConfig;
     private DataSetMetadata metadata;
-    private static SiddhiManager siddhiManager = null;
-    private SiddhiAppRuntime siddhiAppRuntime;
+    private final Object runtimeLock = new Object();
+    // guarded by runtimeLock once the provider is started, null once it is stopped
+    private SharedSiddhiAppRuntime sharedRuntime;
+    private StoreQuery storeQuery;
     private String[] linearTypes = new String[]{"INT", "LONG", "FLOAT", "DOUBLE"};
     private String[] ordinalTypes = new String[]{"STRING", "BOOL"};
     private List<String> timeColumns;
@@ -72,18 +71,25 @@ public class SiddhiProvider extends AbstractDataProvider {
         this.timeColumns = Arrays.asList(this.siddhiDataProviderConfig.getTimeColumns().toUpperCase(Locale.ENGLISH)
                 .split(","));
         super.init(topic, sessionId, siddhiDataProviderConfig);
-        SiddhiAppRuntime siddhiAppRuntime = getSiddhiAppRuntime();
-        siddhiAppRuntime.setPurgingEnabled(false);
-        siddhiAppRuntime.start();
-        StoreQuery storeQuery = SiddhiCompiler.parseStoreQuery(siddhiDataProviderConfig.getQueryData()
-                .getAsJsonObject().get(QUERY).getAsString());
-        Attribute[] outputAttributeList = siddhiAppRuntime.getStoreQueryOutputAttributes(storeQuery);
-        metadata = new DataSetMetadata(outputAttributeList.length);
-        Attribute outputAttribute;
-        for (int i = 0; i < outputAttributeList.length; i++) {
-            outputAttribute = outputAttributeList[i];
-            metadata.put(i, outputAttribute.getName(),
-                    getMetadataTypes(outputAttribute.getName(), outputAttribute.getType().toString()));
+        SharedSiddhiAppRuntime sharedRuntime = SiddhiAppRuntimeCache.getInstance().acquire(
+                siddhiDataProviderConfig.getSiddhiAppContext());
+        try {
+            storeQuery = sharedRuntime.getStoreQuery(siddhiDataProviderConfig.getQueryData().getAsJsonObject()
+                    .get(QUERY).getAsString());
+            Attribute[] outputAttributeList = sharedRuntime.getOutputAttributes(storeQuery);
+            metadata = new DataSetMetadata(outputAttributeList.length);
+            Attribute outputAttribute;
+            for (int i = 0; i < outputAttributeList.length; i++) {
+                outputAttribute = outputAttributeList[i];
+                metadata.put(i, outputAttribute.getName(),
+                        getMetadataTypes(outputAttribute.getName(), outputAttribute.getType().toString()));
+            }
+        } catch (DataProviderException | RuntimeException e) {
+            SiddhiAppRuntimeCache.getInstance().release(sharedRuntime);
+            throw e;
+        }
+        synchronized (runtimeLock) {
+            this.sharedRuntime = sharedRuntime;
         }
         return this;
     }
@@ -124,8 +130,15 @@ public class SiddhiProvider extends AbstractDataProvider {
 
     @Override
     public void publish(String topic, String sessionId) {
-        Event[] events = siddhiAppRuntime.query(siddhiDataProviderConfig.getQueryData().getAsJsonObject().get
-                (QUERY).getAsString());
+        Event[] events;
+        // the runtime is not released by stop() while it is being queried
+        synchronized (runtimeLock) {
+            if (sharedRuntime == null) {
+                // stopped while this run was waiting for a worker
+                return;
+            }
+            events = sharedRuntime.getSiddhiAppRuntime().query(storeQuery);
+        }
         ArrayList<Object[]> data = new ArrayList<>();
         if (events != null) {
             for (Event event : events) {
@@ -153,26 +166,13 @@ public class SiddhiProvider extends AbstractDataProvider {
 
     @Override
     public void stop() {
-        siddhiAppRuntime.shutdown();
         super.stop();
-    }
-
-    private static SiddhiManager getSiddhiManager() {
-        if (siddhiManager == null) {
-            siddhiManager = new SiddhiManager();
-        }
-        return siddhiManager;
-    }
-
-    private SiddhiAppRuntime getSiddhiAppRuntime() throws DataProviderException {
-        if (this.siddhiAppRuntime == null) {
-            try {
-                this.siddhiAppRuntime = getSiddhiManager().createSiddhiAppRuntime(siddhiDataProviderConfig.getSiddhiAppContext());
-            } catch (SiddhiParserException e) {
-                throw new DataProviderException("Invalid Siddhi App Context", e);
+        synchronized (runtimeLock) {
+            if (sharedRuntime != null) {
+                SiddhiAppRuntimeCache.getInstance().release(sharedRuntime);
+                sharedRuntime = null;
             }
         }
-        return this.siddhiAppRuntime;
     }
 
     /**
@@ -20,6 +20,7 @@ package org.wso2.carbon.data.provider.utils;
 
 import org.wso2.carbon.config.provider.ConfigProvider;
 import org.wso2.carbon.data.provider.DataProvider;
+import org.wso2.carbon.data.provider.SubscriptionMultiplexer;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 
 import java.util.Map;
@@ -85,7 +86,7 @@ public class DataProviderValueHolder {
             if (this.sessionDataProviderMap.get(sessionId).containsKey(topic)) {
                 DataProvider dataProvider = this.sessionDataProviderMap.get(sessionId).remove(topic);
                 if (dataProvider != null) {
-                    dataProvider.stop();
+                    SubscriptionMultiplexer.getInstance().unsubscribe(topic, sessionId, dataProvider);
                 }
                 return true;
             }
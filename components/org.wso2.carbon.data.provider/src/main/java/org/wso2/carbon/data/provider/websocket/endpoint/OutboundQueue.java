@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.data.provider.websocket.endpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.data.provider.endpoint.DataProviderEndPoint;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.websocket.SendResult;
+
+/**
+ * Bounded queue of the messages to be sent to a data provider session.
+ * <p>
+ * Messages are sent asynchronously, one message at a time per session. The sender pool only starts a send and the
+ * next message of the session is started once the previous one is delivered, so a slow client only delays its own
+ * messages and never holds a sender. When the client falls behind by a full queue, the oldest message is dropped, so
+ * that the widget keeps showing the latest events.
+ */
+class OutboundQueue implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+    private final String sessionId;
+    private final int capacity;
+    private final Executor executor;
+    private final ArrayDeque<String> messages = new ArrayDeque<>();
+    // a message of the session is being sent, or is scheduled to be sent
+    private boolean isSending;
+    private boolean isClosed;
+    private long droppedCount;
+    // updated by the endpoint while holding the queue map entry
+    int subscriptionCount;
+
+    OutboundQueue(String sessionId, int capacity, Executor executor) {
+        this.sessionId = sessionId;
+        this.capacity = capacity;
+        this.executor = executor;
+    }
+
+    /**
+     * Queue a message to be sent to the session, dropping the oldest queued message if the queue is full.
+     *
+     * @param message message to send.
+     */
+    void offer(String message) {
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            if (messages.size() >= capacity) {
+                messages.poll();
+                droppedCount++;
+                if (droppedCount == 1) {
+                    log.warn("Session " + sessionId + " is not receiving the web socket provider messages as fast " +
+                            "as they arrive, dropping the oldest of " + capacity + " queued messages. Further " +
+                            "dropped messages are logged at debug level.");
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Dropped the oldest queued message of session " + sessionId + ", " + droppedCount +
+                            " messages dropped so far.");
+                }
+            }
+            messages.add(message);
+            if (isSending) {
+                return;
+            }
+            isSending = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Discard the queued messages, the session is no longer subscribed to any topic.
+     */
+    synchronized void close() {
+        isClosed = true;
+        messages.clear();
+    }
+
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    synchronized int size() {
+        return messages.size();
+    }
+
+    /**
+     * Start sending the next queued message of the session.
+     */
+    @Override
+    public void run() {
+        String message;
+        synchronized (this) {
+            message = messages.poll();
+            if (message == null) {
+                isSending = false;
+                return;
+            }
+        }
+        try {
+            if (DataProviderEndPoint.sendTextAsync(sessionId, message, this::onSendResult)) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.info("Failed to send the message : " + e.getMessage(), e);
+        }
+        // the session is gone or failed to start the send, so the handler is not notified
+        schedule();
+    }
+
+    private void onSendResult(SendResult result) {
+        if (!result.isOK()) {
+            Throwable exception = result.getException();
+            log.info("Failed to send the message : " + (exception == null ? null : exception.getMessage()),
+                    exception);
+        }
+        // scheduled instead of sent from the handler, which may be called by the thread starting the send
+        schedule();
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                isSending = false;
+            }
+            log.error("Failed to schedule sending the messages of session " + sessionId + ". " + e.getMessage(), e);
+        }
+    }
+}
@@ -19,15 +19,15 @@
 package org.wso2.carbon.data.provider.websocket.endpoint;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
 import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.wso2.carbon.data.provider.endpoint.DataProviderEndPoint;
 import org.wso2.carbon.data.provider.websocket.bean.WebSocketChannel;
 import org.wso2.msf4j.websocket.WebSocketEndpoint;
 import org.xml.sax.InputSource;
@@ -43,20 +43,32 @@ import javax.websocket.server.ServerEndpoint;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Web socket endpoint receiving the events published by the web socket sinks and fanning them out to the sessions
+ * subscribed with the web socket provider.
+ * <p>
+ * Each event is converted once per map type and queued to the subscribed sessions, which are sent their messages by a
+ * shared pool of senders through bounded per session queues, so that a slow client does not delay the others.
+ */
 @Component(
         service = WebSocketEndpoint.class,
         immediate = true
@@ -64,9 +76,29 @@ import java.util.regex.Pattern;
 @ServerEndpoint(value = "/websocket-provider/{topic}")
 public class WebSocketProviderEndPoint implements WebSocketEndpoint {
     private static final Logger log = LoggerFactory.getLogger(WebSocketProviderEndPoint.class);
-    private static final Map<String, ArrayList<WebSocketChannel>> providerMap = new HashMap<>();
-    private static final String JSON_REGEX_PATTERN = "\\{\"event\":\\{(.*?)}}";
+    private static final Map<String, List<WebSocketChannel>> providerMap = new ConcurrentHashMap<>();
+    private static final Map<String, OutboundQueue> outboundQueues = new ConcurrentHashMap<>();
+    private static final Gson GSON = new Gson();
+    private static final Pattern JSON_PATTERN = Pattern.compile("\\{\"event\":\\{(.*?)}}");
     private static final String XML_PATTERN_PATH = "//events/event/*";
+    private static final String NO_DATA = "";
+    private static final String EMPTY_MESSAGE = "{}";
+    private static final int OUTBOUND_QUEUE_CAPACITY = 1000;
+    private static final ThreadPoolExecutor senderExecutor;
+    private static final ThreadLocal<XmlEventParser> xmlEventParser = ThreadLocal.withInitial(XmlEventParser::new);
+
+    static {
+        int senderPoolSize = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger senderCount = new AtomicInteger();
+        // each session has at most one pending task, so the work queue is bounded by the number of sessions
+        senderExecutor = new ThreadPoolExecutor(senderPoolSize, senderPoolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "WebSocketProviderSender-" + senderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        senderExecutor.allowCoreThreadTimeOut(true);
+    }
 
     @OnOpen
     public static void onOpen(Session session, @PathParam("topic") String topic) {
@@ -75,16 +107,19 @@ public class WebSocketProviderEndPoint implements WebSocketEndpoint {
 
     @OnMessage
     public void onMessage(String message, @PathParam("topic") String topic) {
-        if (providerMap.containsKey(topic)) {
-            providerMap.get(topic).forEach(channel -> {
-                try {
-                    DataProviderEndPoint
-                            .sendText(channel.getSessionId(),
-                                    formatString(message, channel.getMapType(), channel.getSubscriberTopic()).toString());
-                } catch (IOException e) {
-                    log.info("Failed to send the message : " + e.getMessage(), e);
-                }
-            });
+        List<WebSocketChannel> channels = providerMap.get(topic);
+        if (channels == null) {
+            return;
+        }
+        Map<String, String> formattedData = new HashMap<>();
+        for (WebSocketChannel channel : channels) {
+            OutboundQueue outboundQueue = outboundQueues.get(channel.getSessionId());
+            if (outboundQueue == null) {
+                continue;
+            }
+            String data = formattedData.computeIfAbsent(channel.getMapType().toLowerCase(Locale.ENGLISH),
+                    mapType -> formatData(message, mapType));
+            outboundQueue.offer(NO_DATA.equals(data) ? EMPTY_MESSAGE : toMessage(data, channel.getSubscriberTopic()));
         }
     }
 
@@ -100,67 +135,118 @@ public class WebSocketProviderEndPoint implements WebSocketEndpoint {
     }
 
     public static void subscribeToTopic(String topic, WebSocketChannel channel) {
-        if (providerMap.containsKey(topic)) {
-            providerMap.get(topic).add(channel);
-        } else {
-            providerMap.put(topic, new ArrayList<>());
-            providerMap.get(topic).add(channel);
-        }
+        outboundQueues.compute(channel.getSessionId(), (sessionId, outboundQueue) -> {
+            if (outboundQueue == null) {
+                outboundQueue = new OutboundQueue(sessionId, OUTBOUND_QUEUE_CAPACITY, senderExecutor);
+            }
+            outboundQueue.subscriptionCount++;
+            return outboundQueue;
+        });
+        providerMap.compute(topic, (key, channels) -> {
+            if (channels == null) {
+                channels = new CopyOnWriteArrayList<>();
+            }
+            channels.add(channel);
+            return channels;
+        });
     }
 
     public static void unsubscribeFromTopic(String topic, String sessionID) {
-        providerMap.get(topic).removeIf(channel -> channel.getSessionId().equals(sessionID));
+        int[] removedCount = new int[1];
+        providerMap.computeIfPresent(topic, (key, channels) -> {
+            for (WebSocketChannel channel : channels) {
+                if (channel.getSessionId().equals(sessionID) && channels.remove(channel)) {
+                    removedCount[0]++;
+                }
+            }
+            return channels.isEmpty() ? null : channels;
+        });
+        if (removedCount[0] > 0) {
+            outboundQueues.computeIfPresent(sessionID, (sessionId, outboundQueue) -> {
+                outboundQueue.subscriptionCount -= removedCount[0];
+                if (outboundQueue.subscriptionCount > 0) {
+                    return outboundQueue;
+                }
+                outboundQueue.close();
+                return null;
+            });
+        }
     }
 
-    private JsonElement formatString(String message, String mapping, String topic) {
-        JsonElement element = new Gson().fromJson("{}", JsonElement.class);
-        Pattern pattern = null;
-        Matcher matcher = null;
-        switch (mapping.toLowerCase()) {
-            case "text":
-                element = new Gson().fromJson(getJsonString(message, topic), JsonElement.class);
-                break;
-            case "json":
-                pattern = Pattern.compile(JSON_REGEX_PATTERN);
-                matcher = pattern.matcher(message);
-                if (matcher.find()) {
-                    element = new Gson().fromJson(getJsonString(matcher.group(1), topic), JsonElement.class);
+    /**
+     * Convert an event to the data rows of the data provider messages.
+     *
+     * @return data rows in json format, or {@link #NO_DATA} if the event cannot be converted.
+     */
+    private static String formatData(String message, String mapping) {
+        try {
+            switch (mapping) {
+                case "text":
+                    return getJsonData(message);
+                case "json":
+                    Matcher matcher = JSON_PATTERN.matcher(message);
+                    return matcher.find() ? getJsonData(matcher.group(1)) : NO_DATA;
+                case "xml":
+                    return xmlEventParser.get().parse(message);
+                default:
+                    log.error("Invalid mapping provided for the data provider configuration.");
+                    return NO_DATA;
+            }
+        } catch (JsonParseException | ArrayIndexOutOfBoundsException e) {
+            log.error("Error occurred when parsing the " + mapping + " event." + e.getMessage(), e);
+            return NO_DATA;
+        }
+    }
+
+    private static String getJsonData(String value) {
+        StringBuilder builder = new StringBuilder("[[");
+        for (String keyValuePair : value.trim().split(",")) {
+            builder.append(keyValuePair.split(":")[1]).append(',');
+        }
+        builder.setLength(builder.length() - 1);
+        builder.append("]]");
+        // normalize the values the same way for every subscriber of the event
+        return GSON.fromJson(builder.toString(), JsonElement.class).toString();
+    }
+
+    private static String toMessage(String data, String subscriberTopic) {
+        return "{\"data\":" + data + ",\"topic\":" + GSON.toJson(subscriberTopic) + "}";
+    }
+
+    /**
+     * XML event parser of a receiving thread, as the document builder and the compiled XPath are not thread safe.
+     */
+    private static class XmlEventParser {
+        private DocumentBuilder documentBuilder;
+        private XPathExpression expression;
+
+        private String parse(String message) {
+            try {
+                if (documentBuilder == null) {
+                    documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                    expression = XPathFactory.newInstance().newXPath().compile(XML_PATTERN_PATH);
                 }
-                break;
-            case "xml":
-                try {
-                    DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-                    Document document = documentBuilder.parse(new InputSource(new StringReader(message)));
-                    XPath xPath = XPathFactory.newInstance().newXPath();
-                    XPathExpression expression = xPath.compile(XML_PATTERN_PATH);
-                    NodeList nodeList = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
-                    StringBuilder stringBuilder = new StringBuilder();
-                    stringBuilder.append("{data:[[\"");
-                    for (int i = 0; i < nodeList.getLength(); i++) {
-                        Element el = (Element) nodeList.item(i);
-                        // seach for the Text children
-                        if (el.getFirstChild().getNodeType() == Node.TEXT_NODE)
-                            stringBuilder.append(el.getFirstChild().getNodeValue()).append("\",\"");
+                NodeList nodeList = (NodeList) expression.evaluate(
+                        documentBuilder.parse(new InputSource(new StringReader(message))), XPathConstants.NODESET);
+                JsonArray row = new JsonArray();
+                for (int i = 0; i < nodeList.getLength(); i++) {
+                    Element el = (Element) nodeList.item(i);
+                    // seach for the Text children
+                    if (el.getFirstChild() != null && el.getFirstChild().getNodeType() == Node.TEXT_NODE) {
+                        row.add(el.getFirstChild().getNodeValue());
                     }
-                    stringBuilder.setLength(stringBuilder.length() - 2);
-                    stringBuilder.append("]],topic:").append(topic).append("}");
-                    element = new Gson().fromJson(stringBuilder.toString(), JsonElement.class);
-                } catch (XPathExpressionException | ParserConfigurationException | SAXException | IOException e) {
-                    log.error("Error occurd when parsing xml." + e.getMessage(), e);
                 }
-                break;
-            default:
-                log.error("Invalid mapping provided for the data provider configuration.");
+                JsonArray data = new JsonArray();
+                data.add(row);
+                return data.toString();
+            } catch (XPathExpressionException | ParserConfigurationException | SAXException | IOException e) {
+                log.error("Error occurd when parsing xml." + e.getMessage(), e);
+                return NO_DATA;
+            } finally {
+                if (documentBuilder != null) {
+                    documentBuilder.reset();
+                }
+            }
         }
-        return element;
-    }
-
-    private String getJsonString(String value, String topic) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("{data:[[");
-        Arrays.stream(value.trim().split(","))
-                .forEach(keyValuePair -> builder.append(keyValuePair.split(":")[1]).append(","));
-        builder.deleteCharAt(builder.length() - 1).append("]],topic:").append(topic).append("}");
-        return builder.toString();
     }
 }
@@ -19,6 +19,8 @@
 package org.wso2.carbon.data.provider;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.awaitility.Awaitility;
@@ -61,6 +63,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 public class RDBMSQueriesIT {
@@ -572,6 +575,60 @@ public class RDBMSQueriesIT {
         dataProviderEndPoint.onClose(session);
     }
 
+    @Test(description = "RDBMS Stream Data provider column frames test.", dependsOnMethods =
+            "dataBatchProviderPurgingTest")
+    public void streamDataProviderColumnFramesTest() throws InterruptedException, SQLException {
+        DataProviderEndPoint.getSessionMap().put(session.getId(), session);
+        DataProviderEndPoint dataProviderEndPoint = new DataProviderEndPoint();
+        String message = "{" +
+                "\"providerName\": \"RDBMSStreamingDataProvider\"," +
+                "\"dataProviderConfiguration\": {" +
+                "\"datasourceName\": \"DEMO_DB\"," +
+                "\"queryData\": {\"query\":\"select * from Foo_Table\"}," +
+                "\"tableName\": \"Foo_Table\"," +
+                "\"incrementalColumn\": \"recipe_id\"," +
+                "\"publishingInterval\": 1," +
+                "\"purgingInterval\": 1000," +
+                "\"publishingLimit\": 1000," +
+                "\"purgingLimit\": 1000," +
+                "\"isPurgingEnable\": false," +
+                "\"publishingFormat\": \"columns\"" +
+                "}," +
+                "\"topic\": \"test-topic\"," +
+                "\"action\": \"subscribe\"" +
+                "}";
+        final List<JsonObject> messages = new CopyOnWriteArrayList<>();
+        responseCallBack = new ResponseCallBack() {
+            @Override
+            void responseMessage(String message) {
+                log.info("Stream Data Provider Column Frames Test Message: " + message);
+                messages.add(new JsonParser().parse(message).getAsJsonObject());
+            }
+        };
+        responseCallBackListener = new ResponseCallBackListener(responseCallBack);
+        dataProviderEndPoint.onMessage(message, session);
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> messages.size() >= 2);
+        RDBMSTableTestUtils.insertRecords(4, "Pizza");
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> messages.size() >= 3);
+        dataProviderEndPoint.onClose(session);
+
+        JsonObject metadata = messages.get(0).getAsJsonObject("metadata");
+        Assert.assertNotNull(metadata);
+        Assert.assertEquals(metadata.getAsJsonArray("names").size(), 2);
+        Assert.assertEquals(metadata.getAsJsonArray("types").get(0).getAsString(), "LINEAR");
+        Assert.assertEquals(metadata.getAsJsonArray("types").get(1).getAsString(), "ORDINAL");
+        JsonObject firstFrame = messages.get(1);
+        Assert.assertNull(firstFrame.get("metadata"));
+        Assert.assertEquals(firstFrame.get("topic").getAsString(), "test-topic");
+        Assert.assertEquals(firstFrame.get("rows").getAsInt(), 3);
+        Assert.assertEquals(firstFrame.getAsJsonArray("columns").get(0).getAsJsonArray().get(0).getAsDouble(), 3.0);
+        JsonObject deltaFrame = messages.get(2);
+        Assert.assertEquals(deltaFrame.get("rows").getAsInt(), 1);
+        Assert.assertEquals(deltaFrame.getAsJsonArray("columns").get(0).getAsJsonArray().get(0).getAsDouble(), 4.0);
+        Assert.assertEquals(deltaFrame.getAsJsonArray("columns").get(1).getAsJsonArray().get(0).getAsString(),
+                "Pizza");
+    }
+
     abstract class ResponseCallBack {
         abstract void responseMessage(String message);
     }
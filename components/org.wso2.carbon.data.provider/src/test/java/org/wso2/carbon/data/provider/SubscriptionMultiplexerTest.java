@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.data.provider;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.data.provider.bean.DataSetMetadata;
+import org.wso2.carbon.data.provider.endpoint.DataProviderEndPoint;
+import org.wso2.carbon.data.provider.exception.DataProviderException;
+
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.wso2.carbon.data.provider.utils.DataProviderValueHolder.getDataProviderHelper;
+
+public class SubscriptionMultiplexerTest {
+    private static final String PROVIDER_NAME = "CountingDataProvider";
+
+    @BeforeMethod
+    public void setUp() {
+        CountingDataProvider.STARTED_PROVIDERS.clear();
+        getDataProviderHelper().setDataProvider(PROVIDER_NAME, new CountingDataProvider());
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        getDataProviderHelper().removeDataProviderClass(PROVIDER_NAME);
+    }
+
+    private static String fingerprint(String providerConfig) {
+        return SubscriptionMultiplexer.getFingerprint(PROVIDER_NAME, new JsonParser().parse(providerConfig));
+    }
+
+    private static Session session(String sessionId) {
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId":
+                            return sessionId;
+                        case "hashCode":
+                            return sessionId.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static String subscribeMessage(String topic, String providerConfig) {
+        return "{\"topic\": \"" + topic + "\", \"providerName\": \"" + PROVIDER_NAME + "\", \"action\": " +
+                "\"subscribe\", \"dataProviderConfiguration\": " + providerConfig + "}";
+    }
+
+    @Test
+    public void testFingerprintIgnoresFieldOrder() {
+        Assert.assertEquals(fingerprint("{\"a\": 1, \"b\": {\"c\": \"x\", \"d\": [1, 2]}}"),
+                fingerprint("{\"b\": {\"d\": [1, 2], \"c\": \"x\"}, \"a\": 1}"));
+        // array items keep their order
+        Assert.assertNotEquals(fingerprint("{\"b\": {\"d\": [1, 2]}}"), fingerprint("{\"b\": {\"d\": [2, 1]}}"));
+        Assert.assertNotEquals(SubscriptionMultiplexer.getFingerprint("OtherProvider",
+                new JsonParser().parse("{\"a\": 1}")), fingerprint("{\"a\": 1}"));
+    }
+
+    @Test
+    public void testFingerprintNormalizesNumbers() {
+        Assert.assertEquals(fingerprint("{\"publishingInterval\": 5}"),
+                fingerprint("{\"publishingInterval\": 5.0}"));
+        Assert.assertEquals(fingerprint("{\"publishingInterval\": 5}"),
+                fingerprint("{\"publishingInterval\": 5E0}"));
+        Assert.assertEquals(fingerprint("{\"publishingInterval\": 500}"),
+                fingerprint("{\"publishingInterval\": 5.00E2}"));
+        Assert.assertNotEquals(fingerprint("{\"publishingInterval\": 5}"),
+                fingerprint("{\"publishingInterval\": 5.1}"));
+        // a number and the string holding it are different configurations
+        Assert.assertNotEquals(fingerprint("{\"publishingInterval\": 5}"),
+                fingerprint("{\"publishingInterval\": \"5\"}"));
+    }
+
+    @Test
+    public void testFingerprintCollapsesWhiteSpacesOutsideQuotes() {
+        Assert.assertEquals(fingerprint("{\"query\": \"select *\\n  from Orders\\twhere id = 'a  b' \"}"),
+                fingerprint("{\"query\": \"  select * from Orders where id = 'a  b'\"}"));
+        Assert.assertNotEquals(fingerprint("{\"query\": \"select * from Orders where id = 'a  b'\"}"),
+                fingerprint("{\"query\": \"select * from Orders where id = 'a b'\"}"));
+        Assert.assertNotEquals(fingerprint("{\"query\": \"select * from Orders\"}"),
+                fingerprint("{\"query\": \"select * fromOrders\"}"));
+    }
+
+    @Test
+    public void testFingerprintRemovesQueryComments() {
+        // a line comment ends at the line break, so the condition on the next line is part of the query
+        Assert.assertNotEquals(fingerprint("{\"query\": \"SELECT * FROM T -- note\\nWHERE X=1\"}"),
+                fingerprint("{\"query\": \"SELECT * FROM T -- note WHERE X=1\"}"));
+        Assert.assertEquals(fingerprint("{\"query\": \"SELECT * FROM T -- note\\nWHERE X=1\"}"),
+                fingerprint("{\"query\": \"SELECT * FROM T WHERE X=1\"}"));
+        Assert.assertEquals(fingerprint("{\"queryData\": {\"query\": \"SELECT * /* all */ FROM T\"}}"),
+                fingerprint("{\"queryData\": {\"query\": \"SELECT * FROM T\"}}"));
+        // comment markers inside literals are kept
+        Assert.assertNotEquals(fingerprint("{\"query\": \"SELECT * FROM T WHERE X='--a'\"}"),
+                fingerprint("{\"query\": \"SELECT * FROM T WHERE X='--b'\"}"));
+    }
+
+    @Test
+    public void testFingerprintKeepsOnlyTheQueryOfTheQueryData() {
+        Assert.assertEquals(fingerprint("{\"queryData\": {\"query\": \"select * from Orders\", " +
+                        "\"queryFunctionImpl\": \"function (a) { return a; }\", \"customWidgetInputs\": [1, 2]}}"),
+                fingerprint("{\"queryData\": {\"query\": \"select * from Orders\"}}"));
+        Assert.assertNotEquals(fingerprint("{\"queryData\": {\"query\": \"select * from Orders\"}}"),
+                fingerprint("{\"queryData\": {\"query\": \"select * from Sales\"}}"));
+        // fields named like the query data members are kept elsewhere in the configuration
+        Assert.assertNotEquals(fingerprint("{\"customWidgetInputs\": [1]}"),
+                fingerprint("{\"customWidgetInputs\": [2]}"));
+    }
+
+    @Test
+    public void testSessionsShareProviderUntilTheLastOneCloses() {
+        SubscriptionMultiplexer multiplexer = SubscriptionMultiplexer.getInstance();
+        int sharedProviderCount = multiplexer.getSharedProviderCount();
+        DataProviderEndPoint endPoint = new DataProviderEndPoint();
+        Session firstSession = session("session-1");
+        Session secondSession = session("session-2");
+        DataProviderEndPoint.onOpen(firstSession);
+        DataProviderEndPoint.onOpen(secondSession);
+
+        endPoint.onMessage(subscribeMessage("topic-1", "{\"publishingInterval\": 5, \"query\": \"select *  from " +
+                "Orders\"}"), firstSession);
+        endPoint.onMessage(subscribeMessage("topic-2", "{\"query\": \"select * from Orders\", " +
+                "\"publishingInterval\": 5.0}"), secondSession);
+        Assert.assertEquals(CountingDataProvider.STARTED_PROVIDERS.size(), 1);
+        CountingDataProvider dataProvider = CountingDataProvider.STARTED_PROVIDERS.get(0);
+        Assert.assertEquals(dataProvider.getSubscriberCount(), 2);
+        Assert.assertEquals(multiplexer.getSharedProviderCount(), sharedProviderCount + 1);
+        Assert.assertSame(getDataProviderHelper().getTopicDataProviderMap("session-2").get("topic-2"),
+                dataProvider);
+
+        endPoint.onClose(firstSession);
+        Assert.assertFalse(dataProvider.stopped);
+        Assert.assertEquals(dataProvider.getSubscriberCount(), 1);
+
+        endPoint.onClose(secondSession);
+        Assert.assertTrue(dataProvider.stopped);
+        Assert.assertEquals(multiplexer.getSharedProviderCount(), sharedProviderCount);
+
+        // a new subscription with the same configuration starts a new provider
+        Session thirdSession = session("session-3");
+        DataProviderEndPoint.onOpen(thirdSession);
+        endPoint.onMessage(subscribeMessage("topic-1", "{\"publishingInterval\": 5, \"query\": \"select * from " +
+                "Orders\"}"), thirdSession);
+        Assert.assertEquals(CountingDataProvider.STARTED_PROVIDERS.size(), 2);
+        endPoint.onClose(thirdSession);
+        Assert.assertTrue(CountingDataProvider.STARTED_PROVIDERS.get(1).stopped);
+    }
+
+    /**
+     * Data provider recording when it is started and stopped, without publishing anything.
+     */
+    public static class CountingDataProvider extends AbstractDataProvider {
+        private static final List<CountingDataProvider> STARTED_PROVIDERS = new CopyOnWriteArrayList<>();
+        private volatile boolean stopped;
+
+        @Override
+        public DataProvider init(String topic, String sessionId, JsonElement jsonElement)
+                throws DataProviderException {
+            return init(topic, sessionId, new ProviderConfig() {
+                @Override
+                public long getPublishingInterval() {
+                    return 5;
+                }
+
+                @Override
+                public long getPurgingInterval() {
+                    return 60;
+                }
+
+                @Override
+                public boolean isPurgingEnable() {
+                    return false;
+                }
+            });
+        }
+
+        @Override
+        public void start() {
+            STARTED_PROVIDERS.add(this);
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public boolean configValidator(ProviderConfig providerConfig) {
+            return true;
+        }
+
+        @Override
+        public String providerName() {
+            return PROVIDER_NAME;
+        }
+
+        @Override
+        public DataSetMetadata dataSetMetadata() {
+            return null;
+        }
+
+        @Override
+        public String providerConfig() {
+            return null;
+        }
+
+        @Override
+        public void publish(String topic, String sessionId) {
+        }
+
+        @Override
+        public void purging() {
+        }
+
+        @Override
+        public void setProviderConfig(ProviderConfig providerConfig) {
+        }
+
+        @Override
+        public DataSetMetadata getMetadata() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.data.provider.scheduler;
+
+import org.awaitility.Awaitility;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DataProviderSchedulerTest {
+
+    // 512 slots of 1 ms, so that a rotation of the wheel takes 512 ms
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long WHEEL_ROTATION_MILLIS = 512;
+
+    private DataProviderScheduler scheduler;
+
+    @BeforeMethod
+    public void setUp() {
+        scheduler = new DataProviderScheduler(2, TICK_NANOS);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPeriodLongerThanWheelRotationWaitsForItsRound() {
+        List<Long> runNanos = new CopyOnWriteArrayList<>();
+        long periodMillis = WHEEL_ROTATION_MILLIS + 200;
+        long scheduledNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate("long-period", () -> runNanos.add(System.nanoTime()), periodMillis,
+                periodMillis, TimeUnit.MILLISECONDS);
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> runNanos.size() >= 2);
+        // without the remaining rounds the runs would start a whole rotation early, after 200 ms
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(runNanos.get(0) - scheduledNanos) >= periodMillis,
+                "First run started early");
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(runNanos.get(1) - runNanos.get(0)) >=
+                periodMillis - 100, "Second run started early");
+    }
+
+    @Test
+    public void testRunsDueWhileTheTaskIsRunningAreCountedAsOverruns() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger startedRuns = new AtomicInteger();
+        ScheduledProviderTask task = scheduler.scheduleAtFixedRate("slow", () -> {
+            startedRuns.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> task.getMetrics().getOverrunCount() >= 3);
+        Assert.assertEquals(startedRuns.get(), 1);
+        Assert.assertEquals(task.getMetrics().getExecutionCount(), 0);
+
+        release.countDown();
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> task.getMetrics().getExecutionCount() >= 3);
+        Assert.assertTrue(startedRuns.get() >= task.getMetrics().getExecutionCount());
+    }
+
+    @Test
+    public void testCancelledTaskIsRemovedFromTheWheel() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledProviderTask task = scheduler.scheduleAtFixedRate("cancelled", runs::incrementAndGet, 0, 10,
+                TimeUnit.MILLISECONDS);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> runs.get() >= 1);
+        Assert.assertEquals(scheduler.getScheduledTaskCount(), 1);
+
+        task.cancel();
+        Assert.assertTrue(task.isCancelled());
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> scheduler.getScheduledTaskCount() == 0);
+        int runsAfterCancel = runs.get();
+        Thread.sleep(100);
+        Assert.assertEquals(runs.get(), runsAfterCancel);
+    }
+
+    @Test
+    public void testSchedulerStartsAgainAfterShutdown() throws InterruptedException {
+        AtomicInteger firstRuns = new AtomicInteger();
+        scheduler.scheduleAtFixedRate("before-shutdown", firstRuns::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> firstRuns.get() >= 1);
+
+        scheduler.shutdown();
+        Assert.assertEquals(scheduler.getScheduledTaskCount(), 0);
+        Assert.assertEquals(scheduler.getQueuedRunCount(), 0);
+        // a run dispatched just before the shutdown may still complete
+        Thread.sleep(50);
+        int runsAfterShutdown = firstRuns.get();
+
+        AtomicInteger secondRuns = new AtomicInteger();
+        scheduler.scheduleAtFixedRate("after-shutdown", secondRuns::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> secondRuns.get() >= 3);
+        Assert.assertEquals(scheduler.getScheduledTaskCount(), 1);
+        // the tasks of the stopped wheel are not carried over to the new one
+        Assert.assertEquals(firstRuns.get(), runsAfterShutdown);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.data.provider.siddhi;
+
+import com.google.gson.JsonParser;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.data.provider.siddhi.SiddhiAppRuntimeCache.SharedSiddhiAppRuntime;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.core.stream.input.InputHandler;
+import org.wso2.siddhi.query.api.execution.query.StoreQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SiddhiAppRuntimeCacheTest {
+    private static final String SIDDHI_APP = "@App:name('SiddhiAppRuntimeCacheTest') " +
+            "define stream OrderStream (id int); " +
+            "define table OrderTable (id int); " +
+            "from OrderStream insert into OrderTable;";
+    private static final String STORE_QUERY = "from OrderTable select id";
+
+    private static SiddhiProvider initProvider(String sessionId) throws Exception {
+        SiddhiProvider siddhiProvider = new SiddhiProvider();
+        siddhiProvider.init("topic", sessionId, new JsonParser().parse("{\"siddhiApp\": \"" + SIDDHI_APP +
+                "\", \"queryData\": {\"query\": \"" + STORE_QUERY + "\"}, \"publishingInterval\": 5, " +
+                "\"timeColumns\": \"\"}"));
+        return siddhiProvider;
+    }
+
+    @Test
+    public void testProvidersWithTheSameSiddhiAppShareOneRuntime() throws Exception {
+        SiddhiAppRuntimeCache cache = SiddhiAppRuntimeCache.getInstance();
+        int runtimeCount = cache.getRuntimeCount();
+        SiddhiProvider firstProvider = initProvider("session-1");
+        SiddhiProvider secondProvider = initProvider("session-2");
+        Assert.assertEquals(cache.getRuntimeCount(), runtimeCount + 1);
+
+        SharedSiddhiAppRuntime sharedRuntime = cache.acquire(SIDDHI_APP);
+        SiddhiAppRuntime siddhiAppRuntime = sharedRuntime.getSiddhiAppRuntime();
+        cache.release(sharedRuntime);
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("OrderStream");
+
+        firstProvider.stop();
+        Assert.assertEquals(cache.getRuntimeCount(), runtimeCount + 1);
+        inputHandler.send(new Object[]{1});
+        Assert.assertEquals(siddhiAppRuntime.query(STORE_QUERY).length, 1);
+
+        // the runtime stops processing events once the last provider using it stops
+        secondProvider.stop();
+        Assert.assertEquals(cache.getRuntimeCount(), runtimeCount);
+        inputHandler.send(new Object[]{2});
+        Assert.assertEquals(siddhiAppRuntime.query(STORE_QUERY).length, 1);
+
+        // a later provider starts a new runtime
+        SiddhiProvider thirdProvider = initProvider("session-3");
+        sharedRuntime = cache.acquire(SIDDHI_APP);
+        Assert.assertNotSame(sharedRuntime.getSiddhiAppRuntime(), siddhiAppRuntime);
+        cache.release(sharedRuntime);
+        thirdProvider.stop();
+        Assert.assertEquals(cache.getRuntimeCount(), runtimeCount);
+    }
+
+    @Test
+    public void testStoreQueryCompiledConcurrentlyIsSharedByAllCallers() throws Exception {
+        SiddhiAppRuntimeCache cache = SiddhiAppRuntimeCache.getInstance();
+        SharedSiddhiAppRuntime sharedRuntime = cache.acquire(SIDDHI_APP);
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int i = 0; i < 20; i++) {
+                String query = STORE_QUERY + " limit " + (i + 1);
+                CyclicBarrier barrier = new CyclicBarrier(threadCount);
+                List<Future<StoreQuery>> storeQueries = new ArrayList<>();
+                for (int thread = 0; thread < threadCount; thread++) {
+                    storeQueries.add(executor.submit(() -> {
+                        barrier.await();
+                        return sharedRuntime.getStoreQuery(query);
+                    }));
+                }
+                StoreQuery storeQuery = sharedRuntime.getStoreQuery(query);
+                for (Future<StoreQuery> compiledQuery : storeQueries) {
+                    Assert.assertSame(compiledQuery.get(10, TimeUnit.SECONDS), storeQuery, query);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            cache.release(sharedRuntime);
+        }
+    }
+}
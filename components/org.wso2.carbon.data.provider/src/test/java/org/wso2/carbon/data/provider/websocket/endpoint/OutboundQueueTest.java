@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.data.provider.websocket.endpoint;
+
+import org.awaitility.Awaitility;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.data.provider.endpoint.DataProviderEndPoint;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class OutboundQueueTest {
+    private ExecutorService senderExecutor;
+    private FakeClient stalledClient;
+    private FakeClient client;
+
+    @BeforeMethod
+    public void setUp() {
+        // a single sender, which a blocking send to the stalled client would hold
+        senderExecutor = Executors.newSingleThreadExecutor();
+        stalledClient = new FakeClient("stalled-session", false);
+        client = new FakeClient("session", true);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        senderExecutor.shutdownNow();
+        DataProviderEndPoint.getSessionMap().remove(stalledClient.sessionId);
+        DataProviderEndPoint.getSessionMap().remove(client.sessionId);
+    }
+
+    @Test
+    public void testStalledSessionDoesNotDelayOtherSessions() {
+        OutboundQueue stalledQueue = new OutboundQueue(stalledClient.sessionId, 3, senderExecutor);
+        OutboundQueue outboundQueue = new OutboundQueue(client.sessionId, 100, senderExecutor);
+        stalledQueue.offer("stalled-0");
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> stalledClient.sentMessages.size() == 1);
+        for (int i = 1; i < 5; i++) {
+            stalledQueue.offer("stalled-" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            outboundQueue.offer("message-" + i);
+        }
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> client.sentMessages.size() == 100);
+        Assert.assertEquals(client.sentMessages.get(99), "message-99");
+
+        // the stalled client has its first message in flight, and the oldest of the others are dropped
+        Assert.assertEquals(stalledClient.sentMessages.size(), 1);
+        Assert.assertEquals(stalledQueue.size(), 3);
+        Assert.assertEquals(stalledQueue.getDroppedCount(), 1);
+
+        // the next message is sent once the client receives the message in flight
+        stalledClient.sendHandlers.get(0).onResult(new SendResult());
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> stalledClient.sentMessages.size() == 2);
+        Assert.assertEquals(stalledClient.sentMessages.get(1), "stalled-2");
+    }
+
+    @Test
+    public void testFailedSendDoesNotStopTheQueue() {
+        OutboundQueue outboundQueue = new OutboundQueue(stalledClient.sessionId, 10, senderExecutor);
+        outboundQueue.offer("message-1");
+        outboundQueue.offer("message-2");
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> stalledClient.sentMessages.size() == 1);
+        stalledClient.sendHandlers.get(0).onResult(new SendResult(new IllegalStateException("Connection reset")));
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> stalledClient.sentMessages.size() == 2);
+        Assert.assertEquals(outboundQueue.size(), 0);
+    }
+
+    /**
+     * Client session recording the messages sent to it, and either receiving them at once or never.
+     */
+    private static class FakeClient {
+        private final String sessionId;
+        private final List<String> sentMessages = new CopyOnWriteArrayList<>();
+        private final List<SendHandler> sendHandlers = new CopyOnWriteArrayList<>();
+
+        private FakeClient(String sessionId, boolean isReceiving) {
+            this.sessionId = sessionId;
+            RemoteEndpoint.Async asyncRemote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                    RemoteEndpoint.Async.class.getClassLoader(), new Class[]{RemoteEndpoint.Async.class},
+                    (proxy, method, args) -> {
+                        if ("sendText".equals(method.getName()) && args.length == 2) {
+                            sentMessages.add((String) args[0]);
+                            SendHandler sendHandler = (SendHandler) args[1];
+                            sendHandlers.add(sendHandler);
+                            if (isReceiving) {
+                                sendHandler.onResult(new SendResult());
+                            }
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+            DataProviderEndPoint.onOpen((Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                    new Class[]{Session.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getId":
+                                return sessionId;
+                            case "getAsyncRemote":
+                                return asyncRemote;
+                            case "hashCode":
+                                return sessionId.hashCode();
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }));
+        }
+    }
+}
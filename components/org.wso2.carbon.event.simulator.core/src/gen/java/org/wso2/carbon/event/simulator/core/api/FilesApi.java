@@ -136,6 +136,8 @@ public class FilesApi implements Microservice {
     protected void start() throws Exception {
         //set maximum csv file size to 8MB
         EventSimulatorDataHolder.getInstance().setMaximumFileSize(8388608);
+        //sort unordered csv files in memory up to 64MB of events, larger files are sorted in runs on disk
+        EventSimulatorDataHolder.getInstance().setCsvSortBufferSize(67108864);
         EventSimulatorDataHolder.getInstance().setCsvFileDirectory(Paths.get(Utils.getRuntimePath().toString(),
                 EventSimulatorConstants.DIRECTORY_DEPLOYMENT, EventSimulatorConstants.DIRECTORY_CSV_FILES).toString());
         if (log.isDebugEnabled()) {
@@ -30,6 +30,8 @@ public class SimulationPropertiesDTO {
     private int noOfEventsRequired;
     private long startTimestamp;
     private long endTimestamp;
+    private double eventRate;
+    private int batchSize;
 
     public String getSimulationName() {
         return simulationName;
@@ -79,4 +81,20 @@ public class SimulationPropertiesDTO {
         this.endTimestamp = endTimestamp;
     }
 
+    public double getEventRate() {
+        return eventRate;
+    }
+
+    public void setEventRate(double eventRate) {
+        this.eventRate = eventRate;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
 }
@@ -40,7 +40,6 @@ import org.wso2.siddhi.query.api.definition.Attribute;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.TreeMap;
 
 import static org.wso2.carbon.event.simulator.core.internal.util.CommonOperations.checkAvailability;
 
@@ -59,8 +58,6 @@ public class CSVEventGenerator implements EventGenerator {
      */
     private Event nextEvent;
     private CSVReader csvReader;
-    private List<Event> currentTimestampEvents;
-    private TreeMap<Long, ArrayList<Event>> eventsMap;
 
 
     public CSVEventGenerator() {
@@ -118,33 +115,16 @@ public class CSVEventGenerator implements EventGenerator {
     @Override
     public void start() {
         /*
-         * if the CSV file is ordered by timestamp, create the first event and assign it as the nextEvent of
-         * the generator.
-         * else, create a treeMap of events. Retrieve the list of events with least timestamp as currentTimestampEvents
-         * and assign the first event of the least timestamp as the nextEvent of the generator
+         * create the first event and assign it as the nextEvent of the generator.
+         * if the CSV file is not ordered by timestamp, the csv reader sorts the events of the file by timestamp
+         * when creating the first event
          * */
         try {
             if (startTimestamp == -1 && "-1".equals(csvConfiguration.getTimestampAttribute())) {
                 startTimestamp = System.currentTimeMillis();
             }
             csvReader = new CSVReader(csvConfiguration.getFileName(), csvConfiguration.getIsOrdered());
-            if (csvConfiguration.getIsOrdered()) {
-                nextEvent = csvReader.getNextEvent(csvConfiguration, streamAttributes, startTimestamp,
-                        endTimestamp);
-            } else {
-                currentTimestampEvents = new ArrayList<>();
-                eventsMap = new TreeMap<>();
-                eventsMap = csvReader.getEventsMap(csvConfiguration, streamAttributes, startTimestamp,
-                        endTimestamp);
-                if (!eventsMap.isEmpty()) {
-                    currentTimestampEvents = eventsMap.pollFirstEntry().getValue();
-                    nextEvent = currentTimestampEvents.get(0);
-                    currentTimestampEvents.remove(0);
-                } else {
-                    currentTimestampEvents = null;
-                    nextEvent = null;
-                }
-            }
+            nextEvent = csvReader.getNextEvent(csvConfiguration, streamAttributes, startTimestamp, endTimestamp);
             if (log.isDebugEnabled()) {
                 log.debug("Start CSV generator for file '" + csvConfiguration.getFileName() + "' for simulation "
                                   + "of stream '" + csvConfiguration.getStreamName() + "'.");
@@ -244,73 +224,11 @@ public class CSVEventGenerator implements EventGenerator {
     @Override
     public void getNextEvent() {
         /*
-         * if the CSV file is ordered by timestamp, create next event and assign it as the nextEvent of generator
-         * else, assign the next event with current timestamp as nextEvent of generator
+         * create next event and assign it as the nextEvent of generator. if the CSV file is not ordered by timestamp,
+         * the csv reader returns the sorted events of the file in timestamp order
          */
         startTimestamp += csvConfiguration.getTimestampInterval();
-        if (csvConfiguration.getIsOrdered()) {
-            nextEvent = csvReader.getNextEvent(csvConfiguration, streamAttributes, startTimestamp,
-                    endTimestamp);
-        } else {
-            getNextEventForCurrentTimestamp();
-        }
-    }
-
-
-    /**
-     * getEventsForNextTimestamp() is used to get list of events with the next least timestamp
-     */
-    private void getEventsForNextTimestamp() {
-        /*
-         * if the events map is not empty, it implies that there are more event. Hence, retrieve the list of events with
-         * the next least timestamp
-         * else, there are no more events, hence list of events with current timestamp is set to null
-         * */
-        if (!eventsMap.isEmpty()) {
-            currentTimestampEvents = eventsMap.pollFirstEntry().getValue();
-        } else {
-            currentTimestampEvents = null;
-        }
-        if (log.isDebugEnabled()) {
-            log.debug("Get events for next timestamp from CSV generator for file '" + csvConfiguration.getFileName()
-                    + "' for stream '" + csvConfiguration.getStreamName() + "'.");
-        }
-    }
-
-
-    /**
-     * getNextEventForCurrentTimestamp() method is used to retrieve an event with the least timestamp
-     */
-    private void getNextEventForCurrentTimestamp() {
-        /*
-         * if currentTimestampEvents != null , it implies that more events will be created by the generator
-         * if currentTimestampEvents list is not empty, get the next event in list as nextEvent and remove that even
-         * from the list.
-         * else, call getEventsForNextTimestamp() to retrieve a list of events with the next least timestamp.
-         * if currentTimestampEvents != null after the method call, it implies that more events will be generated.
-         * assign the first event in list as nextEvent and remove it from the list.
-         * else if currentTimestampEvents == null, it implies that no more events will be created, hence assign null
-         * to nextEvent.
-         * */
-        if (currentTimestampEvents != null) {
-            if (!currentTimestampEvents.isEmpty()) {
-                nextEvent = currentTimestampEvents.get(0);
-                currentTimestampEvents.remove(0);
-            } else {
-                getEventsForNextTimestamp();
-                if (currentTimestampEvents != null) {
-                    nextEvent = currentTimestampEvents.get(0);
-                    currentTimestampEvents.remove(0);
-                } else {
-                    nextEvent = null;
-                }
-            }
-        }
-        if (log.isDebugEnabled()) {
-            log.debug("Get next event for current timestamp from CSV generator for file '"
-                              + csvConfiguration.getFileName() + "' for stream '"
-                              + csvConfiguration.getStreamName() + "'.");
-        }
+        nextEvent = csvReader.getNextEvent(csvConfiguration, streamAttributes, startTimestamp, endTimestamp);
     }
 
     /**
@@ -32,7 +32,6 @@ import org.wso2.carbon.stream.processor.common.exception.ResourceNotFoundExcepti
 import org.wso2.siddhi.core.event.Event;
 import org.wso2.siddhi.query.api.definition.Attribute;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -41,10 +40,7 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.TreeMap;
 
 
 /**
@@ -52,19 +48,21 @@ import java.util.TreeMap;
  */
 public class CSVReader {
     private final Logger log = LoggerFactory.getLogger(CSVReader.class);
+    private final boolean isOrdered;
     private Reader fileReader = null;
-    private BufferedReader bufferedReader = null;
+    private CSVTokenizer tokenizer = null;
     private CSVParser csvParser = null;
+    private ExternalEventSorter eventSorter = null;
     private long lineNumber = 0;
     private long eventNumber = 0;
 
     /**
      * Constructor CSVReader is used to initialize an instance of class CSVReader
      * Initialize a file reader for the CSV file.
-     * If the CSV file is ordered by timestamp it will create a bufferedReader for the file reader.
      * @throws ResourceNotFoundException if the CSV file is not found
      */
     public CSVReader(String fileName, boolean isOrdered) throws ResourceNotFoundException {
+        this.isOrdered = isOrdered;
         boolean closeStreams = false;
         try {
             String csvFileDirectory = EventSimulatorDataHolder.getInstance().getCsvFileDirectory();
@@ -76,9 +74,6 @@ public class CSVReader {
                     if (log.isDebugEnabled()) {
                         log.debug("Initialize a File reader for CSV file '" + fileName + "'.");
                     }
-                    if (isOrdered) {
-                        bufferedReader = new BufferedReader(fileReader);
-                    }
                 } else {
                     closeStreams = true;
                     throw new EventGenerationException("File '" + fileName + "' is empty.");
@@ -100,25 +95,33 @@ public class CSVReader {
     }
 
     /**
-     * If the CSV file is ordered by timestamp, this method reads the next line and produces an event
+     * getNextEvent() returns the next event of the CSV file.
+     * If the CSV file is ordered by timestamp, this method reads the next line and produces an event.
+     * Else, the events of the file are sorted by timestamp when this method is first called, and are returned in
+     * the timestamp order.
      *
      * @param csvConfig        configuration of CSV simulation
      * @param streamAttributes list of attributes of the stream to which events are produced
      * @param startTimestamp   start timestamp of event simulation
      * @param endTimestamp     end timestamp of event simulation
-     * @return event produced
+     * @return event produced, or null if there are no more events
      */
     public Event getNextEvent(CSVSimulationDTO csvConfig, List<Attribute> streamAttributes, long startTimestamp,
                               long endTimestamp) {
+        if (!isOrdered) {
+            return getNextSortedEvent(csvConfig, streamAttributes, startTimestamp, endTimestamp);
+        }
+        if (tokenizer == null) {
+            tokenizer = new CSVTokenizer(fileReader, csvConfig.getDelimiter());
+        }
         Event event = null;
         int timestampPosition = Integer.parseInt(csvConfig.getTimestampAttribute());
         List<Integer> indices = csvConfig.getIndices();
+        Object[] eventData = new Object[indices.size()];
         try {
             while (true) {
                 lineNumber++;
-                String line = bufferedReader.readLine();
-                if (line != null) {
-                    ArrayList<String> attributes = new ArrayList<>(Arrays.asList(line.split(csvConfig.getDelimiter())));
+                if (tokenizer.nextLine()) {
                     long timestamp;
 //                    if the line does not have sufficient data to produce an event, move to next line
                     if (timestampPosition == -1) {
@@ -137,8 +140,7 @@ public class CSVReader {
                          * proceed to creating an event, else ignore record and proceed to next record
                          * */
                         try {
-                            timestamp = Long.parseLong(attributes.get(timestampPosition).replaceAll("(^\\h*)|(\\h*$)" +
-                                    "",""));
+                            timestamp = tokenizer.getLongField(timestampPosition);
                             if (timestamp >= startTimestamp) {
                                 if (endTimestamp != -1 && timestamp > endTimestamp) {
                                     continue;
@@ -147,28 +149,30 @@ public class CSVReader {
                                 continue;
                             }
                         } catch (NumberFormatException e) {
-                            log.warn("Invalid data '" + attributes.get(timestampPosition) + "' provided for timestamp" +
-                                    "attribute in line " + lineNumber + ". Line content : " + attributes + ". " +
-                                    "Ignore line and read next line. Source configuration : " + csvConfig.toString());
+                            log.warn("Invalid data '" + tokenizer.getField(timestampPosition) + "' provided for " +
+                                    "timestampattribute in line " + lineNumber + ". Line content : " +
+                                    tokenizer.getLineContent() + ". Ignore line and read next line. Source " +
+                                    "configuration : " + csvConfig.toString());
                             continue;
                         } catch (IndexOutOfBoundsException e) {
                             log.warn("Cannot retrieve data elements from line " + lineNumber + " for all indices " +
-                                    indices + ". Line content : " + attributes + ". Ignore line and read next line." +
-                                    " Source configuration : " + csvConfig.toString());
+                                    indices + ". Line content : " + tokenizer.getLineContent() + ". Ignore line and " +
+                                    "read next line. Source configuration : " + csvConfig.toString());
                             continue;
                         }
                     }
                     try {
-                        List<String> eventData = new ArrayList<>();
 //                      retrieve the data elements required for event using record using the indices specified
-                        indices.forEach(index -> eventData.add(attributes.get(index)));
-                        event = EventConverter.eventConverter(streamAttributes, eventData.toArray(), timestamp);
+                        for (int i = 0; i < eventData.length; i++) {
+                            eventData[i] = tokenizer.getField(indices.get(i));
+                        }
+                        event = EventConverter.eventConverter(streamAttributes, eventData, timestamp);
                         eventNumber++;
                         break;
                     } catch (IndexOutOfBoundsException e) {
                         log.warn("Cannot retrieve data elements from line " + lineNumber + " for all indices "  +
-                                indices + ". Line content : " + attributes + ". Ignore line and read next line." +
-                                " Source configuration : " + csvConfig.toString());
+                                indices + ". Line content : " + tokenizer.getLineContent() + ". Ignore line and " +
+                                "read next line. Source configuration : " + csvConfig.toString());
                     } catch (EventGenerationException e) {
                         log.error("Error occurred when generating event using CSV event " +
                                 "generator to simulate stream '" + csvConfig.getStreamName() + "' using source " +
@@ -191,29 +195,37 @@ public class CSVReader {
 
 
     /**
-     * If the CSV is not ordered by timestamp, getEventsMap() method is used to create a treeMap of events.
+     * If the CSV is not ordered by timestamp, getNextSortedEvent() returns the events of the file in timestamp
+     * order, sorting the events when it is first called.
      *
      * @param csvConfig        configuration of csv simulation
      * @param streamAttributes list of attributes of the stream to which events are produced
      * @param startTimestamp   start timestamp of event simulation
      * @param endTimestamp     end timestamp of event simulation
-     * @return treeMap of events
+     * @return event with the next least timestamp, or null if there are no more events
      */
-    public TreeMap<Long, ArrayList<Event>> getEventsMap(CSVSimulationDTO csvConfig, List<Attribute> streamAttributes,
-                                                        long startTimestamp, long endTimestamp) {
+    private Event getNextSortedEvent(CSVSimulationDTO csvConfig, List<Attribute> streamAttributes,
+                                     long startTimestamp, long endTimestamp) {
         try {
-            csvParser = parseFile(csvConfig.getDelimiter());
-            return createEventsMap(csvConfig, streamAttributes, startTimestamp,
-                    endTimestamp);
+            if (eventSorter == null) {
+                eventSorter = new ExternalEventSorter(streamAttributes,
+                        EventSimulatorDataHolder.getInstance().getCsvSortBufferSize());
+                try {
+                    csvParser = parseFile(csvConfig.getDelimiter());
+                    sortEvents(csvConfig, streamAttributes, startTimestamp, endTimestamp);
+                } finally {
+                    closeFile(csvConfig.getFileName());
+                }
+            }
+            return eventSorter.next();
         } catch (IOException e) {
-            log.error("Error occurred when initializing CSVParser for CSV file '" + csvConfig.getFileName() + "' to " +
+            log.error("Error occurred when sorting the events of CSV file '" + csvConfig.getFileName() + "' to " +
                     "simulate stream '" + csvConfig.getStreamName() + "' using source configuration : " +
                     csvConfig.toString(), e);
-            throw new EventGenerationException("Error occurred when initializing CSVParser for CSV file '" +
-                    csvConfig.getFileName() + "' to simulate stream '" + csvConfig.getStreamName() + "' using source " +
-                    "configuration : " + csvConfig.toString(), e);
-        } finally {
             closeParser(csvConfig.getFileName(), false);
+            throw new EventGenerationException("Error occurred when sorting the events of CSV file '" +
+                    csvConfig.getFileName() + "' to simulate stream '" + csvConfig.getStreamName() + "' using " +
+                    "source configuration : " + csvConfig.toString(), e);
         }
     }
 
@@ -239,32 +251,25 @@ public class CSVReader {
 
 
     /**
-     * createEventsMap() methods creates a treeMap of events using the data in the CSV file.
-     * The key of the treeMap will be the event timestamp and the value will be an array list of events belonging to
-     * the timestamp.
+     * sortEvents() creates the events of the CSV file and adds them to the event sorter, which keeps events having
+     * the same timestamp in the order of the file.
      *
      * @param csvConfig        configuration of csv simulation
      * @param streamAttributes list of attributes of the stream to which events are produced
      * @param startTimestamp   start timestamp of event simulation
      * @param endTimestamp     end timestamp of event simulation
-     * @return a treeMap of events
+     * @throws IOException if the sorted events cannot be written to or read from temporary files
      */
-    private TreeMap<Long, ArrayList<Event>> createEventsMap(CSVSimulationDTO csvConfig,
-                                                            List<Attribute> streamAttributes,
-                                                            long startTimestamp, long endTimestamp) {
-        TreeMap<Long, ArrayList<Event>> eventsMap = new TreeMap<>();
+    private void sortEvents(CSVSimulationDTO csvConfig, List<Attribute> streamAttributes, long startTimestamp,
+                            long endTimestamp) throws IOException {
         int timestampPosition = Integer.parseInt(csvConfig.getTimestampAttribute());
         long lineNumber;
         long timestamp;
         List<Integer> indices = csvConfig.getIndices();
-        Event event;
+        Object[] eventData = new Object[indices.size()];
         if (csvParser != null) {
             for (CSVRecord record : csvParser) {
                 lineNumber = csvParser.getCurrentLineNumber();
-                ArrayList<String> attributes = new ArrayList<>();
-                for (String attribute : record) {
-                    attributes.add(attribute);
-                }
                 /*
                  * retrieve the value at the position specified by timestamp attribute as the timestamp
                  * if the timestamp is within the range specified by the startTimestamp and endTimestamp, proceed to
@@ -272,42 +277,57 @@ public class CSVReader {
                  * retrieve the data elements required for event using record using the indices specified
                  * */
                 try {
-                    timestamp = Long.parseLong(attributes.get(timestampPosition));
+                    timestamp = Long.parseLong(record.get(timestampPosition));
                     if (timestamp >= startTimestamp) {
                         if (endTimestamp == -1 || timestamp <= endTimestamp) {
-                            List<String> eventData = new ArrayList<>();
-                            indices.forEach(index -> eventData.add(attributes.get(index)));
+                            for (int i = 0; i < eventData.length; i++) {
+                                eventData[i] = record.get(indices.get(i));
+                            }
                             try {
-                                event = EventConverter.eventConverter(streamAttributes, eventData.toArray(), timestamp);
+                                eventSorter.add(EventConverter.eventConverter(streamAttributes, eventData,
+                                        timestamp));
                             } catch (EventGenerationException e) {
                                 log.error("Error occurred when generating event using CSV event generator to simulate" +
                                         " stream '" + csvConfig.getStreamName() + "' using source configuration : " +
                                         csvConfig.toString() + "Drop event and create next event.", e);
-                                continue;
-                            }
-                            if (!eventsMap.containsKey(timestamp)) {
-                                eventsMap.put(timestamp, new ArrayList<>(Collections.singletonList(event)));
-                            } else {
-                                eventsMap.get(timestamp).add(event);
                             }
                         }
                     }
                 } catch (NumberFormatException e) {
-                    log.warn("Invalid data '" + attributes.get(timestampPosition) + "' provided for timestamp" +
-                            "attribute in line " + lineNumber + ". Line content : " + attributes + ". " +
+                    log.warn("Invalid data '" + record.get(timestampPosition) + "' provided for timestamp" +
+                            "attribute in line " + lineNumber + ". Line content : " + getLineContent(record) + ". " +
                             "Ignore line and read next line. Source configuration : " + csvConfig.toString());
                 } catch (IndexOutOfBoundsException e) {
                     log.warn("Cannot retrieve data elements from line " + lineNumber + " for all indices "  +
-                            indices + ". Line content : " + attributes + ". Ignore line and read next line." +
-                            " Source configuration : " + csvConfig.toString());
+                            indices + ". Line content : " + getLineContent(record) + ". Ignore line and read next " +
+                            "line. Source configuration : " + csvConfig.toString());
                 }
             }
         }
+        eventSorter.sort();
         if (log.isDebugEnabled()) {
-            log.debug("Create an ordered events map from CSV file '" + csvConfig.getFileName() + "' to simulate " +
-                    "stream '" + csvConfig.getStreamName() + "'.");
+            log.debug("Sort the events of CSV file '" + csvConfig.getFileName() + "' to simulate stream '" +
+                    csvConfig.getStreamName() + "' in " + Math.max(eventSorter.getRunCount(), 1) + " runs.");
         }
-        return eventsMap;
+    }
+
+
+    private static String getLineContent(CSVRecord record) {
+        List<String> attributes = new ArrayList<>(record.size());
+        for (String attribute : record) {
+            attributes.add(attribute);
+        }
+        return attributes.toString();
+    }
+
+
+    /**
+     * getSortRunCount() returns the number of sorted runs of an unordered CSV file written to temporary files
+     *
+     * @return number of runs, 0 if the events are sorted in memory
+     */
+    int getSortRunCount() {
+        return eventSorter == null ? 0 : eventSorter.getRunCount();
     }
 
 
@@ -317,25 +337,30 @@ public class CSVReader {
      * @param isOrdered bool indicating whether the entries in CSV file are ordered or not
      */
     public void closeParser(String fileName, boolean isOrdered) {
+        closeFile(fileName);
+        if (eventSorter != null) {
+            eventSorter.close();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Close resources used for CSV file '" + fileName + "'.");
+        }
+    }
+
+
+    private void closeFile(String fileName) {
         try {
             if (fileReader != null) {
                 fileReader.close();
             }
-            if (isOrdered) {
-                if (bufferedReader != null) {
-                    bufferedReader.close();
-                }
-            } else {
-                if (csvParser != null && !csvParser.isClosed()) {
-                    csvParser.close();
-                }
+            if (tokenizer != null) {
+                tokenizer.close();
+            }
+            if (csvParser != null && !csvParser.isClosed()) {
+                csvParser.close();
             }
         } catch (IOException e) {
             log.error("Error occurred when closing CSV resources used for CSV file '" + fileName + "'", e);
         }
-        if (log.isDebugEnabled()) {
-            log.debug("Close resources used for CSV file '" + fileName + "'.");
-        }
     }
 
 }
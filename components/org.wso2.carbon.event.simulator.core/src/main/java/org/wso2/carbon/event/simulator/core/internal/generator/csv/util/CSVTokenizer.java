@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.internal.generator.csv.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CSVTokenizer splits the lines of an ordered CSV file into fields.
+ * <p>
+ * The lines are read into a reused character buffer and the fields are kept as offsets into it, so only the fields
+ * used by an event are copied out. The fields are the same as those of {@code line.split(delimiter)}, the delimiter
+ * being a regular expression, of which the plain characters and {@code \t} are matched without a regex.
+ */
+class CSVTokenizer implements Closeable {
+    private static final String REGEX_META_CHARACTERS = ".$|()[{^?*+\\";
+    private final Reader reader;
+    private final char delimiterChar;
+    private final Matcher delimiterMatcher;
+    private final char[] readBuffer = new char[8192];
+    private int readPosition;
+    private int readLimit;
+    private boolean skipLineFeed;
+    private char[] line = new char[256];
+    private int lineLength;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+
+    CSVTokenizer(Reader reader, String delimiter) {
+        this.reader = reader;
+        if (delimiter.length() == 1 && REGEX_META_CHARACTERS.indexOf(delimiter.charAt(0)) == -1) {
+            delimiterChar = delimiter.charAt(0);
+            delimiterMatcher = null;
+        } else if (delimiter.length() == 2 && delimiter.charAt(0) == '\\'
+                && !isAsciiLetterOrDigit(delimiter.charAt(1))) {
+            delimiterChar = delimiter.charAt(1);
+            delimiterMatcher = null;
+        } else if ("\\t".equals(delimiter)) {
+            delimiterChar = '\t';
+            delimiterMatcher = null;
+        } else {
+            delimiterChar = 0;
+            delimiterMatcher = Pattern.compile(delimiter).matcher("");
+        }
+    }
+
+    /**
+     * nextLine() reads the next line of the file and splits it into fields
+     *
+     * @return false if the end of the file is reached
+     * @throws IOException if an error occurs when reading the file
+     */
+    boolean nextLine() throws IOException {
+        lineLength = 0;
+        boolean hasLine = false;
+        while (true) {
+            if (readPosition == readLimit) {
+                readLimit = reader.read(readBuffer, 0, readBuffer.length);
+                readPosition = 0;
+                if (readLimit <= 0) {
+                    readLimit = 0;
+                    break;
+                }
+            }
+            char c = readBuffer[readPosition++];
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (c == '\n') {
+                    continue;
+                }
+            }
+            hasLine = true;
+            if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                skipLineFeed = true;
+                break;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, lineLength * 2);
+            }
+            line[lineLength++] = c;
+        }
+        if (!hasLine) {
+            return false;
+        }
+        split();
+        return true;
+    }
+
+    /**
+     * getFieldCount() returns the number of fields of the current line, excluding the trailing empty fields
+     *
+     * @return number of fields
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * getField() returns a field of the current line
+     *
+     * @param index position of the field
+     * @return the field value
+     * @throws IndexOutOfBoundsException if the line does not have a field at the position
+     */
+    String getField(int index) {
+        checkIndex(index);
+        return new String(line, fieldStarts[index], fieldEnds[index] - fieldStarts[index]);
+    }
+
+    /**
+     * getLongField() parses a field of the current line, ignoring the horizontal white spaces around the value
+     *
+     * @param index position of the field
+     * @return the field value
+     * @throws IndexOutOfBoundsException if the line does not have a field at the position
+     * @throws NumberFormatException     if the field is not a long value
+     */
+    long getLongField(int index) {
+        checkIndex(index);
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        while (start < end && isHorizontalWhitespace(line[start])) {
+            start++;
+        }
+        while (end > start && isHorizontalWhitespace(line[end - 1])) {
+            end--;
+        }
+        // parse the ascii digits in place, anything else is left to Long.parseLong() to parse or to reject
+        int position = start;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        if (position < end && (line[position] == '-' || line[position] == '+')) {
+            negative = line[position] == '-';
+            if (negative) {
+                limit = Long.MIN_VALUE;
+            }
+            position++;
+        }
+        if (position == end) {
+            return Long.parseLong(new String(line, start, end - start));
+        }
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; position < end; position++) {
+            int digit = line[position] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit || result * 10 < limit + digit) {
+                return Long.parseLong(new String(line, start, end - start));
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * getLineContent() returns the fields of the current line in the form they are logged
+     *
+     * @return fields of the line
+     */
+    String getLineContent() {
+        StringBuilder content = new StringBuilder("[");
+        for (int i = 0; i < fieldCount; i++) {
+            if (i > 0) {
+                content.append(", ");
+            }
+            content.append(line, fieldStarts[i], fieldEnds[i] - fieldStarts[i]);
+        }
+        return content.append(']').toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int start = 0;
+        boolean isDelimited = false;
+        if (delimiterMatcher == null) {
+            for (int i = 0; i < lineLength; i++) {
+                if (line[i] == delimiterChar) {
+                    addField(start, i);
+                    start = i + 1;
+                    isDelimited = true;
+                }
+            }
+        } else {
+            delimiterMatcher.reset(CharBuffer.wrap(line, 0, lineLength));
+            while (delimiterMatcher.find()) {
+                // as in String.split(), a zero width match at the beginning of the line does not add a field
+                if (delimiterMatcher.end() == 0) {
+                    continue;
+                }
+                addField(start, delimiterMatcher.start());
+                start = delimiterMatcher.end();
+                isDelimited = true;
+            }
+        }
+        addField(start, lineLength);
+        if (isDelimited) {
+            while (fieldCount > 0 && fieldStarts[fieldCount - 1] == fieldEnds[fieldCount - 1]) {
+                fieldCount--;
+            }
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fieldCount);
+        }
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isHorizontalWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\u00a0' || c == '\u1680' || c == '\u180e'
+                || (c >= '\u2000' && c <= '\u200a') || c == '\u202f' || c == '\u205f' || c == '\u3000';
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.internal.generator.csv.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * ExternalEventSorter orders the events of an unordered CSV file by timestamp using a bounded amount of memory.
+ * <p>
+ * Events are buffered until their estimated heap size reaches the buffer size. A full buffer is sorted and written
+ * to a temporary run file, and the runs are then merged, reading one event of each run at a time. The sort is stable,
+ * events having the same timestamp are returned in the order they were added. If all events fit in the buffer, they
+ * are sorted in memory without writing any file.
+ */
+class ExternalEventSorter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ExternalEventSorter.class);
+    private static final Comparator<Event> TIMESTAMP_COMPARATOR = Comparator.comparingLong(Event::getTimestamp);
+    private static final int EVENT_OVERHEAD = 64;
+    private static final int RUN_BUFFER_SIZE = 32768;
+    private final Attribute.Type[] attributeTypes;
+    private final long bufferSize;
+    private final List<Event> events = new ArrayList<>();
+    private final List<File> runFiles = new ArrayList<>();
+    private long bufferedSize;
+    private int position;
+    private PriorityQueue<RunReader> runReaders;
+    private boolean isSorted;
+
+    ExternalEventSorter(List<Attribute> streamAttributes, long bufferSize) {
+        attributeTypes = new Attribute.Type[streamAttributes.size()];
+        for (int i = 0; i < attributeTypes.length; i++) {
+            attributeTypes[i] = streamAttributes.get(i).getType();
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * add() adds an event to be sorted, writing the buffered events to a run file if the buffer is full
+     *
+     * @param event event created by the event converter
+     * @throws IOException if the run file cannot be written
+     */
+    void add(Event event) throws IOException {
+        events.add(event);
+        bufferedSize += estimateSize(event);
+        if (bufferedSize >= bufferSize) {
+            writeRun();
+        }
+    }
+
+    /**
+     * sort() completes adding events and prepares the events to be read in timestamp order
+     *
+     * @throws IOException if the run files cannot be written or opened
+     */
+    void sort() throws IOException {
+        isSorted = true;
+        if (runFiles.isEmpty()) {
+            events.sort(TIMESTAMP_COMPARATOR);
+            return;
+        }
+        if (!events.isEmpty()) {
+            writeRun();
+        }
+        runReaders = new PriorityQueue<>(runFiles.size(), Comparator.comparingLong((RunReader reader) ->
+                reader.head.getTimestamp()).thenComparingInt(reader -> reader.runIndex));
+        for (int i = 0; i < runFiles.size(); i++) {
+            RunReader runReader = new RunReader(runFiles.get(i), i);
+            if (runReader.advance()) {
+                runReaders.add(runReader);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Merge " + runFiles.size() + " sorted runs of CSV events.");
+        }
+    }
+
+    /**
+     * next() returns the event with the next least timestamp
+     *
+     * @return the next event, or null if all events are read
+     * @throws IOException if a run file cannot be read
+     */
+    Event next() throws IOException {
+        if (!isSorted) {
+            throw new IllegalStateException("Events must be sorted before they are read.");
+        }
+        if (runReaders == null) {
+            if (position < events.size()) {
+                // release the events already returned
+                return events.set(position++, null);
+            }
+            events.clear();
+            return null;
+        }
+        RunReader runReader = runReaders.poll();
+        if (runReader == null) {
+            return null;
+        }
+        Event event = runReader.head;
+        if (runReader.advance()) {
+            runReaders.add(runReader);
+        }
+        return event;
+    }
+
+    /**
+     * getRunCount() returns the number of runs written to temporary files
+     *
+     * @return number of runs
+     */
+    int getRunCount() {
+        return runFiles.size();
+    }
+
+    /**
+     * close() releases the events and deletes the run files
+     */
+    @Override
+    public void close() {
+        events.clear();
+        if (runReaders != null) {
+            for (RunReader runReader : runReaders) {
+                runReader.close();
+            }
+            runReaders.clear();
+        }
+        for (File runFile : runFiles) {
+            if (!runFile.delete() && runFile.exists()) {
+                log.warn("Failed to delete the temporary file '" + runFile.getAbsolutePath() + "' used to sort CSV " +
+                        "events.");
+            }
+        }
+        runFiles.clear();
+    }
+
+    private void writeRun() throws IOException {
+        events.sort(TIMESTAMP_COMPARATOR);
+        File runFile = File.createTempFile("csv-events-", ".run");
+        runFile.deleteOnExit();
+        runFiles.add(runFile);
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(runFile), RUN_BUFFER_SIZE))) {
+            outputStream.writeInt(events.size());
+            for (Event event : events) {
+                writeEvent(outputStream, event);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote a sorted run of " + events.size() + " CSV events to '" + runFile.getAbsolutePath() +
+                    "'.");
+        }
+        events.clear();
+        bufferedSize = 0;
+    }
+
+    private void writeEvent(DataOutputStream outputStream, Event event) throws IOException {
+        outputStream.writeLong(event.getTimestamp());
+        Object[] data = event.getData();
+        for (int i = 0; i < attributeTypes.length; i++) {
+            // the event converter leaves object attributes and missing values null
+            if (data[i] == null || attributeTypes[i] == Attribute.Type.OBJECT) {
+                outputStream.writeBoolean(false);
+                continue;
+            }
+            outputStream.writeBoolean(true);
+            switch (attributeTypes[i]) {
+                case INT:
+                    outputStream.writeInt((Integer) data[i]);
+                    break;
+                case LONG:
+                    outputStream.writeLong((Long) data[i]);
+                    break;
+                case FLOAT:
+                    outputStream.writeFloat((Float) data[i]);
+                    break;
+                case DOUBLE:
+                    outputStream.writeDouble((Double) data[i]);
+                    break;
+                case BOOL:
+                    outputStream.writeBoolean((Boolean) data[i]);
+                    break;
+                default:
+                    byte[] bytes = ((String) data[i]).getBytes(StandardCharsets.UTF_8);
+                    outputStream.writeInt(bytes.length);
+                    outputStream.write(bytes);
+            }
+        }
+    }
+
+    private long estimateSize(Event event) {
+        long size = EVENT_OVERHEAD + 8L * attributeTypes.length;
+        Object[] data = event.getData();
+        for (int i = 0; i < attributeTypes.length; i++) {
+            if (data[i] instanceof String) {
+                size += 40 + 2L * ((String) data[i]).length();
+            } else if (data[i] != null) {
+                size += 24;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reader of the events of a run file, holding the next event of the run as the head.
+     */
+    private class RunReader {
+        private final DataInputStream inputStream;
+        private final int runIndex;
+        private int remainingEvents;
+        private byte[] stringBuffer = new byte[64];
+        private Event head;
+
+        private RunReader(File runFile, int runIndex) throws IOException {
+            this.inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile),
+                    RUN_BUFFER_SIZE));
+            this.runIndex = runIndex;
+            this.remainingEvents = inputStream.readInt();
+        }
+
+        private boolean advance() throws IOException {
+            if (remainingEvents == 0) {
+                head = null;
+                close();
+                return false;
+            }
+            remainingEvents--;
+            long timestamp = inputStream.readLong();
+            Object[] data = new Object[attributeTypes.length];
+            for (int i = 0; i < attributeTypes.length; i++) {
+                if (!inputStream.readBoolean()) {
+                    continue;
+                }
+                switch (attributeTypes[i]) {
+                    case INT:
+                        data[i] = inputStream.readInt();
+                        break;
+                    case LONG:
+                        data[i] = inputStream.readLong();
+                        break;
+                    case FLOAT:
+                        data[i] = inputStream.readFloat();
+                        break;
+                    case DOUBLE:
+                        data[i] = inputStream.readDouble();
+                        break;
+                    case BOOL:
+                        data[i] = inputStream.readBoolean();
+                        break;
+                    default:
+                        int length = inputStream.readInt();
+                        if (length > stringBuffer.length) {
+                            stringBuffer = new byte[Math.max(length, stringBuffer.length * 2)];
+                        }
+                        inputStream.readFully(stringBuffer, 0, length);
+                        data[i] = new String(stringBuffer, 0, length, StandardCharsets.UTF_8);
+                }
+            }
+            head = new Event(timestamp, data);
+            return true;
+        }
+
+        private void close() {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                log.error("Error occurred when closing the temporary file used to sort CSV events.", e);
+            }
+        }
+    }
+}
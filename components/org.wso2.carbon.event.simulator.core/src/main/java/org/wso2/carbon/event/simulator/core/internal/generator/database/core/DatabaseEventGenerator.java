@@ -28,7 +28,7 @@ import org.wso2.carbon.event.simulator.core.exception.*;
 import org.wso2.carbon.event.simulator.core.internal.bean.DBSimulationDTO;
 import org.wso2.carbon.event.simulator.core.internal.generator.EventGenerator;
 import org.wso2.carbon.event.simulator.core.internal.generator.database.util.DatabaseConnector;
-import org.wso2.carbon.event.simulator.core.internal.util.EventConverter;
+import org.wso2.carbon.event.simulator.core.internal.generator.database.util.DatabaseResultPage;
 import org.wso2.carbon.event.simulator.core.internal.util.EventSimulatorConstants;
 import org.wso2.carbon.event.simulator.core.model.DBConnectionModel;
 import org.wso2.carbon.event.simulator.core.service.EventSimulatorDataHolder;
@@ -38,7 +38,6 @@ import org.wso2.siddhi.core.event.Event;
 import org.wso2.siddhi.query.api.definition.Attribute;
 
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -57,7 +56,8 @@ public class DatabaseEventGenerator implements EventGenerator {
     private long currentTimestamp;
     private DBSimulationDTO dbSimulationConfig;
     private Event nextEvent = null;
-    private ResultSet resultSet;
+    private DatabaseResultPage currentPage;
+    private int currentPageIndex;
     private DatabaseConnector databaseConnection;
     private List<Attribute> streamAttributes;
     private List<String> columnNames;
@@ -123,7 +123,7 @@ public class DatabaseEventGenerator implements EventGenerator {
     }
 
     /**
-     * start() method is used to retrieve the resultSet from the data source and to obtain the first event
+     * start() method is used to retrieve the first page of data from the data source and to obtain the first event
      */
     @Override
     public void start() {
@@ -143,32 +143,21 @@ public class DatabaseEventGenerator implements EventGenerator {
         if (startTimestamp == -1 && "-1".equals(dbSimulationConfig.getTimestampAttribute())) {
             startTimestamp = System.currentTimeMillis();
         }
-        try {
-            resultSet = databaseConnection.getDatabaseEventItems(dbSimulationConfig.getTableName(),
-                                                                 dbSimulationConfig.getColumnNames(),
-                                                                 dbSimulationConfig.getTimestampAttribute(),
-                                                                 startTimestamp, endTimestamp);
-            if (resultSet != null && !resultSet.isBeforeFirst()) {
-                throw new EventGenerationException("Table '" + dbSimulationConfig.getTableName()
-                                                           + "' contains  no entries for the columns specified in "
-                                                           + "source configuration " + dbSimulationConfig.toString());
-            }
-            getNextEvent();
-        } catch (SQLException e) {
-            log.error("Error occurred when retrieving resultset from database ' " +
-                              dbSimulationConfig.getDataSourceLocation() + "' to simulate to simulate stream '" +
-                              dbSimulationConfig.getStreamName() + "' using source configuration " +
-                              dbSimulationConfig.toString(), e);
-            throw new SimulatorInitializationException("Error occurred when retrieving resultset from database ' "
-                                                               +dbSimulationConfig.getDataSourceLocation()
-                                                               + "' to simulate to simulate stream '"
-                                                               + dbSimulationConfig.getStreamName()
-                                                               + "' using source configuration "
-                                                               + dbSimulationConfig.toString(), e);
+        databaseConnection.prepareEventQuery(dbSimulationConfig.getTableName(),
+                                             dbSimulationConfig.getColumnNames(),
+                                             dbSimulationConfig.getTimestampAttribute(),
+                                             streamAttributes, startTimestamp, endTimestamp);
+        currentPage = databaseConnection.getNextPage();
+        currentPageIndex = 0;
+        if (currentPage.size() == 0 && currentPage.isLast()) {
+            databaseConnection.closeConnection();
+            throw new EventGenerationException("Table '" + dbSimulationConfig.getTableName()
+                                                       + "' contains  no entries for the columns specified in "
+                                                       + "source configuration " + dbSimulationConfig.toString());
         }
-
-        if (log.isDebugEnabled() && resultSet != null) {
-            log.debug("Retrieved resultset to simulate stream '" + dbSimulationConfig.getStreamName() +
+        getNextEvent();
+        if (log.isDebugEnabled()) {
+            log.debug("Retrieved first page of data to simulate stream '" + dbSimulationConfig.getStreamName() +
                               "' and initialized variable nextEvent.");
         }
         if (log.isDebugEnabled()) {
@@ -240,80 +229,46 @@ public class DatabaseEventGenerator implements EventGenerator {
      */
     @Override
     public void getNextEvent() {
-        try {
-            /*
-             * if the resultset has a next entry, create an event using that entry and assign it to nextEvent
-             * else, assign null to nextEvent
-             * */
-            if (resultSet != null) {
-                if (resultSet.next()) {
-                    Object[] attributeValues = new Object[streamAttributes.size()];
-                    long timestamp = -1;
-                    /*
-                     * if timestamp attribute is specified use the value of the respective column as timestamp
-                     * else, calculate the timestamp.
-                     * timestamp of first event will be currentTimestamp and timestamp of successive event
-                     * will be (last event timestamp + interval)
-                     * */
-                    if (dbSimulationConfig.getTimestampAttribute() != null) {
-                        timestamp = resultSet.getLong(dbSimulationConfig.getTimestampAttribute());
-                    } else if (endTimestamp == -1 || currentTimestamp <= endTimestamp) {
-                        // If the start timestamp is not given, then the system timestamp will be used.
-                        if (currentTimestamp == -1) {
-                            currentTimestamp = System.currentTimeMillis();
-                        }
-                        timestamp = currentTimestamp;
-                        currentTimestamp += dbSimulationConfig.getTimestampInterval();
-                    }
-                    if (timestamp != -1) {
-                        int i = 0;
-                        /*
-                         * For each attribute in streamAttributes, use attribute type to determine the getter method
-                         * to be used to access the resultset and use the attribute name to access a particular field
-                         * in resultset
-                         * */
-                        for (Attribute attribute : streamAttributes) {
-                            switch (attribute.getType()) {
-                                case STRING:
-                                    attributeValues[i] = resultSet.getString(columnNames.get(i++));
-                                    break;
-                                case INT:
-                                    attributeValues[i] = resultSet.getInt(columnNames.get(i++));
-                                    break;
-                                case DOUBLE:
-                                    attributeValues[i] = resultSet.getDouble(columnNames.get(i++));
-                                    break;
-                                case FLOAT:
-                                    attributeValues[i] = resultSet.getFloat(columnNames.get(i++));
-                                    break;
-                                case BOOL:
-                                    attributeValues[i] = resultSet.getBoolean(columnNames.get(i++));
-                                    break;
-                                case LONG:
-                                    attributeValues[i] = resultSet.getLong(columnNames.get(i++));
-                                    break;
-                                default:
-//                                this statement is never reaches since attribute type is an enum
-                            }
-                        }
-                    }
-                    nextEvent = EventConverter.eventConverter(streamAttributes, attributeValues, timestamp);
-                } else {
-                    nextEvent = null;
-                }
+        /*
+         * if the current page has a next row, create an event using that row and assign it to nextEvent.
+         * if the current page is consumed, move to the next page, which has been retrieved in the background while
+         * the events of the current page were generated.
+         * if no more rows are available, assign null to nextEvent
+         * */
+        if (currentPage == null) {
+            return;
+        }
+        while (currentPageIndex == currentPage.size()) {
+            if (currentPage.isLast()) {
+                nextEvent = null;
+                return;
             }
-        } catch (EventGenerationException e) {
-            log.error("Error occurred when generating event using database event "
-                              + "generator to simulate stream '" + dbSimulationConfig.getStreamName()
-                              + "' using source configuration " + dbSimulationConfig.toString()
-                              + "Drop event and create next event. ", e);
-            getNextEvent();
-        } catch (SQLException e) {
-            throw new EventGenerationException("Error occurred when accessing result set to simulate to simulate "
-                                                       + "stream '" + dbSimulationConfig.getStreamName()
-                                                       + "' using source configuration "
-                                                       + dbSimulationConfig.toString(), e);
+            currentPage = databaseConnection.getNextPage();
+            currentPageIndex = 0;
+        }
+        long timestamp = -1;
+        /*
+         * if timestamp attribute is specified use the value of the respective column as timestamp
+         * else, calculate the timestamp.
+         * timestamp of first event will be currentTimestamp and timestamp of successive event
+         * will be (last event timestamp + interval)
+         * */
+        if (dbSimulationConfig.getTimestampAttribute() != null) {
+            timestamp = currentPage.getTimestamp(currentPageIndex);
+        } else if (endTimestamp == -1 || currentTimestamp <= endTimestamp) {
+            // If the start timestamp is not given, then the system timestamp will be used.
+            if (currentTimestamp == -1) {
+                currentTimestamp = System.currentTimeMillis();
+            }
+            timestamp = currentTimestamp;
+            currentTimestamp += dbSimulationConfig.getTimestampInterval();
+        } else {
+            // the timestamp of the next row would exceed the timestamp end time, hence no more events are generated
+            nextEvent = null;
+            return;
         }
+        nextEvent = new Event(timestamp, currentPage.getRow(currentPageIndex));
+        currentPageIndex++;
     }
 
     /**
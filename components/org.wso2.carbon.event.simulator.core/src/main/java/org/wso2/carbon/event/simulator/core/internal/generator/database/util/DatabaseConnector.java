@@ -26,6 +26,7 @@ import org.wso2.carbon.event.simulator.core.exception.EventGenerationException;
 import org.wso2.carbon.event.simulator.core.exception.SimulatorInitializationException;
 import org.wso2.carbon.event.simulator.core.util.LogEncoder;
 import org.wso2.carbon.event.simulator.core.model.DBConnectionModel;
+import org.wso2.siddhi.query.api.definition.Attribute;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -33,54 +34,87 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * DatabaseConnector is a utility class performs the following tasks
  * 1. Load the driver
  * 2. Connect to the database
- * 3. Create and execute a SELECT query
- * 4. Return a result set containing data required for database event simulation
+ * 3. Create a parameterised SELECT query
+ * 4. Return pages of the data required for database event simulation, retrieving the next page in the background
  * 5. Close database connection
+ * <p>
+ * If a timestamp attribute is specified, each page is queried by the range of the timestamp column, starting from
+ * the last timestamp of the previous page, so only about two pages are held in memory however large the table is.
+ * An index on the timestamp column lets the database answer each page query without sorting the table.
  */
 public class DatabaseConnector {
 
     private static final Logger log = Logger.getLogger(DatabaseConnector.class);
-    private static final String query_attribute_OnlyStartTime = "SELECT %s,%s FROM %s WHERE %s >= %d ORDER BY ABS(%s);";
-    private static final String query_attribute_WithBothLimits = "SELECT %s,%s FROM %s WHERE %s >= %d AND %s <= %d " +
-            "ORDER BY ABS(%s);";
-    private static final String query_interval = "SELECT %s FROM %s;";
+    private static final String query_attribute_OnlyStartTime = "SELECT %s,%s FROM %s WHERE %s >= ? ORDER BY %s";
+    private static final String query_attribute_WithBothLimits = "SELECT %s,%s FROM %s WHERE %s >= ? AND %s <= ? " +
+            "ORDER BY %s";
+    private static final String query_attribute_SingleTimestamp = "SELECT %s,%s FROM %s WHERE %s = ?";
+    private static final String query_interval = "SELECT %s FROM %s";
+    public static final int DEFAULT_PAGE_SIZE = 10000;
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    private final int pageSize;
+    private final int fetchSize;
     private HikariDataSource dataSource;
     private Connection dbConnection;
     private String dataSourceLocation;
     private PreparedStatement preparedStatement = null;
+    private PreparedStatement timestampStatement = null;
     private ResultSet resultSet = null;
+    private Attribute.Type[] attributeTypes;
+    private boolean hasTimestampAttribute;
+    private long nextStartTimestamp;
+    private long timestampEndTime;
+    private ExecutorService prefetchExecutor;
+    private Future<DatabaseResultPage> nextPage;
 
 
     public DatabaseConnector() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_FETCH_SIZE);
     }
 
     /**
-     * getDatabaseEvenItems method is used to obtain data from a database
+     * @param pageSize  maximum number of rows retrieved by a page query
+     * @param fetchSize number of rows the driver is asked to fetch from the database at a time
+     */
+    public DatabaseConnector(int pageSize, int fetchSize) {
+        this.pageSize = pageSize;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * prepareEventQuery method is used to prepare the queries retrieving data from a database and to start
+     * retrieving the first page of data
      *
      * @param tableName          table from which data must be retrieved
      * @param columnNames        list of columns to be retrieved
      * @param timestampAttribute column containing timestamp
+     * @param streamAttributes   attributes of the stream, used to determine the types of the columns
      * @param timestampStartTime least possible timestamp
      * @param timestampEndTime   maximum possible timestamp
-     * @return resultset containing data needed for event simulation
      */
-    public ResultSet getDatabaseEventItems(String tableName, List<String> columnNames, String timestampAttribute,
-                                           long timestampStartTime, long timestampEndTime) {
+    public void prepareEventQuery(String tableName, List<String> columnNames, String timestampAttribute,
+                                  List<Attribute> streamAttributes, long timestampStartTime, long timestampEndTime) {
         /*
          * check whether,
          * 1. database connection is established
          * 2. table exists
          * 3. column names are valid
          *
-         * if successful, create an sql query and retrieve data for event generation
+         * if successful, create the sql queries and start retrieving data for event generation
          * else throw an exception
          * */
         try {
@@ -88,7 +122,21 @@ public class DatabaseConnector {
                 if (checkTableExists(tableName) && validateColumns(tableName, columnNames)) {
                     prepareSQLstatement(tableName, columnNames, timestampAttribute, timestampStartTime,
                             timestampEndTime);
-                    this.resultSet = preparedStatement.executeQuery();
+                    // drivers such as the postgres driver only fetch rows in batches within a transaction
+                    dbConnection.setAutoCommit(false);
+                    attributeTypes = new Attribute.Type[streamAttributes.size()];
+                    for (int i = 0; i < attributeTypes.length; i++) {
+                        attributeTypes[i] = streamAttributes.get(i).getType();
+                    }
+                    hasTimestampAttribute = timestampAttribute != null;
+                    nextStartTimestamp = timestampStartTime;
+                    this.timestampEndTime = timestampEndTime;
+                    prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "DatabaseEventGenerator-" + tableName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    nextPage = prefetchExecutor.submit(this::fetchPage);
                 }
             } else {
                 throw new EventGenerationException("Unable to connect to source '" + dataSourceLocation + "' to " +
@@ -109,7 +157,85 @@ public class DatabaseConnector {
                     "timestamp start time : '" + timestampStartTime + "' and timestamp end time : '" +
                     timestampEndTime + "'. ", e);
         }
-        return resultSet;
+    }
+
+    /**
+     * getNextPage method returns the next page of data and starts retrieving the page after it in the background
+     *
+     * @return the next page, which is empty and last if all data has been retrieved
+     */
+    public DatabaseResultPage getNextPage() {
+        if (nextPage == null) {
+            return DatabaseResultPage.emptyPage();
+        }
+        DatabaseResultPage page;
+        try {
+            page = nextPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventGenerationException("Interrupted when retrieving data from source '" +
+                    dataSourceLocation + "'. ", e);
+        } catch (ExecutionException e) {
+            log.error("Error occurred when retrieving data from source '" + dataSourceLocation + "'. ",
+                    e.getCause());
+            closeConnection();
+            throw new EventGenerationException("Error occurred when retrieving data from source '" +
+                    dataSourceLocation + "'. ", e.getCause());
+        }
+        nextPage = page.isLast() ? null : prefetchExecutor.submit(this::fetchPage);
+        return page;
+    }
+
+    /**
+     * fetchPage method retrieves the next page of data. It is called by the prefetch thread, one page at a time.
+     *
+     * @return the page retrieved
+     * @throws SQLException if an error occurs when querying the database
+     */
+    private DatabaseResultPage fetchPage() throws SQLException {
+        PageBuilder page = new PageBuilder();
+        if (!hasTimestampAttribute) {
+            // the rows are not ordered by a key, hence they are read in pages from a single result set
+            if (resultSet == null) {
+                resultSet = preparedStatement.executeQuery();
+            }
+            page.read(resultSet, pageSize);
+            return page.build(page.size < pageSize);
+        }
+        preparedStatement.setLong(1, nextStartTimestamp);
+        if (timestampEndTime != -1) {
+            preparedStatement.setLong(2, timestampEndTime);
+        }
+        try (ResultSet pageResultSet = preparedStatement.executeQuery()) {
+            page.read(pageResultSet, pageSize);
+        }
+        if (page.size < pageSize) {
+            return page.build(true);
+        }
+        /*
+         * the rows having the last timestamp of the page may continue in the next page. Hence, leave them to the next
+         * page, which starts from that timestamp.
+         * if all rows of the page have the same timestamp, retrieve all rows having that timestamp as a page and
+         * start the next page from the next timestamp
+         * */
+        long lastTimestamp = page.timestamps[page.size - 1];
+        int lastTimestampStart = page.size - 1;
+        while (lastTimestampStart > 0 && page.timestamps[lastTimestampStart - 1] == lastTimestamp) {
+            lastTimestampStart--;
+        }
+        if (lastTimestampStart > 0) {
+            page.truncate(lastTimestampStart);
+            nextStartTimestamp = lastTimestamp;
+            return page.build(false);
+        }
+        page = new PageBuilder();
+        timestampStatement.setLong(1, lastTimestamp);
+        try (ResultSet timestampResultSet = timestampStatement.executeQuery()) {
+            page.read(timestampResultSet, Integer.MAX_VALUE);
+        }
+        nextStartTimestamp = lastTimestamp + 1;
+        return page.build(lastTimestamp == Long.MAX_VALUE ||
+                (timestampEndTime != -1 && lastTimestamp >= timestampEndTime));
     }
 
     /**
@@ -224,7 +350,8 @@ public class DatabaseConnector {
     }
 
     /**
-     * PrepareSQLstatement() method creates the prepared statement needed to retrieve resultset
+     * PrepareSQLstatement() method creates the prepared statements needed to retrieve resultsets. The table and
+     * column names are validated against the database metadata, and the timestamps are bound as parameters.
      *
      * @param tableName          table from which data must be retrieved
      * @param columnNames        list of columns to be retrieved
@@ -243,18 +370,24 @@ public class DatabaseConnector {
         try {
             if (timestampAttribute == null) {
                 this.preparedStatement = dbConnection.prepareStatement(String.format(query_interval, columns,
-                        tableName));
+                        tableName), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             } else {
                 if (timestampEndTime == -1) {
                     this.preparedStatement = dbConnection.prepareStatement(String.format(query_attribute_OnlyStartTime,
-                            timestampAttribute, columns, tableName, timestampAttribute, timestampStartTime,
-                            timestampAttribute));
+                            timestampAttribute, columns, tableName, timestampAttribute, timestampAttribute),
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
                 } else {
                     this.preparedStatement = dbConnection.prepareStatement(String.format(query_attribute_WithBothLimits,
-                            timestampAttribute, columns, tableName, timestampAttribute, timestampStartTime,
-                            timestampAttribute, timestampEndTime, timestampAttribute));
+                            timestampAttribute, columns, tableName, timestampAttribute, timestampAttribute,
+                            timestampAttribute), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
                 }
+                this.preparedStatement.setMaxRows(pageSize);
+                this.timestampStatement = dbConnection.prepareStatement(String.format(
+                        query_attribute_SingleTimestamp, timestampAttribute, columns, tableName, timestampAttribute),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                this.timestampStatement.setFetchSize(fetchSize);
             }
+            this.preparedStatement.setFetchSize(fetchSize);
         } catch (SQLException e) {
             log.error("Error occurred when forming prepared statement for the configuration table name : '" +
                     tableName + "', columns : '" + columns + "', timestamp attribute : '" + timestampAttribute + "', " +
@@ -323,18 +456,35 @@ public class DatabaseConnector {
      * closeConnection method releases the database sources acquired.
      * <p>
      * It performs the following tasks
-     * 1. Close resultset obtained by querying the database
+     * 1. Stop retrieving the next page and close resultset obtained by querying the database
      * 2. Close prepared statement used to query the database
      * 3. Close the database connection established
      */
     public void closeConnection() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+            try {
+                if (!prefetchExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Timed out waiting for the page query on data source '" + dataSourceLocation +
+                            "' to complete.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            prefetchExecutor = null;
+            nextPage = null;
+        }
         try {
             if (resultSet != null) {
                 resultSet.close();
+                resultSet = null;
             }
             if (preparedStatement != null) {
                 preparedStatement.close();
             }
+            if (timestampStatement != null) {
+                timestampStatement.close();
+            }
             if (dbConnection != null && !dbConnection.isClosed()) {
                 dbConnection.close();
                 dataSource.close();
@@ -350,4 +500,64 @@ public class DatabaseConnector {
         }
     }
 
+    /**
+     * Builder of a page, reading the rows of a resultset into arrays of attribute values.
+     */
+    private class PageBuilder {
+        private final List<Object[]> rows = new ArrayList<>();
+        private long[] timestamps = new long[hasTimestampAttribute ? 64 : 0];
+        private int size;
+
+        private void read(ResultSet pageResultSet, int maxRows) throws SQLException {
+            int firstColumn = hasTimestampAttribute ? 2 : 1;
+            while (size < maxRows && pageResultSet.next()) {
+                if (hasTimestampAttribute) {
+                    if (size == timestamps.length) {
+                        timestamps = Arrays.copyOf(timestamps, size * 2);
+                    }
+                    timestamps[size] = pageResultSet.getLong(1);
+                }
+                /*
+                 * For each attribute in stream attributes, use attribute type to determine the getter method to be
+                 * used to access the resultset
+                 * */
+                Object[] attributeValues = new Object[attributeTypes.length];
+                for (int i = 0; i < attributeTypes.length; i++) {
+                    switch (attributeTypes[i]) {
+                        case STRING:
+                            attributeValues[i] = pageResultSet.getString(firstColumn + i);
+                            break;
+                        case INT:
+                            attributeValues[i] = pageResultSet.getInt(firstColumn + i);
+                            break;
+                        case DOUBLE:
+                            attributeValues[i] = pageResultSet.getDouble(firstColumn + i);
+                            break;
+                        case FLOAT:
+                            attributeValues[i] = pageResultSet.getFloat(firstColumn + i);
+                            break;
+                        case BOOL:
+                            attributeValues[i] = pageResultSet.getBoolean(firstColumn + i);
+                            break;
+                        case LONG:
+                            attributeValues[i] = pageResultSet.getLong(firstColumn + i);
+                            break;
+                        default:
+//                        object attributes are not simulated
+                    }
+                }
+                rows.add(attributeValues);
+                size++;
+            }
+        }
+
+        private void truncate(int newSize) {
+            rows.subList(newSize, size).clear();
+            size = newSize;
+        }
+
+        private DatabaseResultPage build(boolean isLast) {
+            return new DatabaseResultPage(rows, Arrays.copyOf(timestamps, hasTimestampAttribute ? size : 0), isLast);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.internal.generator.database.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DatabaseResultPage holds a page of rows retrieved for database event simulation, ordered by timestamp.
+ */
+public class DatabaseResultPage {
+    private final List<Object[]> rows;
+    private final long[] timestamps;
+    private final boolean isLast;
+
+    DatabaseResultPage(List<Object[]> rows, long[] timestamps, boolean isLast) {
+        this.rows = rows;
+        this.timestamps = timestamps;
+        this.isLast = isLast;
+    }
+
+    static DatabaseResultPage emptyPage() {
+        return new DatabaseResultPage(new ArrayList<>(), new long[0], true);
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * getRow() returns the attribute values of a row, in the order of the stream attributes
+     *
+     * @param index position of the row in the page
+     * @return attribute values
+     */
+    public Object[] getRow(int index) {
+        return rows.get(index);
+    }
+
+    /**
+     * getTimestamp() returns the value of the timestamp attribute of a row
+     *
+     * @param index position of the row in the page
+     * @return timestamp, or -1 if no timestamp attribute is specified
+     */
+    public long getTimestamp(int index) {
+        return timestamps.length == 0 ? -1 : timestamps[index];
+    }
+
+    /**
+     * isLast() indicates whether there are no more rows to be retrieved after this page
+     *
+     * @return true if this is the last page
+     */
+    public boolean isLast() {
+        return isLast;
+    }
+}
@@ -38,6 +38,9 @@ public class EventSimulatorConstants {
     public static final String END_TIMESTAMP = "endTimestamp";
     public static final String SIMULATION_TIME_INTERVAL = "timeInterval";
     public static final String NUMBER_OF_EVENTS_REQUIRED = "noOfEvents";
+    public static final String EVENT_RATE = "eventRate";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 100;
 
     public static final String JSON_CONFIGURATION_RESOURCE_NAME = "JSON configuration";
     public static final String PROPERTIES_RESOURCE_NAME = "properties";
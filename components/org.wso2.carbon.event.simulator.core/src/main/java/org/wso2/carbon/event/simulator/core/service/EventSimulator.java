@@ -32,14 +32,11 @@ import org.wso2.carbon.event.simulator.core.util.LogEncoder;
 import org.wso2.carbon.stream.processor.common.exception.ResourceNotFoundException;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.NotThreadSafe;
 
-import edu.umd.cs.findbugs.annotations.SuppressWarnings;
-
 import static org.wso2.carbon.event.simulator.core.internal.util.CommonOperations.checkAvailability;
 import static org.wso2.carbon.event.simulator.core.internal.util.CommonOperations.checkAvailabilityOfArray;
 
@@ -245,6 +242,26 @@ public class EventSimulator implements Runnable {
                     }
                 }
             }
+            if (checkAvailability(simulationPropertiesConfig, EventSimulatorConstants.EVENT_RATE)
+                    && simulationPropertiesConfig.getDouble(EventSimulatorConstants.EVENT_RATE) < 0) {
+                throw new InvalidConfigException(
+                                ResourceNotFoundException.ResourceType.SIMULATION,
+                                EventSimulatorConstants.EVENT_RATE,
+                                "Event rate of simulation '" +
+                                simulationPropertiesConfig.getString(EventSimulatorConstants.EVENT_SIMULATION_NAME) +
+                                "' must be a positive value, or 0 to send events as fast as possible. Invalid " +
+                                "simulation configuration provided : " + simulationPropertiesConfig.toString());
+            }
+            if (checkAvailability(simulationPropertiesConfig, EventSimulatorConstants.BATCH_SIZE)
+                    && simulationPropertiesConfig.getInt(EventSimulatorConstants.BATCH_SIZE) < 1) {
+                throw new InvalidConfigException(
+                                ResourceNotFoundException.ResourceType.SIMULATION,
+                                EventSimulatorConstants.BATCH_SIZE,
+                                "Batch size of simulation '" +
+                                simulationPropertiesConfig.getString(EventSimulatorConstants.EVENT_SIMULATION_NAME) +
+                                "' must be at least 1. Invalid simulation configuration provided : " +
+                                simulationPropertiesConfig.toString());
+            }
         } catch (JSONException e) {
             log.error("Error occurred when accessing simulation configuration of simulation '" +
                         simulationPropertiesConfig.getString(EventSimulatorConstants.EVENT_SIMULATION_NAME) +
@@ -263,76 +280,48 @@ public class EventSimulator implements Runnable {
     /**
      * eventSimulation() method is responsible for sending events belonging to one simulation configuration in the
      * order of their timestamps
-     * Events will be sent at time intervals equal to the delay
+     * Events will be sent at the event rate of the simulation, in batches of consecutive events of a stream
      */
-    @SuppressWarnings("SWL_SLEEP_WITH_LOCK_HELD")
     private void eventSimulation() {
-        long minTimestamp;
-        EventGenerator generator;
         int eventsRemaining = simulationProperties.getNoOfEventsRequired();
+        SimulationEngine simulationEngine = new SimulationEngine(generators,
+                EventSimulatorDataHolder.getInstance().getEventStreamService(), simulationProperties.getEventRate(),
+                simulationProperties.getBatchSize(), SimulationEngine.SYSTEM_CLOCK);
         try {
             while (!status.equals(Status.STOP) && !status.equals(Status.PENDING_STOP)) {
 //                if the simulator is paused, wait till it is resumed
                 if (status.equals(Status.PAUSE)) {
+                    simulationEngine.pause();
                     lock.acquire();
                     lock.release();
+                    simulationEngine.resume();
                 }
 
                 /*
                  * if there is no limit to the number of events to be sent or is the number of event remaining to be
-                 * sent is > 0, send an event, else stop event simulation
+                 * sent is > 0, send a batch of events once due, else stop event simulation
+                 * if all generators are exhausted, no event is sent and the event simulation is stopped
                  * */
                 if (eventsRemaining == -1 || eventsRemaining > 0) {
-                    minTimestamp = -1L;
-                    generator = null;
-                    /*
-                     * 1. for each event generator peek the next event (i.e. the next event with least timestamp)
-                     * 2. take the first event generator will a not null nextEvent as the first refferal value for
-                     * generator with minimum timestamp event, and take the events timestamp as the minimum
-                     * timestamp refferal value
-                     * 3. then compare the timestamp of the remaining not null nextEvents with the minimum timestamp
-                     * and update the minimum timestamp refferal value accordingly.
-                     * 4. once all generators are iterated and the event with minimum timestamp if obtained, send
-                     * event.
-                     * 5. if all generators has nextEvent == null, then stop event simulation
-                     * */
+                    simulationEngine.awaitNextEvent();
+                    int eventsSent;
                     lockStop.lock();
                     try {
-                        for (EventGenerator eventGenerator : generators) {
-                            if (eventGenerator.peek() != null) {
-                                if (minTimestamp == -1L) {
-                                    minTimestamp = eventGenerator.peek().getTimestamp();
-                                    generator = eventGenerator;
-                                } else if (eventGenerator.peek().getTimestamp() < minTimestamp) {
-                                    minTimestamp = eventGenerator.peek().getTimestamp();
-                                    generator = eventGenerator;
-                                }
-                            } else {
-                                generator = null;
-                            }
-                        }
-                        if (minTimestamp >= 0L && generator != null) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("Input Event (Simulation : '" + simulationName + "') : "
-                                                  + Arrays.deepToString(generator.peek().getData()));
-                            }
-                            EventSimulatorDataHolder.getInstance().getEventStreamService()
-                                    .pushEvent(generator.getSiddhiAppName(), generator.getStreamName(),
-                                               generator.poll());
-                        } else {
-                            break;
-                        }
-                        if (eventsRemaining > 0) {
-                            eventsRemaining--;
-                        }
+                        eventsSent = simulationEngine.sendBatch(eventsRemaining);
                     } finally {
                         lockStop.unlock();
                     }
-                    Thread.sleep(simulationProperties.getTimeInterval());
+                    if (eventsSent == 0) {
+                        break;
+                    }
+                    if (eventsRemaining > 0) {
+                        eventsRemaining -= eventsSent;
+                    }
                 } else {
                     break;
                 }
             }
+            logEventRate(simulationEngine);
 
             if(status.equals(Status.PENDING_STOP)){
                 status = Status.STOP;
@@ -351,6 +340,20 @@ public class EventSimulator implements Runnable {
         }
     }
 
+    private void logEventRate(SimulationEngine simulationEngine) {
+        if (simulationEngine.getEventRate() > 0) {
+            double measuredEventRate = simulationEngine.getMeasuredEventRate();
+            log.info(String.format("Simulation '%s' sent %d events at %.1f events per second, %.2f%% off the " +
+                            "event rate of %.1f events per second.", simulationName,
+                    simulationEngine.getEventCount(), measuredEventRate,
+                    (measuredEventRate - simulationEngine.getEventRate()) * 100 / simulationEngine.getEventRate(),
+                    simulationEngine.getEventRate()));
+        } else {
+            log.info(String.format("Simulation '%s' sent %d events at %.1f events per second.", simulationName,
+                    simulationEngine.getEventCount(), simulationEngine.getMeasuredEventRate()));
+        }
+    }
+
     /**
      * validateSimulationConfiguration() is used to parse the simulation configuration
      *
@@ -410,6 +413,18 @@ public class EventSimulator implements Runnable {
                 noOfEventsRequired = simulationPropertiesConfig.getInt(EventSimulatorConstants.
                                                                                NUMBER_OF_EVENTS_REQUIRED);
             }
+            /*
+             * if eventRate is not provided, events are sent one per time interval, and as fast as possible if the
+             * time interval is 0
+             * */
+            double eventRate = timeInterval > 0 ? 1000.0 / timeInterval : 0;
+            if (checkAvailability(simulationPropertiesConfig, EventSimulatorConstants.EVENT_RATE)) {
+                eventRate = simulationPropertiesConfig.getDouble(EventSimulatorConstants.EVENT_RATE);
+            }
+            int batchSize = EventSimulatorConstants.DEFAULT_BATCH_SIZE;
+            if (checkAvailability(simulationPropertiesConfig, EventSimulatorConstants.BATCH_SIZE)) {
+                batchSize = simulationPropertiesConfig.getInt(EventSimulatorConstants.BATCH_SIZE);
+            }
 //            create simulationPropertiesDTO object
             SimulationPropertiesDTO simulationPropertiesDTO = new SimulationPropertiesDTO();
             simulationPropertiesDTO.setSimulationName(simulationPropertiesConfig
@@ -420,6 +435,8 @@ public class EventSimulator implements Runnable {
             simulationPropertiesDTO.setStartTimestamp(startTimestamp);
             simulationPropertiesDTO.setEndTimestamp(endTimestamp);
             simulationPropertiesDTO.setNoOfEventsRequired(noOfEventsRequired);
+            simulationPropertiesDTO.setEventRate(eventRate);
+            simulationPropertiesDTO.setBatchSize(batchSize);
             return simulationPropertiesDTO;
 
         } catch (JSONException e) {
@@ -27,6 +27,7 @@ import org.wso2.carbon.stream.processor.common.EventStreamService;
 public class EventSimulatorDataHolder {
     private static EventSimulatorDataHolder instance = new EventSimulatorDataHolder();
     private long maximumFileSize;
+    private long csvSortBufferSize = 67108864;
     private String csvFileDirectory;
     private EventStreamService eventStreamService;
     private static PermissionProvider permissionProvider;
@@ -47,6 +48,18 @@ public class EventSimulatorDataHolder {
         this.maximumFileSize = maximumFileSize;
     }
 
+    /**
+     * Estimated heap size in bytes up to which the events of an unordered CSV file are sorted in memory. Larger
+     * files are sorted in runs of this size, which are spilled to temporary files and merged.
+     */
+    public long getCsvSortBufferSize() {
+        return csvSortBufferSize;
+    }
+
+    public void setCsvSortBufferSize(long csvSortBufferSize) {
+        this.csvSortBufferSize = csvSortBufferSize;
+    }
+
     public EventStreamService getEventStreamService() {
         return eventStreamService;
     }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.event.simulator.core.internal.generator.EventGenerator;
+import org.wso2.carbon.stream.processor.common.EventStreamService;
+import org.wso2.siddhi.core.event.Event;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SimulationEngine sends the events of the event generators of a simulation in the order of their timestamps
+ * <p>
+ * Generators are merged with a heap ordered by the timestamp of their next event, generators listed first winning
+ * ties. Consecutive events of the same stream are sent as one batch. Sending is paced by a token bucket refilled at
+ * the event rate from a nanosecond clock, so that a batch is sent as soon as it is due and up to 10 ms of a late wake
+ * up is made up by the following batches. An event rate of zero sends the events as fast as the streams accept them.
+ */
+class SimulationEngine {
+    private static final Logger log = LoggerFactory.getLogger(SimulationEngine.class);
+    // tokens are accumulated for at most this long, bounding the burst sent after a late wake up
+    private static final long MAX_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    };
+    private final PriorityQueue<GeneratorEntry> generatorQueue;
+    private final EventStreamService eventStreamService;
+    private final Clock clock;
+    private final double eventRate;
+    private final double eventsPerNano;
+    private final double maxTokens;
+    private final int batchSize;
+    private double tokens = 1;
+    private long lastRefillNanos = -1;
+    private long startNanos = -1;
+    private long lastSendNanos;
+    private long pausedNanos;
+    private long pauseStartNanos = -1;
+    private long eventCount;
+
+    /**
+     * @param generators         started event generators of the simulation
+     * @param eventStreamService service to send the events with
+     * @param eventRate          events to send per second, or zero to send as fast as possible
+     * @param batchSize          maximum number of events sent at once
+     * @param clock              clock to pace the simulation with
+     */
+    SimulationEngine(List<EventGenerator> generators, EventStreamService eventStreamService, double eventRate,
+                     int batchSize, Clock clock) {
+        this.eventStreamService = eventStreamService;
+        this.clock = clock;
+        this.eventRate = eventRate;
+        this.eventsPerNano = eventRate / TimeUnit.SECONDS.toNanos(1);
+        this.batchSize = batchSize;
+        // a rate too slow to earn an event in the burst time still sends a single event when it is due
+        this.maxTokens = Math.max(1, eventsPerNano * MAX_BURST_NANOS);
+        generatorQueue = new PriorityQueue<>(Math.max(1, generators.size()),
+                Comparator.comparingLong((GeneratorEntry entry) -> entry.timestamp)
+                        .thenComparingInt(entry -> entry.index));
+        for (int i = 0; i < generators.size(); i++) {
+            Event event = generators.get(i).peek();
+            if (event != null) {
+                generatorQueue.add(new GeneratorEntry(generators.get(i), i, event.getTimestamp()));
+            }
+        }
+    }
+
+    /**
+     * Wait till the next event is due to be sent.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitNextEvent() throws InterruptedException {
+        if (eventsPerNano == 0) {
+            return;
+        }
+        refill();
+        while (tokens < 1) {
+            clock.sleep((long) Math.ceil((1 - tokens) / eventsPerNano));
+            refill();
+        }
+    }
+
+    /**
+     * Send the due events of the stream with the next event, up to the batch size.
+     *
+     * @param maxEvents maximum number of events to send, or -1 if there is no limit
+     * @return number of events sent, zero if all generators are exhausted
+     */
+    int sendBatch(int maxEvents) {
+        GeneratorEntry entry = generatorQueue.poll();
+        if (entry == null) {
+            return 0;
+        }
+        int limit = batchSize;
+        if (eventsPerNano > 0) {
+            limit = Math.min(limit, Math.max(1, (int) tokens));
+        }
+        if (maxEvents >= 0) {
+            limit = Math.min(limit, maxEvents);
+        }
+        String siddhiAppName = entry.generator.getSiddhiAppName();
+        String streamName = entry.generator.getStreamName();
+        Event[] events = new Event[limit];
+        int count = 0;
+        while (true) {
+            events[count++] = entry.generator.poll();
+            Event nextEvent = entry.generator.peek();
+            if (nextEvent != null) {
+                entry.timestamp = nextEvent.getTimestamp();
+                generatorQueue.add(entry);
+            }
+            if (count == limit) {
+                break;
+            }
+            entry = generatorQueue.peek();
+            if (entry == null || !siddhiAppName.equals(entry.generator.getSiddhiAppName())
+                    || !streamName.equals(entry.generator.getStreamName())) {
+                break;
+            }
+            generatorQueue.poll();
+        }
+        if (count < limit) {
+            events = Arrays.copyOf(events, count);
+        }
+        if (log.isDebugEnabled()) {
+            for (Event event : events) {
+                log.debug("Input Event (Simulation stream : '" + siddhiAppName + ":" + streamName + "') : "
+                        + Arrays.deepToString(event.getData()));
+            }
+        }
+        eventStreamService.pushEvents(siddhiAppName, streamName, events);
+        lastSendNanos = clock.nanoTime();
+        if (startNanos == -1) {
+            startNanos = lastSendNanos;
+        }
+        tokens -= count;
+        eventCount += count;
+        return count;
+    }
+
+    /**
+     * Stop pacing while the simulation is paused, so that the paused time is neither made up for on resume nor
+     * counted in the measured event rate.
+     */
+    void pause() {
+        if (pauseStartNanos == -1) {
+            pauseStartNanos = clock.nanoTime();
+        }
+    }
+
+    void resume() {
+        if (pauseStartNanos != -1) {
+            long now = clock.nanoTime();
+            if (startNanos != -1) {
+                pausedNanos += now - pauseStartNanos;
+            }
+            lastRefillNanos = now;
+            pauseStartNanos = -1;
+        }
+    }
+
+    long getEventCount() {
+        return eventCount;
+    }
+
+    double getEventRate() {
+        return eventRate;
+    }
+
+    /**
+     * Get the rate at which the events were sent, from the first event to the last, excluding paused time.
+     *
+     * @return events sent per second, or zero if less than two batches were sent
+     */
+    double getMeasuredEventRate() {
+        long elapsedNanos = lastSendNanos - startNanos - pausedNanos;
+        if (startNanos == -1 || elapsedNanos <= 0) {
+            return 0;
+        }
+        // the first event is sent at the start, so it does not count towards the rate
+        return (eventCount - 1) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    private void refill() {
+        long now = clock.nanoTime();
+        if (lastRefillNanos == -1) {
+            lastRefillNanos = now;
+        }
+        tokens = Math.min(maxTokens, tokens + (now - lastRefillNanos) * eventsPerNano);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Source of time for pacing a simulation.
+     */
+    interface Clock {
+        long nanoTime();
+
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * Event generator with the timestamp of its next event.
+     */
+    private static class GeneratorEntry {
+        private final EventGenerator generator;
+        private final int index;
+        private long timestamp;
+
+        private GeneratorEntry(EventGenerator generator, int index, long timestamp) {
+            this.generator = generator;
+            this.index = index;
+            this.timestamp = timestamp;
+        }
+    }
+}
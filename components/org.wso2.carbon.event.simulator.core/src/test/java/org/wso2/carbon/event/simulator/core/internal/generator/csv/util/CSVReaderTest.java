@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.internal.generator.csv.util;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.event.simulator.core.exception.EventGenerationException;
+import org.wso2.carbon.event.simulator.core.internal.bean.CSVSimulationDTO;
+import org.wso2.carbon.event.simulator.core.internal.util.EventConverter;
+import org.wso2.carbon.event.simulator.core.service.EventSimulatorDataHolder;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * CSVReaderTest verifies that the events read from CSV files match those of splitting each line and, for unordered
+ * files, of sorting all events in memory
+ */
+public class CSVReaderTest {
+    private static File testDir = Paths.get("target", "CSVReaderTest").toFile();
+    private static final int SORT_BUFFER_SIZE = 65536;
+    private static final List<Attribute> STREAM_ATTRIBUTES = Arrays.asList(
+            new Attribute("symbol", Attribute.Type.STRING), new Attribute("price", Attribute.Type.DOUBLE),
+            new Attribute("volume", Attribute.Type.LONG), new Attribute("count", Attribute.Type.INT),
+            new Attribute("isValid", Attribute.Type.BOOL));
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        testDir.mkdirs();
+        EventSimulatorDataHolder.getInstance().setCsvFileDirectory(testDir.getAbsolutePath());
+        EventSimulatorDataHolder.getInstance().setCsvSortBufferSize(SORT_BUFFER_SIZE);
+    }
+
+    @Test
+    public void testUnorderedFileLargerThanSortBuffer() throws Exception {
+        File csvFile = new File(testDir, "unordered.csv");
+        Random random = new Random(42);
+        try (Writer writer = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 20000; i++) {
+                if (i % 997 == 0) {
+                    writer.write("invalid,IBM,1.5,10,1,true\n");
+                } else if (i % 1009 == 0) {
+                    writer.write(random.nextInt(2000) + ",IBM\n");
+                } else if (i % 1013 == 0) {
+                    writer.write(random.nextInt(2000) + ",IBM,price,10,1,true\n");
+                } else {
+                    writer.write(random.nextInt(2000) + ",symbol" + i + "," + random.nextDouble() * 100 + "," +
+                            random.nextLong() + "," + random.nextInt() + "," + random.nextBoolean() + "\n");
+                }
+            }
+        }
+        Assert.assertTrue(csvFile.length() > SORT_BUFFER_SIZE * 4);
+        CSVSimulationDTO csvConfig = createCSVConfig(csvFile.getName(), ",", false);
+
+        List<Event> expectedEvents = readSortedEvents(csvFile, csvConfig, 100, 1900);
+        CSVReader csvReader = new CSVReader(csvFile.getName(), false);
+        List<Event> events = new ArrayList<>();
+        Event event;
+        while ((event = csvReader.getNextEvent(csvConfig, STREAM_ATTRIBUTES, 100, 1900)) != null) {
+            events.add(event);
+        }
+        Assert.assertTrue(csvReader.getSortRunCount() > 1, "Events are expected to be sorted in runs");
+        csvReader.closeParser(csvFile.getName(), false);
+        assertEvents(events, expectedEvents);
+    }
+
+    @Test
+    public void testUnorderedFileSortedInMemory() throws Exception {
+        File csvFile = new File(testDir, "unorderedSmall.csv");
+        try (Writer writer = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("30,WSO2,3.5,3,3,true\n10,IBM,1.5,1,1,false\n30,ORACLE,3.25,4,4,true\n20,MSFT,2.5,2,2,true\n");
+        }
+        CSVSimulationDTO csvConfig = createCSVConfig(csvFile.getName(), ",", false);
+        CSVReader csvReader = new CSVReader(csvFile.getName(), false);
+        List<Event> events = new ArrayList<>();
+        Event event;
+        while ((event = csvReader.getNextEvent(csvConfig, STREAM_ATTRIBUTES, 0, -1)) != null) {
+            events.add(event);
+        }
+        Assert.assertEquals(csvReader.getSortRunCount(), 0);
+        csvReader.closeParser(csvFile.getName(), false);
+        assertEvents(events, readSortedEvents(csvFile, csvConfig, 0, -1));
+        Assert.assertEquals(events.get(2).getData()[0], "WSO2");
+        Assert.assertEquals(events.get(3).getData()[0], "ORACLE");
+    }
+
+    @Test
+    public void testOrderedFilesWithDelimiters() throws Exception {
+        for (String delimiter : Arrays.asList(",", "\\t", "\\|", "[;|]")) {
+            File csvFile = new File(testDir, "ordered.csv");
+            Random random = new Random(7);
+            try (Writer writer = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 5000; i++) {
+                    String separator = "\\t".equals(delimiter) ? "\t" : "[;|]".equals(delimiter) ?
+                            (i % 2 == 0 ? ";" : "|") : delimiter.substring(delimiter.length() - 1);
+                    String timestamp;
+                    switch (i % 11) {
+                        case 0:
+                            timestamp = " " + i + "\u00a0";
+                            break;
+                        case 1:
+                            timestamp = "+" + i;
+                            break;
+                        case 2:
+                            timestamp = "9223372036854775808";
+                            break;
+                        case 3:
+                            timestamp = "1x";
+                            break;
+                        default:
+                            timestamp = String.valueOf(i);
+                    }
+                    writer.write(timestamp + separator + "symbol" + i + separator + random.nextDouble() + separator
+                            + random.nextInt(1000) + separator + random.nextInt() + separator +
+                            random.nextBoolean());
+                    if (i % 13 == 0) {
+                        writer.write(separator + separator);
+                    }
+                    writer.write(i % 17 == 0 ? "\r\n" : "\n");
+                    if (i % 19 == 0) {
+                        writer.write(i % 2 == 0 ? "\n" : timestamp + separator + separator + "\n");
+                    }
+                }
+            }
+            CSVSimulationDTO csvConfig = createCSVConfig(csvFile.getName(), delimiter, true);
+            List<Event> expectedEvents = readSplitEvents(csvFile, csvConfig, 100, 4500);
+            CSVReader csvReader = new CSVReader(csvFile.getName(), true);
+            List<Event> events = new ArrayList<>();
+            Event event;
+            while ((event = csvReader.getNextEvent(csvConfig, STREAM_ATTRIBUTES, 100, 4500)) != null) {
+                events.add(event);
+            }
+            csvReader.closeParser(csvFile.getName(), true);
+            Assert.assertTrue(events.size() > 3000);
+            assertEvents(events, expectedEvents);
+        }
+    }
+
+    private CSVSimulationDTO createCSVConfig(String fileName, String delimiter, boolean isOrdered) {
+        CSVSimulationDTO csvConfig = new CSVSimulationDTO();
+        csvConfig.setStreamName("FooStream");
+        csvConfig.setSiddhiAppName("TestSiddhiApp");
+        csvConfig.setFileName(fileName);
+        csvConfig.setDelimiter(delimiter);
+        csvConfig.setIsOrdered(isOrdered);
+        csvConfig.setTimestampAttribute("0");
+        csvConfig.setIndices(Arrays.asList(1, 2, 3, 4, 5));
+        return csvConfig;
+    }
+
+    /**
+     * Read the events of an unordered file into a map of events per timestamp.
+     */
+    private List<Event> readSortedEvents(File csvFile, CSVSimulationDTO csvConfig, long startTimestamp,
+                                         long endTimestamp) throws IOException {
+        TreeMap<Long, List<Event>> eventsMap = new TreeMap<>();
+        for (String line : Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            List<String> attributes = Arrays.asList(line.split(csvConfig.getDelimiter()));
+            try {
+                long timestamp = Long.parseLong(attributes.get(0));
+                if (timestamp >= startTimestamp && (endTimestamp == -1 || timestamp <= endTimestamp)) {
+                    Event event = createEvent(attributes, csvConfig.getIndices(), timestamp);
+                    if (event != null) {
+                        eventsMap.computeIfAbsent(timestamp, key -> new ArrayList<>()).add(event);
+                    }
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                // invalid lines are ignored
+            }
+        }
+        List<Event> events = new ArrayList<>();
+        for (Map.Entry<Long, List<Event>> entry : eventsMap.entrySet()) {
+            events.addAll(entry.getValue());
+        }
+        return events;
+    }
+
+    /**
+     * Read the events of an ordered file, splitting each line by the delimiter regex.
+     */
+    private List<Event> readSplitEvents(File csvFile, CSVSimulationDTO csvConfig, long startTimestamp,
+                                        long endTimestamp) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> attributes = Arrays.asList(line.split(csvConfig.getDelimiter()));
+                try {
+                    long timestamp = Long.parseLong(attributes.get(0).replaceAll("(^\\h*)|(\\h*$)", ""));
+                    if (timestamp >= startTimestamp && (endTimestamp == -1 || timestamp <= endTimestamp)) {
+                        Event event = createEvent(attributes, csvConfig.getIndices(), timestamp);
+                        if (event != null) {
+                            events.add(event);
+                        }
+                    }
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    // invalid lines are ignored
+                }
+            }
+        }
+        return events;
+    }
+
+    private Event createEvent(List<String> attributes, List<Integer> indices, long timestamp) {
+        List<String> eventData = new ArrayList<>();
+        indices.forEach(index -> eventData.add(attributes.get(index)));
+        try {
+            return EventConverter.eventConverter(STREAM_ATTRIBUTES, eventData.toArray(), timestamp);
+        } catch (EventGenerationException e) {
+            return null;
+        }
+    }
+
+    private void assertEvents(List<Event> events, List<Event> expectedEvents) {
+        Assert.assertEquals(events.size(), expectedEvents.size());
+        for (int i = 0; i < events.size(); i++) {
+            Assert.assertEquals(events.get(i).getTimestamp(), expectedEvents.get(i).getTimestamp());
+            Assert.assertEquals(Arrays.asList(events.get(i).getData()),
+                    Arrays.asList(expectedEvents.get(i).getData()));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.internal.generator.database.core;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.event.simulator.core.internal.generator.database.util.DatabaseConnector;
+import org.wso2.carbon.event.simulator.core.internal.generator.database.util.DatabaseResultPage;
+import org.wso2.carbon.event.simulator.core.internal.util.EventSimulatorConstants;
+import org.wso2.carbon.event.simulator.core.service.EventSimulatorDataHolder;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import util.StreamProcessorUtil;
+
+/**
+ * DatabaseEventGeneratorTest replays a table of millions of rows from an embedded H2 database.
+ */
+public class DatabaseEventGeneratorTest {
+    private static final String DRIVER = "org.h2.Driver";
+    // the page store loads the test table several times faster than the default mv store
+    private static final String DATA_SOURCE_LOCATION = "jdbc:h2:" + Paths.get("target", "DatabaseEventGeneratorTest",
+            "events").toAbsolutePath().toString() + ";MV_STORE=FALSE;LOG=0;UNDO_LOG=0";
+    private static final String USERNAME = "simulator";
+    private static final String PASSWORD = "simulator";
+    private static final int ROW_COUNT = 2000000;
+    private static final int SAME_TIMESTAMP_ROW_COUNT = 25000;
+    private static final long SAME_TIMESTAMP = 100000;
+    private static final List<Attribute> STREAM_ATTRIBUTES = Arrays.asList(new Attribute("ID", Attribute.Type.LONG),
+            new Attribute("SYMBOL", Attribute.Type.STRING), new Attribute("PRICE", Attribute.Type.DOUBLE));
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        Class.forName(DRIVER);
+        try (Connection connection = DriverManager.getConnection(DATA_SOURCE_LOCATION, USERNAME, PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS EVENTS");
+            statement.execute("CREATE TABLE EVENTS (ID BIGINT, TS BIGINT, SYMBOL VARCHAR(20), PRICE DOUBLE)");
+            // four rows per timestamp, and a block of rows having the same timestamp larger than a page
+            statement.execute("INSERT INTO EVENTS SELECT X, X / 4, CONCAT('symbol', MOD(X, 100)), X * 0.5 " +
+                    "FROM SYSTEM_RANGE(1, " + ROW_COUNT + ")");
+            statement.execute("INSERT INTO EVENTS SELECT " + ROW_COUNT + " + X, " + SAME_TIMESTAMP + ", 'same', 0 " +
+                    "FROM SYSTEM_RANGE(1, " + SAME_TIMESTAMP_ROW_COUNT + ")");
+            statement.execute("CREATE INDEX EVENTS_TS ON EVENTS(TS)");
+        }
+        StreamProcessorUtil streamProcessorUtil = new StreamProcessorUtil();
+        streamProcessorUtil.addStreamAttributes("TestSiddhiApp", "FooStream", STREAM_ATTRIBUTES);
+        EventSimulatorDataHolder.getInstance().setEventStreamService(streamProcessorUtil);
+    }
+
+    @Test
+    public void testReplayTableByTimestamp() throws Exception {
+        DatabaseEventGenerator generator = new DatabaseEventGenerator();
+        generator.init(createSourceConfig().put(EventSimulatorConstants.TIMESTAMP_ATTRIBUTE, "TS"), 0, -1,
+                "TestSimulation");
+        generator.start();
+        BitSet ids = new BitSet();
+        long lastTimestamp = 0;
+        int eventCount = 0;
+        Event event;
+        while ((event = generator.poll()) != null) {
+            long id = (Long) event.getData()[0];
+            Assert.assertTrue(event.getTimestamp() >= lastTimestamp);
+            Assert.assertFalse(ids.get((int) id), "Row " + id + " is replayed more than once");
+            ids.set((int) id);
+            if (id <= ROW_COUNT) {
+                Assert.assertEquals(event.getTimestamp(), id / 4);
+                Assert.assertEquals(event.getData()[1], "symbol" + id % 100);
+                Assert.assertEquals((Double) event.getData()[2], id * 0.5, 0);
+            } else {
+                Assert.assertEquals(event.getTimestamp(), SAME_TIMESTAMP);
+            }
+            lastTimestamp = event.getTimestamp();
+            eventCount++;
+        }
+        generator.stop();
+        Assert.assertEquals(eventCount, ROW_COUNT + SAME_TIMESTAMP_ROW_COUNT);
+        Assert.assertEquals(ids.cardinality(), ROW_COUNT + SAME_TIMESTAMP_ROW_COUNT);
+    }
+
+    @Test
+    public void testReplayTimestampRange() throws Exception {
+        DatabaseEventGenerator generator = new DatabaseEventGenerator();
+        generator.init(createSourceConfig().put(EventSimulatorConstants.TIMESTAMP_ATTRIBUTE, "TS"), 1000, 2000,
+                "TestSimulation");
+        generator.start();
+        int eventCount = 0;
+        Event event;
+        while ((event = generator.poll()) != null) {
+            Assert.assertTrue(event.getTimestamp() >= 1000 && event.getTimestamp() <= 2000);
+            eventCount++;
+        }
+        generator.stop();
+        Assert.assertEquals(eventCount, 4 * 1001);
+    }
+
+    @Test
+    public void testReplayTableByInterval() throws Exception {
+        DatabaseEventGenerator generator = new DatabaseEventGenerator();
+        generator.init(createSourceConfig().put(EventSimulatorConstants.TIMESTAMP_INTERVAL, "10"), 1000, -1,
+                "TestSimulation");
+        generator.start();
+        int eventCount = 0;
+        Event event;
+        while ((event = generator.poll()) != null) {
+            Assert.assertEquals(event.getTimestamp(), 1000 + eventCount * 10L);
+            eventCount++;
+        }
+        generator.stop();
+        Assert.assertEquals(eventCount, ROW_COUNT + SAME_TIMESTAMP_ROW_COUNT);
+    }
+
+    @Test
+    public void testPagesAreBounded() throws Exception {
+        DatabaseConnector databaseConnector = new DatabaseConnector(1000, 100);
+        databaseConnector.connectToDatabase(DRIVER, DATA_SOURCE_LOCATION, USERNAME, PASSWORD);
+        databaseConnector.prepareEventQuery("EVENTS", Arrays.asList("ID", "SYMBOL", "PRICE"), "TS",
+                STREAM_ATTRIBUTES, 99000, 101000);
+        int rowCount = 0;
+        DatabaseResultPage page;
+        do {
+            page = databaseConnector.getNextPage();
+            if (page.size() > 1000) {
+                // only the rows having the same timestamp are retrieved as a single larger page
+                Assert.assertEquals(page.size(), SAME_TIMESTAMP_ROW_COUNT + 4);
+                Assert.assertEquals(page.getTimestamp(0), SAME_TIMESTAMP);
+            }
+            rowCount += page.size();
+        } while (!page.isLast());
+        databaseConnector.closeConnection();
+        Assert.assertEquals(rowCount, 4 * 2001 + SAME_TIMESTAMP_ROW_COUNT);
+    }
+
+    private JSONObject createSourceConfig() {
+        JSONObject sourceConfig = new JSONObject();
+        sourceConfig.put(EventSimulatorConstants.STREAM_NAME, "FooStream");
+        sourceConfig.put(EventSimulatorConstants.EXECUTION_PLAN_NAME, "TestSiddhiApp");
+        sourceConfig.put(EventSimulatorConstants.DRIVER, DRIVER);
+        sourceConfig.put(EventSimulatorConstants.DATA_SOURCE_LOCATION, DATA_SOURCE_LOCATION);
+        sourceConfig.put(EventSimulatorConstants.USER_NAME, USERNAME);
+        sourceConfig.put(EventSimulatorConstants.PASSWORD, PASSWORD);
+        sourceConfig.put(EventSimulatorConstants.TABLE_NAME, "EVENTS");
+        sourceConfig.put(EventSimulatorConstants.COLUMN_NAMES_LIST, "ID,SYMBOL,PRICE");
+        return sourceConfig;
+    }
+}
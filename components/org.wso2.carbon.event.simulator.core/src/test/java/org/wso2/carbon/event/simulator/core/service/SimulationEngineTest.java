@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.event.simulator.core.service;
+
+import org.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.event.simulator.core.internal.generator.EventGenerator;
+import org.wso2.siddhi.core.event.Event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import util.EventData;
+import util.StreamProcessorUtil;
+
+public class SimulationEngineTest {
+    private StreamProcessorUtil streamProcessorUtil;
+
+    @BeforeMethod
+    public void setUp() {
+        streamProcessorUtil = new StreamProcessorUtil();
+    }
+
+    @Test
+    public void testEventsAreMergedInTimestampOrder() {
+        List<EventGenerator> generators = Arrays.asList(
+                new TestEventGenerator("FooStream", 0, 10, 10),
+                new TestEventGenerator("BarStream", 5, 10, 10),
+                new TestEventGenerator("FooStream", 1000, 10, 5));
+        SimulationEngine simulationEngine = new SimulationEngine(generators, streamProcessorUtil, 0, 100,
+                new TestClock(0));
+        int eventCount = 0;
+        int eventsSent;
+        while ((eventsSent = simulationEngine.sendBatch(-1)) > 0) {
+            eventCount += eventsSent;
+        }
+        Assert.assertEquals(eventCount, 25);
+        long lastTimestamp = -1;
+        for (EventData eventData : streamProcessorUtil.getEventsReceived()) {
+            Assert.assertTrue(eventData.getEvent().getTimestamp() >= lastTimestamp);
+            lastTimestamp = eventData.getEvent().getTimestamp();
+        }
+        // the streams alternate till the bar stream ends, then the events of the last generator are sent as one batch
+        Assert.assertEquals(streamProcessorUtil.getBatchSizesReceived().size(), 21);
+        Assert.assertEquals(streamProcessorUtil.getBatchSizesReceived().get(20).intValue(), 5);
+    }
+
+    @Test
+    public void testThroughputMode() throws InterruptedException {
+        TestClock clock = new TestClock(0);
+        SimulationEngine simulationEngine = new SimulationEngine(
+                Arrays.asList(new TestEventGenerator("FooStream", 0, 1, 10000)), streamProcessorUtil, 0, 100,
+                clock);
+        int batchCount = 0;
+        while (true) {
+            simulationEngine.awaitNextEvent();
+            if (simulationEngine.sendBatch(-1) == 0) {
+                break;
+            }
+            batchCount++;
+        }
+        Assert.assertEquals(batchCount, 100);
+        Assert.assertEquals(simulationEngine.getEventCount(), 10000);
+        Assert.assertEquals(clock.sleepCount, 0);
+    }
+
+    @Test
+    public void testTargetRate() throws InterruptedException {
+        // the clock sleeps at least a millisecond, as the operating system timers do
+        TestClock clock = new TestClock(TimeUnit.MILLISECONDS.toNanos(1));
+        SimulationEngine simulationEngine = new SimulationEngine(
+                Arrays.asList(new TestEventGenerator("FooStream", 0, 1, 100000)), streamProcessorUtil, 50000,
+                100, clock);
+        int eventsRemaining = 60000;
+        while (eventsRemaining > 0) {
+            simulationEngine.awaitNextEvent();
+            eventsRemaining -= simulationEngine.sendBatch(eventsRemaining);
+        }
+        Assert.assertEquals(streamProcessorUtil.getNoOfEvents(), 60000);
+        double rateError = Math.abs(simulationEngine.getMeasuredEventRate() - 50000) / 50000;
+        Assert.assertTrue(rateError < 0.01, "Event rate is off by " + rateError * 100 + "%");
+        for (int batchSize : streamProcessorUtil.getBatchSizesReceived()) {
+            Assert.assertTrue(batchSize <= 100);
+        }
+    }
+
+    @Test
+    public void testPausedTimeIsNotMadeUp() throws InterruptedException {
+        TestClock clock = new TestClock(0);
+        SimulationEngine simulationEngine = new SimulationEngine(
+                Arrays.asList(new TestEventGenerator("FooStream", 0, 1, 100)), streamProcessorUtil, 10, 100, clock);
+        for (int i = 0; i < 10; i++) {
+            simulationEngine.awaitNextEvent();
+            Assert.assertEquals(simulationEngine.sendBatch(-1), 1);
+        }
+        simulationEngine.pause();
+        clock.nanoTime += TimeUnit.SECONDS.toNanos(60);
+        simulationEngine.resume();
+        for (int i = 0; i < 10; i++) {
+            simulationEngine.awaitNextEvent();
+            Assert.assertEquals(simulationEngine.sendBatch(-1), 1);
+        }
+        Assert.assertEquals(simulationEngine.getMeasuredEventRate(), 10, 0.01);
+    }
+
+    @Test
+    public void testLateWakeUpOfSlowRateIsNotMadeUpInABurst() throws InterruptedException {
+        TestClock clock = new TestClock(0);
+        SimulationEngine simulationEngine = new SimulationEngine(
+                Arrays.asList(new TestEventGenerator("FooStream", 0, 1, 100)), streamProcessorUtil, 10, 100, clock);
+        simulationEngine.awaitNextEvent();
+        Assert.assertEquals(simulationEngine.sendBatch(-1), 1);
+        // wakes up five seconds late, fifty events behind the rate
+        clock.nanoTime += TimeUnit.SECONDS.toNanos(5);
+        simulationEngine.awaitNextEvent();
+        Assert.assertEquals(simulationEngine.sendBatch(-1), 1);
+        long lateSendNanos = clock.nanoTime;
+        simulationEngine.awaitNextEvent();
+        Assert.assertEquals(clock.nanoTime - lateSendNanos, TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(simulationEngine.sendBatch(-1), 1);
+    }
+
+    /**
+     * Clock advancing only while sleeping.
+     */
+    private static class TestClock implements SimulationEngine.Clock {
+        private final long minSleepNanos;
+        private long nanoTime;
+        private int sleepCount;
+
+        private TestClock(long minSleepNanos) {
+            this.minSleepNanos = minSleepNanos;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanoTime;
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            nanoTime += Math.max(nanos, minSleepNanos);
+            sleepCount++;
+        }
+    }
+
+    /**
+     * Generator of events with timestamps at a fixed interval.
+     */
+    private static class TestEventGenerator implements EventGenerator {
+        private final String streamName;
+        private final List<Event> events = new ArrayList<>();
+        private int index;
+
+        private TestEventGenerator(String streamName, long startTimestamp, long timestampInterval, int eventCount) {
+            this.streamName = streamName;
+            for (int i = 0; i < eventCount; i++) {
+                events.add(new Event(startTimestamp + i * timestampInterval, new Object[]{streamName, i}));
+            }
+        }
+
+        @Override
+        public void init(JSONObject sourceConfig, long startTimestamp, long endTimestamp, String simulationName) {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void resume() {
+        }
+
+        @Override
+        public Event poll() {
+            return index < events.size() ? events.get(index++) : null;
+        }
+
+        @Override
+        public Event peek() {
+            return index < events.size() ? events.get(index) : null;
+        }
+
+        @Override
+        public void getNextEvent() {
+        }
+
+        @Override
+        public String getStreamName() {
+            return streamName;
+        }
+
+        @Override
+        public String getSiddhiAppName() {
+            return "TestSiddhiApp";
+        }
+
+        @Override
+        public void validateSourceConfiguration(JSONObject sourceConfig, String simulationName) {
+        }
+
+        @Override
+        public void setStartTimestamp(long startTimestamp) {
+        }
+    }
+}
@@ -31,6 +31,7 @@ import java.util.List;
 public class StreamProcessorUtil implements EventStreamService {
     private HashMap<String, HashMap<String, List<Attribute>>> streamAttributesMap = new HashMap<>();
     private LinkedList<EventData> eventsReceived = new LinkedList<>();
+    private List<Integer> batchSizesReceived = new ArrayList<>();
 
     public StreamProcessorUtil() { }
 
@@ -67,6 +68,18 @@ public class StreamProcessorUtil implements EventStreamService {
         eventsReceived.add(new EventData(siddhiAppName, streamName, event));
     }
 
+    @Override
+    public void pushEvents(String siddhiAppName, String streamName, Event[] events) {
+        for (Event event : events) {
+            eventsReceived.add(new EventData(siddhiAppName, streamName, event));
+        }
+        batchSizesReceived.add(events.length);
+    }
+
+    public List<Integer> getBatchSizesReceived() {
+        return batchSizesReceived;
+    }
+
     public int getNoOfEvents() {
         return eventsReceived.size();
     }
@@ -85,6 +98,7 @@ public class StreamProcessorUtil implements EventStreamService {
 
     public void resetEvents() {
         eventsReceived.clear();
+        batchSizesReceived.clear();
     }
 
     public void setEventsReceived(LinkedList<EventData> eventsReceived) {
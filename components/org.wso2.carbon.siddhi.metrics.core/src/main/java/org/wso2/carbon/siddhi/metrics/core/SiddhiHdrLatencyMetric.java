@@ -0,0 +1,236 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.siddhi.metrics.core;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.metrics.core.Gauge;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.siddhi.metrics.core.internal.SiddhiMetricsDataHolder;
+import org.wso2.siddhi.core.util.statistics.LatencyTracker;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.metrics.core.Level.INFO;
+import static org.wso2.carbon.metrics.core.Level.OFF;
+
+/**
+ * Siddhi Latency metrics tracker, which records the latencies into HdrHistograms.
+ * <p>
+ * Each thread records into its own single writer recorder, so marking an event in and out only reads the clock and
+ * increments a histogram count, without allocating or contending with other threads. The recorders are swapped in
+ * the background at a fixed interval, and the percentiles of the latencies recorded in the last interval are
+ * published as gauges named after the tracker, in milliseconds.
+ */
+public class SiddhiHdrLatencyMetric implements LatencyTracker {
+    private static final Logger log = LoggerFactory.getLogger(SiddhiHdrLatencyMetric.class);
+    public static final String P50 = "p50";
+    public static final String P99 = "p99";
+    public static final String P999 = "p999";
+    public static final String MAX = "max";
+    public static final String MEAN = "mean";
+    public static final String COUNT = "count";
+    private static final int NUMBER_OF_SIGNIFICANT_VALUE_DIGITS = 3;
+    private static final long DEFAULT_PUBLISH_INTERVAL_MILLIS = 5000;
+    private static final long NOT_MARKED = -1;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final ScheduledExecutorService PUBLISHER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "SiddhiLatencyHistogramPublisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final String latencyTrackerId;
+    private final List<Stripe> stripes = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Stripe> stripe = ThreadLocal.withInitial(this::createStripe);
+    private final Histogram intervalHistogram = new Histogram(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS);
+    private final ScheduledFuture<?> publishTask;
+    private volatile double p50;
+    private volatile double p99;
+    private volatile double p999;
+    private volatile double max;
+    private volatile double mean;
+    private volatile long count;
+    private long recordedCount;
+
+    public SiddhiHdrLatencyMetric(String latencyTrackerId, MetricService metricService, boolean isStatisticEnabled) {
+        this(latencyTrackerId, metricService, isStatisticEnabled, DEFAULT_PUBLISH_INTERVAL_MILLIS);
+    }
+
+    public SiddhiHdrLatencyMetric(String latencyTrackerId, MetricService metricService, boolean isStatisticEnabled,
+                                  long publishIntervalMillis) {
+        this.latencyTrackerId = latencyTrackerId;
+        registerGauge(metricService, P50, this::getP50, isStatisticEnabled);
+        registerGauge(metricService, P99, this::getP99, isStatisticEnabled);
+        registerGauge(metricService, P999, this::getP999, isStatisticEnabled);
+        registerGauge(metricService, MAX, this::getMax, isStatisticEnabled);
+        registerGauge(metricService, MEAN, this::getMean, isStatisticEnabled);
+        registerGauge(metricService, COUNT, this::getCount, isStatisticEnabled);
+        publishTask = PUBLISHER.scheduleAtFixedRate(() -> {
+            try {
+                publish();
+            } catch (RuntimeException e) {
+                // an exception would stop the latencies being published at the next intervals
+                log.error("Error while publishing the latencies of " + latencyTrackerId, e);
+            }
+        }, publishIntervalMillis, publishIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This is called when the processing of the event is started. This is called at
+     * ProcessStreamReceiver#receive before the event is passed into process chain.
+     */
+    @Override
+    public void markIn() {
+        Stripe currentStripe = stripe.get();
+        if (currentStripe.startTime != NOT_MARKED) {
+            throw new IllegalStateException("MarkIn consecutively called without calling markOut in " +
+                    this.latencyTrackerId);
+        }
+        currentStripe.startTime = System.nanoTime();
+    }
+
+    /**
+     * This is called to when the processing of an event is finished. This is called at two places,
+     * 1. OutputRateLimiter#sendToCallBacks - When the event is processed and by the full chain and emitted out.
+     * 2. ProcessStreamReceiver#receive - When event is not processed by full process
+     * chain(e.g. Filtered out by a filter).
+     */
+    @Override
+    public void markOut() {
+        Stripe currentStripe = stripe.get();
+        if (currentStripe.startTime != NOT_MARKED) {
+            currentStripe.recorder.recordValue(System.nanoTime() - currentStripe.startTime);
+            currentStripe.startTime = NOT_MARKED;
+        }
+    }
+
+    /**
+     * @return Name of the latency tracker.
+     */
+    @Override
+    public String getName() {
+        return latencyTrackerId;
+    }
+
+    /**
+     * @return Names of the gauges the latency percentiles are published to.
+     */
+    public List<String> getMetricNames() {
+        return Collections.unmodifiableList(Arrays.asList(MetricService.name(latencyTrackerId, P50),
+                MetricService.name(latencyTrackerId, P99), MetricService.name(latencyTrackerId, P999),
+                MetricService.name(latencyTrackerId, MAX), MetricService.name(latencyTrackerId, MEAN),
+                MetricService.name(latencyTrackerId, COUNT)));
+    }
+
+    /**
+     * Swap the recorders of all threads and publish the latencies recorded since the last swap.
+     */
+    synchronized void publish() {
+        intervalHistogram.reset();
+        for (Stripe currentStripe : stripes) {
+            currentStripe.intervalHistogram = currentStripe.recorder.getIntervalHistogram(
+                    currentStripe.intervalHistogram);
+            intervalHistogram.add(currentStripe.intervalHistogram);
+            Thread owner = currentStripe.owner.get();
+            if (owner == null || !owner.isAlive()) {
+                // the thread cannot record any more latencies
+                stripes.remove(currentStripe);
+            }
+        }
+        p50 = intervalHistogram.getValueAtPercentile(50) / NANOS_PER_MILLI;
+        p99 = intervalHistogram.getValueAtPercentile(99) / NANOS_PER_MILLI;
+        p999 = intervalHistogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI;
+        max = intervalHistogram.getMaxValue() / NANOS_PER_MILLI;
+        mean = intervalHistogram.getTotalCount() == 0 ? 0 : intervalHistogram.getMean() / NANOS_PER_MILLI;
+        recordedCount += intervalHistogram.getTotalCount();
+        count = recordedCount;
+    }
+
+    double getP50() {
+        return p50;
+    }
+
+    double getP99() {
+        return p99;
+    }
+
+    double getP999() {
+        return p999;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return mean;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Stop publishing the latencies, which is done when the metrics of the Siddhi app are cleaned up.
+     */
+    public void stop() {
+        publishTask.cancel(false);
+        stripes.clear();
+    }
+
+    private <T> void registerGauge(MetricService metricService, String suffix, Gauge<T> gauge,
+                                   boolean isStatisticEnabled) {
+        String name = MetricService.name(latencyTrackerId, suffix);
+        metricService.gauge(name, Level.OFF, gauge);
+        if (isStatisticEnabled) {
+            SiddhiMetricsDataHolder.getInstance().getMetricManagementService().setMetricLevel(name, INFO);
+        } else {
+            SiddhiMetricsDataHolder.getInstance().getMetricManagementService().setMetricLevel(name, OFF);
+        }
+    }
+
+    private Stripe createStripe() {
+        Stripe newStripe = new Stripe();
+        stripes.add(newStripe);
+        return newStripe;
+    }
+
+    /**
+     * Latencies recorded by a thread.
+     */
+    private static class Stripe {
+        private final SingleWriterRecorder recorder = new SingleWriterRecorder(NUMBER_OF_SIGNIFICANT_VALUE_DIGITS);
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private long startTime = NOT_MARKED;
+        private Histogram intervalHistogram;
+    }
+}
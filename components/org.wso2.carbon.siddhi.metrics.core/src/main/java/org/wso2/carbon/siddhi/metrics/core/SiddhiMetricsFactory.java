@@ -36,6 +36,8 @@ import java.util.List;
  * Factory to retrieve required metric tracker.
  */
 public class SiddhiMetricsFactory implements StatisticsTrackerFactory {
+    public static final String LATENCY_TRACKER_KEY = "latency.tracker";
+    public static final String HDR_LATENCY_TRACKER = "hdrhistogram";
     private MetricService metricService;
     private SiddhiMetricsManagement metricsManagement;
     
@@ -46,6 +48,13 @@ public class SiddhiMetricsFactory implements StatisticsTrackerFactory {
     
     public LatencyTracker createLatencyTracker(String name, StatisticsManager statisticsManager) {
         SiddhiStatisticsManager siddhiStatisticsManager = (SiddhiStatisticsManager) statisticsManager;
+        if (siddhiStatisticsManager.isHdrLatencyTrackingEnabled()) {
+            SiddhiHdrLatencyMetric siddhiHdrLatencyMetric = new SiddhiHdrLatencyMetric(name, this.metricService,
+                    siddhiStatisticsManager.isStatisticEnabled());
+            this.metricsManagement.addHdrLatencyMetric(siddhiStatisticsManager.getSiddhiAppName(),
+                    siddhiHdrLatencyMetric);
+            return siddhiHdrLatencyMetric;
+        }
         SiddhiLatencyMetric siddhiLatencyMetric = new SiddhiLatencyMetric(name, this.metricService,
                 siddhiStatisticsManager.isStatisticEnabled());
         this.metricsManagement.addComponent(siddhiStatisticsManager.getSiddhiAppName(), siddhiLatencyMetric.getName());
@@ -75,10 +84,18 @@ public class SiddhiMetricsFactory implements StatisticsTrackerFactory {
     
     @Override
     public StatisticsManager createStatisticsManager(String prefix, String siddhiAppName, List<Element> elements) {
+        // latencies are recorded into HdrHistograms if the app is annotated with
+        // @app:statistics(reporter = 'console', latency.tracker = 'hdrhistogram')
+        boolean isHdrLatencyTrackingEnabled = false;
+        for (Element element : elements) {
+            if (LATENCY_TRACKER_KEY.equalsIgnoreCase(element.getKey())) {
+                isHdrLatencyTrackingEnabled = HDR_LATENCY_TRACKER.equalsIgnoreCase(element.getValue());
+            }
+        }
         if (elements.size() > 0) {
-            return new SiddhiStatisticsManager(siddhiAppName, true);
+            return new SiddhiStatisticsManager(siddhiAppName, true, isHdrLatencyTrackingEnabled);
         } else {
-            return new SiddhiStatisticsManager(siddhiAppName, false);
+            return new SiddhiStatisticsManager(siddhiAppName, false, isHdrLatencyTrackingEnabled);
         }
     }
 }
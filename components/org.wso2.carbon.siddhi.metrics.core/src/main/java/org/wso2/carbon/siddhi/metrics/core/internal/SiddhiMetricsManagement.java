@@ -20,6 +20,7 @@ package org.wso2.carbon.siddhi.metrics.core.internal;
 
 import org.wso2.carbon.metrics.core.MetricManagementService;
 import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.siddhi.metrics.core.SiddhiHdrLatencyMetric;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -34,6 +35,7 @@ import static org.wso2.carbon.metrics.core.Level.OFF;
  */
 public class SiddhiMetricsManagement {
     private Map<String, List<String>> componentMap;
+    private Map<String, List<SiddhiHdrLatencyMetric>> hdrLatencyMetricMap;
     private MetricManagementService metricManagementService;
     private MetricService metricService;
     private static SiddhiMetricsManagement instance = new SiddhiMetricsManagement();
@@ -42,6 +44,7 @@ public class SiddhiMetricsManagement {
         metricManagementService = SiddhiMetricsDataHolder.getInstance().getMetricManagementService();
         metricService = SiddhiMetricsDataHolder.getInstance().getMetricService();
         componentMap = new HashMap<>();
+        hdrLatencyMetricMap = new HashMap<>();
     }
 
     public static SiddhiMetricsManagement getInstance() {
@@ -59,6 +62,13 @@ public class SiddhiMetricsManagement {
         }
     }
 
+    public void addHdrLatencyMetric(String siddhiAppName, SiddhiHdrLatencyMetric hdrLatencyMetric) {
+        for (String metricName : hdrLatencyMetric.getMetricNames()) {
+            addComponent(siddhiAppName, metricName);
+        }
+        hdrLatencyMetricMap.computeIfAbsent(siddhiAppName, name -> new ArrayList<>()).add(hdrLatencyMetric);
+    }
+
     public void startMetrics(String siddhiAppName) {
         List<String> registeredComponent = componentMap.get(siddhiAppName);
         if (registeredComponent != null) {
@@ -83,5 +93,11 @@ public class SiddhiMetricsManagement {
             }
             componentMap.remove(siddhiAppName);
         }
+        List<SiddhiHdrLatencyMetric> hdrLatencyMetrics = hdrLatencyMetricMap.remove(siddhiAppName);
+        if (hdrLatencyMetrics != null) {
+            for (SiddhiHdrLatencyMetric hdrLatencyMetric : hdrLatencyMetrics) {
+                hdrLatencyMetric.stop();
+            }
+        }
     }
 }
@@ -28,11 +28,18 @@ public class SiddhiStatisticsManager implements StatisticsManager {
     private String siddhiAppName;
     private SiddhiMetricsManagement metricsManagement;
     private boolean isStatisticEnabled;
+    private boolean isHdrLatencyTrackingEnabled;
     
     public SiddhiStatisticsManager(String siddhiAppName, boolean isStatisticEnabled) {
+        this(siddhiAppName, isStatisticEnabled, false);
+    }
+    
+    public SiddhiStatisticsManager(String siddhiAppName, boolean isStatisticEnabled,
+                                   boolean isHdrLatencyTrackingEnabled) {
         this.siddhiAppName = siddhiAppName;
         this.metricsManagement = SiddhiMetricsManagement.getInstance();
         this.isStatisticEnabled = isStatisticEnabled;
+        this.isHdrLatencyTrackingEnabled = isHdrLatencyTrackingEnabled;
     }
     
     @Override
@@ -57,4 +64,8 @@ public class SiddhiStatisticsManager implements StatisticsManager {
     public boolean isStatisticEnabled() {
         return isStatisticEnabled;
     }
+    
+    public boolean isHdrLatencyTrackingEnabled() {
+        return isHdrLatencyTrackingEnabled;
+    }
 }
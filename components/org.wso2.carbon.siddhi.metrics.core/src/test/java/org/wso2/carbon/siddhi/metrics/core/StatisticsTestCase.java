@@ -264,6 +264,98 @@ public class StatisticsTestCase {
         metricManagementService.stopReporter("Console");
     }
     
+    @Test
+    public void hdrLatencyTrackerTest() throws InterruptedException {
+        log.info("hdr latency tracker test");
+        StatisticsConfiguration statisticsConfiguration = new StatisticsConfiguration(new SiddhiMetricsFactory());
+        SiddhiHdrLatencyMetric latencyTracker = (SiddhiHdrLatencyMetric) statisticsConfiguration
+                .getFactory().createLatencyTracker("test.hdr.latency", new SiddhiStatisticsManager(
+                        "MetricsTest", true, true));
+        AssertJUnit.assertEquals("test.hdr.latency", latencyTracker.getName());
+        for (String name : latencyTracker.getMetricNames()) {
+            AssertJUnit.assertEquals("INFO", metricManagementService.getMetricLevel(name).name());
+        }
+        
+        int threadCount = 4;
+        int eventCount = 10000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < eventCount; j++) {
+                    latencyTracker.markIn();
+                    latencyTracker.markOut();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        latencyTracker.publish();
+        AssertJUnit.assertEquals((long) threadCount * eventCount, latencyTracker.getCount());
+        AssertJUnit.assertTrue(latencyTracker.getP50() > 0);
+        AssertJUnit.assertTrue(latencyTracker.getP50() <= latencyTracker.getP99());
+        AssertJUnit.assertTrue(latencyTracker.getP99() <= latencyTracker.getP999());
+        AssertJUnit.assertTrue(latencyTracker.getP999() <= latencyTracker.getMax());
+        
+        // the latencies of the next interval are published, while the count is cumulative
+        latencyTracker.publish();
+        AssertJUnit.assertEquals(0.0, latencyTracker.getMax());
+        AssertJUnit.assertEquals((long) threadCount * eventCount, latencyTracker.getCount());
+        try {
+            latencyTracker.markIn();
+            latencyTracker.markIn();
+            Assert.fail("MarkIn consecutively called without calling markOut");
+        } catch (IllegalStateException e) {
+            latencyTracker.markOut();
+        }
+        latencyTracker.stop();
+    }
+    
+    @Test
+    public void hdrLatencyTrackerAppTest() throws InterruptedException {
+        log.info("hdr latency tracker app test");
+        SiddhiManager siddhiManager = new SiddhiManager();
+        StatisticsConfiguration statisticsConfiguration = new StatisticsConfiguration(new SiddhiMetricsFactory());
+        siddhiManager.setStatisticsConfiguration(statisticsConfiguration);
+        String siddhiApp = "" +
+                "@app:name('HdrMetricsTest')" +
+                "@app:statistics(reporter = 'console', interval = '1', latency.tracker = 'hdrhistogram')" +
+                "define stream cseEventStream (symbol string, price float, volume int);" +
+                "" +
+                "@info(name = 'query1') " +
+                "from cseEventStream[70 > price] " +
+                "select * " +
+                "insert into outputStream ;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.addCallback("outputStream", new StreamCallback() {
+            
+            @Override
+            public void receive(Event[] events) {
+                eventArrived = true;
+                count += events.length;
+            }
+            
+        });
+        
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("cseEventStream");
+        siddhiAppRuntime.start();
+        inputHandler.send(new Object[] {"WSO2", 55.6f, 100});
+        inputHandler.send(new Object[] {"IBM", 75.6f, 100});
+        inputHandler.send(new Object[] {"WSO2", 57.6f, 100});
+        String latencyTrackerId = "org.wso2.siddhi.SiddhiApps.HdrMetricsTest.Siddhi.Queries.query1.latency";
+        for (String suffix : new String[] {SiddhiHdrLatencyMetric.P50, SiddhiHdrLatencyMetric.P99,
+                SiddhiHdrLatencyMetric.P999, SiddhiHdrLatencyMetric.MAX, SiddhiHdrLatencyMetric.MEAN,
+                SiddhiHdrLatencyMetric.COUNT}) {
+            AssertJUnit.assertEquals("INFO", metricManagementService.getMetricLevel(
+                    MetricService.name(latencyTrackerId, suffix)).name());
+        }
+        AssertJUnit.assertTrue(eventArrived);
+        AssertJUnit.assertEquals(2, count);
+        metricManagementService.stopReporter("Console");
+        siddhiAppRuntime.shutdown();
+    }
+    
     private class mockmoryObject {
         String name;
         
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.siddhi.metrics.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.Metrics;
+import org.wso2.carbon.siddhi.metrics.core.SiddhiHdrLatencyMetric;
+import org.wso2.carbon.siddhi.metrics.core.SiddhiLatencyMetric;
+import org.wso2.carbon.siddhi.metrics.core.TestUtils;
+import org.wso2.carbon.siddhi.metrics.core.internal.SiddhiMetricsDataHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the overhead of marking an event in and out with the latency tracker backed by a metrics timer, and with
+ * the latency tracker recording into HdrHistograms, on a single thread and on threads sharing the tracker. Run
+ * through {@link #main(String[])} with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatencyTrackerBenchmark {
+
+    private Metrics metrics;
+    private SiddhiLatencyMetric timerLatencyTracker;
+    private SiddhiHdrLatencyMetric hdrLatencyTracker;
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("metrics.target", "target");
+        metrics = new Metrics(TestUtils.getConfigProvider("metrics.yaml"));
+        metrics.activate();
+        metrics.getMetricManagementService().setRootLevel(Level.ALL);
+        SiddhiMetricsDataHolder.getInstance().setMetricService(metrics.getMetricService());
+        SiddhiMetricsDataHolder.getInstance().setMetricManagementService(metrics.getMetricManagementService());
+        timerLatencyTracker = new SiddhiLatencyMetric("benchmark.timer.latency", metrics.getMetricService(), true);
+        hdrLatencyTracker = new SiddhiHdrLatencyMetric("benchmark.hdr.latency", metrics.getMetricService(), true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hdrLatencyTracker.stop();
+        metrics.deactivate();
+    }
+
+    @Benchmark
+    public void timer() {
+        timerLatencyTracker.markIn();
+        timerLatencyTracker.markOut();
+    }
+
+    @Benchmark
+    public void hdrHistogram() {
+        hdrLatencyTracker.markIn();
+        hdrLatencyTracker.markOut();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timerContended() {
+        timerLatencyTracker.markIn();
+        timerLatencyTracker.markOut();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void hdrHistogramContended() {
+        hdrLatencyTracker.markIn();
+        hdrLatencyTracker.markOut();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LatencyTrackerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
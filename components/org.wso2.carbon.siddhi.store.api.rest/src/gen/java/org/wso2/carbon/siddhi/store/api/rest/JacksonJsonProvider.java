@@ -35,12 +35,19 @@ public class JacksonJsonProvider extends JacksonJaxbJsonProvider {
 
     public JacksonJsonProvider() {
 
-        ObjectMapper objectMapper = new ObjectMapper()
+        setMapper(createObjectMapper());
+    }
+
+    /**
+     * Create an object mapper which serializes values the same way as the responses of the API.
+     *
+     * @return the object mapper
+     */
+    public static ObjectMapper createObjectMapper() {
+        return new ObjectMapper()
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
                 .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
                 .registerModule(new JodaModule())
                 .setDateFormat(new RFC3339DateFormat());
-
-        setMapper(objectMapper);
     }
 }
\ No newline at end of file
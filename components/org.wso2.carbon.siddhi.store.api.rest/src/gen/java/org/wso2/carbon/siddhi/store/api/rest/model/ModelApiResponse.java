@@ -19,6 +19,7 @@
 
 package org.wso2.carbon.siddhi.store.api.rest.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
@@ -34,6 +35,9 @@ import io.swagger.annotations.ApiModelProperty;
 public class ModelApiResponse {
     @JsonProperty("records")
     private List<Record> records = null;
+    @JsonProperty("nextCursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor = null;
 
     public ModelApiResponse records(List<Record> records) {
         this.records = records;
@@ -62,6 +66,20 @@ public class ModelApiResponse {
         this.records = records;
     }
 
+    /**
+     * Get the cursor of the next page, which is null if there are no more records
+     *
+     * @return nextCursor
+     */
+    @ApiModelProperty(value = "")
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -72,12 +90,13 @@ public class ModelApiResponse {
             return false;
         }
         ModelApiResponse _apiResponse = (ModelApiResponse) o;
-        return Objects.equals(this.records, _apiResponse.records);
+        return Objects.equals(this.records, _apiResponse.records) &&
+                Objects.equals(this.nextCursor, _apiResponse.nextCursor);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(records);
+        return Objects.hash(records, nextCursor);
     }
 
     @Override
@@ -86,6 +105,7 @@ public class ModelApiResponse {
         sb.append("class ModelApiResponse {\n");
 
         sb.append("    records: ").append(toIndentedString(records)).append("\n");
+        sb.append("    nextCursor: ").append(toIndentedString(nextCursor)).append("\n");
         sb.append("}");
         return sb.toString();
     }
@@ -21,6 +21,8 @@ package org.wso2.carbon.siddhi.store.api.rest.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Objects;
+
 import io.swagger.annotations.ApiModelProperty;
 
 /**
@@ -32,6 +34,10 @@ public class Query {
     private String query = null;
     @JsonProperty("appName")
     private String appName = null;
+    @JsonProperty("pageSize")
+    private Integer pageSize = null;
+    @JsonProperty("cursor")
+    private String cursor = null;
 
     public Query query(String appName, String query) {
         this.query = query;
@@ -60,6 +66,25 @@ public class Query {
         this.query = query;
     }
 
+    @ApiModelProperty(value = "Maximum number of records to be returned, all records are returned if not given")
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @ApiModelProperty(value = "Cursor returned as the 'nextCursor' of the previous page of the query, which reads "
+            + "the result kept for the first page and expires once not read for 5 minutes")
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -77,6 +102,12 @@ public class Query {
         if (!appName.equals(query1.appName)) {
             return false;
         }
+        if (!Objects.equals(pageSize, query1.pageSize)) {
+            return false;
+        }
+        if (!Objects.equals(cursor, query1.cursor)) {
+            return false;
+        }
 
         return true;
     }
@@ -85,6 +116,8 @@ public class Query {
     public int hashCode() {
         int result = query.hashCode();
         result = 31 * result + appName.hashCode();
+        result = 31 * result + Objects.hashCode(pageSize);
+        result = 31 * result + Objects.hashCode(cursor);
         return result;
     }
 
@@ -95,6 +128,8 @@ public class Query {
 
         sb.append("    appName: ").append(toIndentedString(appName)).append("\n");
         sb.append("    query: ").append(toIndentedString(query)).append("\n");
+        sb.append("    pageSize: ").append(toIndentedString(pageSize)).append("\n");
+        sb.append("    cursor: ").append(toIndentedString(cursor)).append("\n");
         sb.append("}");
         return sb.toString();
     }
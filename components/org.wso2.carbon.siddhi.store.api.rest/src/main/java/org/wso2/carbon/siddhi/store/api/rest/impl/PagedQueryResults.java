@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.siddhi.store.api.rest.impl;
+
+import org.wso2.siddhi.core.event.Event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * PagedQueryResults keeps the results of the store queries read in pages, so that the later pages of a query are
+ * sliced from the result of its first page instead of executing the query again.
+ * <p>
+ * A result expires once it is not read for the time to live, and the least recently read results are evicted once
+ * the results hold more than the maximum number of events. The latest result is always kept, so that a single
+ * result larger than the bound can still be read in pages.
+ */
+class PagedQueryResults {
+    static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long DEFAULT_MAX_RETAINED_EVENTS = 1000000;
+    private final long timeToLiveMillis;
+    private final long maxRetainedEvents;
+    private final LongSupplier clock;
+    // ordered from the least recently read result
+    private final Map<String, PagedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedEventCount;
+
+    PagedQueryResults() {
+        this(DEFAULT_TIME_TO_LIVE_MILLIS, DEFAULT_MAX_RETAINED_EVENTS, System::currentTimeMillis);
+    }
+
+    PagedQueryResults(long timeToLiveMillis, long maxRetainedEvents, LongSupplier clock) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxRetainedEvents = maxRetainedEvents;
+        this.clock = clock;
+    }
+
+    /**
+     * add() keeps the result of a query, to be read by the pages after the first
+     *
+     * @param appName name of the Siddhi app
+     * @param query   store query text
+     * @param events  events returned by the query
+     * @return id of the result
+     */
+    synchronized String add(String appName, String query, Event[] events) {
+        removeExpiredResults();
+        String resultId = UUID.randomUUID().toString();
+        results.put(resultId, new PagedResult(appName, StoreQueryCache.normalise(query), events,
+                clock.getAsLong()));
+        retainedEventCount += events.length;
+        Iterator<PagedResult> iterator = results.values().iterator();
+        while (retainedEventCount > maxRetainedEvents && results.size() > 1) {
+            retainedEventCount -= iterator.next().events.length;
+            iterator.remove();
+        }
+        return resultId;
+    }
+
+    /**
+     * get() returns the result of a query kept by add()
+     *
+     * @param resultId id of the result
+     * @param appName  name of the Siddhi app
+     * @param query    store query text
+     * @return the events of the result, or null if the result expired, was evicted or belongs to another query
+     */
+    synchronized Event[] get(String resultId, String appName, String query) {
+        removeExpiredResults();
+        PagedResult result = results.get(resultId);
+        if (result == null || !result.appName.equals(appName) ||
+                !result.normalisedQuery.equals(StoreQueryCache.normalise(query))) {
+            return null;
+        }
+        result.lastReadMillis = clock.getAsLong();
+        return result.events;
+    }
+
+    /**
+     * getResultCount() returns the number of results kept
+     *
+     * @return number of results
+     */
+    synchronized int getResultCount() {
+        removeExpiredResults();
+        return results.size();
+    }
+
+    private void removeExpiredResults() {
+        long expiryMillis = clock.getAsLong() - timeToLiveMillis;
+        Iterator<PagedResult> iterator = results.values().iterator();
+        while (iterator.hasNext()) {
+            PagedResult result = iterator.next();
+            if (result.lastReadMillis > expiryMillis) {
+                // the results after this one were read later
+                break;
+            }
+            retainedEventCount -= result.events.length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Result of a query, with the app and the query it belongs to.
+     */
+    private static class PagedResult {
+        private final String appName;
+        private final String normalisedQuery;
+        private final Event[] events;
+        private long lastReadMillis;
+
+        private PagedResult(String appName, String normalisedQuery, Event[] events, long lastReadMillis) {
+            this.appName = appName;
+            this.normalisedQuery = normalisedQuery;
+            this.events = events;
+            this.lastReadMillis = lastReadMillis;
+        }
+    }
+}
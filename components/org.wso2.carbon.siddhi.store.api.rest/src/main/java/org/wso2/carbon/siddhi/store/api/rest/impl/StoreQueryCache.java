@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.siddhi.store.api.rest.impl;
+
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.query.api.execution.query.StoreQuery;
+import org.wso2.siddhi.query.compiler.SiddhiCompiler;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * StoreQueryCache keeps the store queries compiled for each Siddhi app, so that a query submitted repeatedly is
+ * parsed only once.
+ * <p>
+ * Queries are keyed by their normalised text, and the least recently used query of an app is evicted once the app
+ * has more than the maximum number of queries. The Siddhi app runtime keeps the execution plan of each compiled
+ * query, hence the queries of an app are dropped when the app is redeployed with a new runtime. The runtime is only
+ * weakly referenced, so that the cache does not keep an undeployed app alive, and the queries of a collected runtime
+ * are dropped on the next lookup.
+ */
+public class StoreQueryCache {
+    // the runtime of a Siddhi app keeps the execution plans of the last 50 store queries it executed
+    static final int DEFAULT_MAX_QUERIES_PER_APP = 50;
+    private final int maxQueriesPerApp;
+    private final ConcurrentMap<String, AppQueries> appQueriesMap = new ConcurrentHashMap<>();
+    private final ReferenceQueue<SiddhiAppRuntime> collectedRuntimes = new ReferenceQueue<>();
+
+    public StoreQueryCache() {
+        this(DEFAULT_MAX_QUERIES_PER_APP);
+    }
+
+    public StoreQueryCache(int maxQueriesPerApp) {
+        this.maxQueriesPerApp = maxQueriesPerApp;
+    }
+
+    /**
+     * getStoreQuery() returns the compiled store query of an app, compiling the query if it is not cached
+     *
+     * @param appName          name of the Siddhi app
+     * @param siddhiAppRuntime active runtime of the Siddhi app
+     * @param query            store query text
+     * @return the compiled store query
+     * @throws org.wso2.siddhi.query.compiler.exception.SiddhiParserException if the query is invalid
+     */
+    public StoreQuery getStoreQuery(String appName, SiddhiAppRuntime siddhiAppRuntime, String query) {
+        removeCollectedRuntimes();
+        AppQueries appQueries = appQueriesMap.compute(appName, (name, existingQueries) ->
+                existingQueries != null && existingQueries.runtimeReference.get() == siddhiAppRuntime ?
+                        existingQueries : new AppQueries(new RuntimeReference(name, siddhiAppRuntime,
+                        collectedRuntimes), maxQueriesPerApp));
+        String normalisedQuery = normalise(query);
+        StoreQuery storeQuery;
+        synchronized (appQueries) {
+            storeQuery = appQueries.get(normalisedQuery);
+        }
+        if (storeQuery == null) {
+            // compile outside the lock, a query compiled concurrently by another request is replaced
+            storeQuery = SiddhiCompiler.parseStoreQuery(query);
+            synchronized (appQueries) {
+                appQueries.put(normalisedQuery, storeQuery);
+            }
+        }
+        return storeQuery;
+    }
+
+    /**
+     * removeStoreQuery() removes a query of an app, which is done if the query fails to execute
+     *
+     * @param appName name of the Siddhi app
+     * @param query   store query text
+     */
+    public void removeStoreQuery(String appName, String query) {
+        AppQueries appQueries = appQueriesMap.get(appName);
+        if (appQueries != null) {
+            synchronized (appQueries) {
+                appQueries.remove(normalise(query));
+            }
+        }
+    }
+
+    /**
+     * invalidate() removes all the queries of an app, which is done when the app is no longer active
+     *
+     * @param appName name of the Siddhi app
+     */
+    public void invalidate(String appName) {
+        appQueriesMap.remove(appName);
+    }
+
+    /**
+     * getQueryCount() returns the number of cached queries of an app
+     *
+     * @param appName name of the Siddhi app
+     * @return number of queries
+     */
+    public int getQueryCount(String appName) {
+        removeCollectedRuntimes();
+        AppQueries appQueries = appQueriesMap.get(appName);
+        if (appQueries == null) {
+            return 0;
+        }
+        synchronized (appQueries) {
+            return appQueries.size();
+        }
+    }
+
+    /**
+     * removeCollectedRuntimes() removes the queries of the apps whose runtimes were garbage collected
+     */
+    private void removeCollectedRuntimes() {
+        RuntimeReference runtimeReference;
+        while ((runtimeReference = (RuntimeReference) collectedRuntimes.poll()) != null) {
+            RuntimeReference collectedReference = runtimeReference;
+            // the app may have been queried with a new runtime since
+            appQueriesMap.computeIfPresent(collectedReference.appName, (name, appQueries) ->
+                    appQueries.runtimeReference == collectedReference ? null : appQueries);
+        }
+    }
+
+    /**
+     * normalise() collapses the white spaces and removes the comments of a query, leaving the string literals
+     * unchanged, so that queries differing only in formatting share a cache entry
+     *
+     * @param query store query text
+     * @return normalised query text
+     */
+    static String normalise(String query) {
+        StringBuilder normalisedQuery = new StringBuilder(query.length());
+        boolean pendingSpace = false;
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+            } else if (c == '-' && query.startsWith("--", i)) {
+                int end = i + 2;
+                while (end < length && query.charAt(end) != '\n' && query.charAt(end) != '\r') {
+                    end++;
+                }
+                pendingSpace = true;
+                i = end;
+            } else if (c == '/' && query.startsWith("/*", i)) {
+                int end = query.indexOf("*/", i + 2);
+                pendingSpace = true;
+                i = end == -1 ? length : end + 2;
+            } else {
+                int end;
+                if (c == '"' && query.startsWith("\"\"\"", i)) {
+                    end = query.indexOf("\"\"\"", i + 3);
+                    end = end == -1 ? length : end + 3;
+                } else if (c == '"' || c == '\'') {
+                    end = query.indexOf(c, i + 1);
+                    end = end == -1 ? length : end + 1;
+                } else {
+                    end = i + 1;
+                }
+                if (pendingSpace && normalisedQuery.length() > 0) {
+                    normalisedQuery.append(' ');
+                }
+                pendingSpace = false;
+                normalisedQuery.append(query, i, end);
+                i = end;
+            }
+        }
+        return normalisedQuery.toString();
+    }
+
+    /**
+     * Weak reference to the runtime of a Siddhi app, enqueued with the app name once the runtime is collected.
+     */
+    private static class RuntimeReference extends WeakReference<SiddhiAppRuntime> {
+        private final String appName;
+
+        private RuntimeReference(String appName, SiddhiAppRuntime siddhiAppRuntime,
+                                 ReferenceQueue<SiddhiAppRuntime> referenceQueue) {
+            super(siddhiAppRuntime, referenceQueue);
+            this.appName = appName;
+        }
+    }
+
+    /**
+     * Compiled queries of a Siddhi app runtime, in the order they were last used.
+     */
+    private static class AppQueries extends LinkedHashMap<String, StoreQuery> {
+        private static final long serialVersionUID = 1L;
+        private final transient RuntimeReference runtimeReference;
+        private final int maxQueries;
+
+        private AppQueries(RuntimeReference runtimeReference, int maxQueries) {
+            super(16, 0.75f, true);
+            this.runtimeReference = runtimeReference;
+            this.maxQueries = maxQueries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoreQuery> eldest) {
+            return size() > maxQueries;
+        }
+    }
+}
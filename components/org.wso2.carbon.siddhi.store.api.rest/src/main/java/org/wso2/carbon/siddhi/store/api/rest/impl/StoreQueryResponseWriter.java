@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.siddhi.store.api.rest.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.wso2.carbon.siddhi.store.api.rest.JacksonJsonProvider;
+import org.wso2.siddhi.core.event.Event;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * StoreQueryResponseWriter writes a page of the events returned by a store query as the JSON of a
+ * {@link org.wso2.carbon.siddhi.store.api.rest.model.ModelApiResponse}.
+ * <p>
+ * Each event is written straight to the response stream instead of being converted to a record of the response
+ * model, so the response is sent in chunks as it is generated. Unless the result is kept for its later pages, each
+ * event is also released from the result once written.
+ */
+public class StoreQueryResponseWriter implements StreamingOutput {
+    private static final JsonFactory JSON_FACTORY = JacksonJsonProvider.createObjectMapper().getFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private final Event[] events;
+    private final int fromIndex;
+    private final int toIndex;
+    private final String nextCursor;
+    private final boolean isRetained;
+
+    /**
+     * @param events     events returned by the store query
+     * @param fromIndex  index of the first event of the page
+     * @param toIndex    index after the last event of the page
+     * @param nextCursor cursor of the next page, or null if this is the last page
+     * @param isRetained whether the events are kept to be read by other pages, in which case they are not released
+     */
+    public StoreQueryResponseWriter(Event[] events, int fromIndex, int toIndex, String nextCursor,
+                                    boolean isRetained) {
+        this.events = events;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        this.nextCursor = nextCursor;
+        this.isRetained = isRetained;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("records");
+            for (int i = fromIndex; i < toIndex; i++) {
+                generator.writeStartArray();
+                for (Object value : events[i].getData()) {
+                    generator.writeObject(value);
+                }
+                generator.writeEndArray();
+                if (!isRetained) {
+                    events[i] = null;
+                }
+            }
+            generator.writeEndArray();
+            if (nextCursor != null) {
+                generator.writeStringField("nextCursor", nextCursor);
+            }
+            generator.writeEndObject();
+        }
+    }
+}
@@ -25,24 +25,35 @@ import org.wso2.carbon.siddhi.store.api.rest.NotFoundException;
 import org.wso2.carbon.siddhi.store.api.rest.ApiResponseMessage;
 import org.wso2.carbon.siddhi.store.api.rest.SiddhiStoreDataHolder;
 import org.wso2.carbon.siddhi.store.api.rest.StoresApiService;
-import org.wso2.carbon.siddhi.store.api.rest.model.ModelApiResponse;
 import org.wso2.carbon.siddhi.store.api.rest.model.Query;
-import org.wso2.carbon.siddhi.store.api.rest.model.Record;
 import org.wso2.carbon.stream.processor.common.SiddhiAppRuntimeService;
 import org.wso2.siddhi.core.SiddhiAppRuntime;
 import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.execution.query.StoreQuery;
 
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Map;
 
 @javax.annotation.Generated(value = "io.swagger.codegen.languages.JavaMSF4JServerCodegen",
         date = "2017-11-01T11:26:25.925Z")
 public class StoresApiServiceImpl extends StoresApiService {
 
+    private static final String CURSOR_SEPARATOR = ":";
     private static final Logger log = LoggerFactory.getLogger(StoresApiServiceImpl.class);
+    private final StoreQueryCache storeQueryCache = new StoreQueryCache();
+    private final PagedQueryResults pagedQueryResults;
+
+    public StoresApiServiceImpl() {
+        this(new PagedQueryResults());
+    }
+
+    StoresApiServiceImpl(PagedQueryResults pagedQueryResults) {
+        this.pagedQueryResults = pagedQueryResults;
+    }
+
     @Override
     public Response query(Query body) throws NotFoundException {
         if (body.getQuery() == null || body.getQuery().isEmpty()) {
@@ -53,22 +64,39 @@ public class StoresApiServiceImpl extends StoresApiService {
             return Response.status(Response.Status.BAD_REQUEST).entity(new ApiResponseMessage(ApiResponseMessage
                     .ERROR, "Siddhi app name cannot be empty or null")).build();
         }
+        if (body.getPageSize() != null && body.getPageSize() <= 0) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(new ApiResponseMessage(ApiResponseMessage
+                    .ERROR, "Page size should be a positive integer")).build();
+        }
+        if (body.getCursor() != null) {
+            return queryNextPage(body);
+        }
 
         SiddhiAppRuntimeService siddhiAppRuntimeService =
                 SiddhiStoreDataHolder.getInstance().getSiddhiAppRuntimeService();
         Map<String, SiddhiAppRuntime> siddhiAppRuntimes = siddhiAppRuntimeService.getActiveSiddhiAppRuntimes();
         SiddhiAppRuntime siddhiAppRuntime = siddhiAppRuntimes.get(body.getAppName());
         if (siddhiAppRuntime == null) {
+            storeQueryCache.invalidate(body.getAppName());
             return Response.status(Response.Status.NOT_FOUND).entity(new ApiResponseMessage(ApiResponseMessage
                     .ERROR, "Cannot find an active SiddhiApp with name: " + body.getAppName())).build();
         } else {
             try {
-                Event[] events = siddhiAppRuntime.query(body.getQuery());
-                List<Record> records = getRecords(events);
-                ModelApiResponse response = new ModelApiResponse();
-                response.setRecords(records);
-                return Response.ok().entity(response).build();
+                StoreQuery storeQuery = storeQueryCache.getStoreQuery(body.getAppName(), siddhiAppRuntime,
+                        body.getQuery());
+                Event[] events = siddhiAppRuntime.query(storeQuery);
+                int eventCount = events == null ? 0 : events.length;
+                if (body.getPageSize() == null || body.getPageSize() >= eventCount) {
+                    return Response.ok().entity(new StoreQueryResponseWriter(events, 0, eventCount, null, false))
+                            .type(MediaType.APPLICATION_JSON).build();
+                }
+                // the later pages are read from the result of the first page
+                String resultId = pagedQueryResults.add(body.getAppName(), body.getQuery(), events);
+                return Response.ok().entity(new StoreQueryResponseWriter(events, 0, body.getPageSize(),
+                        encodeCursor(resultId, body.getPageSize()), true)).type(MediaType.APPLICATION_JSON).build();
             } catch (Exception e) {
+                // a query which fails to execute is not kept compiled
+                storeQueryCache.removeStoreQuery(body.getAppName(), body.getQuery());
                 log.error("Error while querying for siddhiApp: " + removeCRLFCharacters(body.getAppName()) +
                         ", with query: " + removeCRLFCharacters(body.getQuery()) + " Error: " +
                         removeCRLFCharacters(e.getMessage()), e);
@@ -79,16 +107,57 @@ public class StoresApiServiceImpl extends StoresApiService {
         }
     }
 
-    private List<Record> getRecords(Event[] events) {
-        List<Record> records = new ArrayList<>();
-        if (events != null) {
-            for (Event event : events) {
-                Record record = new Record();
-                record.addAll(Arrays.asList(event.getData()));
-                records.add(record);
-            }
+    /**
+     * Read a page after the first from the result kept for the query, without executing the query again.
+     */
+    private Response queryNextPage(Query body) {
+        String decodedCursor = decodeCursor(body.getCursor());
+        int separatorIndex = decodedCursor == null ? -1 : decodedCursor.lastIndexOf(CURSOR_SEPARATOR);
+        int offset = separatorIndex == -1 ? -1 : parseOffset(decodedCursor.substring(separatorIndex + 1));
+        Event[] events = offset < 0 ? null : pagedQueryResults.get(decodedCursor.substring(0, separatorIndex),
+                body.getAppName(), body.getQuery());
+        if (events == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(new ApiResponseMessage(ApiResponseMessage
+                    .ERROR, "Invalid or expired cursor for the query: " + body.getCursor())).build();
+        }
+        int fromIndex = Math.min(offset, events.length);
+        int toIndex = body.getPageSize() == null ? events.length :
+                (int) Math.min((long) fromIndex + body.getPageSize(), events.length);
+        String nextCursor = toIndex < events.length ?
+                encodeCursor(decodedCursor.substring(0, separatorIndex), toIndex) : null;
+        return Response.ok().entity(new StoreQueryResponseWriter(events, fromIndex, toIndex, nextCursor, true))
+                .type(MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Create the cursor of a page, which holds the id of the kept query result and the offset of the page.
+     */
+    private static String encodeCursor(String resultId, int offset) {
+        String cursor = resultId + CURSOR_SEPARATOR + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor, returning null if the cursor is not valid base64.
+     */
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the offset of a cursor, returning -1 if the offset is invalid.
+     */
+    private static int parseOffset(String offset) {
+        try {
+            int parsedOffset = Integer.parseInt(offset);
+            return parsedOffset < 0 ? -1 : parsedOffset;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        return records;
     }
 
     private static String removeCRLFCharacters(String str) {
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.siddhi.store.api.rest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.siddhi.store.api.rest.impl.StoreQueryCache;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.core.stream.input.InputHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares submitting the same store query text to the Siddhi app runtime, which parses the query on each call, with
+ * executing the query compiled by the {@link StoreQueryCache}. Run through {@link #main(String[])} with the test
+ * classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreQueryBenchmark {
+
+    private static final String APP_NAME = "StockApp";
+    private static final String QUERY = "from StockTable on volume > 10 select symbol, price, volume " +
+            "order by price desc limit 10";
+
+    @Param({"10", "10000"})
+    private int recordCount;
+
+    private SiddhiManager siddhiManager;
+    private SiddhiAppRuntime siddhiAppRuntime;
+    private StoreQueryCache storeQueryCache;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        siddhiManager = new SiddhiManager();
+        siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime("@App:name('" + APP_NAME + "') " +
+                "define stream StockStream (symbol string, price double, volume long); " +
+                "define table StockTable (symbol string, price double, volume long); " +
+                "from StockStream insert into StockTable;");
+        siddhiAppRuntime.start();
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("StockStream");
+        for (int i = 0; i < recordCount; i++) {
+            inputHandler.send(new Object[]{"symbol" + i, i * 0.5, (long) i});
+        }
+        storeQueryCache = new StoreQueryCache();
+    }
+
+    @TearDown
+    public void tearDown() {
+        siddhiManager.shutdown();
+    }
+
+    @Benchmark
+    public Event[] queryText() {
+        return siddhiAppRuntime.query(QUERY);
+    }
+
+    @Benchmark
+    public Event[] cachedQuery() {
+        return siddhiAppRuntime.query(storeQueryCache.getStoreQuery(APP_NAME, siddhiAppRuntime, QUERY));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(StoreQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.siddhi.store.api.rest.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.siddhi.store.api.rest.SiddhiStoreDataHolder;
+import org.wso2.carbon.siddhi.store.api.rest.model.Query;
+import org.wso2.carbon.stream.processor.common.SiddhiAppRuntimeService;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.core.stream.input.InputHandler;
+import org.wso2.siddhi.query.api.execution.query.StoreQuery;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StoresApiServiceImplTest queries a large in-memory table, reading the result at once and in pages.
+ */
+public class StoresApiServiceImplTest {
+    private static final String APP_NAME = "StockApp";
+    private static final String SIDDHI_APP = "@App:name('" + APP_NAME + "') " +
+            "define stream StockStream (symbol string, price double, volume long); " +
+            "define table StockTable (symbol string, price double, volume long); " +
+            "from StockStream insert into StockTable;";
+    private static final String QUERY = "from StockTable select symbol, price, volume";
+    private static final int RECORD_COUNT = 200000;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, SiddhiAppRuntime> siddhiAppRuntimes = new ConcurrentHashMap<>();
+    private SiddhiManager siddhiManager;
+    private StoresApiServiceImpl storesApiService;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        siddhiManager = new SiddhiManager();
+        SiddhiAppRuntime siddhiAppRuntime = deploySiddhiApp();
+        InputHandler inputHandler = siddhiAppRuntime.getInputHandler("StockStream");
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            inputHandler.send(new Object[]{"symbol" + i, i * 0.5, (long) i});
+        }
+        SiddhiStoreDataHolder.getInstance().setSiddhiAppRuntimeService(new SiddhiAppRuntimeService() {
+            @Override
+            public Map<String, SiddhiAppRuntime> getActiveSiddhiAppRuntimes() {
+                return siddhiAppRuntimes;
+            }
+
+            @Override
+            public void enableSiddhiAppStatistics(boolean statsEnabled) {
+            }
+        });
+        storesApiService = new StoresApiServiceImpl();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        siddhiManager.shutdown();
+        SiddhiStoreDataHolder.getInstance().setSiddhiAppRuntimeService(null);
+    }
+
+    @Test
+    public void testQueryAllRecords() throws Exception {
+        JsonNode response = query(createQuery(QUERY, null, null), Response.Status.OK);
+        Assert.assertFalse(response.has("nextCursor"));
+        JsonNode records = response.get("records");
+        Assert.assertEquals(records.size(), RECORD_COUNT);
+        Event[] events = siddhiAppRuntimes.get(APP_NAME).query(QUERY);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            assertRecord(records.get(i), events[i]);
+        }
+    }
+
+    @Test
+    public void testQueryRecordsInPages() throws Exception {
+        int pageSize = 30000;
+        List<JsonNode> records = new ArrayList<>();
+        String cursor = null;
+        int pageCount = 0;
+        do {
+            // the query is formatted differently for each page
+            String query = pageCount % 2 == 0 ? QUERY : "from StockTable\n    select symbol,  price, volume ";
+            JsonNode response = query(createQuery(query, pageSize, cursor), Response.Status.OK);
+            JsonNode page = response.get("records");
+            Assert.assertTrue(page.size() <= pageSize);
+            page.forEach(records::add);
+            cursor = response.has("nextCursor") ? response.get("nextCursor").asText() : null;
+            pageCount++;
+        } while (cursor != null);
+        Assert.assertEquals(pageCount, (RECORD_COUNT + pageSize - 1) / pageSize);
+        Assert.assertEquals(records.size(), RECORD_COUNT);
+        Event[] events = siddhiAppRuntimes.get(APP_NAME).query(QUERY);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            assertRecord(records.get(i), events[i]);
+        }
+    }
+
+    @Test
+    public void testInvalidPageRequests() throws Exception {
+        JsonNode response = query(createQuery(QUERY, 10, null), Response.Status.OK);
+        String cursor = response.get("nextCursor").asText();
+        query(createQuery("from StockTable select symbol", 10, cursor), Response.Status.BAD_REQUEST);
+        query(createQuery(QUERY, 10, "invalid cursor"), Response.Status.BAD_REQUEST);
+        query(createQuery(QUERY, 0, null), Response.Status.BAD_REQUEST);
+        response = query(createQuery(QUERY, 10, cursor), Response.Status.OK);
+        Assert.assertEquals(response.get("records").get(0).get(0).asText(), "symbol10");
+    }
+
+    @Test
+    public void testPagesAreReadFromTheResultOfTheFirstPage() throws Exception {
+        String appName = "SnapshotStockApp";
+        InputHandler inputHandler = deploySiddhiApp(appName).getInputHandler("StockStream");
+        for (int i = 0; i < 3; i++) {
+            inputHandler.send(new Object[]{"symbol" + i, i * 0.5, (long) i});
+        }
+        JsonNode response = query(createQuery(appName, QUERY, 2, null), Response.Status.OK);
+        Assert.assertEquals(response.get("records").size(), 2);
+        String cursor = response.get("nextCursor").asText();
+
+        // records added after the first page are not in the later pages
+        inputHandler.send(new Object[]{"symbol3", 1.5, 3L});
+        response = query(createQuery(appName, QUERY, 2, cursor), Response.Status.OK);
+        Assert.assertFalse(response.has("nextCursor"));
+        Assert.assertEquals(response.get("records").size(), 1);
+        Assert.assertEquals(response.get("records").get(0).get(0).asText(), "symbol2");
+        // a new query reads the records added
+        Assert.assertEquals(query(createQuery(appName, QUERY, 10, null), Response.Status.OK).get("records").size(),
+                4);
+        siddhiAppRuntimes.remove(appName).shutdown();
+    }
+
+    @Test
+    public void testExpiredAndEvictedCursorsAreRejected() throws Exception {
+        String appName = "PagedStockApp";
+        InputHandler inputHandler = deploySiddhiApp(appName).getInputHandler("StockStream");
+        for (int i = 0; i < 10; i++) {
+            inputHandler.send(new Object[]{"symbol" + i, i * 0.5, (long) i});
+        }
+        long[] currentMillis = {0};
+        PagedQueryResults pagedQueryResults = new PagedQueryResults(1000, 15, () -> currentMillis[0]);
+        StoresApiServiceImpl pagingApiService = new StoresApiServiceImpl(pagedQueryResults);
+        String firstCursor = query(pagingApiService, createQuery(appName, QUERY, 2, null), Response.Status.OK)
+                .get("nextCursor").asText();
+        String query = "from StockTable select symbol";
+        String secondCursor = query(pagingApiService, createQuery(appName, query, 2, null), Response.Status.OK)
+                .get("nextCursor").asText();
+
+        // the least recently read result is evicted once the results hold more than 15 events
+        Assert.assertEquals(pagedQueryResults.getResultCount(), 1);
+        query(pagingApiService, createQuery(appName, QUERY, 2, firstCursor), Response.Status.BAD_REQUEST);
+        currentMillis[0] += 900;
+        JsonNode records = query(pagingApiService, createQuery(appName, query, 2, secondCursor),
+                Response.Status.OK).get("records");
+        Assert.assertEquals(records.get(0).get(0).asText(), "symbol2");
+
+        // the result expires once it is not read for a second
+        currentMillis[0] += 900;
+        Assert.assertEquals(pagedQueryResults.getResultCount(), 1);
+        currentMillis[0] += 100;
+        query(pagingApiService, createQuery(appName, query, 2, secondCursor), Response.Status.BAD_REQUEST);
+        Assert.assertEquals(pagedQueryResults.getResultCount(), 0);
+        siddhiAppRuntimes.remove(appName).shutdown();
+    }
+
+    @Test
+    public void testQueryCache() throws Exception {
+        StoreQueryCache storeQueryCache = new StoreQueryCache(2);
+        SiddhiAppRuntime siddhiAppRuntime = siddhiAppRuntimes.get(APP_NAME);
+        StoreQuery storeQuery = storeQueryCache.getStoreQuery(APP_NAME, siddhiAppRuntime, QUERY);
+        Assert.assertSame(storeQueryCache.getStoreQuery(APP_NAME, siddhiAppRuntime,
+                " from StockTable -- all stocks\n\tselect  symbol, /* price */ price, volume"), storeQuery);
+        Assert.assertEquals(storeQueryCache.getQueryCount(APP_NAME), 1);
+
+        // white spaces of string literals are significant
+        String query = "from StockTable on symbol == 'symbol  1' select symbol";
+        StoreQuery literalQuery = storeQueryCache.getStoreQuery(APP_NAME, siddhiAppRuntime, query);
+        Assert.assertNotSame(storeQueryCache.getStoreQuery(APP_NAME, siddhiAppRuntime,
+                query.replace("  ", " ")), literalQuery);
+        // the least recently used query is evicted
+        Assert.assertEquals(storeQueryCache.getQueryCount(APP_NAME), 2);
+        Assert.assertNotSame(storeQueryCache.getStoreQuery(APP_NAME, siddhiAppRuntime, QUERY), storeQuery);
+
+        storeQueryCache.removeStoreQuery(APP_NAME, QUERY);
+        Assert.assertEquals(storeQueryCache.getQueryCount(APP_NAME), 1);
+        storeQueryCache.invalidate(APP_NAME);
+        Assert.assertEquals(storeQueryCache.getQueryCount(APP_NAME), 0);
+    }
+
+    @Test
+    public void testQueryCacheDoesNotKeepUndeployedRuntime() throws Exception {
+        String appName = "UndeployedStockApp";
+        StoreQueryCache storeQueryCache = new StoreQueryCache();
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(SIDDHI_APP.replace(APP_NAME,
+                appName));
+        storeQueryCache.getStoreQuery(appName, siddhiAppRuntime, QUERY);
+        Assert.assertEquals(storeQueryCache.getQueryCount(appName), 1);
+        WeakReference<SiddhiAppRuntime> runtimeReference = new WeakReference<>(siddhiAppRuntime);
+        siddhiAppRuntime.shutdown();
+        siddhiAppRuntime = null;
+        for (int i = 0; i < 100 && storeQueryCache.getQueryCount(appName) > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(runtimeReference.get());
+        Assert.assertEquals(storeQueryCache.getQueryCount(appName), 0);
+    }
+
+    @Test(dependsOnMethods = {"testQueryAllRecords", "testQueryRecordsInPages", "testInvalidPageRequests",
+            "testQueryCache"})
+    public void testQueryRedeployedApp() throws Exception {
+        Assert.assertEquals(query(createQuery(QUERY, 1, null), Response.Status.OK).get("records").size(), 1);
+        siddhiAppRuntimes.remove(APP_NAME).shutdown();
+        query(createQuery(QUERY, 1, null), Response.Status.NOT_FOUND);
+
+        SiddhiAppRuntime siddhiAppRuntime = deploySiddhiApp();
+        siddhiAppRuntime.getInputHandler("StockStream").send(new Object[]{"WSO2", 55.5, 100L});
+        JsonNode records = query(createQuery(QUERY, 10, null), Response.Status.OK).get("records");
+        Assert.assertEquals(records.size(), 1);
+        Assert.assertEquals(records.get(0).get(0).asText(), "WSO2");
+    }
+
+    private SiddhiAppRuntime deploySiddhiApp() {
+        return deploySiddhiApp(APP_NAME);
+    }
+
+    private SiddhiAppRuntime deploySiddhiApp(String appName) {
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(SIDDHI_APP.replace(APP_NAME,
+                appName));
+        siddhiAppRuntime.start();
+        siddhiAppRuntimes.put(appName, siddhiAppRuntime);
+        return siddhiAppRuntime;
+    }
+
+    private Query createQuery(String query, Integer pageSize, String cursor) {
+        return createQuery(APP_NAME, query, pageSize, cursor);
+    }
+
+    private Query createQuery(String appName, String query, Integer pageSize, String cursor) {
+        Query body = new Query().query(appName, query);
+        body.setPageSize(pageSize);
+        body.setCursor(cursor);
+        return body;
+    }
+
+    private JsonNode query(Query body, Response.Status expectedStatus) throws Exception {
+        return query(storesApiService, body, expectedStatus);
+    }
+
+    private JsonNode query(StoresApiServiceImpl apiService, Query body, Response.Status expectedStatus)
+            throws Exception {
+        Response response = apiService.query(body);
+        Assert.assertEquals(response.getStatus(), expectedStatus.getStatusCode());
+        if (expectedStatus != Response.Status.OK) {
+            return null;
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(outputStream);
+        return objectMapper.readTree(outputStream.toByteArray());
+    }
+
+    private void assertRecord(JsonNode record, Event event) {
+        Assert.assertEquals(record.size(), 3);
+        Assert.assertEquals(record.get(0).asText(), event.getData(0));
+        Assert.assertEquals(record.get(1).asDouble(), (Double) event.getData(1), 0);
+        Assert.assertEquals(record.get(2).asLong(), (long) (Long) event.getData(2));
+    }
+}
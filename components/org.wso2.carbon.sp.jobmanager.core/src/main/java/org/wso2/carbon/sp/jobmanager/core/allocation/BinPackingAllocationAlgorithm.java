@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.sp.jobmanager.core.allocation;
+
+import org.apache.log4j.Logger;
+import org.wso2.carbon.sp.jobmanager.core.bean.DeploymentConfig;
+import org.wso2.carbon.sp.jobmanager.core.internal.ServiceDataHolder;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourceNode;
+import org.wso2.carbon.sp.jobmanager.core.model.SiddhiAppHolder;
+import org.wso2.carbon.sp.jobmanager.core.model.WorkerMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Allocation algorithm packing partial siddhi apps by CPU, heap and partial app count of the resource nodes.
+ * <p>
+ * The load of a node is projected from its smoothed heartbeat metrics, adding the expected load of the partial apps
+ * allocated to it recently, which the heartbeat metrics do not show yet, and of the app being allocated. The
+ * expected load of a partial app is the average load of the partial apps deployed in the cluster. Among the nodes
+ * which stay under the CPU and heap limits, the node with the least instances of the same execution group is
+ * elected, then the node with the least projected load, then the node with the least partial apps. If no node stays
+ * under the limits, the least loaded node is elected regardless.
+ */
+public class BinPackingAllocationAlgorithm implements ResourceAllocationAlgorithm {
+    private static final Logger logger = Logger.getLogger(BinPackingAllocationAlgorithm.class);
+    private static final double MAX_CPU_USAGE = 0.8;
+    private static final double MAX_HEAP_USAGE = 0.8;
+    private static final double DEFAULT_APP_CPU_USAGE = 0.05;
+    private static final double DEFAULT_APP_HEAP_USAGE = 0.05;
+    // loads closer than this are considered equal, so that metric noise does not override the partial app count
+    private static final double LOAD_GRANULARITY = 0.05;
+    private static final int DEFAULT_HEARTBEAT_INTERVAL = 10000;
+    private final List<Allocation> recentAllocations = new ArrayList<>();
+
+    @Override
+    public ResourceNode getNextResourceNode(Map<String, ResourceNode> resourceNodeMap, int minResourceCount) {
+        return getNextResourceNode(resourceNodeMap, minResourceCount, null);
+    }
+
+    @Override
+    public synchronized ResourceNode getNextResourceNode(Map<String, ResourceNode> resourceNodeMap,
+                                                         int minResourceCount, SiddhiAppHolder siddhiAppHolder) {
+        if (resourceNodeMap.isEmpty()) {
+            return null;
+        }
+        if (resourceNodeMap.size() < minResourceCount) {
+            logger.error("Minimum resource requirement did not match, hence not deploying the partial siddhi app ");
+            return null;
+        }
+        long currentTimestamp = System.currentTimeMillis();
+        removeExpiredAllocations(currentTimestamp);
+        Map<ResourceNode, List<SiddhiAppHolder>> nodeAppMapping = ServiceDataHolder.getResourcePool()
+                .getNodeAppMapping();
+
+        double cpuUsage = 0;
+        double heapUsage = 0;
+        int appCount = 0;
+        for (ResourceNode resourceNode : resourceNodeMap.values()) {
+            WorkerMetrics workerMetrics = resourceNode.getWorkerMetrics();
+            List<SiddhiAppHolder> deployedApps = nodeAppMapping.get(resourceNode);
+            if (workerMetrics != null && deployedApps != null) {
+                cpuUsage += Math.max(0, workerMetrics.getProcessCPU());
+                heapUsage += Math.max(0, workerMetrics.getTotalMemory());
+                appCount += deployedApps.size();
+            }
+        }
+        double appCpuUsage = appCount > 0 ? cpuUsage / appCount : DEFAULT_APP_CPU_USAGE;
+        double appHeapUsage = appCount > 0 ? heapUsage / appCount : DEFAULT_APP_HEAP_USAGE;
+
+        NodeLoad leastLoadedNode = null;
+        NodeLoad leastLoadedFittingNode = null;
+        for (ResourceNode resourceNode : resourceNodeMap.values()) {
+            NodeLoad nodeLoad = getNodeLoad(resourceNode, nodeAppMapping.get(resourceNode), siddhiAppHolder,
+                    appCpuUsage, appHeapUsage);
+            if (leastLoadedNode == null || nodeLoad.compareTo(leastLoadedNode) < 0) {
+                leastLoadedNode = nodeLoad;
+            }
+            if (nodeLoad.fits() && (leastLoadedFittingNode == null
+                    || nodeLoad.compareTo(leastLoadedFittingNode) < 0)) {
+                leastLoadedFittingNode = nodeLoad;
+            }
+        }
+        NodeLoad electedNode = leastLoadedFittingNode;
+        if (electedNode == null) {
+            electedNode = leastLoadedNode;
+            logger.warn(String.format("No resource node has the CPU and heap capacity for another partial siddhi "
+                    + "app, hence allocating the least loaded node %s with projected CPU usage %.2f and heap usage "
+                    + "%.2f.", electedNode.resourceNode.getId(), electedNode.cpuUsage, electedNode.heapUsage));
+        }
+        recentAllocations.add(new Allocation(electedNode.resourceNode.getId(), siddhiAppHolder, currentTimestamp));
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Next node to get allocated is %s with %d partial siddhi apps, projected "
+                            + "CPU usage %.2f and heap usage %.2f.", electedNode.resourceNode.getId(),
+                    electedNode.appCount, electedNode.cpuUsage, electedNode.heapUsage));
+        }
+        return electedNode.resourceNode;
+    }
+
+    /**
+     * Forget the allocations which the heartbeat metrics of the nodes already show, heartbeats being a heartbeat
+     * interval apart and the metrics being smoothed over about two heartbeats.
+     */
+    private void removeExpiredAllocations(long currentTimestamp) {
+        DeploymentConfig deploymentConfig = ServiceDataHolder.getDeploymentConfig();
+        int heartbeatInterval = deploymentConfig != null
+                ? deploymentConfig.getHeartbeatInterval() : DEFAULT_HEARTBEAT_INTERVAL;
+        Iterator<Allocation> allocationIterator = recentAllocations.iterator();
+        while (allocationIterator.hasNext()) {
+            if (currentTimestamp - allocationIterator.next().timestamp > 3L * heartbeatInterval) {
+                allocationIterator.remove();
+            }
+        }
+    }
+
+    private NodeLoad getNodeLoad(ResourceNode resourceNode, List<SiddhiAppHolder> deployedApps,
+                                 SiddhiAppHolder siddhiAppHolder, double appCpuUsage, double appHeapUsage) {
+        if (deployedApps == null) {
+            deployedApps = Collections.emptyList();
+        }
+        NodeLoad nodeLoad = new NodeLoad(resourceNode);
+        nodeLoad.appCount = deployedApps.size();
+        for (SiddhiAppHolder deployedApp : deployedApps) {
+            if (isSameGroup(deployedApp, siddhiAppHolder)) {
+                nodeLoad.groupInstanceCount++;
+            }
+        }
+        int recentAllocationCount = 0;
+        for (Allocation allocation : recentAllocations) {
+            if (allocation.nodeId.equals(resourceNode.getId())) {
+                recentAllocationCount++;
+                // deployed apps are already counted with the deployed apps of their node
+                if (allocation.siddhiAppHolder == null || allocation.siddhiAppHolder.getDeployedNode() == null) {
+                    nodeLoad.appCount++;
+                    if (isSameGroup(allocation.siddhiAppHolder, siddhiAppHolder)) {
+                        nodeLoad.groupInstanceCount++;
+                    }
+                }
+            }
+        }
+        WorkerMetrics workerMetrics = resourceNode.getWorkerMetrics();
+        if (workerMetrics != null) {
+            nodeLoad.cpuUsage = Math.max(0, Math.max(workerMetrics.getSystemCPU(), workerMetrics.getProcessCPU()));
+            nodeLoad.heapUsage = Math.max(0, workerMetrics.getTotalMemory());
+        }
+        nodeLoad.cpuUsage += appCpuUsage * (recentAllocationCount + 1);
+        nodeLoad.heapUsage += appHeapUsage * (recentAllocationCount + 1);
+        return nodeLoad;
+    }
+
+    private static boolean isSameGroup(SiddhiAppHolder siddhiAppHolder, SiddhiAppHolder otherSiddhiAppHolder) {
+        return siddhiAppHolder != null && otherSiddhiAppHolder != null
+                && siddhiAppHolder.getParentAppName().equals(otherSiddhiAppHolder.getParentAppName())
+                && siddhiAppHolder.getGroupName().equals(otherSiddhiAppHolder.getGroupName());
+    }
+
+    /**
+     * Partial siddhi app allocated to a resource node.
+     */
+    private static class Allocation {
+        private final String nodeId;
+        private final SiddhiAppHolder siddhiAppHolder;
+        private final long timestamp;
+
+        private Allocation(String nodeId, SiddhiAppHolder siddhiAppHolder, long timestamp) {
+            this.nodeId = nodeId;
+            this.siddhiAppHolder = siddhiAppHolder;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Projected load of a resource node after allocating the partial siddhi app.
+     */
+    private static class NodeLoad implements Comparable<NodeLoad> {
+        private final ResourceNode resourceNode;
+        private int groupInstanceCount;
+        private int appCount;
+        private double cpuUsage;
+        private double heapUsage;
+
+        private NodeLoad(ResourceNode resourceNode) {
+            this.resourceNode = resourceNode;
+        }
+
+        private boolean fits() {
+            return cpuUsage <= MAX_CPU_USAGE && heapUsage <= MAX_HEAP_USAGE;
+        }
+
+        private long getLoadLevel() {
+            return Math.round(Math.max(cpuUsage, heapUsage) / LOAD_GRANULARITY);
+        }
+
+        @Override
+        public int compareTo(NodeLoad nodeLoad) {
+            if (groupInstanceCount != nodeLoad.groupInstanceCount) {
+                return Integer.compare(groupInstanceCount, nodeLoad.groupInstanceCount);
+            }
+            if (getLoadLevel() != nodeLoad.getLoadLevel()) {
+                return Long.compare(getLoadLevel(), nodeLoad.getLoadLevel());
+            }
+            if (appCount != nodeLoad.appCount) {
+                return Integer.compare(appCount, nodeLoad.appCount);
+            }
+            return resourceNode.getId().compareTo(nodeLoad.resourceNode.getId());
+        }
+    }
+}
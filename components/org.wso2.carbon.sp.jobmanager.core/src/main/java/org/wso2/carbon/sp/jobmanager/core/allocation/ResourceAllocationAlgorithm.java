@@ -18,6 +18,7 @@
 package org.wso2.carbon.sp.jobmanager.core.allocation;
 
 import org.wso2.carbon.sp.jobmanager.core.model.ResourceNode;
+import org.wso2.carbon.sp.jobmanager.core.model.SiddhiAppHolder;
 
 import java.util.Map;
 
@@ -33,4 +34,16 @@ public interface ResourceAllocationAlgorithm {
      * @return Elected resource node for next deployment
      */
     ResourceNode getNextResourceNode(Map<String, ResourceNode> resourceNodeMap, int minResourceCount);
+
+    /**
+     * Get next ResourceNode to deploy the given partial siddhi app
+     * @param resourceNodeMap ResourceNode Map
+     * @param minResourceCount Minimum resource requirement for SiddhiQuery
+     * @param siddhiAppHolder Partial siddhi app to be deployed
+     * @return Elected resource node for next deployment
+     */
+    default ResourceNode getNextResourceNode(Map<String, ResourceNode> resourceNodeMap, int minResourceCount,
+                                             SiddhiAppHolder siddhiAppHolder) {
+        return getNextResourceNode(resourceNodeMap, minResourceCount);
+    }
 }
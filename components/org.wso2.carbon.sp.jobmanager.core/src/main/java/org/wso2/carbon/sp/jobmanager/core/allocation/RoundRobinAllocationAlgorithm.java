@@ -22,7 +22,6 @@ import org.wso2.carbon.sp.jobmanager.core.bean.DeploymentConfig;
 import org.wso2.carbon.sp.jobmanager.core.internal.ServiceDataHolder;
 import org.wso2.carbon.sp.jobmanager.core.model.ResourceNode;
 
-import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -30,24 +29,32 @@ import java.util.Map;
  */
 public class RoundRobinAllocationAlgorithm implements ResourceAllocationAlgorithm {
     private static final Logger logger = Logger.getLogger(RoundRobinAllocationAlgorithm.class);
-    private Iterator resourceIterator;
+    /**
+     * Id of the last elected node, so that the next node is taken from the given map, which may be a filtered copy.
+     */
+    private String lastNodeId;
 
     @Override
-    public ResourceNode getNextResourceNode(Map<String, ResourceNode> resourceNodeMap, int minResourceCount) {
+    public synchronized ResourceNode getNextResourceNode(Map<String, ResourceNode> resourceNodeMap,
+                                                         int minResourceCount) {
         DeploymentConfig deploymentConfig = ServiceDataHolder.getDeploymentConfig();
         if (deploymentConfig != null && !resourceNodeMap.isEmpty()) {
             if (resourceNodeMap.size() >= minResourceCount) {
-                if (resourceIterator == null) {
-                    resourceIterator = resourceNodeMap.values().iterator();
-                }
-                if (resourceIterator.hasNext()) {
-                    return (ResourceNode) resourceIterator.next();
-                } else {
-                    resourceIterator = resourceNodeMap.values().iterator();
-                    if (resourceIterator.hasNext()) {
-                        return (ResourceNode) resourceIterator.next();
+                Map.Entry<String, ResourceNode> firstEntry = null;
+                boolean isLastNodePassed = false;
+                for (Map.Entry<String, ResourceNode> entry : resourceNodeMap.entrySet()) {
+                    if (firstEntry == null) {
+                        firstEntry = entry;
+                    }
+                    if (isLastNodePassed) {
+                        lastNodeId = entry.getKey();
+                        return entry.getValue();
                     }
+                    isLastNodePassed = entry.getKey().equals(lastNodeId);
                 }
+                // wrap around, also when the last node is no longer in the map
+                lastNodeId = firstEntry.getKey();
+                return firstEntry.getValue();
             } else {
                 logger.error("Minimum resource requirement did not match, hence not deploying the partial siddhi app ");
             }
@@ -41,6 +41,7 @@ public class DeploymentConfig implements Serializable {
     private int heartbeatInterval = 10000;
     private int heartbeatMaxRetry = 2;
     private int minResourceCount = 1;
+    private int deploymentTimeout = 30000;
     @Element(description = "datasource to persist resource mappings", required = true)
     private String datasource;
     @Element(description = "bootstrap urls for Kafka", required = true)
@@ -116,6 +117,14 @@ public class DeploymentConfig implements Serializable {
         this.minResourceCount = minResourceCount;
     }
 
+    public int getDeploymentTimeout() {
+        return deploymentTimeout;
+    }
+
+    public void setDeploymentTimeout(int deploymentTimeout) {
+        this.deploymentTimeout = deploymentTimeout;
+    }
+
     public String getDatasource() {
         return datasource;
     }
@@ -37,34 +37,64 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implementation regarding deploying siddhi applications in the resource cluster
+ * <p>
+ * The partial apps of a Siddhi app are first placed on resource nodes, then deployed concurrently on the placed
+ * nodes, one node per thread, and either all kept or all un-deployed. Partial apps failing on a node are placed on
+ * the other nodes before giving up. Deployments of different Siddhi apps only share the resource allocation, so a
+ * slow resource node delays only the Siddhi apps being deployed on it.
  */
 public class DeploymentManagerImpl implements DeploymentManager, ResourcePoolChangeListener {
     private static final Logger log = Logger.getLogger(DeploymentManagerImpl.class);
-    private final Lock lock = new ReentrantLock();
+    private static final int DEPLOYMENT_THREAD_COUNT = 16;
+    private final Map<String, Lock> appLocks = new ConcurrentHashMap<>();
+    private final Object allocationLock = new Object();
+    private final ThreadPoolExecutor deploymentExecutor;
     private ResourceAllocationAlgorithm resourceAllocationAlgorithm = ServiceDataHolder.getAllocationAlgorithm();
     private ResourceAllocationAlgorithm receiverAllocationAlgorithm = new RoundRobinAllocationAlgorithm();
 
+    public DeploymentManagerImpl() {
+        AtomicInteger threadCount = new AtomicInteger();
+        deploymentExecutor = new ThreadPoolExecutor(DEPLOYMENT_THREAD_COUNT, DEPLOYMENT_THREAD_COUNT, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "DeploymentManager-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        deploymentExecutor.allowCoreThreadTimeOut(true);
+    }
+
     @Override
     public DeploymentStatus deploy(DistributedSiddhiQuery distributedSiddhiQuery) {
-        Map<String, List<SiddhiAppHolder>> deployedSiddhiAppHoldersMap = ServiceDataHolder
-                .getResourcePool().getSiddhiAppHoldersMap();
+        String parentAppName = distributedSiddhiQuery.getAppName();
+        ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
+        Map<String, List<SiddhiAppHolder>> deployedSiddhiAppHoldersMap = resourcePool.getSiddhiAppHoldersMap();
         List<SiddhiAppHolder> appsToDeploy = getSiddhiAppHolders(distributedSiddhiQuery);
-        List<SiddhiAppHolder> deployedApps = new ArrayList<>();
+        List<SiddhiAppHolder> deployedApps;
         boolean shouldDeploy = true;
 
+        Lock lock = getAppLock(parentAppName);
         lock.lock();
         try {
-            if (deployedSiddhiAppHoldersMap.containsKey(distributedSiddhiQuery.getAppName())) {
-                List<SiddhiAppHolder> existingApps = deployedSiddhiAppHoldersMap
-                        .get(distributedSiddhiQuery.getAppName());
+            if (deployedSiddhiAppHoldersMap.containsKey(parentAppName)) {
+                List<SiddhiAppHolder> existingApps = deployedSiddhiAppHoldersMap.get(parentAppName);
                 if (CollectionUtils.isEqualCollection(existingApps, appsToDeploy)) {
                     boolean waitingToDeploy = false;
                     for (SiddhiAppHolder app : existingApps) {
@@ -75,53 +105,35 @@ public class DeploymentManagerImpl implements DeploymentManager, ResourcePoolCha
                     }
                     if (waitingToDeploy) {
                         log.info(String.format("Exact Siddhi app with name: %s is already exists in waiting mode. " +
-                                "Hence, trying to re-deploy.", distributedSiddhiQuery
-                                .getAppName()));
+                                "Hence, trying to re-deploy.", parentAppName));
                         rollback(existingApps);
                     } else {
                         log.info(String.format("Exact Siddhi app with name: %s is already deployed.",
-                                distributedSiddhiQuery.getAppName()));
+                                parentAppName));
                         shouldDeploy = false;
                     }
                 } else {
-                    log.info("Different Siddhi app with name:" + distributedSiddhiQuery.getAppName() + " is already " +
+                    log.info("Different Siddhi app with name:" + parentAppName + " is already " +
                             "deployed. Hence, un-deploying existing Siddhi app.");
-                    rollback(deployedSiddhiAppHoldersMap.get(distributedSiddhiQuery.getAppName()));
+                    rollback(existingApps);
                 }
             }
-            boolean isDeployed = true;
             if (shouldDeploy) {
-                for (SiddhiAppHolder appHolder : appsToDeploy) {
-                    ResourceNode deployedNode;
-                    deployedNode = deploy(new SiddhiQuery(appHolder.getAppName(), appHolder.getSiddhiApp(),
-                            appHolder.isReceiverQueryGroup()), 0, appHolder.getParallelism());
-                    if (deployedNode != null) {
-                        appHolder.setDeployedNode(deployedNode);
-                        deployedApps.add(appHolder);
-                        log.info(String.format("Siddhi app %s of %s successfully deployed in %s.",
-                                appHolder.getAppName(), appHolder.getParentAppName(), deployedNode));
-                    } else {
-                        log.warn(String.format("Insufficient resources to deploy Siddhi app %s of %s. Hence, rolling " +
-                                "back.", appHolder.getAppName(), appHolder.getParentAppName()));
-                        isDeployed = false;
-                        break;
-                    }
-                }
-                if (isDeployed) {
-                    deployedSiddhiAppHoldersMap.put(distributedSiddhiQuery.getAppName(), deployedApps);
-                    log.info("Siddhi app " + distributedSiddhiQuery.getAppName() + " successfully deployed.");
+                if (deployPartialApps(appsToDeploy)) {
+                    deployedSiddhiAppHoldersMap.put(parentAppName, appsToDeploy);
+                    resourcePool.getAppsWaitingForDeploy().remove(parentAppName);
+                    deployedApps = appsToDeploy;
+                    log.info("Siddhi app " + parentAppName + " successfully deployed.");
                 } else {
-                    rollback(deployedApps);
                     deployedApps = Collections.emptyList();
-                    deployedSiddhiAppHoldersMap.remove(distributedSiddhiQuery.getAppName());
-                    ServiceDataHolder.getResourcePool().getAppsWaitingForDeploy()
-                            .put(distributedSiddhiQuery.getAppName(), appsToDeploy);
-                    log.info("Siddhi app " + distributedSiddhiQuery.getAppName() + " held back in waiting mode.");
+                    deployedSiddhiAppHoldersMap.remove(parentAppName);
+                    resourcePool.getAppsWaitingForDeploy().put(parentAppName, appsToDeploy);
+                    log.info("Siddhi app " + parentAppName + " held back in waiting mode.");
                 }
             } else {
-                deployedApps = deployedSiddhiAppHoldersMap.get(distributedSiddhiQuery.getAppName());
+                deployedApps = deployedSiddhiAppHoldersMap.get(parentAppName);
             }
-            ServiceDataHolder.getResourcePool().persist();
+            resourcePool.persist();
         } finally {
             lock.unlock();
         }
@@ -161,28 +173,26 @@ public class DeploymentManagerImpl implements DeploymentManager, ResourcePoolCha
     @Override
     public boolean unDeploy(String siddhiAppName) {
         boolean unDeployed = false;
-        Map<String, List<SiddhiAppHolder>> siddhiAppHoldersMap = ServiceDataHolder
-                .getResourcePool().getSiddhiAppHoldersMap();
-        Map<String, List<SiddhiAppHolder>> waitingAppList = ServiceDataHolder
-                .getResourcePool().getAppsWaitingForDeploy();
+        ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
+        Map<String, List<SiddhiAppHolder>> siddhiAppHoldersMap = resourcePool.getSiddhiAppHoldersMap();
+        Map<String, List<SiddhiAppHolder>> waitingAppList = resourcePool.getAppsWaitingForDeploy();
 
+        Lock lock = getAppLock(siddhiAppName);
         lock.lock();
         try {
             if (siddhiAppHoldersMap.containsKey(siddhiAppName) || waitingAppList.containsKey(siddhiAppName)) {
                 // remove from the deployed apps
-                rollback(siddhiAppHoldersMap.get(siddhiAppName));
-                siddhiAppHoldersMap.remove(siddhiAppName);
+                rollback(siddhiAppHoldersMap.remove(siddhiAppName));
 
                 // remove from the waiting list
-                rollback(siddhiAppHoldersMap.get(siddhiAppName));
-                waitingAppList.remove(siddhiAppName);
+                rollback(waitingAppList.remove(siddhiAppName));
                 unDeployed = true;
 
                 log.info("Siddhi app " + siddhiAppName + "un-deployed successfully");
             } else {
                 log.warn("Siddhi app " + siddhiAppName + " is not deployed. Therefore, cannot un-deploy.");
             }
-            ServiceDataHolder.getResourcePool().persist();
+            resourcePool.persist();
         } finally {
             lock.unlock();
         }
@@ -202,51 +212,32 @@ public class DeploymentManagerImpl implements DeploymentManager, ResourcePoolCha
 
     @Override
     public void resourceAdded(ResourceNode resourceNode) {
-        Map<String, List<SiddhiAppHolder>> waitingList = ServiceDataHolder.getResourcePool().getAppsWaitingForDeploy();
+        ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
+        Map<String, List<SiddhiAppHolder>> waitingList = resourcePool.getAppsWaitingForDeploy();
         Set<String> waitingParentAppNames = new HashSet<>(waitingList.keySet());
-        List<SiddhiAppHolder> partialAppHoldersOfSiddhiApp;
-        List<SiddhiAppHolder> currentDeployedPartialApps;
-        boolean deployedCompletely;
-
-        lock.lock();
-        try {
-            for (String parentSiddhiAppName : waitingParentAppNames) {
-                partialAppHoldersOfSiddhiApp = waitingList.getOrDefault(parentSiddhiAppName, Collections.emptyList());
-                deployedCompletely = true;
-                currentDeployedPartialApps = new ArrayList<>();
-
-                for (SiddhiAppHolder partialAppHolder : partialAppHoldersOfSiddhiApp) {
-                    ResourceNode deployedNode = deploy(new SiddhiQuery(partialAppHolder.getAppName(),
-                                    partialAppHolder.getSiddhiApp(), partialAppHolder.isReceiverQueryGroup()), 0,
-                            partialAppHolder.getParallelism());
 
-                    if (deployedNode != null) {
-                        partialAppHolder.setDeployedNode(deployedNode);
-                        currentDeployedPartialApps.add(partialAppHolder);
-                        log.info(String.format("Siddhi app %s of %s successfully deployed in %s.",
-                                partialAppHolder.getAppName(), partialAppHolder.getParentAppName(),
-                                deployedNode));
-                    } else {
-                        deployedCompletely = false;
-                        break;
-                    }
+        for (String parentSiddhiAppName : waitingParentAppNames) {
+            Lock lock = getAppLock(parentSiddhiAppName);
+            lock.lock();
+            try {
+                List<SiddhiAppHolder> partialAppHoldersOfSiddhiApp = waitingList.get(parentSiddhiAppName);
+                if (partialAppHoldersOfSiddhiApp == null) {
+                    // deployed or un-deployed since the waiting apps were listed
+                    continue;
                 }
-                if (deployedCompletely) {
-                    ServiceDataHolder.getResourcePool().getSiddhiAppHoldersMap()
-                            .put(parentSiddhiAppName, partialAppHoldersOfSiddhiApp);
+                if (deployPartialApps(partialAppHoldersOfSiddhiApp)) {
+                    resourcePool.getSiddhiAppHoldersMap().put(parentSiddhiAppName, partialAppHoldersOfSiddhiApp);
                     waitingList.remove(parentSiddhiAppName);
                     log.info("Siddhi app " + parentSiddhiAppName + " successfully deployed.");
                 } else {
                     log.warn(String.format("Still insufficient resources to deploy %s. Hence, rolling back the " +
-                                    "deployment and waiting for additional resources.",
-                            parentSiddhiAppName));
-                    rollback(currentDeployedPartialApps);
+                            "deployment and waiting for additional resources.", parentSiddhiAppName));
                 }
+            } finally {
+                lock.unlock();
             }
-            ServiceDataHolder.getResourcePool().persist();
-        } finally {
-            lock.unlock();
         }
+        resourcePool.persist();
     }
 
     @Override
@@ -254,115 +245,270 @@ public class DeploymentManagerImpl implements DeploymentManager, ResourcePoolCha
         ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
         List<SiddhiAppHolder> affectedPartialApps = resourcePool.getNodeAppMapping().get(resourceNode);
 
-        lock.lock();
-        try {
-            if (affectedPartialApps != null) {
-                log.info(String.format("Siddhi apps %s were affected by the removal of node %s. Hence, re-deploying "
-                        + "them in other resource nodes.", affectedPartialApps, resourceNode));
-                rollback(affectedPartialApps);
+        if (affectedPartialApps != null) {
+            log.info(String.format("Siddhi apps %s were affected by the removal of node %s. Hence, re-deploying "
+                    + "them in other resource nodes.", affectedPartialApps, resourceNode));
+            Set<String> affectedParentAppNames = new HashSet<>();
+            affectedPartialApps.forEach(affectedPartialApp -> affectedParentAppNames.add(
+                    affectedPartialApp.getParentAppName()));
 
-                affectedPartialApps.forEach(affectedPartialApp -> {
-                    ResourceNode deployedNode = deploy(new SiddhiQuery(affectedPartialApp.getAppName(),
-                                    affectedPartialApp.getSiddhiApp(), affectedPartialApp.isReceiverQueryGroup()), 0,
-                            affectedPartialApp.getParallelism());
-                    if (deployedNode != null) {
-                        affectedPartialApp.setDeployedNode(deployedNode);
-                        log.info(String.format("Siddhi app %s of %s successfully deployed in %s.",
-                                affectedPartialApp.getAppName(), affectedPartialApp.getParentAppName(),
-                                deployedNode));
-                    } else {
-                        log.warn(String.format("Insufficient resources to deploy %s. Therefore, cannot re-balance "
-                                        + "Siddhi app %s. Hence, rolling back the deployment and waiting"
-                                        + " for additional resources.", affectedPartialApp.getAppName(),
-                                affectedPartialApp.getParentAppName()));
-                        List<SiddhiAppHolder> appHolders = resourcePool.getSiddhiAppHoldersMap()
-                                .remove(affectedPartialApp.getParentAppName());
-
-                        if (appHolders != null) {
-                            appHolders.forEach(e -> e.setDeployedNode(null));
-                            rollback(appHolders);
-                            resourcePool.getAppsWaitingForDeploy().put(affectedPartialApp.getParentAppName(),
-                                    appHolders);
+            for (String parentAppName : affectedParentAppNames) {
+                Lock lock = getAppLock(parentAppName);
+                lock.lock();
+                try {
+                    List<SiddhiAppHolder> appHolders = resourcePool.getSiddhiAppHoldersMap().get(parentAppName);
+                    if (appHolders == null) {
+                        // un-deployed or held back since the affected apps were listed
+                        continue;
+                    }
+                    List<SiddhiAppHolder> partialApps = new ArrayList<>();
+                    appHolders.forEach(appHolder -> {
+                        if (resourceNode.equals(appHolder.getDeployedNode())) {
+                            partialApps.add(appHolder);
                         }
+                    });
+                    rollback(partialApps);
+                    partialApps.forEach(partialApp -> partialApp.setDeployedNode(null));
+                    if (!deployPartialApps(partialApps)) {
+                        log.warn(String.format("Insufficient resources to deploy %s. Therefore, cannot re-balance "
+                                + "Siddhi app %s. Hence, rolling back the deployment and waiting"
+                                + " for additional resources.", partialApps, parentAppName));
+                        resourcePool.getSiddhiAppHoldersMap().remove(parentAppName);
+                        rollback(appHolders);
+                        appHolders.forEach(appHolder -> appHolder.setDeployedNode(null));
+                        resourcePool.getAppsWaitingForDeploy().put(parentAppName, appHolders);
                     }
-                });
+                } finally {
+                    lock.unlock();
+                }
             }
-            resourcePool.persist();
-        } finally {
-            lock.unlock();
         }
+        resourcePool.persist();
     }
 
     public void reDeployAppsInResourceNode(ResourceNode resourceNode) {
-        lock.lock();
-        try {
-            ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
-            List<SiddhiAppHolder> deployedAppHolders = resourcePool.getNodeAppMapping().get(resourceNode);
-            if (resourceNode != null && deployedAppHolders != null) {
-
-                deployedAppHolders.forEach(appHolder -> {
+        ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
+        List<SiddhiAppHolder> deployedAppHolders = resourcePool.getNodeAppMapping().get(resourceNode);
+        boolean isReDeployed = true;
+        if (resourceNode != null && deployedAppHolders != null) {
+            for (SiddhiAppHolder appHolder : deployedAppHolders) {
+                Lock lock = getAppLock(appHolder.getParentAppName());
+                lock.lock();
+                try {
+                    if (!resourceNode.equals(appHolder.getDeployedNode())) {
+                        // moved to another node since the deployed apps were listed
+                        continue;
+                    }
                     String appName = SiddhiAppDeployer.deploy(resourceNode, new SiddhiQuery(appHolder.getAppName(),
                             appHolder.getSiddhiApp(), appHolder.isReceiverQueryGroup()));
                     if (appName == null || appName.isEmpty()) {
                         log.warn(String.format("Couldn't re-deploy partial Siddhi app %s of %s in %s. Therefore, " +
-                                        "assuming the %s has left the resource pool.", appHolder
-                                        .getAppName(),
+                                        "assuming the %s has left the resource pool.", appHolder.getAppName(),
                                 appHolder.getParentAppName(), resourceNode, resourceNode));
-                        if (resourceNode.isReceiverNode()) {
-                            resourcePool.removeReceiverNode(resourceNode.getId());
-                        } else {
-                            resourcePool.removeResourceNode(resourceNode.getId());
-                        }
+                        isReDeployed = false;
                     } else {
                         if (log.isDebugEnabled()) {
                             log.debug(String.format("Partial Siddhi app %s of %s successfully re-deployed in %s.",
                                     appName, appHolder.getParentAppName(), resourceNode));
                         }
                     }
-                });
+                } finally {
+                    lock.unlock();
+                }
+                if (!isReDeployed) {
+                    break;
+                }
             }
-            resourcePool.persist();
-        } finally {
-            lock.unlock();
         }
+        // removed without holding an app lock, as the removal re-deploys the apps of the node under their locks
+        if (!isReDeployed) {
+            if (resourceNode.isReceiverNode()) {
+                resourcePool.removeReceiverNode(resourceNode.getId());
+            } else {
+                resourcePool.removeResourceNode(resourceNode.getId());
+            }
+        }
+        resourcePool.persist();
+    }
+
+    private Lock getAppLock(String parentAppName) {
+        return appLocks.computeIfAbsent(parentAppName, name -> new ReentrantLock());
     }
 
-    private ResourceNode deploy(SiddhiQuery siddhiQuery, int retry, int parallelism) {
+    /**
+     * Deploy the partial apps of a Siddhi app, setting their deployed nodes only if all of them are deployed.
+     *
+     * @param siddhiAppHolders partial apps to be deployed.
+     * @return true if all the partial apps are deployed, false if they are rolled back.
+     */
+    private boolean deployPartialApps(List<SiddhiAppHolder> siddhiAppHolders) {
+        Map<SiddhiAppHolder, ResourceNode> deployedNodes = new IdentityHashMap<>();
+        Set<String> failedNodeIds = new HashSet<>();
+        List<SiddhiAppHolder> pendingApps = new ArrayList<>(siddhiAppHolders);
+        // every round either deploys all the pending apps or excludes a failed node, so the rounds end
+        while (!pendingApps.isEmpty()) {
+            Map<ResourceNode, List<SiddhiAppHolder>> placement = place(pendingApps, failedNodeIds);
+            if (placement == null) {
+                Map<ResourceNode, List<SiddhiAppHolder>> deployedApps = new LinkedHashMap<>();
+                deployedNodes.forEach((appHolder, node) -> deployedApps.computeIfAbsent(node,
+                        key -> new ArrayList<>()).add(appHolder));
+                unDeploy(deployedApps);
+                return false;
+            }
+            Map<ResourceNode, CompletableFuture<List<SiddhiAppHolder>>> deployments = new LinkedHashMap<>();
+            placement.forEach((node, appHolders) -> deployments.put(node, CompletableFuture.supplyAsync(
+                    () -> deploy(node, appHolders), deploymentExecutor)));
+            long deadline = System.currentTimeMillis() + getDeploymentTimeout();
+            pendingApps = new ArrayList<>();
+            for (Map.Entry<ResourceNode, CompletableFuture<List<SiddhiAppHolder>>> deployment :
+                    deployments.entrySet()) {
+                ResourceNode node = deployment.getKey();
+                List<SiddhiAppHolder> placedApps = placement.get(node);
+                List<SiddhiAppHolder> deployedApps = await(deployment.getValue(), deadline, node);
+                if (deployedApps == null) {
+                    // un-deploy the apps which get deployed after the timeout
+                    deployment.getValue().thenAccept(lateDeployedApps -> unDeploy(node, lateDeployedApps));
+                    deployedApps = Collections.emptyList();
+                }
+                deployedApps.forEach(appHolder -> deployedNodes.put(appHolder, node));
+                if (deployedApps.size() < placedApps.size()) {
+                    failedNodeIds.add(node.getId());
+                    pendingApps.addAll(placedApps.subList(deployedApps.size(), placedApps.size()));
+                }
+            }
+        }
+        deployedNodes.forEach(SiddhiAppHolder::setDeployedNode);
+        return true;
+    }
+
+    /**
+     * Place the partial apps on resource nodes using the allocation algorithms.
+     *
+     * @param siddhiAppHolders partial apps to be placed.
+     * @param excludedNodeIds  ids of the nodes the apps failed to deploy on.
+     * @return partial apps to be deployed on each node, or null if there are not enough nodes.
+     */
+    private Map<ResourceNode, List<SiddhiAppHolder>> place(List<SiddhiAppHolder> siddhiAppHolders,
+                                                           Set<String> excludedNodeIds) {
+        Map<ResourceNode, List<SiddhiAppHolder>> placement = new LinkedHashMap<>();
+        synchronized (allocationLock) {
+            for (SiddhiAppHolder appHolder : siddhiAppHolders) {
+                ResourceNode resourceNode = getNextResourceNode(appHolder, excludedNodeIds);
+                if (resourceNode == null) {
+                    log.warn(String.format("Insufficient resources to deploy Siddhi app %s of %s. Hence, rolling " +
+                            "back.", appHolder.getAppName(), appHolder.getParentAppName()));
+                    return null;
+                }
+                placement.computeIfAbsent(resourceNode, node -> new ArrayList<>()).add(appHolder);
+            }
+        }
+        return placement;
+    }
+
+    private ResourceNode getNextResourceNode(SiddhiAppHolder appHolder, Set<String> excludedNodeIds) {
         ResourcePool resourcePool = ServiceDataHolder.getResourcePool();
         Map<String, ResourceNode> nodeMap;
-        ResourceNode resourceNode;
-
-        if (siddhiQuery.isReceiverQuery()) {
+        ResourceAllocationAlgorithm allocationAlgorithm;
+        int minResourceCount;
+        if (appHolder.isReceiverQueryGroup()) {
             nodeMap = resourcePool.getReceiverNodeMap();
-            resourceNode = receiverAllocationAlgorithm.getNextResourceNode(nodeMap, parallelism);
+            allocationAlgorithm = receiverAllocationAlgorithm;
+            minResourceCount = appHolder.getParallelism();
         } else {
             nodeMap = resourcePool.getResourceNodeMap();
-            resourceNode = resourceAllocationAlgorithm.getNextResourceNode(nodeMap,
-                    ServiceDataHolder.getDeploymentConfig().getMinResourceCount());
+            allocationAlgorithm = resourceAllocationAlgorithm;
+            minResourceCount = ServiceDataHolder.getDeploymentConfig().getMinResourceCount();
+        }
+        if (excludedNodeIds.isEmpty()) {
+            return allocationAlgorithm.getNextResourceNode(nodeMap, minResourceCount, appHolder);
         }
-        ResourceNode deployedNode = null;
-        if (resourceNode != null) {
-            String appName = SiddhiAppDeployer.deploy(resourceNode, siddhiQuery);
+        Map<String, ResourceNode> availableNodeMap = new LinkedHashMap<>(nodeMap);
+        availableNodeMap.keySet().removeAll(excludedNodeIds);
+        // the excluded nodes still count towards the minimum resource count, which is a size of the cluster
+        int excludedNodeCount = nodeMap.size() - availableNodeMap.size();
+        return allocationAlgorithm.getNextResourceNode(availableNodeMap,
+                Math.max(0, minResourceCount - excludedNodeCount), appHolder);
+    }
+
+    /**
+     * Deploy partial apps on a resource node, stopping at the first app which fails to deploy.
+     *
+     * @return deployed partial apps, the leading apps of the given list.
+     */
+    private List<SiddhiAppHolder> deploy(ResourceNode resourceNode, List<SiddhiAppHolder> siddhiAppHolders) {
+        List<SiddhiAppHolder> deployedApps = new ArrayList<>();
+        for (SiddhiAppHolder appHolder : siddhiAppHolders) {
+            String appName = SiddhiAppDeployer.deploy(resourceNode, new SiddhiQuery(appHolder.getAppName(),
+                    appHolder.getSiddhiApp(), appHolder.isReceiverQueryGroup()));
             if (appName == null || appName.isEmpty()) {
-                log.warn(String.format("Couldn't deploy partial Siddhi app %s in %s", siddhiQuery.getAppName(),
+                log.warn(String.format("Couldn't deploy partial Siddhi app %s in %s", appHolder.getAppName(),
+                        resourceNode));
+                break;
+            }
+            deployedApps.add(appHolder);
+            log.info(String.format("Siddhi app %s of %s successfully deployed in %s.", appHolder.getAppName(),
+                    appHolder.getParentAppName(), resourceNode));
+        }
+        return deployedApps;
+    }
+
+    /**
+     * Un-deploy partial apps from a resource node.
+     *
+     * @return un-deployed partial apps.
+     */
+    private List<SiddhiAppHolder> unDeploy(ResourceNode resourceNode, List<SiddhiAppHolder> siddhiAppHolders) {
+        List<SiddhiAppHolder> unDeployedApps = new ArrayList<>();
+        for (SiddhiAppHolder appHolder : siddhiAppHolders) {
+            if (!SiddhiAppDeployer.unDeploy(resourceNode, appHolder.getAppName())) {
+                log.warn(String.format("Could not un-deploy Siddhi app %s from %s.", appHolder.getAppName(),
                         resourceNode));
-                if (retry < nodeMap.size()) {
-                    deployedNode = deploy(siddhiQuery, retry + 1, parallelism);
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.warn(String.format("Couldn't deploy partial Siddhi app %s even after %s attempts.",
-                                siddhiQuery.getAppName(), retry));
-                    }
-                }
             } else {
+                unDeployedApps.add(appHolder);
                 if (log.isDebugEnabled()) {
-                    log.debug(String.format("Partial Siddhi app %s successfully deployed in %s.",
-                            appName, resourceNode));
+                    log.debug(String.format("Siddhi app %s un-deployed from %s.", appHolder.getAppName(),
+                            resourceNode));
                 }
-                deployedNode = resourceNode;
             }
         }
-        return deployedNode;
+        return unDeployedApps;
+    }
+
+    /**
+     * Un-deploy partial apps from their resource nodes, concurrently on each node.
+     *
+     * @return partial apps un-deployed before the deployment timeout.
+     */
+    private List<SiddhiAppHolder> unDeploy(Map<ResourceNode, List<SiddhiAppHolder>> siddhiAppHolders) {
+        Map<ResourceNode, CompletableFuture<List<SiddhiAppHolder>>> unDeployments = new LinkedHashMap<>();
+        siddhiAppHolders.forEach((node, appHolders) -> unDeployments.put(node, CompletableFuture.supplyAsync(
+                () -> unDeploy(node, appHolders), deploymentExecutor)));
+        long deadline = System.currentTimeMillis() + getDeploymentTimeout();
+        List<SiddhiAppHolder> unDeployedApps = new ArrayList<>();
+        unDeployments.forEach((node, unDeployment) -> {
+            List<SiddhiAppHolder> unDeployedFromNode = await(unDeployment, deadline, node);
+            if (unDeployedFromNode != null) {
+                unDeployedApps.addAll(unDeployedFromNode);
+            }
+        });
+        return unDeployedApps;
+    }
+
+    private <T> T await(CompletableFuture<T> future, long deadline, ResourceNode resourceNode) {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn(String.format("%s did not respond within %d ms.", resourceNode, getDeploymentTimeout()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error(String.format("Error occurred while deploying Siddhi apps in %s.", resourceNode), e.getCause());
+        }
+        return null;
+    }
+
+    private long getDeploymentTimeout() {
+        return ServiceDataHolder.getDeploymentConfig().getDeploymentTimeout();
     }
 
     /**
@@ -372,20 +518,14 @@ public class DeploymentManagerImpl implements DeploymentManager, ResourcePoolCha
      */
     private void rollback(List<SiddhiAppHolder> siddhiAppHolders) {
         if (siddhiAppHolders != null) {
+            Map<ResourceNode, List<SiddhiAppHolder>> deployedApps = new LinkedHashMap<>();
             siddhiAppHolders.forEach(appHolder -> {
                 if (appHolder.getDeployedNode() != null) {
-                    if (!SiddhiAppDeployer.unDeploy(appHolder.getDeployedNode(), appHolder.getAppName())) {
-                        log.warn(String.format("Could not un-deploy Siddhi app %s from %s.",
-                                appHolder.getAppName(), appHolder.getDeployedNode()));
-                    } else {
-                        appHolder.setDeployedNode(null);
-                        if (log.isDebugEnabled()) {
-                            log.debug(String.format("Siddhi app %s un-deployed from %s.",
-                                    appHolder.getAppName(), appHolder.getDeployedNode()));
-                        }
-                    }
+                    deployedApps.computeIfAbsent(appHolder.getDeployedNode(), node -> new ArrayList<>())
+                            .add(appHolder);
                 }
             });
+            unDeploy(deployedApps).forEach(appHolder -> appHolder.setDeployedNode(null));
         }
     }
 }
@@ -30,23 +30,25 @@ import org.wso2.carbon.sp.jobmanager.core.bean.DeploymentConfig;
 import org.wso2.carbon.sp.jobmanager.core.exception.ResourceManagerException;
 import org.wso2.carbon.sp.jobmanager.core.internal.ServiceDataHolder;
 import org.wso2.carbon.sp.jobmanager.core.model.ResourcePool;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourcePoolCodec;
 import org.wso2.carbon.sp.jobmanager.core.util.ResourceManagerConstants;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.CustomClassLoaderConstructor;
 import org.yaml.snakeyaml.introspector.BeanAccess;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import javax.sql.DataSource;
@@ -59,11 +61,27 @@ public class RDBMSServiceImpl {
      * The log class
      */
     private static final Log log = LogFactory.getLog(RDBMSServiceImpl.class);
+    /**
+     * Size of the logged changes after which the log is compacted, unless the last snapshot is larger.
+     */
+    private static final long MIN_COMPACTION_LOG_SIZE = 64 * 1024;
     /**
      * The datasource which is used to be connected to the database.
      */
     private DataSource datasource;
     private Map<String, String> queries;
+    /**
+     * Entries of the resource pool as last persisted or restored.
+     */
+    private Map<String, byte[]> persistedEntries = new HashMap<>();
+    private String persistedGroupId;
+    private boolean isSnapshotPersisted;
+    /**
+     * Sequence number of the last logged change.
+     */
+    private long sequence;
+    private long snapshotSize;
+    private long loggedSize;
 
     public RDBMSServiceImpl() {
         List<Queries> deploymentQueries = ServiceDataHolder.getDeploymentConfig().getQueries();
@@ -110,31 +128,36 @@ public class RDBMSServiceImpl {
         } finally {
             close(conn, "Closing connection used to get database information.");
         }
-        createResourcePoolTable();
+        createResourcePoolTable(ResourceManagerConstants.CHECK_FOR_RESOURCE_MAPPING_TABLE,
+                ResourceManagerConstants.CREATE_RESOURCE_MAPPING_TABLE);
+        createResourcePoolTable(ResourceManagerConstants.CHECK_FOR_RESOURCE_MAPPING_LOG_TABLE,
+                ResourceManagerConstants.CREATE_RESOURCE_MAPPING_LOG_TABLE);
     }
 
     /**
      * Create resource pool persistence table.
+     *
+     * @param checkQueryKey  key of the query checking whether the table exists.
+     * @param createQueryKey key of the query creating the table.
      */
-    private void createResourcePoolTable() {
+    private void createResourcePoolTable(String checkQueryKey, String createQueryKey) {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         try {
             connection = getConnection();
             try {
-                preparedStatement = connection.prepareStatement(
-                        queries.get(ResourceManagerConstants.CHECK_FOR_RESOURCE_MAPPING_TABLE));
+                preparedStatement = connection.prepareStatement(queries.get(checkQueryKey));
                 preparedStatement.execute();
             } catch (SQLException e) {
                 try {
                     // this is due to clean up the connection because postgreSQL will not terminate the execution
                     // by itself so you need to rollback manually. Or it will execute the same query again
                     connection.rollback();
-                    preparedStatement = connection.prepareStatement(
-                            queries.get(ResourceManagerConstants.CREATE_RESOURCE_MAPPING_TABLE));
+                    close(preparedStatement, "Execute query when checking for resource mapping table");
+                    preparedStatement = connection.prepareStatement(queries.get(createQueryKey));
                     preparedStatement.execute();
                     if (log.isDebugEnabled()) {
-                        log.debug("Resource Mapping Table Created Successfully");
+                        log.debug("Resource Mapping Table Created Successfully using " + createQueryKey);
                     }
                 } catch (SQLException ex) {
                     throw new ResourceManagerException("Error in executing create resource mapping table query.", ex);
@@ -151,51 +174,151 @@ public class RDBMSServiceImpl {
         }
     }
 
-    public void persistResourcePool(ResourcePool resourcePool) throws ResourceManagerException {
+    /**
+     * Persist the changes of the resource pool since it was last persisted or restored. The changed and removed
+     * entries of the pool are appended to the resource mapping log, which is compacted into a snapshot of the pool
+     * once it grows larger than the last snapshot.
+     *
+     * @param resourcePool resource pool to persist.
+     * @throws ResourceManagerException if the changes could not be persisted.
+     */
+    public synchronized void persistResourcePool(ResourcePool resourcePool) throws ResourceManagerException {
         if (resourcePool != null && resourcePool.getGroupId() != null) {
-            Connection connection = null;
-            PreparedStatement preparedStatement = null;
+            String groupId = resourcePool.getGroupId();
+            Map<String, byte[]> entries;
             try {
-                connection = getConnection();
-                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-                objectOutputStream.writeObject(resourcePool);
-                byte[] resourceMappingAsBytes = byteArrayOutputStream.toByteArray();
-                preparedStatement = connection.prepareStatement(
-                        queries.get(ResourceManagerConstants.PS_DELETE_RESOURCE_MAPPING_ROW));
-                preparedStatement.setString(1, resourcePool.getGroupId());
-                preparedStatement.executeUpdate();
-                close(preparedStatement, "Execute delete mapping row query");
-                preparedStatement = connection.prepareStatement(
-                        queries.get(ResourceManagerConstants.PS_INSERT_RESOURCE_MAPPING_ROW));
-                preparedStatement.setString(1, resourcePool.getGroupId());
-                preparedStatement.setBinaryStream(2, new ByteArrayInputStream(resourceMappingAsBytes));
-                preparedStatement.executeUpdate();
-                connection.commit();
-                if (log.isDebugEnabled()) {
-                    log.debug(ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING + " " +
-                            resourcePool.getGroupId() + " executed successfully");
-                }
-            } catch (SQLException e) {
-                rollback(connection, ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING);
-                throw new ResourceManagerException("Error occurred while " +
-                        ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING
-                        + ". Group ID" +
-                        resourcePool.getGroupId(), e);
+                entries = ResourcePoolCodec.encodeEntries(resourcePool);
             } catch (IOException e) {
-                throw new ResourceManagerException(e);
-            } finally {
-                close(preparedStatement, ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING);
-                close(connection, ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING);
+                throw new ResourceManagerException("Error occurred while encoding resource pool of group " +
+                        groupId, e);
+            }
+            if (!groupId.equals(persistedGroupId)) {
+                persistedGroupId = groupId;
+                persistedEntries = new HashMap<>();
+                isSnapshotPersisted = false;
+            }
+            if (!isSnapshotPersisted || loggedSize > Math.max(snapshotSize, MIN_COMPACTION_LOG_SIZE)) {
+                persistSnapshot(groupId, entries);
+                return;
+            }
+            Map<String, byte[]> changes = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                if (!Arrays.equals(entry.getValue(), persistedEntries.get(entry.getKey()))) {
+                    changes.put(entry.getKey(), entry.getValue());
+                }
+            }
+            for (String key : persistedEntries.keySet()) {
+                if (!entries.containsKey(key)) {
+                    changes.put(key, ResourcePoolCodec.getTombstone());
+                }
+            }
+            if (!changes.isEmpty()) {
+                persistChanges(groupId, changes);
+                persistedEntries = entries;
+            }
+        }
+    }
+
+    /**
+     * Replace the snapshot of the resource pool and remove the logged changes, which are all included in it.
+     */
+    private void persistSnapshot(String groupId, Map<String, byte[]> entries) throws ResourceManagerException {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            connection = getConnection();
+            byte[] snapshot = ResourcePoolCodec.encodeSnapshot(sequence, entries);
+            preparedStatement = connection.prepareStatement(
+                    queries.get(ResourceManagerConstants.PS_DELETE_RESOURCE_MAPPING_ROW));
+            preparedStatement.setString(1, groupId);
+            preparedStatement.executeUpdate();
+            close(preparedStatement, "Execute delete mapping row query");
+            preparedStatement = connection.prepareStatement(
+                    queries.get(ResourceManagerConstants.PS_INSERT_RESOURCE_MAPPING_ROW));
+            preparedStatement.setString(1, groupId);
+            preparedStatement.setBinaryStream(2, new ByteArrayInputStream(snapshot));
+            preparedStatement.executeUpdate();
+            close(preparedStatement, "Execute insert mapping row query");
+            preparedStatement = connection.prepareStatement(
+                    queries.get(ResourceManagerConstants.PS_DELETE_RESOURCE_MAPPING_LOG_ROWS));
+            preparedStatement.setString(1, groupId);
+            preparedStatement.executeUpdate();
+            connection.commit();
+            persistedEntries = entries;
+            isSnapshotPersisted = true;
+            snapshotSize = snapshot.length;
+            loggedSize = 0;
+            if (log.isDebugEnabled()) {
+                log.debug(ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING + " " + groupId + " executed " +
+                        "successfully with a snapshot of " + snapshot.length + " bytes");
             }
+        } catch (SQLException e) {
+            rollback(connection, ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING);
+            throw new ResourceManagerException("Error occurred while " +
+                    ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING
+                    + ". Group ID" + groupId, e);
+        } catch (IOException e) {
+            throw new ResourceManagerException(e);
+        } finally {
+            close(preparedStatement, ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING);
+            close(connection, ResourceManagerConstants.TASK_UPSERT_RESOURCE_MAPPING);
         }
     }
 
-    public ResourcePool getResourcePool(String groupId) throws ResourceManagerException {
+    /**
+     * Append the changed entries of the resource pool to the resource mapping log.
+     */
+    private void persistChanges(String groupId, Map<String, byte[]> changes) throws ResourceManagerException {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        long changesSequence = sequence;
+        long changesSize = 0;
+        try {
+            connection = getConnection();
+            preparedStatement = connection.prepareStatement(
+                    queries.get(ResourceManagerConstants.PS_INSERT_RESOURCE_MAPPING_LOG_ROW));
+            for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+                preparedStatement.setString(1, groupId);
+                preparedStatement.setLong(2, ++changesSequence);
+                preparedStatement.setString(3, change.getKey());
+                preparedStatement.setBinaryStream(4, new ByteArrayInputStream(change.getValue()));
+                preparedStatement.addBatch();
+                changesSize += change.getValue().length;
+            }
+            preparedStatement.executeBatch();
+            connection.commit();
+            sequence = changesSequence;
+            loggedSize += changesSize;
+            if (log.isDebugEnabled()) {
+                log.debug(ResourceManagerConstants.TASK_LOG_RESOURCE_MAPPING + " " + groupId + " executed " +
+                        "successfully with " + changes.size() + " changed entries of " + changesSize + " bytes");
+            }
+        } catch (SQLException e) {
+            rollback(connection, ResourceManagerConstants.TASK_LOG_RESOURCE_MAPPING);
+            throw new ResourceManagerException("Error occurred while " +
+                    ResourceManagerConstants.TASK_LOG_RESOURCE_MAPPING + ". Group ID" + groupId, e);
+        } finally {
+            close(preparedStatement, ResourceManagerConstants.TASK_LOG_RESOURCE_MAPPING);
+            close(connection, ResourceManagerConstants.TASK_LOG_RESOURCE_MAPPING);
+        }
+    }
+
+    /**
+     * Restore the resource pool from its snapshot and the changes logged after the snapshot.
+     *
+     * @param groupId group id of the resource pool.
+     * @return restored resource pool, or null if the resource pool of the group was never persisted.
+     * @throws ResourceManagerException if the resource pool could not be restored.
+     */
+    public synchronized ResourcePool getResourcePool(String groupId) throws ResourceManagerException {
         Connection connection = null;
         PreparedStatement preparedStatement = null;
         ResultSet resultSet = null;
         ResourcePool resourcePool = null;
+        // the next persist writes a snapshot, unless the pool is restored from a snapshot
+        persistedGroupId = groupId;
+        persistedEntries = new HashMap<>();
+        isSnapshotPersisted = false;
         try {
             connection = getConnection();
             preparedStatement = connection.prepareStatement(
@@ -204,11 +327,41 @@ public class RDBMSServiceImpl {
             resultSet = preparedStatement.executeQuery();
             if (resultSet.next()) {
                 byte[] bytes = resultSet.getBytes(2);
-                ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-                ObjectInputStream ois = new ObjectInputStream(bis);
-                Object blobObject = ois.readObject();
-                if (blobObject instanceof ResourcePool) {
-                    resourcePool = (ResourcePool) blobObject;
+                if (ResourcePoolCodec.isSnapshot(bytes)) {
+                    ResourcePoolCodec.Snapshot snapshot = ResourcePoolCodec.decodeSnapshot(bytes);
+                    Map<String, byte[]> entries = snapshot.getEntries();
+                    long lastSequence = snapshot.getSequence();
+                    long replayedSize = 0;
+                    close(resultSet, ResourceManagerConstants.TASK_GET_RESOURCE_MAPPING);
+                    close(preparedStatement, ResourceManagerConstants.TASK_GET_RESOURCE_MAPPING);
+                    preparedStatement = connection.prepareStatement(
+                            queries.get(ResourceManagerConstants.PS_SELECT_RESOURCE_MAPPING_LOG_ROWS));
+                    preparedStatement.setString(1, groupId);
+                    preparedStatement.setLong(2, lastSequence);
+                    resultSet = preparedStatement.executeQuery();
+                    while (resultSet.next()) {
+                        lastSequence = resultSet.getLong(1);
+                        byte[] value = resultSet.getBytes(3);
+                        if (ResourcePoolCodec.isTombstone(value)) {
+                            entries.remove(resultSet.getString(2));
+                        } else {
+                            entries.put(resultSet.getString(2), value);
+                        }
+                        replayedSize += value.length;
+                    }
+                    resourcePool = ResourcePoolCodec.decodeEntries(groupId, entries);
+                    persistedEntries = entries;
+                    isSnapshotPersisted = true;
+                    sequence = lastSequence;
+                    snapshotSize = bytes.length;
+                    loggedSize = replayedSize;
+                } else {
+                    // resource pool persisted by an earlier version
+                    ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+                    Object blobObject = ois.readObject();
+                    if (blobObject instanceof ResourcePool) {
+                        resourcePool = (ResourcePool) blobObject;
+                    }
                 }
             }
             connection.commit();
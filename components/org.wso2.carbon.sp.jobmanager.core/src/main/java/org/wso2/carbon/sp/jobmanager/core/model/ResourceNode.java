@@ -27,6 +27,8 @@ import java.io.Serializable;
  */
 public class ResourceNode implements Serializable {
     private static final long serialVersionUID = 7198320219118722368L;
+    // weight of the latest heartbeat metrics in the smoothed metrics
+    private static final double METRICS_SMOOTHING_FACTOR = 0.5;
     private String id;
     private String state;
     private InterfaceConfig httpsInterface;
@@ -38,6 +40,7 @@ public class ResourceNode implements Serializable {
     private double systemCPU;
     private double loadAverage;
     private double memoryUsage;
+    private transient WorkerMetrics smoothedMetrics;
 
     public ResourceNode(String id) {
         this.id = id;
@@ -83,6 +86,28 @@ public class ResourceNode implements Serializable {
         systemCPU = workerMetrics.getSystemCPU();
         loadAverage = workerMetrics.getLoadAverage();
         memoryUsage = workerMetrics.getTotalMemory();
+        if (smoothedMetrics == null) {
+            smoothedMetrics = new WorkerMetrics().setProcessCPU(processCPU).setSystemCPU(systemCPU)
+                    .setLoadAverage(loadAverage).setTotalMemory(memoryUsage);
+        } else {
+            smoothedMetrics.setProcessCPU(smooth(smoothedMetrics.getProcessCPU(), processCPU))
+                    .setSystemCPU(smooth(smoothedMetrics.getSystemCPU(), systemCPU))
+                    .setLoadAverage(smooth(smoothedMetrics.getLoadAverage(), loadAverage))
+                    .setTotalMemory(smooth(smoothedMetrics.getTotalMemory(), memoryUsage));
+        }
+    }
+
+    private static double smooth(double smoothedValue, double value) {
+        return smoothedValue + METRICS_SMOOTHING_FACTOR * (value - smoothedValue);
+    }
+
+    /**
+     * Get the exponentially smoothed metrics of the heartbeats, so that a single spike does not drive the allocation.
+     *
+     * @return smoothed metrics, or null if no heartbeat carried metrics since the node joined.
+     */
+    public WorkerMetrics getWorkerMetrics() {
+        return smoothedMetrics;
     }
 
     public int getFailedPingAttempts() {
@@ -90,6 +90,13 @@ public class ResourcePool implements Serializable {
         persist();
     }
 
+    /**
+     * Set the leader node restored from the persisted resource pool, without persisting it again.
+     */
+    void restoreLeaderNode(ManagerNode leaderNode) {
+        this.leaderNode = leaderNode;
+    }
+
     public Map<String, ResourceNode> getResourceNodeMap() {
         return resourceNodeMap;
     }
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.sp.jobmanager.core.model;
+
+import org.wso2.carbon.sp.jobmanager.core.bean.InterfaceConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary encoding of the resource pool as entries, so that the pool can be persisted as a log of the entries which
+ * changed and restored from a snapshot of all the entries followed by the logged changes.
+ * <p>
+ * The pool is split into one entry for the leader node, one per resource node and one per parent Siddhi app, keyed
+ * by the kind of the entry and the id of the node or the name of the app. Each entry value starts with the version of
+ * its format, followed by the fields in a fixed order. A removed entry is logged with a tombstone value.
+ */
+public final class ResourcePoolCodec {
+    private static final String LEADER_KEY = "leader";
+    private static final String RESOURCE_NODE_KEY_PREFIX = "node:";
+    private static final String RECEIVER_NODE_KEY_PREFIX = "receiver:";
+    private static final String DEPLOYED_APP_KEY_PREFIX = "app:";
+    private static final String WAITING_APP_KEY_PREFIX = "waiting:";
+    private static final byte TOMBSTONE_VERSION = 0;
+    private static final byte ENTRY_VERSION = 1;
+    private static final int SNAPSHOT_MAGIC = 0x52505331;
+    private static final byte[] TOMBSTONE = {TOMBSTONE_VERSION};
+
+    private ResourcePoolCodec() {
+    }
+
+    /**
+     * Snapshot of the entries of a resource pool.
+     */
+    public static class Snapshot {
+        private final long sequence;
+        private final Map<String, byte[]> entries;
+
+        private Snapshot(long sequence, Map<String, byte[]> entries) {
+            this.sequence = sequence;
+            this.entries = entries;
+        }
+
+        /**
+         * @return sequence number of the last logged change included in the snapshot.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Map<String, byte[]> getEntries() {
+            return entries;
+        }
+    }
+
+    /**
+     * Encode the resource pool as entries.
+     *
+     * @param resourcePool resource pool to encode.
+     * @return entry key to entry value map, sorted by key.
+     * @throws IOException if an entry cannot be encoded.
+     */
+    public static Map<String, byte[]> encodeEntries(ResourcePool resourcePool) throws IOException {
+        Map<String, byte[]> entries = new TreeMap<>();
+        if (resourcePool.getLeaderNode() != null) {
+            entries.put(LEADER_KEY, encodeManagerNode(resourcePool.getLeaderNode()));
+        }
+        for (ResourceNode resourceNode : resourcePool.getResourceNodeMap().values()) {
+            entries.put(RESOURCE_NODE_KEY_PREFIX + resourceNode.getId(), encodeResourceNode(resourceNode));
+        }
+        for (ResourceNode receiverNode : resourcePool.getReceiverNodeMap().values()) {
+            entries.put(RECEIVER_NODE_KEY_PREFIX + receiverNode.getId(), encodeResourceNode(receiverNode));
+        }
+        for (Map.Entry<String, List<SiddhiAppHolder>> app : resourcePool.getSiddhiAppHoldersMap().entrySet()) {
+            entries.put(DEPLOYED_APP_KEY_PREFIX + app.getKey(), encodeSiddhiAppHolders(app.getValue()));
+        }
+        for (Map.Entry<String, List<SiddhiAppHolder>> app : resourcePool.getAppsWaitingForDeploy().entrySet()) {
+            entries.put(WAITING_APP_KEY_PREFIX + app.getKey(), encodeSiddhiAppHolders(app.getValue()));
+        }
+        return entries;
+    }
+
+    /**
+     * Decode a resource pool from its entries.
+     *
+     * @param groupId group id of the resource pool.
+     * @param entries entries of the resource pool, without tombstones.
+     * @return decoded resource pool.
+     * @throws IOException if an entry is not in a known format.
+     */
+    public static ResourcePool decodeEntries(String groupId, Map<String, byte[]> entries) throws IOException {
+        ResourcePool resourcePool = new ResourcePool(groupId);
+        // nodes are decoded first, so that the Siddhi app holders refer to the nodes in the pool
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            if (key.equals(LEADER_KEY)) {
+                resourcePool.restoreLeaderNode(decodeManagerNode(openEntry(entry.getValue())));
+            } else if (key.startsWith(RESOURCE_NODE_KEY_PREFIX)) {
+                ResourceNode resourceNode = readResourceNode(openEntry(entry.getValue()));
+                resourcePool.getResourceNodeMap().put(resourceNode.getId(), resourceNode);
+            } else if (key.startsWith(RECEIVER_NODE_KEY_PREFIX)) {
+                ResourceNode receiverNode = readResourceNode(openEntry(entry.getValue()));
+                resourcePool.getReceiverNodeMap().put(receiverNode.getId(), receiverNode);
+            }
+        }
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(DEPLOYED_APP_KEY_PREFIX)) {
+                resourcePool.getSiddhiAppHoldersMap().put(key.substring(DEPLOYED_APP_KEY_PREFIX.length()),
+                        decodeSiddhiAppHolders(openEntry(entry.getValue()), resourcePool));
+            } else if (key.startsWith(WAITING_APP_KEY_PREFIX)) {
+                resourcePool.getAppsWaitingForDeploy().put(key.substring(WAITING_APP_KEY_PREFIX.length()),
+                        decodeSiddhiAppHolders(openEntry(entry.getValue()), resourcePool));
+            }
+        }
+        return resourcePool;
+    }
+
+    public static byte[] getTombstone() {
+        return TOMBSTONE.clone();
+    }
+
+    public static boolean isTombstone(byte[] value) {
+        return value.length == 1 && value[0] == TOMBSTONE_VERSION;
+    }
+
+    /**
+     * Encode a snapshot of the entries of a resource pool.
+     *
+     * @param sequence sequence number of the last logged change included in the snapshot.
+     * @param entries  entries of the resource pool.
+     * @return encoded snapshot.
+     * @throws IOException if the snapshot cannot be encoded.
+     */
+    public static byte[] encodeSnapshot(long sequence, Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeLong(sequence);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Check whether the persisted resource pool is a snapshot, rather than a Java serialized resource pool persisted
+     * by an earlier version.
+     *
+     * @param bytes persisted resource pool.
+     * @return true if the bytes are a snapshot.
+     */
+    public static boolean isSnapshot(byte[] bytes) {
+        return bytes.length >= 4 && ((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8
+                | (bytes[3] & 0xFF)) == SNAPSHOT_MAGIC;
+    }
+
+    public static Snapshot decodeSnapshot(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Persisted resource pool is not a resource pool snapshot.");
+        }
+        long sequence = in.readLong();
+        int entryCount = in.readInt();
+        Map<String, byte[]> entries = new TreeMap<>();
+        for (int i = 0; i < entryCount; i++) {
+            String key = readString(in);
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            entries.put(key, value);
+        }
+        return new Snapshot(sequence, entries);
+    }
+
+    private static byte[] encodeManagerNode(ManagerNode managerNode) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ENTRY_VERSION);
+        writeString(out, managerNode.getId());
+        out.writeInt(managerNode.getHeartbeatInterval());
+        out.writeInt(managerNode.getHeartbeatMaxRetry());
+        writeInterfaceConfig(out, managerNode.getHttpsInterface());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static ManagerNode decodeManagerNode(DataInputStream in) throws IOException {
+        return new ManagerNode()
+                .setId(readString(in))
+                .setHeartbeatInterval(in.readInt())
+                .setHeartbeatMaxRetry(in.readInt())
+                .setHttpsInterface(readInterfaceConfig(in));
+    }
+
+    private static byte[] encodeResourceNode(ResourceNode resourceNode) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ENTRY_VERSION);
+        writeResourceNode(out, resourceNode);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeResourceNode(DataOutputStream out, ResourceNode resourceNode) throws IOException {
+        writeString(out, resourceNode.getId());
+        writeString(out, resourceNode.getState());
+        out.writeBoolean(resourceNode.isReceiverNode());
+        writeInterfaceConfig(out, resourceNode.getHttpsInterface());
+    }
+
+    private static ResourceNode readResourceNode(DataInputStream in) throws IOException {
+        ResourceNode resourceNode = new ResourceNode(readString(in));
+        resourceNode.setState(readString(in));
+        resourceNode.setReceiverNode(in.readBoolean());
+        resourceNode.setHttpsInterface(readInterfaceConfig(in));
+        return resourceNode;
+    }
+
+    private static byte[] encodeSiddhiAppHolders(List<SiddhiAppHolder> siddhiAppHolders) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(ENTRY_VERSION);
+        out.writeInt(siddhiAppHolders.size());
+        for (SiddhiAppHolder siddhiAppHolder : siddhiAppHolders) {
+            writeString(out, siddhiAppHolder.getParentAppName());
+            writeString(out, siddhiAppHolder.getGroupName());
+            writeString(out, siddhiAppHolder.getAppName());
+            writeString(out, siddhiAppHolder.getSiddhiApp());
+            out.writeBoolean(siddhiAppHolder.isReceiverQueryGroup());
+            out.writeInt(siddhiAppHolder.getParallelism());
+            ResourceNode deployedNode = siddhiAppHolder.getDeployedNode();
+            out.writeBoolean(deployedNode != null);
+            if (deployedNode != null) {
+                writeResourceNode(out, deployedNode);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<SiddhiAppHolder> decodeSiddhiAppHolders(DataInputStream in, ResourcePool resourcePool)
+            throws IOException {
+        int count = in.readInt();
+        List<SiddhiAppHolder> siddhiAppHolders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String parentAppName = readString(in);
+            String groupName = readString(in);
+            String appName = readString(in);
+            String siddhiApp = readString(in);
+            boolean isReceiverQueryGroup = in.readBoolean();
+            int parallelism = in.readInt();
+            ResourceNode deployedNode = null;
+            if (in.readBoolean()) {
+                deployedNode = readResourceNode(in);
+                // refer to the node in the pool, as the node app mapping groups the apps by their node
+                ResourceNode poolNode = deployedNode.isReceiverNode()
+                        ? resourcePool.getReceiverNodeMap().get(deployedNode.getId())
+                        : resourcePool.getResourceNodeMap().get(deployedNode.getId());
+                if (deployedNode.equals(poolNode)) {
+                    deployedNode = poolNode;
+                }
+            }
+            siddhiAppHolders.add(new SiddhiAppHolder(parentAppName, groupName, appName, siddhiApp, deployedNode,
+                    isReceiverQueryGroup, parallelism));
+        }
+        return siddhiAppHolders;
+    }
+
+    private static void writeInterfaceConfig(DataOutputStream out, InterfaceConfig interfaceConfig)
+            throws IOException {
+        out.writeBoolean(interfaceConfig != null);
+        if (interfaceConfig != null) {
+            writeString(out, interfaceConfig.getHost());
+            out.writeInt(interfaceConfig.getPort());
+            writeString(out, interfaceConfig.getUsername());
+            writeString(out, interfaceConfig.getPassword());
+        }
+    }
+
+    private static InterfaceConfig readInterfaceConfig(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        return new InterfaceConfig(readString(in), in.readInt(), readString(in), readString(in));
+    }
+
+    private static DataInputStream openEntry(byte[] value) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+        byte version = in.readByte();
+        if (version != ENTRY_VERSION) {
+            throw new IOException("Unknown resource pool entry version " + version + ".");
+        }
+        return in;
+    }
+
+    /**
+     * Write a string as its UTF-8 length and bytes, as Siddhi apps may exceed the length supported by writeUTF.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
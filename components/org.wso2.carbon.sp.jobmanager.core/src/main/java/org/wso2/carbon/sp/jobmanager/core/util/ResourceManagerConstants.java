@@ -133,6 +133,8 @@ public class ResourceManagerConstants {
 
     public static final String TASK_GET_RESOURCE_MAPPING = "Getting resource mapping group";
 
+    public static final String TASK_LOG_RESOURCE_MAPPING = "Logging resource mapping changes of group";
+
     public static final String CREATE_RESOURCE_MAPPING_TABLE = "create_resource_mapping_table";
 
     public static final String CHECK_FOR_RESOURCE_MAPPING_TABLE = "check_for_resource_mapping_table";
@@ -143,6 +145,16 @@ public class ResourceManagerConstants {
 
     public static final String PS_SELECT_RESOURCE_MAPPING_ROW = "ps_select_resource_mapping_row";
 
+    public static final String CREATE_RESOURCE_MAPPING_LOG_TABLE = "create_resource_mapping_log_table";
+
+    public static final String CHECK_FOR_RESOURCE_MAPPING_LOG_TABLE = "check_for_resource_mapping_log_table";
+
+    public static final String PS_INSERT_RESOURCE_MAPPING_LOG_ROW = "ps_insert_resource_mapping_log_row";
+
+    public static final String PS_SELECT_RESOURCE_MAPPING_LOG_ROWS = "ps_select_resource_mapping_log_rows";
+
+    public static final String PS_DELETE_RESOURCE_MAPPING_LOG_ROWS = "ps_delete_resource_mapping_log_rows";
+
     public static final String QUERY_YAML_FILE_NAME = "queries.yaml";
 
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.sp.jobmanager.core;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.sp.jobmanager.core.allocation.BinPackingAllocationAlgorithm;
+import org.wso2.carbon.sp.jobmanager.core.bean.DeploymentConfig;
+import org.wso2.carbon.sp.jobmanager.core.internal.ServiceDataHolder;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourceNode;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourcePool;
+import org.wso2.carbon.sp.jobmanager.core.model.SiddhiAppHolder;
+import org.wso2.carbon.sp.jobmanager.core.model.WorkerMetrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BinPackingAllocationAlgorithmTestCase {
+    private ResourcePool resourcePool;
+
+    @BeforeMethod
+    public void setUp() {
+        resourcePool = new ResourcePool("group-1");
+        ServiceDataHolder.setResourcePool(resourcePool);
+        ServiceDataHolder.setDeploymentConfig(new DeploymentConfig());
+    }
+
+    @Test
+    public void testParallelInstancesAreSpread() {
+        Map<String, ResourceNode> resourceNodeMap = resourcePool.getResourceNodeMap();
+        addResourceNode("worker-1", 0.1, 0.1);
+        addResourceNode("worker-2", 0.4, 0.4);
+        addResourceNode("worker-3", 0.4, 0.4);
+
+        BinPackingAllocationAlgorithm allocationAlgorithm = new BinPackingAllocationAlgorithm();
+        Set<String> nodeIds = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            nodeIds.add(allocationAlgorithm.getNextResourceNode(resourceNodeMap, 1,
+                    createSiddhiAppHolder("group-A", i)).getId());
+        }
+        Assert.assertEquals(nodeIds.size(), 3);
+    }
+
+    @Test
+    public void testRecentAllocationsAreCounted() {
+        Map<String, ResourceNode> resourceNodeMap = resourcePool.getResourceNodeMap();
+        addResourceNode("worker-1", 0.1, 0.1);
+        addResourceNode("worker-2", 0.1, 0.1);
+
+        BinPackingAllocationAlgorithm allocationAlgorithm = new BinPackingAllocationAlgorithm();
+        List<String> nodeIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            // the heartbeat metrics stay the same, as the allocated apps are not deployed yet
+            nodeIds.add(allocationAlgorithm.getNextResourceNode(resourceNodeMap, 1,
+                    createSiddhiAppHolder("group-" + i, 0)).getId());
+        }
+        Assert.assertEquals(nodeIds.stream().filter("worker-1"::equals).count(), 2);
+        Assert.assertEquals(nodeIds.stream().filter("worker-2"::equals).count(), 2);
+    }
+
+    @Test
+    public void testOverloadedNodeIsAvoided() {
+        Map<String, ResourceNode> resourceNodeMap = resourcePool.getResourceNodeMap();
+        addResourceNode("worker-1", 0.95, 0.2);
+        addResourceNode("worker-2", 0.3, 0.9);
+        addResourceNode("worker-3", 0.5, 0.5);
+
+        BinPackingAllocationAlgorithm allocationAlgorithm = new BinPackingAllocationAlgorithm();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(allocationAlgorithm.getNextResourceNode(resourceNodeMap, 1,
+                    createSiddhiAppHolder("group-" + i, 0)).getId(), "worker-3");
+        }
+        Assert.assertNull(allocationAlgorithm.getNextResourceNode(resourceNodeMap, 4,
+                createSiddhiAppHolder("group-A", 0)));
+    }
+
+    @Test
+    public void testMetricsAreSmoothed() {
+        ResourceNode resourceNode = new ResourceNode("worker-1");
+        Assert.assertNull(resourceNode.getWorkerMetrics());
+        resourceNode.updateResourceMetrics(new WorkerMetrics().setSystemCPU(0.2).setTotalMemory(0.4));
+        resourceNode.updateResourceMetrics(new WorkerMetrics().setSystemCPU(1.0).setTotalMemory(0.4));
+        Assert.assertEquals(resourceNode.getSystemCPU(), 1.0);
+        Assert.assertEquals(resourceNode.getWorkerMetrics().getSystemCPU(), 0.6, 1e-9);
+        Assert.assertEquals(resourceNode.getWorkerMetrics().getTotalMemory(), 0.4, 1e-9);
+    }
+
+    private void addResourceNode(String id, double systemCPU, double heapUsage) {
+        ResourceNode resourceNode = new ResourceNode(id);
+        resourceNode.updateResourceMetrics(new WorkerMetrics().setSystemCPU(systemCPU).setTotalMemory(heapUsage));
+        resourcePool.getResourceNodeMap().put(id, resourceNode);
+    }
+
+    private static SiddhiAppHolder createSiddhiAppHolder(String groupName, int instance) {
+        return new SiddhiAppHolder("TestApp", groupName, "TestApp-" + groupName + "-" + instance,
+                "@App:name('TestApp-" + groupName + "-" + instance + "')", null, false, 3);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.sp.jobmanager.core;
+
+import feign.Response;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
+import org.wso2.carbon.sp.jobmanager.core.api.ResourceServiceStub;
+import org.wso2.carbon.sp.jobmanager.core.appcreator.DeployableSiddhiQueryGroup;
+import org.wso2.carbon.sp.jobmanager.core.appcreator.DistributedSiddhiQuery;
+import org.wso2.carbon.sp.jobmanager.core.appcreator.SiddhiQuery;
+import org.wso2.carbon.sp.jobmanager.core.bean.DeploymentConfig;
+import org.wso2.carbon.sp.jobmanager.core.bean.InterfaceConfig;
+import org.wso2.carbon.sp.jobmanager.core.deployment.DeploymentManagerImpl;
+import org.wso2.carbon.sp.jobmanager.core.internal.ServiceDataHolder;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourceNode;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourcePool;
+import org.wso2.carbon.sp.jobmanager.core.model.SiddhiAppHolder;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class DeploymentManagerImplTestCase {
+    private static final long WAIT_MILLIS = 10000;
+
+    private final Map<String, FakeResourceNode> fakeNodes = new HashMap<>();
+    private DeploymentConfig deploymentConfig;
+    private ResourcePool resourcePool;
+    private DeploymentManagerImpl deploymentManager;
+
+    @BeforeMethod
+    public void setUp() {
+        deploymentConfig = new DeploymentConfig();
+        deploymentConfig.setMinResourceCount(1);
+        deploymentConfig.setDeploymentTimeout(2000);
+        ServiceDataHolder.setDeploymentConfig(deploymentConfig);
+        resourcePool = new ResourcePool("group-1") {
+            @Override
+            public void persist() {
+                // the resource pool is not persisted in these tests
+            }
+        };
+        ServiceDataHolder.setResourcePool(resourcePool);
+        // always elects the node with the lowest id, so that a node is elected again unless it is excluded
+        ServiceDataHolder.setAllocationAlgorithm((resourceNodeMap, minResourceCount) ->
+                resourceNodeMap.size() < minResourceCount ? null : resourceNodeMap.values().stream()
+                        .min(Comparator.comparing(ResourceNode::getId)).orElse(null));
+        ServiceDataHolder.setClientBuilderService((AnalyticsHttpClientBuilderService) Proxy.newProxyInstance(
+                AnalyticsHttpClientBuilderService.class.getClassLoader(),
+                new Class[]{AnalyticsHttpClientBuilderService.class}, (proxy, method, args) -> {
+                    if ("build".equals(method.getName())) {
+                        return fakeNodes.get(URI.create((String) args[5]).getHost());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+        addFakeNode("node-a");
+        addFakeNode("node-b");
+        deploymentManager = new DeploymentManagerImpl();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        // let the deployments blocked on the fake nodes finish
+        fakeNodes.values().forEach(FakeResourceNode::release);
+        fakeNodes.clear();
+        ServiceDataHolder.setAllocationAlgorithm(null);
+        ServiceDataHolder.setClientBuilderService(null);
+    }
+
+    @Test
+    public void testAppsOfNodeFailingMidListAreDeployedOnOtherNode() {
+        fakeNodes.get("node-a").failAfter(1);
+
+        deploymentManager.deploy(createDistributedQuery("App1", 3));
+        Assert.assertEquals(getDeployedNodeIds("App1"), new String[]{"node-a", "node-b", "node-b"});
+        Assert.assertEquals(fakeNodes.get("node-a").deployedApps, Collections.singleton("App1-1"));
+        Assert.assertEquals(fakeNodes.get("node-b").deployedApps, new HashSet<>(Arrays.asList("App1-2", "App1-3")));
+        Assert.assertFalse(resourcePool.getAppsWaitingForDeploy().containsKey("App1"));
+    }
+
+    @Test
+    public void testLateDeploymentsOfTimedOutNodeAreUnDeployed() throws InterruptedException {
+        deploymentConfig.setDeploymentTimeout(500);
+        FakeResourceNode slowNode = fakeNodes.get("node-a");
+        slowNode.block("App2");
+
+        deploymentManager.deploy(createDistributedQuery("App2", 2));
+        Assert.assertEquals(getDeployedNodeIds("App2"), new String[]{"node-b", "node-b"});
+        Assert.assertTrue(slowNode.deployedApps.isEmpty());
+
+        slowNode.release();
+        waitUntil(() -> slowNode.unDeployedApps.size() == 2);
+        Assert.assertTrue(slowNode.deployedApps.isEmpty());
+        Assert.assertEquals(fakeNodes.get("node-b").deployedApps.size(), 2);
+    }
+
+    @Test
+    public void testDeployedAppsAreRolledBackWhenNoNodeIsLeft() {
+        fakeNodes.get("node-a").failAfter(1);
+        fakeNodes.get("node-b").failAfter(0);
+
+        deploymentManager.deploy(createDistributedQuery("App3", 3));
+        Assert.assertFalse(resourcePool.getSiddhiAppHoldersMap().containsKey("App3"));
+        List<SiddhiAppHolder> waitingApps = resourcePool.getAppsWaitingForDeploy().get("App3");
+        Assert.assertNotNull(waitingApps);
+        waitingApps.forEach(appHolder -> Assert.assertNull(appHolder.getDeployedNode()));
+        Assert.assertTrue(fakeNodes.get("node-a").deployedApps.isEmpty());
+        Assert.assertEquals(fakeNodes.get("node-a").unDeployedApps, Collections.singletonList("App3-1"));
+        Assert.assertTrue(deploymentManager.isDeployed("App3"));
+    }
+
+    @Test
+    public void testSlowDeploymentDoesNotBlockOtherSiddhiApps() throws Exception {
+        deploymentConfig.setDeploymentTimeout(30000);
+        FakeResourceNode resourceNode = fakeNodes.get("node-a");
+        resourceNode.block("AppX");
+
+        CompletableFuture<Void> slowDeployment = CompletableFuture.runAsync(
+                () -> deploymentManager.deploy(createDistributedQuery("AppX", 2)));
+        Assert.assertTrue(resourceNode.blocked.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+        deploymentManager.deploy(createDistributedQuery("AppY", 2));
+        Assert.assertEquals(getDeployedNodeIds("AppY"), new String[]{"node-a", "node-a"});
+        Assert.assertFalse(slowDeployment.isDone());
+        Assert.assertFalse(resourcePool.getSiddhiAppHoldersMap().containsKey("AppX"));
+
+        resourceNode.release();
+        slowDeployment.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(getDeployedNodeIds("AppX"), new String[]{"node-a", "node-a"});
+        Assert.assertEquals(resourceNode.deployedApps.size(), 4);
+    }
+
+    private void addFakeNode(String id) {
+        ResourceNode resourceNode = new ResourceNode(id);
+        resourceNode.setHttpsInterface(new InterfaceConfig(id, 9443, "admin", "admin"));
+        resourcePool.getResourceNodeMap().put(id, resourceNode);
+        fakeNodes.put(id, new FakeResourceNode());
+    }
+
+    private String[] getDeployedNodeIds(String parentAppName) {
+        List<SiddhiAppHolder> appHolders = resourcePool.getSiddhiAppHoldersMap().get(parentAppName);
+        Assert.assertNotNull(appHolders, parentAppName + " is not deployed");
+        return appHolders.stream().map(appHolder -> appHolder.getDeployedNode().getId()).toArray(String[]::new);
+    }
+
+    private static DistributedSiddhiQuery createDistributedQuery(String appName, int parallelism) {
+        DeployableSiddhiQueryGroup queryGroup = new DeployableSiddhiQueryGroup(appName + "-group", false,
+                parallelism);
+        List<SiddhiQuery> siddhiQueries = new ArrayList<>();
+        for (int i = 1; i <= parallelism; i++) {
+            // the fake nodes take the Siddhi app as its name
+            siddhiQueries.add(new SiddhiQuery(appName + "-" + i, appName + "-" + i, false));
+        }
+        queryGroup.setSiddhiQueries(siddhiQueries);
+        return new DistributedSiddhiQuery(appName, Collections.singletonList(queryGroup));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "Condition not met within " + WAIT_MILLIS +
+                    " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Resource node accepting Siddhi apps, which can be made to fail or to block the deployments.
+     */
+    private static class FakeResourceNode implements ResourceServiceStub {
+        private final Set<String> deployedApps = ConcurrentHashMap.newKeySet();
+        private final List<String> unDeployedApps = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger remainingDeployments = new AtomicInteger(Integer.MAX_VALUE);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile String blockedAppPrefix;
+
+        void failAfter(int deploymentCount) {
+            remainingDeployments.set(deploymentCount);
+        }
+
+        void block(String appPrefix) {
+            blockedAppPrefix = appPrefix;
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public Response postSiddhiApp(String app) {
+            if (blockedAppPrefix != null && app.startsWith(blockedAppPrefix)) {
+                blocked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (remainingDeployments.getAndDecrement() <= 0) {
+                return createResponse(500, Collections.emptyMap());
+            }
+            deployedApps.add(app);
+            return createResponse(201, Collections.singletonMap("Location",
+                    Collections.singletonList("/siddhi-apps/" + app)));
+        }
+
+        @Override
+        public Response putSiddhiApp(String app) {
+            return createResponse(500, Collections.emptyMap());
+        }
+
+        @Override
+        public Response deleteSiddhiApp(String appName) {
+            if (!deployedApps.remove(appName)) {
+                return createResponse(404, Collections.emptyMap());
+            }
+            unDeployedApps.add(appName);
+            return createResponse(200, Collections.emptyMap());
+        }
+
+        @Override
+        public Response getSiddhiApps() {
+            return createResponse(500, Collections.emptyMap());
+        }
+
+        private static Response createResponse(int status, Map<String, Collection<String>> headers) {
+            return Response.create(status, "", headers, new byte[0]);
+        }
+    }
+}
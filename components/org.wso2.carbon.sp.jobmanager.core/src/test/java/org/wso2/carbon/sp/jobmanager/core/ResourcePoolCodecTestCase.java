@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wso2.carbon.sp.jobmanager.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.sp.jobmanager.core.bean.InterfaceConfig;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourceNode;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourcePool;
+import org.wso2.carbon.sp.jobmanager.core.model.ResourcePoolCodec;
+import org.wso2.carbon.sp.jobmanager.core.model.SiddhiAppHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class ResourcePoolCodecTestCase {
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        ResourcePool resourcePool = createResourcePool();
+        byte[] snapshot = ResourcePoolCodec.encodeSnapshot(42, ResourcePoolCodec.encodeEntries(resourcePool));
+        Assert.assertTrue(ResourcePoolCodec.isSnapshot(snapshot));
+
+        ResourcePoolCodec.Snapshot decodedSnapshot = ResourcePoolCodec.decodeSnapshot(snapshot);
+        Assert.assertEquals(decodedSnapshot.getSequence(), 42);
+        ResourcePool restoredPool = ResourcePoolCodec.decodeEntries("group-1", decodedSnapshot.getEntries());
+        Assert.assertEquals(restoredPool.getGroupId(), "group-1");
+        Assert.assertEquals(restoredPool.getResourceNodeMap(), resourcePool.getResourceNodeMap());
+        Assert.assertEquals(restoredPool.getReceiverNodeMap(), resourcePool.getReceiverNodeMap());
+        Assert.assertEquals(restoredPool.getSiddhiAppHoldersMap(), resourcePool.getSiddhiAppHoldersMap());
+        Assert.assertEquals(restoredPool.getAppsWaitingForDeploy(), resourcePool.getAppsWaitingForDeploy());
+
+        SiddhiAppHolder restoredHolder = restoredPool.getSiddhiAppHoldersMap().get("TestApp").get(0);
+        Assert.assertEquals(restoredHolder.getParallelism(), 2);
+        Assert.assertSame(restoredHolder.getDeployedNode(), restoredPool.getResourceNodeMap().get("worker-1"));
+        Assert.assertEquals(restoredPool.getNodeAppMapping().get(restoredHolder.getDeployedNode()).size(), 1);
+        Assert.assertEquals(restoredPool.getResourceNodeMap().get("worker-1").getHttpsInterface().getUsername(),
+                "admin");
+    }
+
+    @Test
+    public void testChangedEntries() throws IOException {
+        ResourcePool resourcePool = createResourcePool();
+        Map<String, byte[]> entries = ResourcePoolCodec.encodeEntries(resourcePool);
+        Assert.assertEquals(ResourcePoolCodec.encodeEntries(resourcePool).keySet(), entries.keySet());
+
+        resourcePool.getResourceNodeMap().remove("worker-2");
+        Map<String, byte[]> changedEntries = ResourcePoolCodec.encodeEntries(resourcePool);
+        Assert.assertEquals(changedEntries.size(), entries.size() - 1);
+        Assert.assertEquals(changedEntries.get("app:TestApp"), entries.get("app:TestApp"));
+        Assert.assertTrue(ResourcePoolCodec.isTombstone(ResourcePoolCodec.getTombstone()));
+        Assert.assertFalse(ResourcePoolCodec.isTombstone(changedEntries.get("app:TestApp")));
+    }
+
+    @Test
+    public void testLegacyResourcePoolIsNotSnapshot() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ObjectOutputStream(bytes).writeObject(createResourcePool());
+        Assert.assertFalse(ResourcePoolCodec.isSnapshot(bytes.toByteArray()));
+    }
+
+    private ResourcePool createResourcePool() {
+        ResourcePool resourcePool = new ResourcePool("group-1");
+        ResourceNode worker1 = createResourceNode("worker-1", 9443, false);
+        ResourceNode worker2 = createResourceNode("worker-2", 9444, false);
+        ResourceNode receiver = createResourceNode("receiver-1", 9445, true);
+        resourcePool.getResourceNodeMap().put(worker1.getId(), worker1);
+        resourcePool.getResourceNodeMap().put(worker2.getId(), worker2);
+        resourcePool.getReceiverNodeMap().put(receiver.getId(), receiver);
+
+        StringBuilder largeSiddhiApp = new StringBuilder("@App:name('TestApp-group1-1')\n");
+        while (largeSiddhiApp.length() < 70000) {
+            largeSiddhiApp.append("define stream TestStream (symbol string, price float, volume long);\n");
+        }
+        List<SiddhiAppHolder> deployedApps = new ArrayList<>();
+        deployedApps.add(new SiddhiAppHolder("TestApp", "group1", "TestApp-group1-1", largeSiddhiApp.toString(),
+                worker1, false, 2));
+        deployedApps.add(new SiddhiAppHolder("TestApp", "passthrough", "TestApp-passthrough-1",
+                "@App:name('TestApp-passthrough-1')", receiver, true, 1));
+        resourcePool.getSiddhiAppHoldersMap().put("TestApp", deployedApps);
+        resourcePool.getAppsWaitingForDeploy().put("WaitingApp", Collections.singletonList(new SiddhiAppHolder(
+                "WaitingApp", "group1", "WaitingApp-group1-1", "@App:name('WaitingApp-group1-1')", null, false,
+                1)));
+        return resourcePool;
+    }
+
+    private ResourceNode createResourceNode(String id, int port, boolean isReceiverNode) {
+        ResourceNode resourceNode = new ResourceNode(id);
+        resourceNode.setState("EXISTS");
+        resourceNode.setReceiverNode(isReceiverNode);
+        resourceNode.setHttpsInterface(new InterfaceConfig("localhost", port, "admin", "admin"));
+        return resourceNode;
+    }
+}
@@ -21,16 +21,78 @@ package org.wso2.carbon.status.dashboard.core.api;
 
 import org.wso2.carbon.status.dashboard.core.internal.MonitoringDataHolder;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Rest API service which is used to access service stub for calling another worker.
  */
 public class WorkerServiceFactory {
-    
+    private static final long IDLE_CLIENT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // clients are thread safe, so one client is shared by all the calls to a node with the same user
+    private static final Map<String, CachedClient> clients = new ConcurrentHashMap<>();
+    private static final AtomicLong lastEvictionMillis = new AtomicLong(System.currentTimeMillis());
+
     public static WorkerServiceStub getWorkerHttpsClient(String url, String username, String password) {
+        long currentTimeMillis = System.currentTimeMillis();
+        evictIdleClients(currentTimeMillis);
+        byte[] passwordDigest = digest(password);
+        // a client built with other credentials of the user is replaced rather than kept next to the new one
+        CachedClient client = clients.compute(url + '\n' + username, (key, cachedClient) ->
+                cachedClient != null && MessageDigest.isEqual(cachedClient.passwordDigest, passwordDigest) ?
+                        cachedClient : new CachedClient(passwordDigest, buildClient(url, username, password)));
+        client.lastUsedMillis = currentTimeMillis;
+        return client.workerServiceStub;
+    }
+
+    private static WorkerServiceStub buildClient(String url, String username, String password) {
         return MonitoringDataHolder.getInstance().getClientBuilderService().build(username, password,
                 MonitoringDataHolder.getInstance().getStatusDashboardDeploymentConfigs()
                         .getWorkerConnectionConfigurations().getConnectionTimeOut(), MonitoringDataHolder.getInstance()
                         .getStatusDashboardDeploymentConfigs().getWorkerConnectionConfigurations().getReadTimeOut(),
                 WorkerServiceStub.class, url);
     }
+
+    /**
+     * Drop the clients of the nodes that were not called within the idle timeout, such as removed workers.
+     */
+    private static void evictIdleClients(long currentTimeMillis) {
+        long lastEviction = lastEvictionMillis.get();
+        if (currentTimeMillis - lastEviction >= IDLE_CLIENT_TIMEOUT_MILLIS &&
+                lastEvictionMillis.compareAndSet(lastEviction, currentTimeMillis)) {
+            clients.values().removeIf(client -> currentTimeMillis - client.lastUsedMillis >=
+                    IDLE_CLIENT_TIMEOUT_MILLIS);
+        }
+    }
+
+    private static byte[] digest(String password) {
+        if (password == null) {
+            return new byte[0];
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException("SHA-256 is not available. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Client of a node, kept with the digest of the password it was built with instead of the password.
+     */
+    private static class CachedClient {
+        private final byte[] passwordDigest;
+        private final WorkerServiceStub workerServiceStub;
+        private volatile long lastUsedMillis;
+
+        private CachedClient(byte[] passwordDigest, WorkerServiceStub workerServiceStub) {
+            this.passwordDigest = passwordDigest;
+            this.workerServiceStub = workerServiceStub;
+        }
+    }
 }
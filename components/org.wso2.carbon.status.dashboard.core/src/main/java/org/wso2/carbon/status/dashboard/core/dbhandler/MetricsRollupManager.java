@@ -0,0 +1,543 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.status.dashboard.core.dbhandler;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.status.dashboard.core.dbhandler.utils.DBTableUtils;
+import org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants;
+import org.wso2.carbon.status.dashboard.core.exception.RDBMSTableException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_M1_RATE;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_METRIC_TYPE;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_NAME;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_TIMESTAMP;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_VALUE_COUNT;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_VALUE_SUM;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.COLUMN_WATERMARK;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.EXPR_DECIMAL_FROM_STRING;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_METRIC_GAUGE;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_METRIC_METER;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_METRIC_TIMER;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_ROLLUP_1D;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_ROLLUP_1H;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_ROLLUP_1M;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_ROLLUP_WATERMARK;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_BEGIN_TIME;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_COLUMNS;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_CONDITION;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_CURRENT_TIME;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_GRANULARITY;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_METRIC_TYPE;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_NAMES;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_SOURCE_TABLE_NAME;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_TABLE_NAME;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_WORKER_ID;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.QUESTION_MARK;
+
+/**
+ * Maintains the 1 minute, 1 hour and 1 day rollups of the gauge, meter and timer metrics.
+ * <p>
+ * A background job sums the value of each metric (the gauge value and the one minute rate of the meters and timers)
+ * per bucket, rolling up the raw metrics into the minute table, the minutes into the hour table and the hours into
+ * the day table. Each rollup table keeps a watermark per metric table, below which its buckets are complete. The
+ * watermark is compared and advanced before the insert of the buckets, in the same transaction, so a bucket is
+ * rolled up once even if several dashboards share the metrics database. Buckets start at a multiple of their size,
+ * as in the aggregate queries of the raw metrics. Aggregated metrics are then read from the coarsest rollup whose
+ * buckets divide the requested aggregation, from the finer rollups above its watermark and from the raw table for
+ * the last few minutes.
+ */
+public class MetricsRollupManager {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRollupManager.class);
+    private static final long ROLLUP_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long PURGE_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // metrics are reported periodically by the workers, so a minute is rolled up once its late samples arrived
+    private static final long LATENESS_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final String NAME_EQUALS_CONDITION = "NAME=?";
+    private static final String NAME_LIKE_CONDITION = "NAME like ?";
+    private static final String NAME_IN_CONDITION = "NAME IN (" + PLACEHOLDER_NAMES + ")";
+    private static final Map<String, String> ROLLED_UP_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        ROLLED_UP_COLUMNS.put(METRICS_TABLE_METRIC_GAUGE, EXPR_DECIMAL_FROM_STRING);
+        ROLLED_UP_COLUMNS.put(METRICS_TABLE_METRIC_METER, COLUMN_M1_RATE);
+        ROLLED_UP_COLUMNS.put(METRICS_TABLE_METRIC_TIMER, COLUMN_M1_RATE);
+    }
+
+    private final HikariDataSource dataSource;
+    private final QueryManager metricsQueryManager;
+    private final Map<String, Long> watermarks = new ConcurrentHashMap<>();
+    private volatile boolean isAvailable;
+    private long lastPurgeTime;
+    private ScheduledExecutorService rollupExecutor;
+
+    /**
+     * Rollup tables, from the finest to the coarsest.
+     */
+    enum RollupLevel {
+        ONE_MINUTE(METRICS_TABLE_ROLLUP_1M, TimeUnit.MINUTES.toMillis(1), TimeUnit.DAYS.toMillis(1),
+                TimeUnit.DAYS.toMillis(2)),
+        ONE_HOUR(METRICS_TABLE_ROLLUP_1H, TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(30),
+                TimeUnit.DAYS.toMillis(35)),
+        ONE_DAY(METRICS_TABLE_ROLLUP_1D, TimeUnit.DAYS.toMillis(1), TimeUnit.DAYS.toMillis(366),
+                TimeUnit.DAYS.toMillis(400));
+
+        private final String tableName;
+        private final long granularity;
+        // upper bound of the time rolled up in one transaction, while catching up with the existing metrics
+        private final long maxRollupSpan;
+        private final long retention;
+
+        RollupLevel(String tableName, long granularity, long maxRollupSpan, long retention) {
+            this.tableName = tableName;
+            this.granularity = granularity;
+            this.maxRollupSpan = maxRollupSpan;
+            this.retention = retention;
+        }
+
+        String getTableName() {
+            return tableName;
+        }
+
+        long getGranularity() {
+            return granularity;
+        }
+    }
+
+    public MetricsRollupManager(HikariDataSource dataSource, QueryManager metricsQueryManager) {
+        this.dataSource = dataSource;
+        this.metricsQueryManager = metricsQueryManager;
+    }
+
+    /**
+     * Create the rollup tables if they do not exist and load the watermarks.
+     *
+     * @return true if the rollups can be used.
+     */
+    public boolean init() {
+        Connection conn = DBHandler.getInstance().getConnection(dataSource);
+        try {
+            String tableCheckQuery = metricsQueryManager.getQuery(SQLConstants.ISTABLE_EXISTS_QUERY);
+            createTableIfNotExists(conn, tableCheckQuery, METRICS_TABLE_ROLLUP_WATERMARK,
+                    metricsQueryManager.getQuery(SQLConstants.CREATE_ROLLUP_WATERMARK_TABLE));
+            String createRollupTableQuery = metricsQueryManager.getQuery(SQLConstants.CREATE_ROLLUP_TABLE);
+            for (RollupLevel level : RollupLevel.values()) {
+                createTableIfNotExists(conn, tableCheckQuery, level.tableName,
+                        createRollupTableQuery.replace(PLACEHOLDER_TABLE_NAME, level.tableName));
+            }
+            loadWatermarks(conn);
+            isAvailable = true;
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Unable to initialize the metrics rollup tables, aggregated metrics will be queried from " +
+                    "the raw metrics tables. " + e.getMessage(), e);
+            isAvailable = false;
+        } finally {
+            StatusDashboardMetricsDBHandler.cleanupConnection(conn);
+        }
+        return isAvailable;
+    }
+
+    /**
+     * Start rolling up the metrics periodically in the background.
+     */
+    public synchronized void start() {
+        if (!isAvailable || rollupExecutor != null) {
+            return;
+        }
+        rollupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MetricsRollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rollupExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                rollup(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                logger.error("Error while rolling up the metrics. " + e.getMessage(), e);
+            }
+        }, 0, ROLLUP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (rollupExecutor != null) {
+            rollupExecutor.shutdownNow();
+            rollupExecutor = null;
+        }
+    }
+
+    public boolean isAvailable() {
+        return isAvailable;
+    }
+
+    /**
+     * Roll up the metrics reported before the given time, less the lateness of the metrics, and purge the expired
+     * rollups.
+     *
+     * @param currentTime current time in milliseconds.
+     */
+    void rollup(long currentTime) {
+        Connection conn = DBHandler.getInstance().getConnection(dataSource);
+        try {
+            loadWatermarks(conn);
+            for (RollupLevel level : RollupLevel.values()) {
+                for (String metricTable : ROLLED_UP_COLUMNS.keySet()) {
+                    rollup(conn, level, metricTable, currentTime);
+                }
+            }
+            if (currentTime - lastPurgeTime >= PURGE_PERIOD_MILLIS) {
+                purge(conn, currentTime);
+                lastPurgeTime = currentTime;
+            }
+        } catch (SQLException e) {
+            throw new RDBMSTableException("Error rolling up the metrics: " + e.getMessage(), e);
+        } finally {
+            StatusDashboardMetricsDBHandler.cleanupConnection(conn);
+        }
+    }
+
+    private void rollup(Connection conn, RollupLevel level, String metricTable, long currentTime)
+            throws SQLException {
+        long rollupEnd;
+        if (level == RollupLevel.ONE_MINUTE) {
+            rollupEnd = floor(currentTime - LATENESS_MILLIS, level.granularity);
+        } else {
+            Long finerWatermark = watermarks.get(getWatermarkKey(RollupLevel.values()[level.ordinal() - 1],
+                    metricTable));
+            if (finerWatermark == null) {
+                return;
+            }
+            rollupEnd = floor(finerWatermark, level.granularity);
+        }
+        Long watermark = watermarks.get(getWatermarkKey(level, metricTable));
+        if (watermark == null) {
+            watermark = initWatermark(conn, level, metricTable);
+            if (watermark == null) {
+                return;
+            }
+        }
+        if (rollupEnd <= watermark) {
+            return;
+        }
+        long newWatermark = Math.min(rollupEnd, watermark + level.maxRollupSpan);
+        String insertQuery;
+        if (level == RollupLevel.ONE_MINUTE) {
+            insertQuery = metricsQueryManager.getQuery(SQLConstants.INSERT_RAW_ROLLUP_QUERY)
+                    .replace(PLACEHOLDER_SOURCE_TABLE_NAME, metricTable)
+                    .replace(PLACEHOLDER_METRIC_TYPE, metricTable)
+                    .replace(PLACEHOLDER_COLUMNS, ROLLED_UP_COLUMNS.get(metricTable));
+        } else {
+            insertQuery = metricsQueryManager.getQuery(SQLConstants.INSERT_ROLLUP_QUERY)
+                    .replace(PLACEHOLDER_SOURCE_TABLE_NAME, RollupLevel.values()[level.ordinal() - 1].tableName)
+                    .replace(PLACEHOLDER_METRIC_TYPE, QUESTION_MARK);
+        }
+        insertQuery = insertQuery.replace(PLACEHOLDER_TABLE_NAME, level.tableName)
+                .replace(PLACEHOLDER_GRANULARITY, Long.toString(level.granularity));
+        conn.setAutoCommit(false);
+        try {
+            // the watermark is advanced first, so that the buckets are inserted only by the dashboard which
+            // advanced it, while another dashboard sharing the metrics database waits for its commit
+            try (PreparedStatement stmt = conn.prepareStatement(metricsQueryManager.getQuery(
+                    SQLConstants.UPDATE_ROLLUP_WATERMARK_QUERY))) {
+                stmt.setLong(1, newWatermark);
+                stmt.setString(2, level.tableName);
+                stmt.setString(3, metricTable);
+                stmt.setLong(4, watermark);
+                if (stmt.executeUpdate() == 0) {
+                    // rolled up by another dashboard sharing the metrics database
+                    conn.rollback();
+                    watermarks.remove(getWatermarkKey(level, metricTable));
+                    return;
+                }
+            }
+            int rowCount;
+            try (PreparedStatement stmt = conn.prepareStatement(insertQuery)) {
+                int index = 1;
+                if (level != RollupLevel.ONE_MINUTE) {
+                    stmt.setString(index++, metricTable);
+                }
+                stmt.setLong(index++, watermark);
+                stmt.setLong(index, newWatermark);
+                rowCount = stmt.executeUpdate();
+            }
+            conn.commit();
+            watermarks.put(getWatermarkKey(level, metricTable), newWatermark);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Rolled up " + metricTable + " into " + rowCount + " rows of " + level.tableName +
+                        " from " + watermark + " to " + newWatermark + ".");
+            }
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Start the rollup of a metrics table from its earliest metric.
+     *
+     * @return initial watermark, or null if there are no metrics to roll up.
+     */
+    private Long initWatermark(Connection conn, RollupLevel level, String metricTable) throws SQLException {
+        Long earliestTime = null;
+        try (PreparedStatement stmt = conn.prepareStatement(metricsQueryManager.getQuery(
+                SQLConstants.SELECT_ROLLUP_MIN_TIMESTAMP_QUERY).replace(PLACEHOLDER_TABLE_NAME, metricTable));
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                long timestamp = rs.getLong(COLUMN_TIMESTAMP);
+                if (!rs.wasNull()) {
+                    earliestTime = timestamp;
+                }
+            }
+        }
+        if (earliestTime == null) {
+            return null;
+        }
+        long watermark = floor(earliestTime, level.granularity);
+        try (PreparedStatement stmt = conn.prepareStatement(metricsQueryManager.getQuery(
+                SQLConstants.INSERT_ROLLUP_WATERMARK_QUERY))) {
+            stmt.setString(1, level.tableName);
+            stmt.setString(2, metricTable);
+            stmt.setLong(3, watermark);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            // initialized by another dashboard sharing the metrics database
+            if (logger.isDebugEnabled()) {
+                logger.debug("Unable to initialize the watermark of " + level.tableName + " for " + metricTable +
+                        ". " + e.getMessage(), e);
+            }
+            return null;
+        }
+        watermarks.put(getWatermarkKey(level, metricTable), watermark);
+        return watermark;
+    }
+
+    /**
+     * Delete the rollups older than the retention of their table, once they are rolled up into the coarser table.
+     */
+    private void purge(Connection conn, long currentTime) throws SQLException {
+        String purgeQuery = metricsQueryManager.getQuery(SQLConstants.PURGE_ROLLUP_QUERY);
+        RollupLevel[] levels = RollupLevel.values();
+        for (RollupLevel level : levels) {
+            long purgeTime = currentTime - level.retention;
+            if (level.ordinal() < levels.length - 1) {
+                for (String metricTable : ROLLED_UP_COLUMNS.keySet()) {
+                    Long coarserWatermark = watermarks.get(getWatermarkKey(levels[level.ordinal() + 1],
+                            metricTable));
+                    purgeTime = Math.min(purgeTime, coarserWatermark == null ? Long.MIN_VALUE : coarserWatermark);
+                }
+            }
+            if (purgeTime == Long.MIN_VALUE) {
+                continue;
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(purgeQuery.replace(PLACEHOLDER_TABLE_NAME,
+                    level.tableName))) {
+                stmt.setLong(1, purgeTime);
+                int rowCount = stmt.executeUpdate();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Purged " + rowCount + " expired rows of " + level.tableName + ".");
+                }
+            }
+        }
+    }
+
+    private void loadWatermarks(Connection conn) throws SQLException {
+        String selectQuery = metricsQueryManager.getQuery(SQLConstants.SELECT_ROLLUP_WATERMARK_QUERY)
+                .replace(PLACEHOLDER_TABLE_NAME, QUESTION_MARK);
+        Map<String, Long> loadedWatermarks = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
+            for (RollupLevel level : RollupLevel.values()) {
+                stmt.setString(1, level.tableName);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        loadedWatermarks.put(getWatermarkKey(level, rs.getString(COLUMN_METRIC_TYPE)),
+                                rs.getLong(COLUMN_WATERMARK));
+                    }
+                }
+            }
+        }
+        watermarks.keySet().retainAll(loadedWatermarks.keySet());
+        watermarks.putAll(loadedWatermarks);
+    }
+
+    /**
+     * Select the sum and the count of the values of the metrics per bucket, reading the rollups where they are
+     * available and the raw metrics table for the rest of the time range.
+     *
+     * @param metricTable   raw metrics table of the metrics.
+     * @param source        worker the metrics are reported by.
+     * @param name          name of the metric, or name pattern of the metrics.
+     * @param isNamePattern true if the name is a like pattern.
+     * @param beginTime     beginning of the time range, it is rounded down to a bucket.
+     * @param endTime       end of the time range.
+     * @param bucketSize    size of the buckets in milliseconds.
+     * @return sum and count of the values of each metric per bucket start time, or null if the rollups cannot be
+     * used for the bucket size.
+     */
+    SortedMap<Long, Map<String, double[]>> select(String metricTable, String source, String name,
+                                                  boolean isNamePattern, long beginTime, long endTime,
+                                                  long bucketSize) {
+        return select(metricTable, source, isNamePattern ? NAME_LIKE_CONDITION : NAME_EQUALS_CONDITION,
+                new String[]{name}, beginTime, endTime, bucketSize);
+    }
+
+    /**
+     * Select the sum and the count of the values of several metrics per bucket in one query per table.
+     *
+     * @param metricTable raw metrics table of the metrics.
+     * @param source      worker the metrics are reported by.
+     * @param names       names of the metrics.
+     * @param beginTime   beginning of the time range, it is rounded down to a bucket.
+     * @param endTime     end of the time range.
+     * @param bucketSize  size of the buckets in milliseconds.
+     * @return sum and count of the values of each metric per bucket start time, or null if the rollups cannot be
+     * used for the bucket size.
+     */
+    SortedMap<Long, Map<String, double[]>> select(String metricTable, String source, List<String> names,
+                                                  long beginTime, long endTime, long bucketSize) {
+        return select(metricTable, source, NAME_IN_CONDITION.replace(PLACEHOLDER_NAMES,
+                DBTableUtils.getInstance().getParameterMarkers(names.size())), names.toArray(new String[0]),
+                beginTime, endTime, bucketSize);
+    }
+
+    private SortedMap<Long, Map<String, double[]>> select(String metricTable, String source, String condition,
+                                                          String[] names, long beginTime, long endTime,
+                                                          long bucketSize) {
+        RollupLevel selectedLevel = null;
+        if (isAvailable && ROLLED_UP_COLUMNS.containsKey(metricTable)) {
+            for (RollupLevel level : RollupLevel.values()) {
+                if (bucketSize >= level.granularity && bucketSize % level.granularity == 0
+                        && watermarks.containsKey(getWatermarkKey(level, metricTable))) {
+                    selectedLevel = level;
+                }
+            }
+        }
+        if (selectedLevel == null) {
+            return null;
+        }
+        SortedMap<Long, Map<String, double[]>> buckets = new TreeMap<>();
+        long from = floor(beginTime, bucketSize);
+        Connection conn = DBHandler.getInstance().getConnection(dataSource);
+        try {
+            for (int i = selectedLevel.ordinal(); i >= 0; i--) {
+                RollupLevel level = RollupLevel.values()[i];
+                Long watermark = watermarks.get(getWatermarkKey(level, metricTable));
+                if (watermark == null || watermark <= from) {
+                    continue;
+                }
+                String query = metricsQueryManager.getQuery(SQLConstants.SELECT_ROLLUP_QUERY)
+                        .replace(PLACEHOLDER_TABLE_NAME, level.tableName)
+                        .replace(PLACEHOLDER_METRIC_TYPE, QUESTION_MARK)
+                        .replace(PLACEHOLDER_WORKER_ID, QUESTION_MARK)
+                        .replace(PLACEHOLDER_CONDITION, condition)
+                        .replace(PLACEHOLDER_BEGIN_TIME, QUESTION_MARK)
+                        .replace(PLACEHOLDER_CURRENT_TIME, QUESTION_MARK);
+                long to = Math.min(watermark, endTime + 1);
+                selectBuckets(conn, query, toParameters(new Object[]{metricTable, source}, names, from, to), bucketSize,
+                        buckets);
+                from = to;
+            }
+            if (from <= endTime) {
+                String query = metricsQueryManager.getQuery(SQLConstants.SELECT_RAW_ROLLUP_QUERY)
+                        .replace(PLACEHOLDER_TABLE_NAME, metricTable)
+                        .replace(PLACEHOLDER_COLUMNS, ROLLED_UP_COLUMNS.get(metricTable))
+                        .replace(PLACEHOLDER_GRANULARITY, Long.toString(bucketSize))
+                        .replace(PLACEHOLDER_WORKER_ID, QUESTION_MARK)
+                        .replace(PLACEHOLDER_CONDITION, condition)
+                        .replace(PLACEHOLDER_BEGIN_TIME, QUESTION_MARK)
+                        .replace(PLACEHOLDER_CURRENT_TIME, QUESTION_MARK);
+                selectBuckets(conn, query, toParameters(new Object[]{source}, names, from, endTime), bucketSize,
+                        buckets);
+            }
+        } catch (SQLException e) {
+            throw new RDBMSTableException("Error retrieving the rollups of table '" + metricTable + "': "
+                    + e.getMessage(), e);
+        } finally {
+            StatusDashboardMetricsDBHandler.cleanupConnection(conn);
+        }
+        return buckets;
+    }
+
+    private static Object[] toParameters(Object[] leadingParameters, String[] names, long from, long to) {
+        Object[] parameters = Arrays.copyOf(leadingParameters, leadingParameters.length + names.length + 2);
+        System.arraycopy(names, 0, parameters, leadingParameters.length, names.length);
+        parameters[parameters.length - 2] = from;
+        parameters[parameters.length - 1] = to;
+        return parameters;
+    }
+
+    private void selectBuckets(Connection conn, String query, Object[] parameters, long bucketSize,
+                               SortedMap<Long, Map<String, double[]>> buckets) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] instanceof Long) {
+                    stmt.setLong(i + 1, (Long) parameters[i]);
+                } else {
+                    stmt.setString(i + 1, (String) parameters[i]);
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long bucket = floor(rs.getLong(COLUMN_TIMESTAMP), bucketSize);
+                    double[] sumAndCount = buckets.computeIfAbsent(bucket, key -> new HashMap<>())
+                            .computeIfAbsent(rs.getString(COLUMN_NAME), key -> new double[2]);
+                    sumAndCount[0] += rs.getDouble(COLUMN_VALUE_SUM);
+                    sumAndCount[1] += rs.getLong(COLUMN_VALUE_COUNT);
+                }
+            }
+        }
+    }
+
+    private void createTableIfNotExists(Connection conn, String tableCheckQuery, String tableName,
+                                        String createTableQuery) throws SQLException {
+        if (!DBHandler.getInstance().isTableExist(conn, tableCheckQuery.replace(PLACEHOLDER_TABLE_NAME,
+                tableName))) {
+            try (PreparedStatement stmt = conn.prepareStatement(createTableQuery)) {
+                stmt.executeUpdate();
+            }
+            logger.info("Created the metrics rollup table " + tableName + ".");
+        }
+    }
+
+    private static String getWatermarkKey(RollupLevel level, String metricTable) {
+        return level.tableName + SQLConstants.PACKAGE_NAME_SEPARATOR + metricTable;
+    }
+
+    private static long floor(long time, long granularity) {
+        return Math.floorDiv(time, granularity) * granularity;
+    }
+}
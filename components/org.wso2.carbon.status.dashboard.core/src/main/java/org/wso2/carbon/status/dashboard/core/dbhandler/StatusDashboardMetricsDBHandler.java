@@ -45,6 +45,9 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.AGG_AVG_COLUMN_COUNT;
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.AGG_COLUMN_COUNT;
@@ -69,6 +72,7 @@ import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_AGGREGATION_TIME;
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_COLUMNS;
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_NAME;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_NAMES;
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_RESULT;
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_TABLE_NAME;
 import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.PLACEHOLDER_WORKER_ID;
@@ -91,6 +95,8 @@ public class StatusDashboardMetricsDBHandler {
     private String recordSelectAggregatedAppMetricsQuery;
     private String selectWorkerMetricsQuery;
     private String selectWorkerAggregatedMetricsQuery;
+    private String selectWorkerMultiMetricsQuery;
+    private String selectWorkerAggregatedMultiMetricsQuery;
     private String selectAppComponentList;
     private String selectWorkerAggregatedThroughputQuery;
     private String selectWorkerThroughputQuery;
@@ -99,6 +105,9 @@ public class StatusDashboardMetricsDBHandler {
     private HikariDataSource dataSource;
     private Map<String, Map<String, String>> workerAttributeTypeMap;
     private QueryManager metricsQueryManager;
+    private MetricsRollupManager rollupManager;
+    // resolved multi metrics queries by the aggregation time and the number of metric names
+    private final Map<String, String> resolvedMultiMetricsQueries = new ConcurrentHashMap<>();
     
     public StatusDashboardMetricsDBHandler() {
         Connection conn = null;
@@ -118,6 +127,10 @@ public class StatusDashboardMetricsDBHandler {
                         .SELECT_WORKER_AGGREGATE_METRICS_QUERY);
                 selectWorkerAggregatedThroughputQuery = metricsQueryManager.getQuery(SQLConstants.
                         SELECT_WORKER_AGGREGATE_THROUGHPUT_QUERY);
+                selectWorkerMultiMetricsQuery = metricsQueryManager.getQuery(SQLConstants.
+                        SELECT_WORKER_MULTI_METRICS_QUERY);
+                selectWorkerAggregatedMultiMetricsQuery = metricsQueryManager.getQuery(SQLConstants.
+                        SELECT_WORKER_AGGREGATE_MULTI_METRICS_QUERY);
                 selectAppComponentList = metricsQueryManager.getQuery(SQLConstants.
                         SELECT_COMPONENT_LIST);
                 selectAppComponentHistory = metricsQueryManager.getQuery(SQLConstants.
@@ -137,12 +150,25 @@ public class StatusDashboardMetricsDBHandler {
                     }
                 }
             }
+            rollupManager = new MetricsRollupManager(dataSource, metricsQueryManager);
+            if (rollupManager.init()) {
+                rollupManager.start();
+            }
         } else {
             logger.warn(DATASOURCE_ID + " Could not find. Hence cannot initialize the status dashboard.");
         }
     }
     
     
+    /**
+     * Stop rolling up the metrics.
+     */
+    public void shutdown() {
+        if (rollupManager != null) {
+            rollupManager.stop();
+        }
+    }
+    
     /**
      * This resolve the table name in generic tables.
      *
@@ -540,6 +566,28 @@ public class StatusDashboardMetricsDBHandler {
     public List selectAppAggOverallMetrics(String metricsType, String workerId, long
             timeInterval, String appName, long currentTime) {
         long aggregationTime = DBTableUtils.getAggregation(timeInterval);
+        String rolledUpTable = null;
+        switch (metricsType) {
+            case "memory":
+                rolledUpTable = METRICS_TABLE_METRIC_GAUGE;
+                break;
+            case "throughput":
+                rolledUpTable = METRICS_TABLE_METRIC_METER;
+                break;
+            case "latency":
+                rolledUpTable = METRICS_TABLE_METRIC_TIMER;
+                break;
+            default:
+                break;
+        }
+        if (rolledUpTable != null) {
+            List<List<Object>> rolledUpMetrics = selectRollups(rolledUpTable, workerId, APP_NAME_PREFIX + appName +
+                            PACKAGE_NAME_SEPARATOR + PERCENTAGE_MARK, true, timeInterval, currentTime, aggregationTime,
+                    RollupReduction.SUM_OF_AVERAGES);
+            if (rolledUpMetrics != null) {
+                return rolledUpMetrics;
+            }
+        }
         switch (metricsType) {
             case "memory": {
                 String tableName = METRICS_TABLE_METRIC_GAUGE;
@@ -625,6 +673,11 @@ public class StatusDashboardMetricsDBHandler {
     public List selectWorkerAggregatedMetrics(String workerId, long timeInterval, String metricTypeName, long
             currentTime) {
         long aggregationTime = DBTableUtils.getAggregation(timeInterval);
+        List<List<Object>> rolledUpMetrics = selectRollups(METRICS_TABLE_METRIC_GAUGE, workerId, metricTypeName,
+                false, timeInterval, currentTime, aggregationTime, RollupReduction.AVERAGE);
+        if (rolledUpMetrics != null) {
+            return rolledUpMetrics;
+        }
         String resolvedSelectWorkerMetricsQuery = resolveTableName(
                 selectWorkerAggregatedMetricsQuery, METRICS_TABLE_METRIC_GAUGE);
         String resolvedQuery = resolvedSelectWorkerMetricsQuery.replace(SQLConstants.PLACEHOLDER_BEGIN_TIME,
@@ -636,6 +689,87 @@ public class StatusDashboardMetricsDBHandler {
         return selectGauge(resolvedQuery, true, parameters);
     }
     
+    /**
+     * Used to get several metrics gauges of jvm metrics with one query.
+     *
+     * @param workerId        source ID of the metrics.
+     * @param timeInterval    time interval that needed to be taken.
+     * @param metricTypeNames metrics type names ex: memory,cpu
+     * @param currentTime     current time in milliseconds.
+     * @return List<List<Object>> of metrics data of each metrics type name, empty if there is no data of the name
+     */
+    public Map<String, List<List<Object>>> selectWorkerMetrics(String workerId, long timeInterval,
+                                                               List<String> metricTypeNames, long currentTime) {
+        String resolvedQuery = resolvedMultiMetricsQueries.computeIfAbsent("0:" + metricTypeNames.size(),
+                key -> resolveMultiMetricsQuery(selectWorkerMultiMetricsQuery, metricTypeNames.size()));
+        return selectGauges(resolvedQuery, false, metricTypeNames,
+                getMultiMetricsParameters(workerId, metricTypeNames, currentTime - timeInterval, currentTime));
+    }
+    
+    /**
+     * Used to get several aggregated metrics gauges of jvm metrics with one query.
+     *
+     * @param workerId        source ID of the metrics.
+     * @param timeInterval    time interval that needed to be taken.
+     * @param metricTypeNames metrics type names ex: memory,cpu
+     * @param currentTime     current time in milliseconds.
+     * @return List<List<Object>> of metrics data of each metrics type name, empty if there is no data of the name
+     */
+    public Map<String, List<List<Object>>> selectWorkerAggregatedMetrics(String workerId, long timeInterval,
+                                                                         List<String> metricTypeNames,
+                                                                         long currentTime) {
+        long aggregationTime = DBTableUtils.getAggregation(timeInterval);
+        if (rollupManager != null && rollupManager.isAvailable()) {
+            SortedMap<Long, Map<String, double[]>> buckets = rollupManager.select(METRICS_TABLE_METRIC_GAUGE,
+                    workerId, metricTypeNames, currentTime - timeInterval, currentTime,
+                    TimeUnit.MINUTES.toMillis(aggregationTime));
+            if (buckets != null) {
+                Map<String, List<List<Object>>> metrics = new LinkedHashMap<>();
+                for (String metricTypeName : metricTypeNames) {
+                    metrics.put(metricTypeName, new ArrayList<>());
+                }
+                for (Map.Entry<Long, Map<String, double[]>> bucket : buckets.entrySet()) {
+                    for (Map.Entry<String, double[]> metric : bucket.getValue().entrySet()) {
+                        List<List<Object>> tuple = metrics.get(metric.getKey());
+                        double[] sumAndCount = metric.getValue();
+                        if (tuple != null && sumAndCount[1] > 0) {
+                            List<Object> row = new ArrayList<>(2);
+                            row.add(bucket.getKey());
+                            row.add(sumAndCount[0] / sumAndCount[1]);
+                            tuple.add(row);
+                        }
+                    }
+                }
+                return metrics;
+            }
+        }
+        String resolvedQuery = resolvedMultiMetricsQueries.computeIfAbsent(aggregationTime + ":" +
+                        metricTypeNames.size(), key -> resolveMultiMetricsQuery(selectWorkerAggregatedMultiMetricsQuery,
+                metricTypeNames.size()).replace(PLACEHOLDER_AGGREGATION_TIME, Long.toString(aggregationTime)));
+        return selectGauges(resolvedQuery, true, metricTypeNames,
+                getMultiMetricsParameters(workerId, metricTypeNames, currentTime - timeInterval, currentTime));
+    }
+    
+    private String resolveMultiMetricsQuery(String query, int nameCount) {
+        return resolveTableName(query, METRICS_TABLE_METRIC_GAUGE)
+                .replace(PLACEHOLDER_WORKER_ID, QUESTION_MARK)
+                .replace(PLACEHOLDER_NAMES, DBTableUtils.getInstance().getParameterMarkers(nameCount))
+                .replace(SQLConstants.PLACEHOLDER_BEGIN_TIME, QUESTION_MARK)
+                .replace(SQLConstants.PLACEHOLDER_CURRENT_TIME, QUESTION_MARK);
+    }
+    
+    private static Object[] getMultiMetricsParameters(String workerId, List<String> metricTypeNames, long beginTime,
+                                                      long currentTime) {
+        Object[] parameters = new Object[metricTypeNames.size() + 3];
+        parameters[0] = workerId;
+        for (int i = 0; i < metricTypeNames.size(); i++) {
+            parameters[i + 1] = metricTypeNames.get(i);
+        }
+        parameters[parameters.length - 2] = beginTime;
+        parameters[parameters.length - 1] = currentTime;
+        return parameters;
+    }
+    
     /**
      * Used to ge the overall throughput of the worker.
      *
@@ -668,6 +802,11 @@ public class StatusDashboardMetricsDBHandler {
      */
     public List selectWorkerAggregatedThroughput(String workerId, long timeInterval, long currentTime) {
         long aggregationTime = DBTableUtils.getAggregation(timeInterval);
+        List<List<Object>> rolledUpMetrics = selectRollups(METRICS_TABLE_METRIC_METER, workerId, PERCENTAGE_MARK,
+                true, timeInterval, currentTime, aggregationTime, RollupReduction.SUM);
+        if (rolledUpMetrics != null) {
+            return rolledUpMetrics;
+        }
         String resolvedSelectWorkerThroughputQuery = resolveTableName(selectWorkerAggregatedThroughputQuery,
                 METRICS_TABLE_METRIC_METER);
         String resolvedQuery = resolvedSelectWorkerThroughputQuery
@@ -682,6 +821,76 @@ public class StatusDashboardMetricsDBHandler {
                 METRICS_TABLE_METRIC_METER, parameters);
     }
     
+    /**
+     * Reduction of the rolled up values of the metrics in a bucket to the charted value.
+     */
+    private enum RollupReduction {
+        /**
+         * Average of all the values.
+         */
+        AVERAGE,
+        /**
+         * Sum of all the values.
+         */
+        SUM,
+        /**
+         * Sum of the average value of each metric.
+         */
+        SUM_OF_AVERAGES
+    }
+    
+    /**
+     * Select the aggregated metrics from the rollup tables.
+     *
+     * @param tableName       raw metrics table.
+     * @param workerId        source ID of the metrics.
+     * @param name            name or name pattern of the metrics.
+     * @param isNamePattern   true if the name is a like pattern.
+     * @param timeInterval    time interval that metrics needed to be taken.
+     * @param currentTime     current time in milliseconds.
+     * @param aggregationTime aggregation time in minutes.
+     * @param reduction       reduction of the values in a bucket.
+     * @return aggregation timestamp and value of each bucket, or null if the rollups cannot be used.
+     */
+    private List<List<Object>> selectRollups(String tableName, String workerId, String name, boolean isNamePattern,
+                                             long timeInterval, long currentTime, long aggregationTime,
+                                             RollupReduction reduction) {
+        if (rollupManager == null || !rollupManager.isAvailable()) {
+            return null;
+        }
+        SortedMap<Long, Map<String, double[]>> buckets = rollupManager.select(tableName, workerId, name,
+                isNamePattern, currentTime - timeInterval, currentTime, TimeUnit.MINUTES.toMillis(aggregationTime));
+        if (buckets == null) {
+            return null;
+        }
+        List<List<Object>> tuple = new ArrayList<>(buckets.size());
+        for (Map.Entry<Long, Map<String, double[]>> bucket : buckets.entrySet()) {
+            double value = 0;
+            double totalCount = 0;
+            for (double[] sumAndCount : bucket.getValue().values()) {
+                switch (reduction) {
+                    case AVERAGE:
+                        value += sumAndCount[0];
+                        totalCount += sumAndCount[1];
+                        break;
+                    case SUM:
+                        value += sumAndCount[0];
+                        break;
+                    default:
+                        value += sumAndCount[1] == 0 ? 0 : sumAndCount[0] / sumAndCount[1];
+                }
+            }
+            if (reduction == RollupReduction.AVERAGE) {
+                value = totalCount == 0 ? 0 : value / totalCount;
+            }
+            List<Object> row = new ArrayList<>(2);
+            row.add(bucket.getKey());
+            row.add(value);
+            tuple.add(row);
+        }
+        return tuple;
+    }
+    
     /**
      * Select the metrics of the siddhi app.
      *
@@ -842,6 +1051,63 @@ public class StatusDashboardMetricsDBHandler {
         return tuple;
     }
     
+    /**
+     * Select the metrics of several gauges, ordered by time, and split them by the gauge name.
+     *
+     * @param query selection query.
+     * @return the selected objects of each gauge name.
+     */
+    private Map<String, List<List<Object>>> selectGauges(String query, boolean isAggregated, List<String> names,
+                                                         Object[] parameters) {
+        Map<String, String> attributesTypeMap = workerAttributeTypeMap.get(METRICS_TABLE_METRIC_GAUGE);
+        Map<String, List<List<Object>>> metrics = new LinkedHashMap<>();
+        for (String name : names) {
+            metrics.put(name, new ArrayList<>());
+        }
+        Connection conn = this.getConnection();
+        ResultSet rs = null;
+        PreparedStatement stmt = null;
+        List<Object> row;
+        try {
+            stmt = conn.prepareStatement(query);
+            setDynamicValuesToStatement(stmt, parameters);
+            rs = DBHandler.getInstance().select(stmt);
+            String timestampCol = isAggregated ? COLUMN_AGG_TIMESTAMP : COLUMN_TIMESTAMP;
+            while (rs.next()) {
+                List<List<Object>> tuple = metrics.get(rs.getString(COLUMN_NAME));
+                if (tuple == null) {
+                    continue;
+                }
+                row = new ArrayList<>();
+                row.add(DBTableUtils.getInstance().fetchData(rs, timestampCol, attributesTypeMap.get
+                        (COLUMN_TIMESTAMP), metricsQueryManager));
+                row.add(Double.valueOf((String) DBTableUtils.getInstance().fetchData(rs, COLUMN_VALUE,
+                        attributesTypeMap.get(COLUMN_VALUE), metricsQueryManager)));
+                tuple.add(row);
+            }
+        } catch (SQLException e) {
+            throw new RDBMSTableException("Error retrieving records from table '" + METRICS_TABLE_METRIC_GAUGE + "': "
+                    + e.getMessage() + " in " + DATASOURCE_ID, e);
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    //ignore
+                }
+            }
+            if (stmt != null) {
+                try {
+                    stmt.close();
+                } catch (SQLException e) {
+                    //ignore
+                }
+            }
+            cleanupConnection(conn);
+        }
+        return metrics;
+    }
+    
     private static String removeCRLFCharacters(String str) {
         if (str != null) {
             str = str.replace('\n', '_').replace('\r', '_');
@@ -439,8 +439,19 @@ public class DBTableUtils {
      * @return the composed SQL query in string form.
      */
     public String composeInsertQuery(String insertQuery, int attributesSize) {
+        return insertQuery.replace(PLACEHOLDER_Q, getParameterMarkers(attributesSize));
+    }
+    
+    /**
+     * Method for composing a comma separated list of parameter markers, as used in the values of an INSERT and in
+     * the values of an IN condition.
+     *
+     * @param parameterCount number of parameters.
+     * @return the parameter markers.
+     */
+    public String getParameterMarkers(int parameterCount) {
         StringBuilder params = new StringBuilder();
-        int fieldsLeft = attributesSize;
+        int fieldsLeft = parameterCount;
         while (fieldsLeft > 0) {
             params.append(QUESTION_MARK);
             if (fieldsLeft > 1) {
@@ -448,7 +459,7 @@ public class DBTableUtils {
             }
             fieldsLeft = fieldsLeft - 1;
         }
-        return insertQuery.replace(PLACEHOLDER_Q, params.toString());
+        return params.toString();
     }
     
 }
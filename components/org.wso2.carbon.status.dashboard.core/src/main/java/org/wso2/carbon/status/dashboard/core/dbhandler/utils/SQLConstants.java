@@ -33,6 +33,9 @@ public class SQLConstants {
     public static final String SELECT_WORKER_THROUGHPUT_QUERY = "recordSelectWorkerThroughputQuery";
     public static final String SELECT_WORKER_AGGREGATE_METRICS_QUERY = "recordSelectWorkerAggregateMetricsQuery";
     public static final String SELECT_WORKER_AGGREGATE_THROUGHPUT_QUERY = "recordSelectWorkerAggregateThroughputQuery";
+    public static final String SELECT_WORKER_MULTI_METRICS_QUERY = "recordSelectWorkerMultiMetricsQuery";
+    public static final String SELECT_WORKER_AGGREGATE_MULTI_METRICS_QUERY =
+            "recordSelectWorkerAggregateMultiMetricsQuery";
     public static final String SELECT_COMPONENT_LIST = "selectAppComponentList";
     public static final String SELECT_COMPONENT_METRICS_HISTORY = "selectAppComponentHistory";
     public static final String SELECT_APP_AGG_METRICS_HISTORY = "recordSelectAgregatedAppMetricsQuery";
@@ -42,6 +45,17 @@ public class SQLConstants {
     public static final String ISTABLE_EXISTS_QUERY = "tableCheckQuery";
     public static final String DELETE_QUERY = "recordDeleteQuery";
     public static final String INSERT_QUERY = "recordInsertQuery";
+    public static final String CREATE_ROLLUP_TABLE = "rollupTableCreateQuery";
+    public static final String CREATE_ROLLUP_WATERMARK_TABLE = "rollupWatermarkTableCreateQuery";
+    public static final String SELECT_ROLLUP_WATERMARK_QUERY = "rollupWatermarkSelectQuery";
+    public static final String INSERT_ROLLUP_WATERMARK_QUERY = "rollupWatermarkInsertQuery";
+    public static final String UPDATE_ROLLUP_WATERMARK_QUERY = "rollupWatermarkUpdateQuery";
+    public static final String SELECT_ROLLUP_MIN_TIMESTAMP_QUERY = "rollupMinTimestampQuery";
+    public static final String INSERT_RAW_ROLLUP_QUERY = "rollupRawInsertQuery";
+    public static final String INSERT_ROLLUP_QUERY = "rollupInsertQuery";
+    public static final String SELECT_RAW_ROLLUP_QUERY = "rollupRawSelectQuery";
+    public static final String SELECT_ROLLUP_QUERY = "rollupSelectQuery";
+    public static final String PURGE_ROLLUP_QUERY = "rollupPurgeQuery";
     
     //Placeholder strings needed for processing the query configuration file
     public static final String DASHBOARD_CONFIG_FILE = "dashboard-configs.yaml";
@@ -50,6 +64,7 @@ public class SQLConstants {
     public static final String PLACEHOLDER_CONDITION = "{{CONDITION}}";
     public static final String PLACEHOLDER_TABLE_NAME = "{{TABLE_NAME}}";
     public static final String PLACEHOLDER_NAME = "{{NAME}}";
+    public static final String PLACEHOLDER_NAMES = "{{NAMES}}";
     public static final String PLACEHOLDER_AGGREGATION_COMPONENT_COLOUM = "{{ALL_COLUMS_EXPRESSION}}";
     public static final String PLACEHOLDER_AGGREGATION_TIME = "{{TIME_AGGREGATION_IN_MINUTES}}";
     public static final String PLACEHOLDER_WORKER_ID = "{{WORKER_ID}}";
@@ -59,6 +74,9 @@ public class SQLConstants {
     public static final String PLACEHOLDER_RESULT = "{{RESULT}}";
     public static final String PLACEHOLDER_Q = "{{Q}}";
     public static final String PLACEHOLDER_COLUMNS_PRIMARYKEY = "{{COLUMNS, PRIMARY_KEYS}}";
+    public static final String PLACEHOLDER_SOURCE_TABLE_NAME = "{{SOURCE_TABLE_NAME}}";
+    public static final String PLACEHOLDER_METRIC_TYPE = "{{METRIC_TYPE}}";
+    public static final String PLACEHOLDER_GRANULARITY = "{{GRANULARITY}}";
     public static final String STRING_TEMPLATE = "%s";
     public static final String INTEGER_TEMPLATE = "%d";
     public static final String SQL_WHERE = "WHERE";
@@ -84,6 +102,11 @@ public class SQLConstants {
     public static final String METRICS_TABLE_METRIC_HISTOGRAM = "METRIC_HISTOGRAM";
     public static final String METRICS_TABLE_METRIC_METER = "METRIC_METER";
     public static final String METRICS_TABLE_METRIC_TIMER = "METRIC_TIMER";
+    //metrics rollup table names
+    public static final String METRICS_TABLE_ROLLUP_1M = "METRIC_ROLLUP_1M";
+    public static final String METRICS_TABLE_ROLLUP_1H = "METRIC_ROLLUP_1H";
+    public static final String METRICS_TABLE_ROLLUP_1D = "METRIC_ROLLUP_1D";
+    public static final String METRICS_TABLE_ROLLUP_WATERMARK = "METRIC_ROLLUP_WATERMARK";
     
     //metrics column names
     public static final String COLUMN_TIMESTAMP = "TIMESTAMP";
@@ -91,8 +114,13 @@ public class SQLConstants {
     public static final String COLUMN_VALUE = "VALUE";
     public static final String COLUMN_NAME = "NAME";
     public static final String COLUMN_M1_RATE = "M1_RATE";
+    public static final String COLUMN_METRIC_TYPE = "METRIC_TYPE";
+    public static final String COLUMN_WATERMARK = "WATERMARK";
+    public static final String COLUMN_VALUE_SUM = "VALUE_SUM";
+    public static final String COLUMN_VALUE_COUNT = "VALUE_COUNT";
     
     //sql expressions
     public static final String EXPR_SUM_FROM_STRING = "SUM(CAST(result.VALUE as DECIMAL(22,2)))";
     public static final String EXPR_SUM_FROM_M1_RATE = "SUM(result.M1_RATE)";
+    public static final String EXPR_DECIMAL_FROM_STRING = "CAST(VALUE as DECIMAL(22,2))";
 }
@@ -36,8 +36,6 @@ import org.wso2.carbon.status.dashboard.core.api.ApiResponseMessage;
 import org.wso2.carbon.status.dashboard.core.api.MonitoringApiService;
 import org.wso2.carbon.status.dashboard.core.api.NotFoundException;
 import org.wso2.carbon.status.dashboard.core.api.WorkerServiceFactory;
-import org.wso2.carbon.status.dashboard.core.bean.ManagerClusterInfo;
-import org.wso2.carbon.status.dashboard.core.bean.ManagerMetricsSnapshot;
 import org.wso2.carbon.status.dashboard.core.bean.ManagerSiddhiApps;
 import org.wso2.carbon.status.dashboard.core.bean.NodeConfigurationDetails;
 import org.wso2.carbon.status.dashboard.core.bean.ParentSiddhiApp;
@@ -65,7 +63,6 @@ import org.wso2.carbon.status.dashboard.core.internal.WorkerStateHolder;
 import org.wso2.carbon.status.dashboard.core.internal.services.DatasourceServiceComponent;
 import org.wso2.carbon.status.dashboard.core.internal.services.PermissionGrantServiceComponent;
 import org.wso2.carbon.status.dashboard.core.model.DashboardConfig;
-import org.wso2.carbon.status.dashboard.core.model.ManagerDetails;
 import org.wso2.carbon.status.dashboard.core.model.ManagerOverView;
 import org.wso2.carbon.status.dashboard.core.model.Node;
 import org.wso2.carbon.status.dashboard.core.model.ServerDetails;
@@ -78,6 +75,8 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -102,7 +101,33 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
 
     private static StatusDashboardDBHandler dashboardStore;
     private static StatusDashboardMetricsDBHandler metricStore;
+    private static WorkerStatusPoller statusPoller;
     private static final int MAX_SIDDHI_APPS_PER_PAGE = 100;
+    private static final List<String> WORKER_METRICS_NAMES = Collections.unmodifiableList(Arrays.asList(
+            Constants.HEAP_MEMORY_USED, Constants.HEAP_MEMORY_MAX, WORKER_JVM_MEMORY_HEAP_COMMITTED,
+            WORKER_JVM_MEMORY_HEAP_INIT, Constants.SYSTEM_CPU_USAGE, Constants.PROCESS_CPU_USAGE,
+            Constants.LOAD_AVG_USAGE));
+    private static final List<String> WORKER_MORE_METRICS_NAMES = Collections.unmodifiableList(Arrays.asList(
+            Constants.WORKER_JVM_CLASS_LOADING_LOADED_CURRENT, Constants.WORKER_JVM_CLASS_LOADING_LOADED_TOTAL,
+            Constants.WORKER_JVM_CLASS_LOADING_UNLOADED_TOTAL, Constants.WORKER_JVM_GC_PS_MARKSWEEP_COUNT,
+            Constants.WORKER_JVM_GC_PS_MARKSWEEP_TIME, Constants.WORKER_JVM_GC_PS_SCAVENGE_COUNT,
+            Constants.WORKER_JVM_GC_PS_SCAVENGE_TIME, WORKER_JVM_MEMORY_HEAP_COMMITTED, WORKER_JVM_MEMORY_HEAP_INIT,
+            Constants.WORKER_JVM_MEMORY_HEAP_MAX, Constants.WORKER_JVM_MEMORY_HEAP_USAGE,
+            Constants.WORKER_JVM_MEMORY_HEAP_USED, Constants.WORKER_JVM_MEMORY_NON_HEAP_INIT,
+            Constants.WORKER_JVM_MEMORY_NON_HEAP_MAX, Constants.WORKER_JVM_MEMORY_NON_HEAP_COMMITTED,
+            Constants.WORKER_JVM_MEMORY_NON_HEAP_USAGE, Constants.WORKER_JVM_MEMORY_NON_HEAP_USED,
+            Constants.WORKER_JVM_MEMORY_TOTAL_COMMITTED, Constants.WORKER_JVM_MEMORY_TOTAL_INIT,
+            Constants.WORKER_JVM_MEMORY_TOTAL_MAX, Constants.WORKER_JVM_MEMORY_TOTAL_USED,
+            Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_TOTAL_SIZE, Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_FREE_SIZE,
+            Constants.WORKER_JVM_THREADS_DAEMON_COUNT, Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_MAX_COUNT,
+            Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_OPEN_COUNT, Constants.WORKER_JVM_THREADS_COUNT,
+            Constants.WORKER_JVM_OS_SWAP_SPACE_TOTAL_SIZE, Constants.WORKER_JVM_OS_SWAP_SPACE_FREE_SIZE,
+            Constants.WORKER_JVM_OS_CPU_LOAD_PROCESS, Constants.WORKER_JVM_OS_CPU_LOAD_SYSTEM,
+            Constants.WORKER_JVM_OS_SYSTEM_LOAD_AVERAGE, Constants.WORKER_JVM_OS_VIRTUAL_MEMORY_COMMITTED_SIZE,
+            Constants.WORKER_JVM_MEMORY_POOL, Constants.WORKER_JVM_BLOCKED_THREADS_COUNT,
+            Constants.WORKER_JVM_DEADLOCKED_THREADS_COUNT, Constants.WORKER_JVM_NEW_THREADS_COUNT,
+            Constants.WORKER_JVM_RUNNABLE_THREADS_COUNT, Constants.WORKER_JVM_TERMINATED_THREADS_COUNT,
+            Constants.WORKER_JVM_TIMD_WATING_THREADS_COUNT, Constants.WORKER_JVM_WAITING_THREADS_COUNT));
     private static final Log logger = LogFactory.getLog(MonitoringApiService.class);
     private Gson gson = new Gson();
     private static final Map<String, String> workerIDCarbonIDMap = new HashMap<>();
@@ -135,6 +160,12 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
         if (logger.isDebugEnabled()) {
             logger.debug("@Reference(unbind) Status Dashboard MonitoringApiServiceImpl API");
         }
+        if (statusPoller != null) {
+            statusPoller.stop();
+        }
+        if (metricStore != null) {
+            metricStore.shutdown();
+        }
     }
 
     /**
@@ -149,6 +180,9 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
         }
         dashboardStore = new StatusDashboardDBHandler();
         metricStore = new StatusDashboardMetricsDBHandler();
+        statusPoller = new WorkerStatusPoller(dashboardStore, getUsername(), getPassword(),
+                dashboardConfigurations.getPollingInterval());
+        statusPoller.start();
     }
 
 
@@ -165,148 +199,9 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
                 VIWER_PERMISSION_STRING));
         if (isAuthorized) {
             Map<String, List<WorkerOverview>> groupedWorkers = new HashMap<>();
-            List<NodeConfigurationDetails> workerList = dashboardStore.selectAllWorkers();
-            List<NodeConfigurationDetails> managerList = dashboardStore.getAllManagerConfigDetails();
-            List<String> ResourceClusteredWorkerNode = new ArrayList<>();
-            if (!managerList.isEmpty()) {
-                managerList.parallelStream().forEach(manager -> {
-                    try {
-                        feign.Response resourceResponse = WorkerServiceFactory.getWorkerHttpsClient(
-                                PROTOCOL + generateURLHostPort(manager.getHost(), String.valueOf(manager
-                                        .getPort())), this.getUsername(), this.getPassword()).getClusterNodeDetails();
-                        if (resourceResponse != null && resourceResponse.status() == 200) {
-                            Reader inputStream = resourceResponse.body().asReader();
-                            List<ResourceClusterInfo> clusterInfos = gson.fromJson(
-                                    inputStream, new TypeToken<List<ResourceClusterInfo>>() {
-                                    }.getType());
-                            for (ResourceClusterInfo clusterInfo : clusterInfos) {
-                                String workerId = generateWorkerKey(clusterInfo.getHttps_host(), clusterInfo
-                                        .getHttps_port());
-                                ResourceClusteredWorkerNode.add(workerId);
-                            }
-                        }
-                    } catch (feign.RetryableException e) {
-                        if (logger.isDebugEnabled()) {
-                            logger.debug(removeCRLFCharacters(manager.getWorkerId()) + " Unnable to reach manager.", e);
-                        }
-                        logger.warn(removeCRLFCharacters(manager.getWorkerId()) + " Unnable to reach manager.");
-
-                    } catch (IOException e) {
-                        logger.warn("Error occured while getting the response " + e.getMessage());
-                    }
-                });
-            }
-
-            if (!workerList.isEmpty()) {
-                workerList.parallelStream().forEach(worker -> {
-                    if (!ResourceClusteredWorkerNode.contains(worker.getWorkerId())) {
-                        try {
-                            WorkerOverview workerOverview = new WorkerOverview();
-                            feign.Response workerResponse = WorkerServiceFactory.getWorkerHttpsClient(PROTOCOL +
-                                            generateURLHostPort(worker.getHost(), String.valueOf(worker.getPort())),
-                                    getUsername(), getPassword()).getWorker();
-                            if ((workerResponse != null) && (workerResponse.status() == 200)) {
-                                Long timeInMillis = System.currentTimeMillis();
-                                String responseBody = workerResponse.body().toString();
-                                ServerDetails serverDetails = gson.fromJson(responseBody, ServerDetails.class);
-                                String message = serverDetails.getMessage();
-                                if (message == null || message.isEmpty()) {
-                                    workerOverview.setStatusMessage("Success");
-                                } else {
-                                    workerOverview.setStatusMessage(message);
-                                }
-                                feign.Response activeSiddiAppsResponse = WorkerServiceFactory.getWorkerHttpsClient(
-                                        PROTOCOL + generateURLHostPort(worker.getHost(), String.valueOf(
-                                                worker.getPort())), getUsername(), getPassword()).getSiddhiApps(true);
-                                String activeSiddiAppsResponseBody = activeSiddiAppsResponse.body().toString();
-                                List<String> activeApps = gson.fromJson(activeSiddiAppsResponseBody,
-                                        new TypeToken<List<String>>() {
-                                        }.getType());
-                                feign.Response inactiveSiddiAppsResponse = WorkerServiceFactory
-                                        .getWorkerHttpsClient(PROTOCOL + generateURLHostPort(worker.getHost(),
-                                                String.valueOf(worker.getPort())), getUsername(),
-                                                getPassword()).getSiddhiApps(false);
-                                String inactiveSiddiAppsResponseBody = inactiveSiddiAppsResponse.body().toString();
-                                List<String> inactiveApps = gson.fromJson(inactiveSiddiAppsResponseBody,
-                                        new TypeToken<List<String>>() {
-                                        }.getType());
-                                serverDetails.setSiddhiApps(activeApps.size(), inactiveApps.size());
-                                WorkerMetricsSnapshot snapshot = new WorkerMetricsSnapshot(serverDetails, timeInMillis);
-                                WorkerStateHolder.addMetrics(worker.getWorkerId(), snapshot);
-                                workerOverview.setLastUpdate(timeInMillis);
-                                workerOverview.setWorkerId(worker.getWorkerId());
-                                workerOverview.setServerDetails(serverDetails);
-
-                                //grouping the clusters of the workers
-                                List nonClusterList = groupedWorkers.get(Constants.NON_CLUSTERS_ID);
-                                String clusterID = serverDetails.getClusterId();
-                                List existing = groupedWorkers.get(clusterID);
-                                if (serverDetails.getClusterId() == null && (nonClusterList == null)) {
-                                    List<WorkerOverview> workers = new ArrayList<>();
-                                    workers.add(workerOverview);
-                                    groupedWorkers.put(Constants.NON_CLUSTERS_ID, workers);
-                                } else if (clusterID == null && (nonClusterList != null)) {
-                                    nonClusterList.add(workerOverview);
-                                } else if (clusterID != null && (existing == null)) {
-                                    List<WorkerOverview> workers = new ArrayList<>();
-                                    workers.add(workerOverview);
-                                    groupedWorkers.put(clusterID, workers);
-                                } else if (clusterID != null && (existing != null)) {
-                                    existing.add(workerOverview);
-                                }
-                            } else {
-                                workerOverview.setWorkerId(worker.getWorkerId());
-                                ServerDetails serverDetails = new ServerDetails();
-                                serverDetails.setRunningStatus(Constants.NOT_REACHABLE_ID);
-                                workerOverview.setStatusMessage(getErrorMessage(workerResponse.status()));
-                                workerOverview.setServerDetails(serverDetails);
-                                workerOverview.setLastUpdate((long) 0);
-                                //grouping the never reached
-                                if (groupedWorkers.get(Constants.NEVER_REACHED) == null) {
-                                    List<WorkerOverview> workers = new ArrayList<>();
-                                    workers.add(workerOverview);
-                                    groupedWorkers.put(Constants.NEVER_REACHED, workers);
-                                } else {
-                                    List existing = groupedWorkers.get(Constants.NEVER_REACHED);
-                                    existing.add(workerOverview);
-                                }
-                            }
-                        } catch (feign.RetryableException e) {
-                            WorkerMetricsSnapshot lastSnapshot = WorkerStateHolder.getMetrics(worker.getWorkerId());
-                            if (lastSnapshot != null) {
-                                lastSnapshot.updateRunningStatus(Constants.NOT_REACHABLE_ID);
-                                WorkerOverview workerOverview = new WorkerOverview();
-                                workerOverview.setLastUpdate(lastSnapshot.getTimeStamp());
-                                workerOverview.setWorkerId(worker.getWorkerId());
-                                workerOverview.setServerDetails(lastSnapshot.getServerDetails());
-                                if (groupedWorkers.get(lastSnapshot.getServerDetails().getClusterId()) != null) {
-                                    groupedWorkers.get(lastSnapshot.getServerDetails().getClusterId())
-                                            .add(workerOverview);
-                                } else {
-                                    List<WorkerOverview> workers = new ArrayList<>();
-                                    workers.add(workerOverview);
-                                    groupedWorkers.put(lastSnapshot.getServerDetails().getClusterId(), workers);
-                                }
-                            } else {
-                                WorkerOverview workerOverview = new WorkerOverview();
-                                workerOverview.setWorkerId(worker.getWorkerId());
-                                ServerDetails serverDetails = new ServerDetails();
-                                serverDetails.setRunningStatus(Constants.NOT_REACHABLE_ID);
-                                workerOverview.setServerDetails(serverDetails);
-                                workerOverview.setLastUpdate((long) 0);
-                                //grouping the never reached
-                                if (groupedWorkers.get(Constants.NEVER_REACHED) == null) {
-                                    List<WorkerOverview> workers = new ArrayList<>();
-                                    workers.add(workerOverview);
-                                    groupedWorkers.put(Constants.NEVER_REACHED, workers);
-                                } else {
-                                    List existing = groupedWorkers.get(Constants.NEVER_REACHED);
-                                    existing.add(workerOverview);
-                                }
-                            }
-                        }
-                    }
-                });
+            for (WorkerStatusPoller.NodeStatus<WorkerOverview> status : statusPoller.getWorkerStatuses(
+                    dashboardStore.selectAllWorkers())) {
+                groupedWorkers.computeIfAbsent(status.getGroupId(), k -> new ArrayList<>()).add(status.getOverview());
             }
             String jsonString = new Gson().toJson(groupedWorkers);
             return Response.ok().entity(jsonString).build();
@@ -317,7 +212,7 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
         }
     }
 
-    private String getErrorMessage(int errorCode) {
+    static String getErrorMessage(int errorCode) {
 
         if (errorCode == 401) {
             return "Unauthorize to reach worker";
@@ -397,288 +292,104 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
             if (type == null) {
                 if ((more != null) && more) {
                     WorkerMoreMetricsHistory history = new WorkerMoreMetricsHistory();
-                    if (timeInterval <= HOUR) {
-                        history.setJvmClassLoadingLoadedCurrent(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_CLASS_LOADING_LOADED_CURRENT, System.currentTimeMillis()));
-                        history.setJvmClassLoadingLoadedTotal(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_CLASS_LOADING_LOADED_TOTAL, System.currentTimeMillis()));
-                        history.setJvmClassLoadingUnloadedTotal(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_CLASS_LOADING_UNLOADED_TOTAL, System.currentTimeMillis()));
-                        history.setJvmGcPsMarksweepCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_GC_PS_MARKSWEEP_COUNT, System.currentTimeMillis()));
-                        history.setJvmGcPsMarksweepTime(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_GC_PS_MARKSWEEP_TIME, System.currentTimeMillis()));
-                        history.setJvmGcPsScavengeCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_GC_PS_SCAVENGE_COUNT, System.currentTimeMillis()));
-                        history.setJvmGcPsScavengeTime(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_GC_PS_SCAVENGE_TIME, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapCommitted(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                WORKER_JVM_MEMORY_HEAP_COMMITTED, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapInit(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                WORKER_JVM_MEMORY_HEAP_INIT, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapMax(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_HEAP_MAX, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapUsage(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_HEAP_USAGE, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapUsed(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_HEAP_USED, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapInit(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_NON_HEAP_INIT, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapMax(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_NON_HEAP_MAX, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapCommitted(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_NON_HEAP_COMMITTED, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapUsage(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_NON_HEAP_USAGE, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapUsed(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_NON_HEAP_USED, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalCommitted(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_TOTAL_COMMITTED, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalInit(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_TOTAL_INIT, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalMax(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_TOTAL_MAX, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalUsed(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_TOTAL_USED, System.currentTimeMillis()));
-                        history.setJvmOsPhysicalMemoryTotalSize(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_TOTAL_SIZE, System.currentTimeMillis()));
-                        history.setJvmOsPhysicalMemoryFreeSize(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_FREE_SIZE, System.currentTimeMillis()));
-                        history.setJvmThreadsDaemonCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_THREADS_DAEMON_COUNT, System.currentTimeMillis()));
-                        history.setJvmOsFileDescriptorMaxCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_MAX_COUNT, System.currentTimeMillis()));
-                        history.setJvmOsFileDescriptorOpenCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_OPEN_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmOsSwapSpaceTotalSize(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_SWAP_SPACE_TOTAL_SIZE, System.currentTimeMillis()));
-                        history.setJvmOsSwapSpaceFreeSize(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_SWAP_SPACE_FREE_SIZE, System.currentTimeMillis()));
-                        history.setJvmOsCpuLoadProcess(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_CPU_LOAD_PROCESS, System.currentTimeMillis()));
-                        history.setJvmOsCpuLoadSystem(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_CPU_LOAD_SYSTEM, System.currentTimeMillis()));
-                        history.setJvmOsSystemLoadAverage(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_SYSTEM_LOAD_AVERAGE, System.currentTimeMillis()));
-                        history.setJvmOsVirtualMemoryCommittedSize(metricStore.selectWorkerMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_VIRTUAL_MEMORY_COMMITTED_SIZE,
-                                System.currentTimeMillis()));
-                        //if only enabled
-                        history.setJvmMemoryPoolsSize(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_POOL, System.currentTimeMillis()));
-                        history.setJvmThreadsBlockedCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_BLOCKED_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsDeadlockCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_DEADLOCKED_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsNewCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_NEW_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsRunnableCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_RUNNABLE_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsTerminatedCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_TERMINATED_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsTimedWaitingCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_TIMD_WATING_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsWaitingCount(metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_WAITING_THREADS_COUNT, System.currentTimeMillis()));
-                    } else {
-                        history.setJvmClassLoadingLoadedCurrent(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_CLASS_LOADING_LOADED_CURRENT,
-                                System.currentTimeMillis()));
-                        history.setJvmClassLoadingLoadedTotal(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_CLASS_LOADING_LOADED_TOTAL,
-                                System.currentTimeMillis()));
-                        history.setJvmClassLoadingUnloadedTotal(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_CLASS_LOADING_UNLOADED_TOTAL,
-                                System.currentTimeMillis()));
-                        history.setJvmGcPsMarksweepCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_GC_PS_MARKSWEEP_COUNT, System.currentTimeMillis()));
-                        history.setJvmGcPsMarksweepTime(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_GC_PS_MARKSWEEP_TIME, System.currentTimeMillis()));
-                        history.setJvmGcPsScavengeCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_GC_PS_SCAVENGE_COUNT, System.currentTimeMillis()));
-                        history.setJvmGcPsScavengeTime(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_GC_PS_SCAVENGE_TIME, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapCommitted(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, WORKER_JVM_MEMORY_HEAP_COMMITTED, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapInit(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                WORKER_JVM_MEMORY_HEAP_INIT, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapMax(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_HEAP_MAX, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapUsage(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_HEAP_USAGE, System.currentTimeMillis()));
-                        history.setJvmMemoryHeapUsed(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_HEAP_USED, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapInit(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_NON_HEAP_INIT, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapMax(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_NON_HEAP_MAX, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapCommitted(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_NON_HEAP_COMMITTED,
-                                System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapUsage(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_NON_HEAP_USAGE, System.currentTimeMillis()));
-                        history.setJvmMemoryNonHeapUsed(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_NON_HEAP_USED, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalCommitted(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_TOTAL_COMMITTED, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalInit(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_MEMORY_TOTAL_INIT, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalMax(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_TOTAL_MAX, System.currentTimeMillis()));
-                        history.setJvmMemoryTotalUsed(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_TOTAL_USED, System.currentTimeMillis()));
-                        history.setJvmOsPhysicalMemoryTotalSize(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_TOTAL_SIZE,
-                                System.currentTimeMillis()));
-                        history.setJvmOsPhysicalMemoryFreeSize(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_FREE_SIZE,
-                                System.currentTimeMillis()));
-                        history.setJvmThreadsDaemonCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_THREADS_DAEMON_COUNT, System.currentTimeMillis()));
-                        history.setJvmOsFileDescriptorMaxCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_MAX_COUNT,
-                                System.currentTimeMillis()));
-                        history.setJvmOsFileDescriptorOpenCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_OPEN_COUNT,
-                                System.currentTimeMillis()));
-                        history.setJvmThreadsCount(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmOsSwapSpaceTotalSize(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_SWAP_SPACE_TOTAL_SIZE,
-                                System.currentTimeMillis()));
-                        history.setJvmOsSwapSpaceFreeSize(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_SWAP_SPACE_FREE_SIZE,
-                                System.currentTimeMillis()));
-                        history.setJvmOsCpuLoadProcess(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_CPU_LOAD_PROCESS, System.currentTimeMillis()));
-                        history.setJvmOsCpuLoadSystem(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_OS_CPU_LOAD_SYSTEM, System.currentTimeMillis()));
-                        history.setJvmOsSystemLoadAverage(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_OS_SYSTEM_LOAD_AVERAGE, System.currentTimeMillis()));
-                        history.setJvmOsVirtualMemoryCommittedSize(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval,
-                                Constants.WORKER_JVM_OS_VIRTUAL_MEMORY_COMMITTED_SIZE, System.currentTimeMillis()));
-                        //if only enabled
-                        history.setJvmMemoryPoolsSize(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_MEMORY_POOL, System.currentTimeMillis()));
-                        history.setJvmThreadsBlockedCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_BLOCKED_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsDeadlockCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_DEADLOCKED_THREADS_COUNT,
-                                System.currentTimeMillis()));
-                        history.setJvmThreadsNewCount(metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval,
-                                Constants.WORKER_JVM_NEW_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsRunnableCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_RUNNABLE_THREADS_COUNT, System.currentTimeMillis()));
-                        history.setJvmThreadsTerminatedCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_TERMINATED_THREADS_COUNT,
-                                System.currentTimeMillis()));
-                        history.setJvmThreadsTimedWaitingCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_TIMD_WATING_THREADS_COUNT,
-                                System.currentTimeMillis()));
-                        history.setJvmThreadsWaitingCount(metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.WORKER_JVM_WAITING_THREADS_COUNT, System.currentTimeMillis()));
-                    }
+                    Map<String, List<List<Object>>> metrics = selectWorkerMetrics(carbonId, timeInterval,
+                            WORKER_MORE_METRICS_NAMES);
+                    history.setJvmClassLoadingLoadedCurrent(metrics.get(
+                            Constants.WORKER_JVM_CLASS_LOADING_LOADED_CURRENT));
+                    history.setJvmClassLoadingLoadedTotal(metrics.get(Constants.WORKER_JVM_CLASS_LOADING_LOADED_TOTAL));
+                    history.setJvmClassLoadingUnloadedTotal(metrics.get(
+                            Constants.WORKER_JVM_CLASS_LOADING_UNLOADED_TOTAL));
+                    history.setJvmGcPsMarksweepCount(metrics.get(Constants.WORKER_JVM_GC_PS_MARKSWEEP_COUNT));
+                    history.setJvmGcPsMarksweepTime(metrics.get(Constants.WORKER_JVM_GC_PS_MARKSWEEP_TIME));
+                    history.setJvmGcPsScavengeCount(metrics.get(Constants.WORKER_JVM_GC_PS_SCAVENGE_COUNT));
+                    history.setJvmGcPsScavengeTime(metrics.get(Constants.WORKER_JVM_GC_PS_SCAVENGE_TIME));
+                    history.setJvmMemoryHeapCommitted(metrics.get(WORKER_JVM_MEMORY_HEAP_COMMITTED));
+                    history.setJvmMemoryHeapInit(metrics.get(WORKER_JVM_MEMORY_HEAP_INIT));
+                    history.setJvmMemoryHeapMax(metrics.get(Constants.WORKER_JVM_MEMORY_HEAP_MAX));
+                    history.setJvmMemoryHeapUsage(metrics.get(Constants.WORKER_JVM_MEMORY_HEAP_USAGE));
+                    history.setJvmMemoryHeapUsed(metrics.get(Constants.WORKER_JVM_MEMORY_HEAP_USED));
+                    history.setJvmMemoryNonHeapInit(metrics.get(Constants.WORKER_JVM_MEMORY_NON_HEAP_INIT));
+                    history.setJvmMemoryNonHeapMax(metrics.get(Constants.WORKER_JVM_MEMORY_NON_HEAP_MAX));
+                    history.setJvmMemoryNonHeapCommitted(metrics.get(Constants.WORKER_JVM_MEMORY_NON_HEAP_COMMITTED));
+                    history.setJvmMemoryNonHeapUsage(metrics.get(Constants.WORKER_JVM_MEMORY_NON_HEAP_USAGE));
+                    history.setJvmMemoryNonHeapUsed(metrics.get(Constants.WORKER_JVM_MEMORY_NON_HEAP_USED));
+                    history.setJvmMemoryTotalCommitted(metrics.get(Constants.WORKER_JVM_MEMORY_TOTAL_COMMITTED));
+                    history.setJvmMemoryTotalInit(metrics.get(Constants.WORKER_JVM_MEMORY_TOTAL_INIT));
+                    history.setJvmMemoryTotalMax(metrics.get(Constants.WORKER_JVM_MEMORY_TOTAL_MAX));
+                    history.setJvmMemoryTotalUsed(metrics.get(Constants.WORKER_JVM_MEMORY_TOTAL_USED));
+                    history.setJvmOsPhysicalMemoryTotalSize(metrics.get(
+                            Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_TOTAL_SIZE));
+                    history.setJvmOsPhysicalMemoryFreeSize(metrics.get(
+                            Constants.WORKER_JVM_OS_PHYSICAL_MEMORY_FREE_SIZE));
+                    history.setJvmThreadsDaemonCount(metrics.get(Constants.WORKER_JVM_THREADS_DAEMON_COUNT));
+                    history.setJvmOsFileDescriptorMaxCount(metrics.get(
+                            Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_MAX_COUNT));
+                    history.setJvmOsFileDescriptorOpenCount(metrics.get(
+                            Constants.WORKER_JVM_OS_FILE_DESCRIPTOR_OPEN_COUNT));
+                    history.setJvmThreadsCount(metrics.get(Constants.WORKER_JVM_THREADS_COUNT));
+                    history.setJvmOsSwapSpaceTotalSize(metrics.get(Constants.WORKER_JVM_OS_SWAP_SPACE_TOTAL_SIZE));
+                    history.setJvmOsSwapSpaceFreeSize(metrics.get(Constants.WORKER_JVM_OS_SWAP_SPACE_FREE_SIZE));
+                    history.setJvmOsCpuLoadProcess(metrics.get(Constants.WORKER_JVM_OS_CPU_LOAD_PROCESS));
+                    history.setJvmOsCpuLoadSystem(metrics.get(Constants.WORKER_JVM_OS_CPU_LOAD_SYSTEM));
+                    history.setJvmOsSystemLoadAverage(metrics.get(Constants.WORKER_JVM_OS_SYSTEM_LOAD_AVERAGE));
+                    history.setJvmOsVirtualMemoryCommittedSize(metrics.get(
+                            Constants.WORKER_JVM_OS_VIRTUAL_MEMORY_COMMITTED_SIZE));
+                    history.setJvmMemoryPoolsSize(metrics.get(Constants.WORKER_JVM_MEMORY_POOL));
+                    history.setJvmThreadsBlockedCount(metrics.get(Constants.WORKER_JVM_BLOCKED_THREADS_COUNT));
+                    history.setJvmThreadsDeadlockCount(metrics.get(Constants.WORKER_JVM_DEADLOCKED_THREADS_COUNT));
+                    history.setJvmThreadsNewCount(metrics.get(Constants.WORKER_JVM_NEW_THREADS_COUNT));
+                    history.setJvmThreadsRunnableCount(metrics.get(Constants.WORKER_JVM_RUNNABLE_THREADS_COUNT));
+                    history.setJvmThreadsTerminatedCount(metrics.get(Constants.WORKER_JVM_TERMINATED_THREADS_COUNT));
+                    history.setJvmThreadsTimedWaitingCount(metrics.get(Constants.WORKER_JVM_TIMD_WATING_THREADS_COUNT));
+                    history.setJvmThreadsWaitingCount(metrics.get(Constants.WORKER_JVM_WAITING_THREADS_COUNT));
                     String jsonString = new Gson().toJson(history);
                     return Response.ok().entity(jsonString).build();
                 } else {
                     WorkerMetricsHistory workerMetricsHistory = new WorkerMetricsHistory();
+                    List<List<Object>> workerThroughput;
                     if (timeInterval <= HOUR) {
-                        List<List<Object>> workerThroughput = metricStore.selectWorkerThroughput(carbonId,
-                                timeInterval, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryUsed = metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.HEAP_MEMORY_USED, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryTotal = metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.HEAP_MEMORY_MAX, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryCommitted = metricStore.selectWorkerMetrics(carbonId,
-                                timeInterval, WORKER_JVM_MEMORY_HEAP_COMMITTED, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryInit = metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                WORKER_JVM_MEMORY_HEAP_INIT, System.currentTimeMillis());
-                        List<List<Object>> workerSystemCUP = metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.SYSTEM_CPU_USAGE, System.currentTimeMillis());
-                        List<List<Object>> workerProcessCUP = metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.PROCESS_CPU_USAGE, System.currentTimeMillis());
-                        List<List<Object>> workerLoadAverage = metricStore.selectWorkerMetrics(carbonId, timeInterval,
-                                Constants.LOAD_AVG_USAGE, System.currentTimeMillis());
-                        workerMetricsHistory.setLoadAverage(workerLoadAverage);
-                        workerMetricsHistory.setProcessCPUData(workerProcessCUP);
-                        workerMetricsHistory.setSystemCPU(workerSystemCUP);
-                        workerMetricsHistory.setThroughput(workerThroughput);
-                        workerMetricsHistory.setTotalMemory(workerMemoryTotal);
-                        workerMetricsHistory.setUsedMemory(workerMemoryUsed);
-                        workerMetricsHistory.setInitMemory(workerMemoryInit);
-                        workerMetricsHistory.setCommittedMemory(workerMemoryCommitted);
+                        workerThroughput = metricStore.selectWorkerThroughput(carbonId, timeInterval,
+                                System.currentTimeMillis());
                     } else {
-                        List<List<Object>> workerThroughput = metricStore.selectWorkerAggregatedThroughput(carbonId,
-                                timeInterval, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryUsed = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.HEAP_MEMORY_USED, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryTotal = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.HEAP_MEMORY_MAX, System.currentTimeMillis());
-                        List<List<Object>> workerSystemCUP = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.SYSTEM_CPU_USAGE, System.currentTimeMillis());
-                        List<List<Object>> workerProcessCUP = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.PROCESS_CPU_USAGE, System.currentTimeMillis());
-                        List<List<Object>> workerLoadAverage = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, Constants.LOAD_AVG_USAGE, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryCommitted = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, WORKER_JVM_MEMORY_HEAP_COMMITTED, System.currentTimeMillis());
-                        List<List<Object>> workerMemoryInit = metricStore.selectWorkerAggregatedMetrics(carbonId,
-                                timeInterval, WORKER_JVM_MEMORY_HEAP_INIT, System.currentTimeMillis());
-                        workerMetricsHistory.setLoadAverage(workerLoadAverage);
-                        workerMetricsHistory.setProcessCPUData(workerProcessCUP);
-                        workerMetricsHistory.setSystemCPU(workerSystemCUP);
-                        workerMetricsHistory.setThroughput(workerThroughput);
-                        workerMetricsHistory.setTotalMemory(workerMemoryTotal);
-                        workerMetricsHistory.setUsedMemory(workerMemoryUsed);
-                        workerMetricsHistory.setInitMemory(workerMemoryInit);
-                        workerMetricsHistory.setCommittedMemory(workerMemoryCommitted);
+                        workerThroughput = metricStore.selectWorkerAggregatedThroughput(carbonId, timeInterval,
+                                System.currentTimeMillis());
                     }
+                    Map<String, List<List<Object>>> metrics = selectWorkerMetrics(carbonId, timeInterval,
+                            WORKER_METRICS_NAMES);
+                    workerMetricsHistory.setLoadAverage(metrics.get(Constants.LOAD_AVG_USAGE));
+                    workerMetricsHistory.setProcessCPUData(metrics.get(Constants.PROCESS_CPU_USAGE));
+                    workerMetricsHistory.setSystemCPU(metrics.get(Constants.SYSTEM_CPU_USAGE));
+                    workerMetricsHistory.setThroughput(workerThroughput);
+                    workerMetricsHistory.setTotalMemory(metrics.get(Constants.HEAP_MEMORY_MAX));
+                    workerMetricsHistory.setUsedMemory(metrics.get(Constants.HEAP_MEMORY_USED));
+                    workerMetricsHistory.setInitMemory(metrics.get(WORKER_JVM_MEMORY_HEAP_INIT));
+                    workerMetricsHistory.setCommittedMemory(metrics.get(WORKER_JVM_MEMORY_HEAP_COMMITTED));
                     String jsonString = new Gson().toJson(workerMetricsHistory);
                     return Response.ok().entity(jsonString).build();
                 }
             } else {
                 WorkerMetricsHistory workerMetricsHistory = new WorkerMetricsHistory();
                 String[] typesRequested = type.split(",");
+                List<String> metricsNames = new ArrayList<>();
+                boolean isThroughputRequested = false;
                 for (String eachType : typesRequested) {
                     switch (eachType) {
                         case "memory": {
-                            List<List<Object>> workerMemoryUsed = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, Constants.HEAP_MEMORY_USED, System.currentTimeMillis());
-                            List<List<Object>> workerMemoryTotal = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, Constants.HEAP_MEMORY_MAX, System.currentTimeMillis());
-                            List<List<Object>> workerMemoryCommitted = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, WORKER_JVM_MEMORY_HEAP_COMMITTED, System.currentTimeMillis());
-                            List<List<Object>> workerMemoryInit = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, WORKER_JVM_MEMORY_HEAP_INIT, System.currentTimeMillis());
-                            workerMetricsHistory.setTotalMemory(workerMemoryTotal);
-                            workerMetricsHistory.setUsedMemory(workerMemoryUsed);
-                            workerMetricsHistory.setInitMemory(workerMemoryInit);
-                            workerMetricsHistory.setCommittedMemory(workerMemoryCommitted);
+                            metricsNames.addAll(Arrays.asList(Constants.HEAP_MEMORY_USED, Constants.HEAP_MEMORY_MAX,
+                                    WORKER_JVM_MEMORY_HEAP_COMMITTED, WORKER_JVM_MEMORY_HEAP_INIT));
                             break;
                         }
                         case "cpu": {
-                            List<List<Object>> workerSystemCUP = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, Constants.SYSTEM_CPU_USAGE, System.currentTimeMillis());
-                            List<List<Object>> workerProcessCUP = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, Constants.PROCESS_CPU_USAGE, System.currentTimeMillis());
-
-                            workerMetricsHistory.setProcessCPUData(workerProcessCUP);
-                            workerMetricsHistory.setSystemCPU(workerSystemCUP);
+                            metricsNames.addAll(Arrays.asList(Constants.SYSTEM_CPU_USAGE,
+                                    Constants.PROCESS_CPU_USAGE));
                             break;
                         }
                         case "load": {
-                            List<List<Object>> workerLoadAverage = metricStore.selectWorkerMetrics(carbonId,
-                                    timeInterval, Constants.LOAD_AVG_USAGE, System.currentTimeMillis());
-                            workerMetricsHistory.setLoadAverage(workerLoadAverage);
+                            metricsNames.add(Constants.LOAD_AVG_USAGE);
                             break;
                         }
                         case "throughput": {
-                            List<List<Object>> workerThroughput = metricStore.selectWorkerThroughput(carbonId,
-                                    timeInterval, System.currentTimeMillis());
-                            workerMetricsHistory.setThroughput(workerThroughput);
+                            isThroughputRequested = true;
                             break;
                         }
                         default: {
@@ -686,6 +397,28 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
                         }
                     }
                 }
+                if (!metricsNames.isEmpty()) {
+                    Map<String, List<List<Object>>> metrics = metricStore.selectWorkerMetrics(carbonId,
+                            timeInterval, metricsNames, System.currentTimeMillis());
+                    if (metrics.containsKey(Constants.HEAP_MEMORY_USED)) {
+                        workerMetricsHistory.setTotalMemory(metrics.get(Constants.HEAP_MEMORY_MAX));
+                        workerMetricsHistory.setUsedMemory(metrics.get(Constants.HEAP_MEMORY_USED));
+                        workerMetricsHistory.setInitMemory(metrics.get(WORKER_JVM_MEMORY_HEAP_INIT));
+                        workerMetricsHistory.setCommittedMemory(metrics.get(WORKER_JVM_MEMORY_HEAP_COMMITTED));
+                    }
+                    if (metrics.containsKey(Constants.SYSTEM_CPU_USAGE)) {
+                        workerMetricsHistory.setProcessCPUData(metrics.get(Constants.PROCESS_CPU_USAGE));
+                        workerMetricsHistory.setSystemCPU(metrics.get(Constants.SYSTEM_CPU_USAGE));
+                    }
+                    if (metrics.containsKey(Constants.LOAD_AVG_USAGE)) {
+                        workerMetricsHistory.setLoadAverage(metrics.get(Constants.LOAD_AVG_USAGE));
+                    }
+                }
+                if (isThroughputRequested) {
+                    List<List<Object>> workerThroughput = metricStore.selectWorkerThroughput(carbonId,
+                            timeInterval, System.currentTimeMillis());
+                    workerMetricsHistory.setThroughput(workerThroughput);
+                }
                 String jsonString = new Gson().toJson(workerMetricsHistory);
                 return Response.ok().entity(jsonString).build();
             }
@@ -695,6 +428,24 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
         }
     }
 
+    /**
+     * Select the metrics gauges of a worker with one query, aggregated if the time interval is longer than an hour.
+     *
+     * @param carbonId     carbon ID of the worker.
+     * @param timeInterval time interval that metrics needed to be taken.
+     * @param metricsNames names of the gauges.
+     * @return metrics data of each gauge name.
+     */
+    private Map<String, List<List<Object>>> selectWorkerMetrics(String carbonId, long timeInterval,
+                                                                List<String> metricsNames) {
+        if (timeInterval <= HOUR) {
+            return metricStore.selectWorkerMetrics(carbonId, timeInterval, metricsNames, System.currentTimeMillis());
+        } else {
+            return metricStore.selectWorkerAggregatedMetrics(carbonId, timeInterval, metricsNames,
+                    System.currentTimeMillis());
+        }
+    }
+
     /**
      * Get all siddhi apps and siddhi app summary.
      *
@@ -1692,128 +1443,9 @@ public class MonitoringApiServiceImpl extends MonitoringApiService {
                 VIWER_PERMISSION_STRING));
         if (isAuthorized) {
             Map<String, List<ManagerOverView>> groupedManagers = new HashMap<>();
-            List<NodeConfigurationDetails> managerList = dashboardStore.getAllManagerConfigDetails();
-            if (!managerList.isEmpty()) {
-                managerList.parallelStream().forEach(manager -> {
-                    try {
-                        ManagerOverView managerOverView = new ManagerOverView();
-                        feign.Response managerResponse = WorkerServiceFactory.getWorkerHttpsClient(PROTOCOL +
-                                generateURLHostPort(manager.getHost(), String.valueOf(
-                                        manager.getPort())), getUsername(), getPassword()).getWorker();
-                        if ((managerResponse != null) && (managerResponse.status() == 200)) {
-                            Long timeInMillis = System.currentTimeMillis();
-                            String responseBody = managerResponse.body().toString();
-                            ManagerDetails serverDetails = gson.fromJson(responseBody, ManagerDetails.class);
-                            String message = serverDetails.getMessage();
-                            if (message == null || message.isEmpty()) {
-                                managerOverView.setStatusMessage("Success");
-                            } else {
-                                managerOverView.setStatusMessage(message);
-                            }
-                            feign.Response activeSiddiAppsResponse = WorkerServiceFactory.getWorkerHttpsClient(
-                                    PROTOCOL + generateURLHostPort(manager.getHost(), String.valueOf(manager
-                                            .getPort())), getUsername(), getPassword()).getSiddhiApps(true);
-                            String activeSiddiAppsResponseBody = activeSiddiAppsResponse.body().toString();
-                            List<String> activeApps = gson.fromJson(activeSiddiAppsResponseBody,
-                                    new TypeToken<List<String>>() {
-
-                                    }.getType());
-                            feign.Response inactiveSiddiAppsResponse = WorkerServiceFactory.getWorkerHttpsClient(
-                                    PROTOCOL + generateURLHostPort(manager.getHost(), String.valueOf(manager
-                                            .getPort())), getUsername(), getPassword()).getSiddhiApps(false);
-                            String inactiveSiddiAppsResponseBody = inactiveSiddiAppsResponse.body().toString();
-                            List<String> inactiveApps = gson.fromJson(inactiveSiddiAppsResponseBody,
-                                    new TypeToken<List<String>>() {
-
-                                    }.getType());
-                            serverDetails.setSiddhiApps(activeApps.size(), inactiveApps.size());
-                            ManagerMetricsSnapshot snapshot = new ManagerMetricsSnapshot(serverDetails, timeInMillis);
-                            WorkerStateHolder.addManagerMetrics(manager.getWorkerId(), snapshot);
-                            managerOverView.setLastUpdate(timeInMillis);
-                            managerOverView.setWorkerId(manager.getWorkerId());
-
-                            feign.Response haDetails = WorkerServiceFactory.getWorkerHttpsClient(PROTOCOL +
-                                            generateURLHostPort(manager.getHost(), String.valueOf(manager.getPort())),
-                                    getUsername(), getPassword()).getManagerDetails();
-                            String haResponseBody = haDetails.body().toString();
-                            ManagerClusterInfo clusterInfo = gson.fromJson(haResponseBody, ManagerClusterInfo.class);
-                            managerOverView.setServerDetails(serverDetails);
-                            managerOverView.setClusterInfo(clusterInfo);
-
-                            //grouping the clusters of the managers
-                            List nonClusterList = groupedManagers.get(Constants.NON_CLUSTERS_ID);
-                            String clusterID = clusterInfo.getGroupId();
-                            List existingGroupList = groupedManagers.get(clusterID);
-                            if (nonClusterList == null) {
-                                nonClusterList = new ArrayList<>();
-                            }
-                            if (existingGroupList == null) {
-                                existingGroupList = new ArrayList<>();
-                            }
-                            if (clusterInfo.getGroupId().equals(" ") || clusterID.equals(" ")) {
-                                nonClusterList.add(managerOverView);
-                                groupedManagers.put(Constants.NON_CLUSTERS_ID, nonClusterList);
-                            } else if ((!clusterID.equals(" "))) {
-                                existingGroupList.add(managerOverView);
-                                groupedManagers.put(clusterID, existingGroupList);
-                            }
-                        } else {
-                            managerOverView.setWorkerId(manager.getWorkerId());
-                            ManagerDetails serverDetails = new ManagerDetails();
-                            ManagerClusterInfo clusterInfo = new ManagerClusterInfo();
-                            serverDetails.setRunningStatus(Constants.NOT_REACHABLE_ID);
-                            managerOverView.setStatusMessage(getErrorMessage(managerResponse.status()));
-                            managerOverView.setServerDetails(serverDetails);
-                            managerOverView.setClusterInfo(clusterInfo);
-                            managerOverView.setLastUpdate((long) 0);
-                            //grouping the never reached
-                            if (groupedManagers.get(Constants.NEVER_REACHED) == null) {
-                                List<ManagerOverView> managers = new ArrayList<>();
-                                managers.add(managerOverView);
-                                groupedManagers.put(Constants.NEVER_REACHED, managers);
-                            } else {
-                                List existing = groupedManagers.get(Constants.NEVER_REACHED);
-                                existing.add(managerOverView);
-                            }
-                        }
-                    } catch (feign.RetryableException e) {
-                        ManagerMetricsSnapshot lastSnapshot = WorkerStateHolder.getManagerMetrics(
-                                manager.getWorkerId());
-                        if (lastSnapshot != null) {
-                            lastSnapshot.updateRunningStatus(Constants.NOT_REACHABLE_ID);
-                            ManagerOverView managerOverView = new ManagerOverView();
-                            managerOverView.setLastUpdate(lastSnapshot.getTimeStamp());
-                            managerOverView.setWorkerId(manager.getWorkerId());
-                            managerOverView.setServerDetails(lastSnapshot.getServerDetails());
-                            managerOverView.setClusterInfo(lastSnapshot.getClusterInfo());
-                            if (groupedManagers.get(lastSnapshot.getClusterInfo().getGroupId()) != null) {
-                                groupedManagers.get(lastSnapshot.getClusterInfo().getGroupId()).add(managerOverView);
-                            } else {
-                                List<ManagerOverView> managers = new ArrayList<>();
-                                managers.add(managerOverView);
-                                groupedManagers.put(Constants.NOT_REACHABLE_ID, managers);
-                            }
-                        } else {
-                            ManagerOverView managerOverView = new ManagerOverView();
-                            managerOverView.setWorkerId(manager.getWorkerId());
-                            ManagerDetails serverDetails = new ManagerDetails();
-                            ManagerClusterInfo clusterInfo = new ManagerClusterInfo();
-                            serverDetails.setRunningStatus(Constants.NEVER_REACHED);
-                            managerOverView.setServerDetails(serverDetails);
-                            managerOverView.setClusterInfo(clusterInfo);
-                            managerOverView.setLastUpdate((long) 0);
-                            //grouping the never reached
-                            if (groupedManagers.get(Constants.NEVER_REACHED) == null) {
-                                List<ManagerOverView> managers = new ArrayList<>();
-                                managers.add(managerOverView);
-                                groupedManagers.put(Constants.NEVER_REACHED, managers);
-                            } else {
-                                List existing = groupedManagers.get(Constants.NEVER_REACHED);
-                                existing.add(managerOverView);
-                            }
-                        }
-                    }
-                });
+            for (WorkerStatusPoller.NodeStatus<ManagerOverView> status : statusPoller.getManagerStatuses(
+                    dashboardStore.getAllManagerConfigDetails())) {
+                groupedManagers.computeIfAbsent(status.getGroupId(), k -> new ArrayList<>()).add(status.getOverview());
             }
             String jsonString = new Gson().toJson(groupedManagers);
             return Response.ok().entity(jsonString).build();
@@ -0,0 +1,515 @@
+/*
+ *  Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+
+package org.wso2.carbon.status.dashboard.core.impl;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.status.dashboard.core.api.WorkerServiceFactory;
+import org.wso2.carbon.status.dashboard.core.api.WorkerServiceStub;
+import org.wso2.carbon.status.dashboard.core.bean.ManagerClusterInfo;
+import org.wso2.carbon.status.dashboard.core.bean.ManagerMetricsSnapshot;
+import org.wso2.carbon.status.dashboard.core.bean.NodeConfigurationDetails;
+import org.wso2.carbon.status.dashboard.core.bean.ResourceClusterInfo;
+import org.wso2.carbon.status.dashboard.core.bean.WorkerMetricsSnapshot;
+import org.wso2.carbon.status.dashboard.core.dbhandler.StatusDashboardDBHandler;
+import org.wso2.carbon.status.dashboard.core.impl.utils.Constants;
+import org.wso2.carbon.status.dashboard.core.internal.WorkerStateHolder;
+import org.wso2.carbon.status.dashboard.core.model.ManagerDetails;
+import org.wso2.carbon.status.dashboard.core.model.ManagerOverView;
+import org.wso2.carbon.status.dashboard.core.model.ServerDetails;
+import org.wso2.carbon.status.dashboard.core.model.WorkerOverview;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Polls the status of the workers and the managers in the background, so that the overview endpoints answer from the
+ * last polled status instead of calling every node on each request.
+ * <p>
+ * Nodes are polled concurrently on a bounded pool, at most once at a time per node. A status older than two polling
+ * intervals is considered stale, and an endpoint polls the nodes with stale or missing statuses before answering.
+ * A node which cannot be reached is logged once when it becomes unreachable, rather than on every poll.
+ */
+class WorkerStatusPoller {
+    private static final Log logger = LogFactory.getLog(WorkerStatusPoller.class);
+    private static final int DEFAULT_POLLING_INTERVAL_SECONDS = 5;
+    private static final int POLLING_THREAD_COUNT = 16;
+    private static final long POLL_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final Type STRING_LIST_TYPE = new TypeToken<List<String>>() {
+    }.getType();
+    private static final Type RESOURCE_CLUSTER_INFO_LIST_TYPE = new TypeToken<List<ResourceClusterInfo>>() {
+    }.getType();
+    private final StatusDashboardDBHandler dashboardStore;
+    private final String username;
+    private final String password;
+    private final long pollingIntervalMillis;
+    private final long pollTimeoutMillis;
+    private final LongSupplier clock;
+    private final Gson gson = new Gson();
+    private final Map<String, NodeStatus<WorkerOverview>> workerStatuses = new ConcurrentHashMap<>();
+    private final Map<String, NodeStatus<ManagerOverView>> managerStatuses = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlightPolls = new ConcurrentHashMap<>();
+    private final Set<String> unreachableNodeIds = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+    private ThreadPoolExecutor pollingPool;
+
+    /**
+     * Last polled status of a node, along with the group it is listed under in the overview.
+     *
+     * @param <T> overview type of the node.
+     */
+    static class NodeStatus<T> {
+        private final T overview;
+        private final String groupId;
+        private final long pollTime;
+        // ids of the workers in the resource cluster of a manager
+        private final List<String> clusterNodeIds;
+
+        private NodeStatus(T overview, String groupId, long pollTime, List<String> clusterNodeIds) {
+            this.overview = overview;
+            this.groupId = groupId;
+            this.pollTime = pollTime;
+            this.clusterNodeIds = clusterNodeIds;
+        }
+
+        T getOverview() {
+            return overview;
+        }
+
+        String getGroupId() {
+            return groupId;
+        }
+
+        long getPollTime() {
+            return pollTime;
+        }
+    }
+
+    WorkerStatusPoller(StatusDashboardDBHandler dashboardStore, String username, String password,
+                       Integer pollingIntervalSeconds) {
+        this(dashboardStore, username, password, pollingIntervalSeconds, POLL_TIMEOUT_MILLIS,
+                System::currentTimeMillis);
+    }
+
+    WorkerStatusPoller(StatusDashboardDBHandler dashboardStore, String username, String password,
+                       Integer pollingIntervalSeconds, long pollTimeoutMillis, LongSupplier clock) {
+        this.dashboardStore = dashboardStore;
+        this.username = username;
+        this.password = password;
+        this.pollingIntervalMillis = TimeUnit.SECONDS.toMillis(pollingIntervalSeconds == null
+                || pollingIntervalSeconds <= 0 ? DEFAULT_POLLING_INTERVAL_SECONDS : pollingIntervalSeconds);
+        this.pollTimeoutMillis = pollTimeoutMillis;
+        this.clock = clock;
+    }
+
+    synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        pollingPool = new ThreadPoolExecutor(POLLING_THREAD_COUNT, POLLING_THREAD_COUNT, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "WorkerStatusPoller-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollingPool.allowCoreThreadTimeOut(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "WorkerStatusPollerScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                pollAll();
+            } catch (RuntimeException e) {
+                logger.error("Error while polling the status of the workers. " + e.getMessage(), e);
+            }
+        }, 0, pollingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            pollingPool.shutdownNow();
+            scheduler = null;
+            pollingPool = null;
+            // a poll blocked on a node may not react to the interrupt, so the requests awaiting it are released
+            for (CompletableFuture<Void> poll : inFlightPolls.values()) {
+                poll.complete(null);
+            }
+            inFlightPolls.clear();
+        }
+    }
+
+    /**
+     * Get the statuses of the workers which are not in the resource cluster of a manager, polling the ones with a
+     * stale status.
+     *
+     * @param workers configured workers.
+     * @return statuses of the workers.
+     */
+    List<NodeStatus<WorkerOverview>> getWorkerStatuses(List<NodeConfigurationDetails> workers) {
+        List<NodeConfigurationDetails> managers = dashboardStore.getAllManagerConfigDetails();
+        awaitPolls(pollStale(managers, managerStatuses, this::pollManager));
+        Set<String> clusterNodeIds = getResourceClusterNodeIds(managers);
+        List<NodeConfigurationDetails> standaloneWorkers = new ArrayList<>();
+        for (NodeConfigurationDetails worker : workers) {
+            if (!clusterNodeIds.contains(worker.getWorkerId())) {
+                standaloneWorkers.add(worker);
+            }
+        }
+        awaitPolls(pollStale(standaloneWorkers, workerStatuses, this::pollWorker));
+        return getStatuses(standaloneWorkers, workerStatuses);
+    }
+
+    /**
+     * Get the statuses of the managers, polling the ones with a stale status.
+     *
+     * @param managers configured managers.
+     * @return statuses of the managers.
+     */
+    List<NodeStatus<ManagerOverView>> getManagerStatuses(List<NodeConfigurationDetails> managers) {
+        awaitPolls(pollStale(managers, managerStatuses, this::pollManager));
+        return getStatuses(managers, managerStatuses);
+    }
+
+    private void pollAll() {
+        List<NodeConfigurationDetails> managers = dashboardStore.getAllManagerConfigDetails();
+        awaitPolls(poll(managers, managerStatuses, this::pollManager));
+        Set<String> clusterNodeIds = getResourceClusterNodeIds(managers);
+        List<NodeConfigurationDetails> workers = new ArrayList<>();
+        for (NodeConfigurationDetails worker : dashboardStore.selectAllWorkers()) {
+            if (!clusterNodeIds.contains(worker.getWorkerId())) {
+                workers.add(worker);
+            }
+        }
+        awaitPolls(poll(workers, workerStatuses, this::pollWorker));
+        // forget the removed nodes
+        workerStatuses.keySet().retainAll(getNodeIds(workers));
+        managerStatuses.keySet().retainAll(getNodeIds(managers));
+        Set<String> nodeIds = getNodeIds(managers);
+        nodeIds.addAll(getNodeIds(workers));
+        unreachableNodeIds.retainAll(nodeIds);
+    }
+
+    private <T> List<CompletableFuture<Void>> pollStale(List<NodeConfigurationDetails> nodes,
+                                                        Map<String, NodeStatus<T>> statuses,
+                                                        NodePoller<T> nodePoller) {
+        long staleTime = clock.getAsLong() - 2 * pollingIntervalMillis;
+        List<NodeConfigurationDetails> staleNodes = new ArrayList<>();
+        for (NodeConfigurationDetails node : nodes) {
+            NodeStatus<T> status = statuses.get(node.getWorkerId());
+            if (status == null || status.pollTime < staleTime) {
+                staleNodes.add(node);
+            }
+        }
+        return poll(staleNodes, statuses, nodePoller);
+    }
+
+    private <T> List<CompletableFuture<Void>> poll(List<NodeConfigurationDetails> nodes,
+                                                   Map<String, NodeStatus<T>> statuses, NodePoller<T> nodePoller) {
+        ThreadPoolExecutor pool;
+        synchronized (this) {
+            pool = pollingPool;
+        }
+        List<CompletableFuture<Void>> polls = new ArrayList<>(nodes.size());
+        if (pool == null) {
+            return polls;
+        }
+        for (NodeConfigurationDetails node : nodes) {
+            CompletableFuture<Void> newPoll = new CompletableFuture<>();
+            CompletableFuture<Void> poll = inFlightPolls.putIfAbsent(node.getWorkerId(), newPoll);
+            if (poll == null) {
+                poll = newPoll;
+                try {
+                    pool.execute(() -> {
+                        try {
+                            statuses.put(node.getWorkerId(), nodePoller.poll(node));
+                        } catch (RuntimeException e) {
+                            logger.warn("Error while polling the status of " +
+                                    removeCRLFCharacters(node.getWorkerId()) + ". " + e.getMessage(), e);
+                        } finally {
+                            inFlightPolls.remove(node.getWorkerId(), newPoll);
+                            newPoll.complete(null);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlightPolls.remove(node.getWorkerId(), newPoll);
+                    newPoll.complete(null);
+                }
+            }
+            polls.add(poll);
+        }
+        return polls;
+    }
+
+    private void awaitPolls(List<CompletableFuture<Void>> polls) {
+        if (polls.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(polls.toArray(new CompletableFuture[0])).get(pollTimeoutMillis,
+                    TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Status of some nodes could not be polled in time, answering with their last status.");
+        }
+    }
+
+    private static <T> List<NodeStatus<T>> getStatuses(List<NodeConfigurationDetails> nodes,
+                                                       Map<String, NodeStatus<T>> statuses) {
+        List<NodeStatus<T>> nodeStatuses = new ArrayList<>(nodes.size());
+        for (NodeConfigurationDetails node : nodes) {
+            NodeStatus<T> status = statuses.get(node.getWorkerId());
+            if (status != null) {
+                nodeStatuses.add(status);
+            }
+        }
+        return nodeStatuses;
+    }
+
+    private Set<String> getResourceClusterNodeIds(List<NodeConfigurationDetails> managers) {
+        Set<String> clusterNodeIds = new HashSet<>();
+        for (NodeConfigurationDetails manager : managers) {
+            NodeStatus<ManagerOverView> status = managerStatuses.get(manager.getWorkerId());
+            if (status != null) {
+                clusterNodeIds.addAll(status.clusterNodeIds);
+            }
+        }
+        return clusterNodeIds;
+    }
+
+    private static Set<String> getNodeIds(List<NodeConfigurationDetails> nodes) {
+        Set<String> nodeIds = new HashSet<>();
+        for (NodeConfigurationDetails node : nodes) {
+            nodeIds.add(node.getWorkerId());
+        }
+        return nodeIds;
+    }
+
+    private WorkerServiceStub getClient(NodeConfigurationDetails node) {
+        return WorkerServiceFactory.getWorkerHttpsClient(Constants.PROTOCOL + node.getHost() +
+                Constants.URL_HOST_PORT_SEPERATOR + node.getPort(), username, password);
+    }
+
+    private NodeStatus<WorkerOverview> pollWorker(NodeConfigurationDetails worker) {
+        long pollTime = clock.getAsLong();
+        WorkerOverview workerOverview = new WorkerOverview();
+        workerOverview.setWorkerId(worker.getWorkerId());
+        try {
+            WorkerServiceStub client = getClient(worker);
+            feign.Response workerResponse = client.getWorker();
+            logReachable(worker.getWorkerId());
+            if ((workerResponse != null) && (workerResponse.status() == 200)) {
+                ServerDetails serverDetails = gson.fromJson(workerResponse.body().toString(), ServerDetails.class);
+                String message = serverDetails.getMessage();
+                if (message == null || message.isEmpty()) {
+                    workerOverview.setStatusMessage("Success");
+                } else {
+                    workerOverview.setStatusMessage(message);
+                }
+                List<String> activeApps = gson.fromJson(client.getSiddhiApps(true).body().toString(),
+                        STRING_LIST_TYPE);
+                List<String> inactiveApps = gson.fromJson(client.getSiddhiApps(false).body().toString(),
+                        STRING_LIST_TYPE);
+                serverDetails.setSiddhiApps(activeApps.size(), inactiveApps.size());
+                WorkerStateHolder.addMetrics(worker.getWorkerId(), new WorkerMetricsSnapshot(serverDetails,
+                        pollTime));
+                workerOverview.setLastUpdate(pollTime);
+                workerOverview.setServerDetails(serverDetails);
+                String clusterId = serverDetails.getClusterId();
+                return new NodeStatus<>(workerOverview, clusterId == null ? Constants.NON_CLUSTERS_ID : clusterId,
+                        pollTime, Collections.emptyList());
+            } else {
+                ServerDetails serverDetails = new ServerDetails();
+                serverDetails.setRunningStatus(Constants.NOT_REACHABLE_ID);
+                workerOverview.setStatusMessage(MonitoringApiServiceImpl.getErrorMessage(workerResponse == null ?
+                        500 : workerResponse.status()));
+                workerOverview.setServerDetails(serverDetails);
+                workerOverview.setLastUpdate((long) 0);
+                return new NodeStatus<>(workerOverview, Constants.NEVER_REACHED, pollTime, Collections.emptyList());
+            }
+        } catch (feign.RetryableException e) {
+            logUnreachable(worker.getWorkerId(), "worker", e);
+            WorkerMetricsSnapshot lastSnapshot = WorkerStateHolder.getMetrics(worker.getWorkerId());
+            if (lastSnapshot != null) {
+                lastSnapshot.updateRunningStatus(Constants.NOT_REACHABLE_ID);
+                workerOverview.setLastUpdate(lastSnapshot.getTimeStamp());
+                workerOverview.setServerDetails(lastSnapshot.getServerDetails());
+                String clusterId = lastSnapshot.getServerDetails().getClusterId();
+                return new NodeStatus<>(workerOverview, clusterId == null ? Constants.NON_CLUSTERS_ID : clusterId,
+                        pollTime, Collections.emptyList());
+            } else {
+                ServerDetails serverDetails = new ServerDetails();
+                serverDetails.setRunningStatus(Constants.NOT_REACHABLE_ID);
+                workerOverview.setServerDetails(serverDetails);
+                workerOverview.setLastUpdate((long) 0);
+                return new NodeStatus<>(workerOverview, Constants.NEVER_REACHED, pollTime, Collections.emptyList());
+            }
+        }
+    }
+
+    private NodeStatus<ManagerOverView> pollManager(NodeConfigurationDetails manager) {
+        long pollTime = clock.getAsLong();
+        WorkerServiceStub client = getClient(manager);
+        List<String> clusterNodeIds = pollResourceClusterNodeIds(manager, client);
+        ManagerOverView managerOverView = new ManagerOverView();
+        managerOverView.setWorkerId(manager.getWorkerId());
+        try {
+            feign.Response managerResponse = client.getWorker();
+            if ((managerResponse != null) && (managerResponse.status() == 200)) {
+                ManagerDetails serverDetails = gson.fromJson(managerResponse.body().toString(),
+                        ManagerDetails.class);
+                String message = serverDetails.getMessage();
+                if (message == null || message.isEmpty()) {
+                    managerOverView.setStatusMessage("Success");
+                } else {
+                    managerOverView.setStatusMessage(message);
+                }
+                List<String> activeApps = gson.fromJson(client.getSiddhiApps(true).body().toString(),
+                        STRING_LIST_TYPE);
+                List<String> inactiveApps = gson.fromJson(client.getSiddhiApps(false).body().toString(),
+                        STRING_LIST_TYPE);
+                serverDetails.setSiddhiApps(activeApps.size(), inactiveApps.size());
+                ManagerClusterInfo clusterInfo = gson.fromJson(client.getManagerDetails().body().toString(),
+                        ManagerClusterInfo.class);
+                ManagerMetricsSnapshot snapshot = new ManagerMetricsSnapshot(serverDetails, pollTime);
+                snapshot.setClusterInfo(clusterInfo);
+                WorkerStateHolder.addManagerMetrics(manager.getWorkerId(), snapshot);
+                managerOverView.setLastUpdate(pollTime);
+                managerOverView.setServerDetails(serverDetails);
+                managerOverView.setClusterInfo(clusterInfo);
+                String groupId = clusterInfo.getGroupId();
+                return new NodeStatus<>(managerOverView, groupId == null || groupId.equals(" ") ?
+                        Constants.NON_CLUSTERS_ID : groupId, pollTime, clusterNodeIds);
+            } else {
+                ManagerDetails serverDetails = new ManagerDetails();
+                serverDetails.setRunningStatus(Constants.NOT_REACHABLE_ID);
+                managerOverView.setStatusMessage(MonitoringApiServiceImpl.getErrorMessage(managerResponse == null ?
+                        500 : managerResponse.status()));
+                managerOverView.setServerDetails(serverDetails);
+                managerOverView.setClusterInfo(new ManagerClusterInfo());
+                managerOverView.setLastUpdate((long) 0);
+                return new NodeStatus<>(managerOverView, Constants.NEVER_REACHED, pollTime, clusterNodeIds);
+            }
+        } catch (feign.RetryableException e) {
+            // the manager is logged as unreachable by the poll of its resource cluster
+            if (logger.isDebugEnabled()) {
+                logger.debug("Unable to reach manager " + removeCRLFCharacters(manager.getWorkerId()) + ".", e);
+            }
+            ManagerMetricsSnapshot lastSnapshot = WorkerStateHolder.getManagerMetrics(manager.getWorkerId());
+            if (lastSnapshot != null) {
+                lastSnapshot.updateRunningStatus(Constants.NOT_REACHABLE_ID);
+                managerOverView.setLastUpdate(lastSnapshot.getTimeStamp());
+                managerOverView.setServerDetails(lastSnapshot.getServerDetails());
+                managerOverView.setClusterInfo(lastSnapshot.getClusterInfo());
+                String groupId = lastSnapshot.getClusterInfo().getGroupId();
+                return new NodeStatus<>(managerOverView, groupId == null || groupId.equals(" ") ?
+                        Constants.NOT_REACHABLE_ID : groupId, pollTime, clusterNodeIds);
+            } else {
+                ManagerDetails serverDetails = new ManagerDetails();
+                serverDetails.setRunningStatus(Constants.NEVER_REACHED);
+                managerOverView.setServerDetails(serverDetails);
+                managerOverView.setClusterInfo(new ManagerClusterInfo());
+                managerOverView.setLastUpdate((long) 0);
+                return new NodeStatus<>(managerOverView, Constants.NEVER_REACHED, pollTime, clusterNodeIds);
+            }
+        }
+    }
+
+    private List<String> pollResourceClusterNodeIds(NodeConfigurationDetails manager, WorkerServiceStub client) {
+        List<String> clusterNodeIds = new ArrayList<>();
+        try {
+            feign.Response resourceResponse = client.getClusterNodeDetails();
+            logReachable(manager.getWorkerId());
+            if (resourceResponse != null && resourceResponse.status() == 200) {
+                try (Reader reader = resourceResponse.body().asReader()) {
+                    List<ResourceClusterInfo> clusterInfos = gson.fromJson(reader, RESOURCE_CLUSTER_INFO_LIST_TYPE);
+                    for (ResourceClusterInfo clusterInfo : clusterInfos) {
+                        clusterNodeIds.add(clusterInfo.getHttps_host() + Constants.WORKER_KEY_GENERATOR +
+                                clusterInfo.getHttps_port());
+                    }
+                }
+            }
+        } catch (feign.RetryableException e) {
+            logUnreachable(manager.getWorkerId(), "manager", e);
+        } catch (IOException e) {
+            logger.warn("Error occured while getting the response " + e.getMessage());
+        }
+        return clusterNodeIds;
+    }
+
+    /**
+     * Log a node which could not be reached, warning only when it was reachable at the previous poll.
+     */
+    private void logUnreachable(String nodeId, String nodeType, Exception e) {
+        if (unreachableNodeIds.add(nodeId)) {
+            logger.warn("Unable to reach " + nodeType + " " + removeCRLFCharacters(nodeId) + ". " +
+                    removeCRLFCharacters(e.getMessage()));
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("Unable to reach " + nodeType + " " + removeCRLFCharacters(nodeId) + ".", e);
+        }
+    }
+
+    private void logReachable(String nodeId) {
+        if (unreachableNodeIds.remove(nodeId)) {
+            logger.info("Node " + removeCRLFCharacters(nodeId) + " is reachable again.");
+        }
+    }
+
+    private static String removeCRLFCharacters(String str) {
+        if (str != null) {
+            str = str.replace('\n', '_').replace('\r', '_');
+        }
+        return str;
+    }
+
+    /**
+     * Poll of the status of a node.
+     *
+     * @param <T> overview type of the node.
+     */
+    private interface NodePoller<T> {
+        NodeStatus<T> poll(NodeConfigurationDetails node);
+    }
+}
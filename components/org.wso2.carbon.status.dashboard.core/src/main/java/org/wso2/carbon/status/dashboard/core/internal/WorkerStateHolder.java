@@ -22,15 +22,15 @@ package org.wso2.carbon.status.dashboard.core.internal;
 import org.wso2.carbon.status.dashboard.core.bean.ManagerMetricsSnapshot;
 import org.wso2.carbon.status.dashboard.core.bean.WorkerMetricsSnapshot;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class to hold the last reached data sand timestamp.
  */
 public class WorkerStateHolder {
-    private static Map<String, WorkerMetricsSnapshot> workerMetricsSnapshotMap = new HashMap<>();
-    private static Map<String, ManagerMetricsSnapshot> managerMetricsSnapshotMap = new HashMap<>();
+    private static Map<String, WorkerMetricsSnapshot> workerMetricsSnapshotMap = new ConcurrentHashMap<>();
+    private static Map<String, ManagerMetricsSnapshot> managerMetricsSnapshotMap = new ConcurrentHashMap<>();
     
     private WorkerStateHolder() {
     }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.status.dashboard.core.dbhandler;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.config.provider.ConfigProvider;
+import org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants;
+import org.wso2.carbon.status.dashboard.core.internal.MonitoringDataHolder;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_METRIC_GAUGE;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_METRIC_METER;
+import static org.wso2.carbon.status.dashboard.core.dbhandler.utils.SQLConstants.METRICS_TABLE_METRIC_TIMER;
+
+/**
+ * MetricsRollupManagerTest rolls up metrics in an H2 database and compares the aggregated metrics read from the
+ * rollups with the aggregate queries of the raw metrics.
+ */
+public class MetricsRollupManagerTest {
+    private static final String SOURCE = "worker-1";
+    private static final String METRIC_NAME = "jvm.memory.heap.used";
+    // 2018-01-01T00:00:00Z
+    private static final long START_TIME = 1514764800000L;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private HikariDataSource dataSource;
+    private QueryManager queryManager;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        MonitoringDataHolder.getInstance().setConfigProvider((ConfigProvider) Proxy.newProxyInstance(
+                ConfigProvider.class.getClassLoader(), new Class[]{ConfigProvider.class},
+                (proxy, method, args) -> new DeploymentConfigs()));
+        dataSource = new HikariDataSource();
+        // the in-memory database is dropped once the pool closes its connections
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID());
+        queryManager = new QueryManager("H2", "default");
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE " + METRICS_TABLE_METRIC_GAUGE + " (ID BIGINT AUTO_INCREMENT, " +
+                    "SOURCE VARCHAR(255), TIMESTAMP BIGINT, NAME VARCHAR(255), VALUE VARCHAR(100))");
+            for (String table : new String[]{METRICS_TABLE_METRIC_METER, METRICS_TABLE_METRIC_TIMER}) {
+                stmt.executeUpdate("CREATE TABLE " + table + " (ID BIGINT AUTO_INCREMENT, SOURCE VARCHAR(255), " +
+                        "TIMESTAMP BIGINT, NAME VARCHAR(255), M1_RATE DOUBLE)");
+            }
+        }
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        dataSource.close();
+        MonitoringDataHolder.getInstance().setConfigProvider(null);
+    }
+
+    @Test
+    public void testRolledUpAveragesMatchRawAggregateQuery() throws Exception {
+        insertMetrics(METRICS_TABLE_METRIC_GAUGE, START_TIME, START_TIME + 3 * HOUR, 15000);
+        // the minute rollup ends at 02:57, in the middle of a five minute bucket read from the raw metrics
+        long currentTime = START_TIME + 3 * HOUR + 2 * MINUTE;
+        MetricsRollupManager rollupManager = new MetricsRollupManager(dataSource, queryManager);
+        Assert.assertTrue(rollupManager.init());
+        rollupManager.rollup(currentTime);
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_MINUTE),
+                (Long) (START_TIME + 2 * HOUR + 57 * MINUTE));
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_HOUR), (Long) (START_TIME + 2 * HOUR));
+
+        for (int aggregationMinutes : new int[]{5, 60}) {
+            SortedMap<Long, Map<String, double[]>> buckets = rollupManager.select(METRICS_TABLE_METRIC_GAUGE,
+                    SOURCE, METRIC_NAME, false, START_TIME, currentTime,
+                    TimeUnit.MINUTES.toMillis(aggregationMinutes));
+            Assert.assertNotNull(buckets);
+            ArrayList<Double> rawAverages = selectRawAverages(START_TIME, currentTime, aggregationMinutes);
+            Assert.assertEquals(buckets.size(), rawAverages.size());
+            int i = 0;
+            for (Map.Entry<Long, Map<String, double[]>> bucket : buckets.entrySet()) {
+                Assert.assertEquals(bucket.getKey().longValue(), START_TIME + i * aggregationMinutes * MINUTE);
+                double[] sumAndCount = bucket.getValue().get(METRIC_NAME);
+                Assert.assertEquals(sumAndCount[0] / sumAndCount[1], rawAverages.get(i), 1e-9,
+                        "Average of bucket " + i + " of " + aggregationMinutes + " minutes");
+                i++;
+            }
+        }
+    }
+
+    @Test
+    public void testDashboardsSharingTheDatabaseRollUpEachBucketOnce() throws Exception {
+        insertMetrics(METRICS_TABLE_METRIC_GAUGE, START_TIME, START_TIME + HOUR, 15000);
+        long currentTime = START_TIME + HOUR;
+        MetricsRollupManager otherRollupManager = new MetricsRollupManager(dataSource, queryManager);
+        Assert.assertTrue(otherRollupManager.init());
+        // the other dashboard rolls up the same minutes after this dashboard read the watermark
+        QueryManager interleavingQueryManager = new QueryManager("H2", "default") {
+            private boolean isInterleaved;
+
+            @Override
+            public String getQuery(String key) {
+                if (!isInterleaved && SQLConstants.INSERT_RAW_ROLLUP_QUERY.equals(key)) {
+                    isInterleaved = true;
+                    otherRollupManager.rollup(currentTime);
+                }
+                return super.getQuery(key);
+            }
+        };
+        MetricsRollupManager rollupManager = new MetricsRollupManager(dataSource, interleavingQueryManager);
+        Assert.assertTrue(rollupManager.init());
+        rollupManager.rollup(currentTime);
+
+        long watermark = START_TIME + 55 * MINUTE;
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_MINUTE), (Long) watermark);
+        Assert.assertEquals(sumRolledUpCounts(MetricsRollupManager.RollupLevel.ONE_MINUTE), 55 * 4);
+        // both dashboards continue from the shared watermark
+        rollupManager.rollup(currentTime + 2 * MINUTE);
+        otherRollupManager.rollup(currentTime + 5 * MINUTE);
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_MINUTE), (Long) (START_TIME + HOUR));
+        Assert.assertEquals(sumRolledUpCounts(MetricsRollupManager.RollupLevel.ONE_MINUTE), 60 * 4);
+    }
+
+    @Test
+    public void testPurgeDoesNotOvertakeCoarserWatermark() throws Exception {
+        long metricsStartTime = START_TIME + 30 * MINUTE;
+        for (String table : new String[]{METRICS_TABLE_METRIC_GAUGE, METRICS_TABLE_METRIC_METER,
+                METRICS_TABLE_METRIC_TIMER}) {
+            insertMetrics(table, metricsStartTime, START_TIME + 4 * DAY, MINUTE);
+        }
+        MetricsRollupManager rollupManager = new MetricsRollupManager(dataSource, queryManager);
+        Assert.assertTrue(rollupManager.init());
+        // a day of minutes is rolled up at once, leaving the last half an hour out of the hour rollup
+        rollupManager.rollup(START_TIME + 4 * DAY);
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_MINUTE),
+                (Long) (metricsStartTime + DAY));
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_HOUR), (Long) (START_TIME + DAY));
+
+        // the minutes older than their retention are kept till they are rolled up into the hour rollup
+        Assert.assertEquals(selectLong("SELECT MIN(TIMESTAMP) FROM " +
+                MetricsRollupManager.RollupLevel.ONE_MINUTE.getTableName()), START_TIME + DAY);
+        Assert.assertEquals(sumRolledUpCounts(MetricsRollupManager.RollupLevel.ONE_MINUTE), 30);
+
+        rollupManager.rollup(START_TIME + 4 * DAY + HOUR);
+        Assert.assertEquals(getWatermark(MetricsRollupManager.RollupLevel.ONE_HOUR), (Long) (START_TIME + 2 * DAY));
+        Assert.assertEquals(selectLong("SELECT SUM(VALUE_COUNT) FROM " +
+                MetricsRollupManager.RollupLevel.ONE_HOUR.getTableName() + " WHERE METRIC_TYPE='" +
+                METRICS_TABLE_METRIC_GAUGE + "' AND TIMESTAMP>=" + (START_TIME + DAY)), 24 * 60);
+    }
+
+    private void insertMetrics(String table, long fromTime, long toTime, long interval) throws SQLException {
+        String valueColumn = METRICS_TABLE_METRIC_GAUGE.equals(table) ? "VALUE" : "M1_RATE";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("INSERT INTO " + table + " (SOURCE,TIMESTAMP,NAME," +
+                     valueColumn + ") VALUES (?,?,?,?)")) {
+            int i = 0;
+            for (long timestamp = fromTime; timestamp < toTime; timestamp += interval) {
+                double value = (i++ % 17) * 10 + 0.25;
+                stmt.setString(1, SOURCE);
+                stmt.setLong(2, timestamp);
+                stmt.setString(3, METRIC_NAME);
+                if (METRICS_TABLE_METRIC_GAUGE.equals(table)) {
+                    stmt.setString(4, Double.toString(value));
+                } else {
+                    stmt.setDouble(4, value);
+                }
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private ArrayList<Double> selectRawAverages(long beginTime, long endTime, int aggregationMinutes)
+            throws SQLException {
+        String query = queryManager.getQuery(SQLConstants.SELECT_WORKER_AGGREGATE_METRICS_QUERY)
+                .replace(SQLConstants.PLACEHOLDER_TABLE_NAME, METRICS_TABLE_METRIC_GAUGE)
+                .replace(SQLConstants.PLACEHOLDER_AGGREGATION_TIME, Integer.toString(aggregationMinutes))
+                .replace(SQLConstants.PLACEHOLDER_WORKER_ID, "?")
+                .replace(SQLConstants.PLACEHOLDER_NAME, "?")
+                .replace(SQLConstants.PLACEHOLDER_BEGIN_TIME, "?")
+                .replace(SQLConstants.PLACEHOLDER_CURRENT_TIME, "?");
+        ArrayList<Double> averages = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, SOURCE);
+            stmt.setString(2, METRIC_NAME);
+            stmt.setLong(3, beginTime);
+            stmt.setLong(4, endTime);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    averages.add(rs.getDouble("VALUE"));
+                }
+            }
+        }
+        return averages;
+    }
+
+    private Long getWatermark(MetricsRollupManager.RollupLevel level) throws SQLException {
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT WATERMARK FROM METRIC_ROLLUP_WATERMARK " +
+                     "WHERE ROLLUP_TABLE=? AND METRIC_TYPE=?")) {
+            stmt.setString(1, level.getTableName());
+            stmt.setString(2, METRICS_TABLE_METRIC_GAUGE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    private long sumRolledUpCounts(MetricsRollupManager.RollupLevel level) throws SQLException {
+        return selectLong("SELECT SUM(VALUE_COUNT) FROM " + level.getTableName() + " WHERE METRIC_TYPE='" +
+                METRICS_TABLE_METRIC_GAUGE + "'");
+    }
+
+    private long selectLong(String query) throws SQLException {
+        try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            Assert.assertTrue(rs.next());
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.status.dashboard.core.impl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import feign.Response;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.idp.client.core.api.AnalyticsHttpClientBuilderService;
+import org.wso2.carbon.config.provider.ConfigProvider;
+import org.wso2.carbon.status.dashboard.core.api.WorkerServiceStub;
+import org.wso2.carbon.status.dashboard.core.bean.NodeConfigurationDetails;
+import org.wso2.carbon.status.dashboard.core.dbhandler.DeploymentConfigs;
+import org.wso2.carbon.status.dashboard.core.dbhandler.StatusDashboardDBHandler;
+import org.wso2.carbon.status.dashboard.core.internal.MonitoringDataHolder;
+import org.wso2.carbon.status.dashboard.core.model.WorkerOverview;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WorkerStatusPollerTest polls fake workers, which answer, block or cannot be reached, through the status poller.
+ */
+public class WorkerStatusPollerTest {
+    private final Map<String, FakeWorker> workers = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong(1514764800000L);
+    private HikariDataSource dataSource;
+    private StatusDashboardDBHandler dashboardStore;
+    private WorkerStatusPoller poller;
+    private ExecutorService requestExecutor;
+
+    @BeforeMethod
+    public void setUp() {
+        MonitoringDataHolder dataHolder = MonitoringDataHolder.getInstance();
+        dataHolder.setConfigProvider((ConfigProvider) Proxy.newProxyInstance(ConfigProvider.class.getClassLoader(),
+                new Class[]{ConfigProvider.class}, (proxy, method, args) -> new DeploymentConfigs()));
+        DeploymentConfigs deploymentConfigs = new DeploymentConfigs();
+        deploymentConfigs.setWorkerConnectionConfigurations(1000, 1000);
+        dataHolder.setStatusDashboardDeploymentConfigs(deploymentConfigs);
+        dataHolder.setClientBuilderService((AnalyticsHttpClientBuilderService) Proxy.newProxyInstance(
+                AnalyticsHttpClientBuilderService.class.getClassLoader(),
+                new Class[]{AnalyticsHttpClientBuilderService.class},
+                (proxy, method, args) -> workerClient(URI.create((String) args[5]).getHost())));
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID());
+        dataHolder.setDashboardDataSource(dataSource);
+        dashboardStore = new StatusDashboardDBHandler() {
+            @Override
+            public List<NodeConfigurationDetails> selectAllWorkers() {
+                // the background poll is held, so that only the requests poll the workers
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<NodeConfigurationDetails> getAllManagerConfigDetails() {
+                return Collections.emptyList();
+            }
+        };
+        requestExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        poller.stop();
+        requestExecutor.shutdownNow();
+        for (FakeWorker worker : workers.values()) {
+            worker.release.countDown();
+        }
+        workers.clear();
+        dataSource.close();
+        MonitoringDataHolder.getInstance().setDashboardDataSource(null);
+        MonitoringDataHolder.getInstance().setConfigProvider(null);
+    }
+
+    @Test
+    public void testPollTimeoutAnswersWithoutTheBlockedWorker() throws Exception {
+        poller = new WorkerStatusPoller(dashboardStore, "admin", "admin", 5, 500, clock::get);
+        poller.start();
+        NodeConfigurationDetails blockedWorker = addWorker(true);
+        NodeConfigurationDetails worker = addWorker(false);
+
+        long startTime = System.nanoTime();
+        List<WorkerStatusPoller.NodeStatus<WorkerOverview>> statuses =
+                poller.getWorkerStatuses(Arrays.asList(blockedWorker, worker));
+        Assert.assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+        Assert.assertEquals(statuses.size(), 1);
+        Assert.assertEquals(statuses.get(0).getOverview().getWorkerId(), worker.getWorkerId());
+        Assert.assertEquals(statuses.get(0).getOverview().getStatusMessage(), "Success");
+
+        // the next request awaits the poll in flight rather than polling the blocked worker again
+        Future<List<WorkerStatusPoller.NodeStatus<WorkerOverview>>> nextStatuses = requestExecutor.submit(
+                () -> poller.getWorkerStatuses(Arrays.asList(blockedWorker, worker)));
+        workers.get(blockedWorker.getHost()).release.countDown();
+        Assert.assertEquals(nextStatuses.get(5, TimeUnit.SECONDS).size(), 2);
+        Assert.assertEquals(workers.get(blockedWorker.getHost()).pollCount.get(), 1);
+        Assert.assertEquals(workers.get(worker.getHost()).pollCount.get(), 1);
+    }
+
+    @Test
+    public void testOnlyStaleStatusesArePolled() {
+        poller = new WorkerStatusPoller(dashboardStore, "admin", "admin", 5, 5000, clock::get);
+        poller.start();
+        NodeConfigurationDetails worker = addWorker(false);
+        List<NodeConfigurationDetails> nodes = Collections.singletonList(worker);
+        FakeWorker fakeWorker = workers.get(worker.getHost());
+
+        Assert.assertEquals(poller.getWorkerStatuses(nodes).size(), 1);
+        Assert.assertEquals(fakeWorker.pollCount.get(), 1);
+        // a status is stale once it is older than two polling intervals
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertEquals(poller.getWorkerStatuses(nodes).size(), 1);
+        Assert.assertEquals(fakeWorker.pollCount.get(), 1);
+        clock.incrementAndGet();
+        List<WorkerStatusPoller.NodeStatus<WorkerOverview>> statuses = poller.getWorkerStatuses(nodes);
+        Assert.assertEquals(fakeWorker.pollCount.get(), 2);
+        Assert.assertEquals(statuses.get(0).getPollTime(), clock.get());
+    }
+
+    @Test
+    public void testStopReleasesTheRequestsAwaitingPolls() throws Exception {
+        poller = new WorkerStatusPoller(dashboardStore, "admin", "admin", 5, TimeUnit.MINUTES.toMillis(1),
+                clock::get);
+        poller.start();
+        NodeConfigurationDetails blockedWorker = addWorker(true);
+        FakeWorker fakeWorker = workers.get(blockedWorker.getHost());
+
+        Future<List<WorkerStatusPoller.NodeStatus<WorkerOverview>>> statuses = requestExecutor.submit(
+                () -> poller.getWorkerStatuses(Collections.singletonList(blockedWorker)));
+        Assert.assertTrue(fakeWorker.polled.await(5, TimeUnit.SECONDS));
+        poller.stop();
+        // the blocked worker ignores the interrupt, and the request returns without its status
+        Assert.assertTrue(statuses.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    private NodeConfigurationDetails addWorker(boolean isBlocked) {
+        // clients are cached per url, so every test uses new hosts
+        String host = "worker-" + UUID.randomUUID();
+        workers.put(host, new FakeWorker(isBlocked));
+        return new NodeConfigurationDetails(host + "_9443", host, 9443);
+    }
+
+    private WorkerServiceStub workerClient(String host) {
+        return (WorkerServiceStub) Proxy.newProxyInstance(WorkerServiceStub.class.getClassLoader(),
+                new Class[]{WorkerServiceStub.class}, (proxy, method, args) -> {
+                    FakeWorker worker = workers.get(host);
+                    switch (method.getName()) {
+                        case "getWorker":
+                            worker.poll();
+                            return response("{}");
+                        case "getSiddhiApps":
+                            return response("[]");
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static Response response(String body) {
+        return Response.create(200, "OK", Collections.emptyMap(), body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Worker counting its polls, and either answering at once or blocking until it is released.
+     */
+    private static class FakeWorker {
+        private final boolean isBlocked;
+        private final AtomicInteger pollCount = new AtomicInteger();
+        private final CountDownLatch polled = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private FakeWorker(boolean isBlocked) {
+            this.isBlocked = isBlocked;
+        }
+
+        private void poll() {
+            pollCount.incrementAndGet();
+            polled.countDown();
+            while (isBlocked) {
+                try {
+                    release.await();
+                    return;
+                } catch (InterruptedException e) {
+                    // the worker keeps blocking, as a socket read would
+                }
+            }
+        }
+    }
+}
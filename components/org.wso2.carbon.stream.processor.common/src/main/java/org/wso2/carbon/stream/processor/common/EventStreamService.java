@@ -35,4 +35,17 @@ public interface EventStreamService {
             ResourceNotFoundException;
 
     public void pushEvent(String siddhiAppName, String streamName, Event event);
+
+    /**
+     * Push a batch of events to a stream, in their order in the batch.
+     *
+     * @param siddhiAppName name of the Siddhi app
+     * @param streamName    name of the stream
+     * @param events        events to push
+     */
+    public default void pushEvents(String siddhiAppName, String streamName, Event[] events) {
+        for (Event event : events) {
+            pushEvent(siddhiAppName, streamName, event);
+        }
+    }
 }
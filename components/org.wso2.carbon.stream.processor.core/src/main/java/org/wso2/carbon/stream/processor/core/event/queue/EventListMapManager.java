@@ -19,39 +19,72 @@
 package org.wso2.carbon.stream.processor.core.event.queue;
 
 import org.apache.log4j.Logger;
-import org.wso2.carbon.stream.processor.core.ha.exception.InvalidByteMessageException;
-import org.wso2.carbon.stream.processor.core.ha.tcp.SiddhiEventConverter;
 import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
-import org.wso2.carbon.stream.processor.core.internal.SiddhiAppData;
-import org.wso2.carbon.stream.processor.core.internal.StreamProcessorDataHolder;
-import org.wso2.carbon.stream.processor.core.util.BinaryMessageConverterUtil;
-import org.wso2.siddhi.core.event.Event;
+import org.wso2.carbon.stream.processor.core.internal.beans.EventSpillConfig;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
 import org.wso2.siddhi.core.stream.input.source.Source;
+import org.wso2.siddhi.core.stream.input.source.SourceHandler;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentSkipListMap;
-
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Buffers the events synced from the active node in a {@link SegmentedEventLog} per Siddhi app, trims them as the
+ * active node persists the apps and replays the remaining events when this node becomes active. When spilling is
+ * enabled, the events received as frames are kept serialized in an {@link EventSpillStore} instead of the heap.
+ */
 public class EventListMapManager {
-    private static ConcurrentSkipListMap<Long,QueuedEvent> eventListMap;
-    private static Map<String,Long> perAppLastControlMessageSequenceNumberList = new HashMap<>();
+    private static final ConcurrentMap<String, SegmentedEventLog> appEventLogs = new ConcurrentHashMap<>();
     private static final Logger log = Logger.getLogger(EventListMapManager.class);
     private static long startTime;
     private static long endTime;
     private static int count = 0;
     private static final int TPS_EVENT_THRESHOLD = 100000;
+    private static final int REPLAY_REORDER_WINDOW_SIZE = 65536;
+    private static final Comparator<QueuedEvent> SEQUENCE_ORDER =
+            (event1, event2) -> Long.compare(event1.getSequenceID(), event2.getSequenceID());
+    private static volatile EventSpillStore eventSpillStore;
+    private final EventFrameCodec eventFrameCodec = new EventFrameCodec();
 
     public EventListMapManager() {
     }
 
-    public static void initializeEventListMap() {
-        eventListMap = new ConcurrentSkipListMap<Long, QueuedEvent>();
+    public static synchronized void initializeEventListMap(EventSpillConfig eventSpillConfig) {
+        appEventLogs.clear();
+        if (eventSpillStore != null) {
+            eventSpillStore.close();
+            eventSpillStore = null;
+        }
+        if (eventSpillConfig != null && eventSpillConfig.isEnabled()) {
+            int segmentSizeInMB = eventSpillConfig.getSegmentSizeInMB();
+            if (segmentSizeInMB <= 0 || segmentSizeInMB > EventSpillStore.MAX_SEGMENT_SIZE_IN_MB) {
+                log.error("Invalid event spill segment size " + segmentSizeInMB + " MB, it should be between 1 and " +
+                        EventSpillStore.MAX_SEGMENT_SIZE_IN_MB + " MB. Events received from the active node will be " +
+                        "buffered in memory.");
+                return;
+            }
+            try {
+                eventSpillStore = new EventSpillStore(eventSpillConfig.getDirectory(),
+                        (int) (segmentSizeInMB * 1024L * 1024L));
+                log.info("Events received from the active node will be spilled to " +
+                        eventSpillConfig.getDirectory());
+            } catch (IOException e) {
+                log.error("Error when initializing the event spill directory " + eventSpillConfig.getDirectory() +
+                        ", events received from the active node will be buffered in memory. " + e.getMessage(), e);
+            }
+        }
     }
 
     public void parseControlMessage(byte[] controlMessageContentByteArray) throws UnsupportedEncodingException {
@@ -67,139 +100,133 @@ public class EventListMapManager {
         }
     }
 
-    public void parseMessage(byte[] eventContentByteArray) {
-        try {
-            ByteBuffer eventContent = ByteBuffer.wrap(eventContentByteArray);
-            int noOfEvents = eventContent.getInt();
-            QueuedEvent queuedEvent;
-            Event[] events = new Event[noOfEvents];
-            for (int i = 0; i < noOfEvents; i++) {
-                String sourceHandlerElementId;
-                String siddhiAppName;
-                long sequenceID = eventContent.getLong();
-                int sourceHandlerLength = eventContent.getInt();
-                if (sourceHandlerLength == 0) {
-                    throw new InvalidByteMessageException("Invalid sourceHandlerLength size = 0");
-                } else {
-                    sourceHandlerElementId = BinaryMessageConverterUtil.getString(eventContent, sourceHandlerLength);
-                }
-
-                int appNameLength = eventContent.getInt();
-                if (appNameLength == 0) {
-                    throw new InvalidByteMessageException("Invalid appNameLength size = 0");
-                } else {
-                    siddhiAppName = BinaryMessageConverterUtil.getString(eventContent, appNameLength);
-                }
-                long lastSequenceIdForApp = -1;
+    /**
+     * Parses a frame encoded with {@link EventFrameCodec} and buffers the events that are newer than the last
+     * control message received for their Siddhi app.
+     *
+     * @param eventFrame frame received on the {@link HAConstants#CHANNEL_ID_EVENT_FRAME} channel, only valid for the
+     *                   duration of the call
+     */
+    public void parseEventFrame(ByteBuffer eventFrame) {
+        EventSpillStore spillStore = eventSpillStore;
+        if (spillStore != null) {
+            spillStore.append(eventFrame);
+            return;
+        }
+        eventFrameCodec.decode(eventFrame, (schema, sequenceId, event) -> {
+            this.addToEventListMap(sequenceId, new QueuedEvent(schema.getSiddhiAppName(),
+                    schema.getSourceHandlerElementId(), sequenceId, event));
+            if (log.isDebugEnabled()) {
+                logThroughput();
+            }
+        });
+    }
 
-                if (perAppLastControlMessageSequenceNumberList.size() != 0) {
-                    if (perAppLastControlMessageSequenceNumberList.get(siddhiAppName) != null) {
-                        lastSequenceIdForApp = perAppLastControlMessageSequenceNumberList.get(siddhiAppName);
-                    }
-                }
-                synchronized (this) {
-                    //we need this block synchronized to ensure if last remembered siddhi app id is smaller than the
-                    // event id then add it to the tree map synchronously, else older event may add to the tree map
-                    if (sequenceID > lastSequenceIdForApp) {
-                        String attributes;
-                        int attributeLength = eventContent.getInt();
-                        if (attributeLength == 0) {
-                            throw new InvalidByteMessageException("Invalid attributeLength size = 0");
-                        } else {
-                            attributes = BinaryMessageConverterUtil.getString(eventContent, attributeLength);
-                        }
-                        String[] attributeTypes = attributes.substring(1, attributes.length() - 1).split(", ");
-                        events[i] = SiddhiEventConverter.getEvent(eventContent, attributeTypes);
-                        queuedEvent = new QueuedEvent(siddhiAppName, sourceHandlerElementId, sequenceID, events[i]);
-                        this.addToEventListMap(sequenceID, queuedEvent);
-                    }
+    private synchronized void logThroughput() {
+        if (startTime == 0L) {
+            startTime = new Date().getTime();
+        }
+        count++;
+        if (count % TPS_EVENT_THRESHOLD == 0) {
+            endTime = new Date().getTime();
+            log.debug("# of events batch : " + count + " start timestamp : " + startTime +
+                    " end time stamp : " + endTime + " Throughput is (events / sec) : " +
+                    (((TPS_EVENT_THRESHOLD * 1000) / (endTime - startTime))) +
+                    " Total Event Count : " + count);
+            startTime = new Date().getTime();
+        }
+    }
 
-                    if (log.isDebugEnabled()) {
-                        if (startTime == 0L) {
-                            startTime = new Date().getTime();
-                        }
-                        count++;
-                        if (count % TPS_EVENT_THRESHOLD == 0) {
-                            endTime = new Date().getTime();
-                            log.debug("# of events batch : " + count + " start timestamp : " + startTime +
-                                    " end time stamp : " + endTime + " Throughput is (events / sec) : " +
-                                    (((TPS_EVENT_THRESHOLD * 1000) / (endTime - startTime))) +
-                                    " Total Event Count : " + count);
-                            startTime = new Date().getTime();
-                        }
+    /**
+     * Sends the events buffered for a Siddhi app, in sequence order, to the source handlers of the given runtime and
+     * removes them from the buffer. Different apps can be replayed concurrently.
+     *
+     * @return number of replayed events
+     */
+    public long replay(String siddhiAppName, SiddhiAppRuntime siddhiAppRuntime) throws InterruptedException {
+        SegmentedEventLog eventLog = appEventLogs.remove(siddhiAppName);
+        QueuedEvent[] queuedEvents = eventLog == null ? new QueuedEvent[0] : eventLog.drain();
+        EventSpillStore spillStore = eventSpillStore;
+
+        Map<String, SourceHandler> sourceHandlers = new HashMap<>();
+        Collection<List<Source>> sourceCollection = siddhiAppRuntime.getSources();
+        for (List<Source> sources : sourceCollection) {
+            for (Source source : sources) {
+                SourceHandler sourceHandler = source.getMapper().getHandler();
+                sourceHandlers.put(sourceHandler.getElementId(), sourceHandler);
+            }
+        }
+        long replayedCount = queuedEvents.length;
+        if (spillStore == null) {
+            for (QueuedEvent queuedEvent : queuedEvents) {
+                send(sourceHandlers, queuedEvent);
+            }
+        } else {
+            // spilled frames of an app can arrive slightly out of order through the parallel extractors, so the
+            // segments are decoded one at a time and merged through a bounded window ordered by sequence id
+            PriorityQueue<QueuedEvent> reorderWindow = new PriorityQueue<>(SEQUENCE_ORDER);
+            Collections.addAll(reorderWindow, queuedEvents);
+            List<QueuedEvent> spilledEvents;
+            while ((spilledEvents = spillStore.drainSegment(siddhiAppName)) != null) {
+                replayedCount += spilledEvents.size();
+                for (QueuedEvent spilledEvent : spilledEvents) {
+                    reorderWindow.add(spilledEvent);
+                    if (reorderWindow.size() > REPLAY_REORDER_WINDOW_SIZE) {
+                        send(sourceHandlers, reorderWindow.poll());
                     }
                 }
-
-
             }
-        } catch (UnsupportedEncodingException e) {
-            log.error("Error when converting bytes " + e.getMessage(), e);
+            while (!reorderWindow.isEmpty()) {
+                send(sourceHandlers, reorderWindow.poll());
+            }
         }
+        if (log.isDebugEnabled()) {
+            log.debug("Replayed " + replayedCount + " buffered events of Siddhi app " + siddhiAppName);
+        }
+        return replayedCount;
     }
 
-    public void trimAndSendToInputHandler() throws InterruptedException {
-        Map<String, SiddhiAppData> siddhiAppMap = StreamProcessorDataHolder.getStreamProcessorService().
-                getSiddhiAppMap();
-
-        for(Map.Entry<Long,QueuedEvent> listMapValue : eventListMap.entrySet()) {
-            long key = listMapValue.getKey();
-            QueuedEvent queuedEvent = listMapValue.getValue();
-            SiddhiAppData siddhiAppData = siddhiAppMap.get(queuedEvent.getSiddhiAppName());
-            if (siddhiAppData != null) {
-                Collection<List<Source>> sourceCollection = siddhiAppData.getSiddhiAppRuntime().getSources();
-                for (List<Source> sources : sourceCollection) {
-                    boolean isFound = false;
-                    for (Source source : sources) {
-                        if(queuedEvent.getSourceHandlerElementId().equals(source.getMapper().
-                                getHandler().getElementId())){
-                            source.getMapper().getHandler().sendEvent(queuedEvent.getEvent());
-                            eventListMap.remove(key);
-                            isFound = true;
-                            break;
-                        }
-                    }
-                    if (isFound) {
-                        break;
-                    }
-                }
-            }
+    /**
+     * Drops the events that were not replayed, such as the events of apps that are no longer deployed.
+     */
+    public void clearBufferedEvents() {
+        appEventLogs.clear();
+        EventSpillStore spillStore = eventSpillStore;
+        if (spillStore != null) {
+            spillStore.close();
         }
-        eventListMap.clear();
-        perAppLastControlMessageSequenceNumberList.clear();
     }
 
-    public void trimQueue(String[] persistedAppDetails){
-        synchronized (this) {
-            //need to synchronize to make sure to finish remembering last control message seq id for siddhi app and
-            // trim accordingly
-            if (eventListMap.size() != 0){
-                for(String appDetail : persistedAppDetails) {
-                    String[] details = appDetail.split(HAConstants.PERSISTED_APP_SPLIT_DELIMITER);
-                    long seqId = Long.parseLong(details[0].trim());
-                    String appName = details[2].trim();
-                    if (perAppLastControlMessageSequenceNumberList.get(appName) != null) {
-                        long existingId = perAppLastControlMessageSequenceNumberList.get(appName);
-                        if (existingId < seqId) {
-                            perAppLastControlMessageSequenceNumberList.put(appName, seqId);
-                        }
-                    } else {
-                        perAppLastControlMessageSequenceNumberList.put(appName, seqId);
-                    }
+    private void send(Map<String, SourceHandler> sourceHandlers, QueuedEvent queuedEvent)
+            throws InterruptedException {
+        SourceHandler sourceHandler = sourceHandlers.get(queuedEvent.getSourceHandlerElementId());
+        if (sourceHandler != null) {
+            sourceHandler.sendEvent(queuedEvent.getEvent());
+        }
+    }
 
-                    for (Iterator<Map.Entry<Long, QueuedEvent>> iterator = eventListMap.entrySet().iterator();
-                         iterator.hasNext();) {
-                        Map.Entry<Long, QueuedEvent> listMapValue = iterator.next();
-                        long key = listMapValue.getKey();
-                        if (appName.equals(listMapValue.getValue().getSiddhiAppName()) && seqId > key) {
-                            eventListMap.remove(key);
-                        }
-                    }
-                }
+    public void trimQueue(String[] persistedAppDetails) {
+        for (String appDetail : persistedAppDetails) {
+            String[] details = appDetail.split(HAConstants.PERSISTED_APP_SPLIT_DELIMITER);
+            long seqId = Long.parseLong(details[0].trim());
+            String appName = details[2].trim();
+            getEventLog(appName).trim(seqId);
+            EventSpillStore spillStore = eventSpillStore;
+            if (spillStore != null) {
+                spillStore.trim(appName, seqId);
             }
         }
     }
 
-    public void addToEventListMap(long sequenceNum, QueuedEvent queuedEvent){
-        eventListMap.put(sequenceNum, queuedEvent);
+    public void addToEventListMap(long sequenceNum, QueuedEvent queuedEvent) {
+        getEventLog(queuedEvent.getSiddhiAppName()).append(queuedEvent);
+    }
+
+    private SegmentedEventLog getEventLog(String siddhiAppName) {
+        SegmentedEventLog eventLog = appEventLogs.get(siddhiAppName);
+        if (eventLog == null) {
+            eventLog = appEventLogs.computeIfAbsent(siddhiAppName, appName -> new SegmentedEventLog());
+        }
+        return eventLog;
     }
 }
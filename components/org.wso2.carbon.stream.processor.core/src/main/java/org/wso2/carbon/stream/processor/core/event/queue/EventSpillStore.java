@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.event.queue;
+
+import org.apache.log4j.Logger;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the events synced to the passive node in memory mapped segment files instead of the heap.
+ * <p>
+ * The frames received from the active node are split into their per schema blocks and each block is appended, still
+ * serialized, to the current segment of its Siddhi app. Every segment remembers the range of sequence ids it holds,
+ * so a control message releases whole segments without reading them. The events are only decoded when the segments
+ * are drained for replay. Released segments are reused so that the number of mapped files stays bounded by the
+ * number of events buffered between two control messages.
+ */
+public class EventSpillStore {
+
+    // a memory mapped buffer holds at most Integer.MAX_VALUE bytes
+    public static final int MAX_SEGMENT_SIZE_IN_MB = Integer.MAX_VALUE / (1024 * 1024);
+    private static final Logger log = Logger.getLogger(EventSpillStore.class);
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_EXTENSION = ".spill";
+    private static final int MAX_FREE_SEGMENTS = 4;
+
+    private final File directory;
+    private final int segmentSize;
+    private final EventFrameCodec eventFrameCodec = new EventFrameCodec();
+    private final ConcurrentMap<String, AppSpill> appSpills = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<SpillSegment> freeSegments = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger segmentIdGenerator = new AtomicInteger();
+
+    public EventSpillStore(String directory, int segmentSize) throws IOException {
+        this.directory = new File(directory);
+        this.segmentSize = segmentSize;
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Cannot create the event spill directory " + this.directory.getAbsolutePath());
+        }
+        deleteSegmentFiles();
+    }
+
+    /**
+     * Appends the blocks of a frame encoded with {@link EventFrameCodec} to the segments of their Siddhi apps.
+     */
+    public void append(ByteBuffer frame) {
+        eventFrameCodec.scan(frame, (schema, minSequenceId, maxSequenceId, block) -> {
+            try {
+                getAppSpill(schema.getSiddhiAppName()).append(minSequenceId, maxSequenceId, block);
+            } catch (IOException e) {
+                log.error("Error when spilling events of Siddhi app " + schema.getSiddhiAppName() + " to "
+                        + directory.getAbsolutePath() + ", " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Releases the segments of the given app that only hold events covered by the given control message.
+     */
+    public void trim(String siddhiAppName, long controlMessageSequenceId) {
+        getAppSpill(siddhiAppName).trim(controlMessageSequenceId);
+    }
+
+    /**
+     * Decodes and releases the oldest segment of the given app.
+     *
+     * @return events of the segment that are newer than the last control message of the app, in arrival order, or
+     * null if there are no more segments
+     */
+    public List<QueuedEvent> drainSegment(String siddhiAppName) {
+        AppSpill appSpill = appSpills.get(siddhiAppName);
+        return appSpill == null ? null : appSpill.drainSegment();
+    }
+
+    public long getSpilledBytes() {
+        long spilledBytes = 0;
+        for (AppSpill appSpill : appSpills.values()) {
+            spilledBytes += appSpill.getSpilledBytes();
+        }
+        return spilledBytes;
+    }
+
+    /**
+     * Drops all spilled events and deletes the segment files.
+     */
+    public void close() {
+        appSpills.clear();
+        freeSegments.clear();
+        deleteSegmentFiles();
+    }
+
+    private AppSpill getAppSpill(String siddhiAppName) {
+        AppSpill appSpill = appSpills.get(siddhiAppName);
+        if (appSpill == null) {
+            appSpill = appSpills.computeIfAbsent(siddhiAppName, AppSpill::new);
+        }
+        return appSpill;
+    }
+
+    private SpillSegment acquireSegment(int recordSize) throws IOException {
+        if (recordSize <= segmentSize) {
+            SpillSegment segment = freeSegments.poll();
+            if (segment != null) {
+                return segment;
+            }
+        }
+        File file = new File(directory, SEGMENT_FILE_PREFIX + segmentIdGenerator.incrementAndGet()
+                + SEGMENT_FILE_EXTENSION);
+        return new SpillSegment(file, Math.max(segmentSize, recordSize));
+    }
+
+    private void releaseSegment(SpillSegment segment) {
+        if (segment.buffer.capacity() == segmentSize && freeSegments.size() < MAX_FREE_SEGMENTS) {
+            segment.reset();
+            freeSegments.offer(segment);
+        } else if (!segment.file.delete() && log.isDebugEnabled()) {
+            // the mapping stays valid until the buffer is collected even when the file is deleted
+            log.debug("Cannot delete the event spill segment " + segment.file.getAbsolutePath());
+        }
+    }
+
+    private void deleteSegmentFiles() {
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX)
+                && name.endsWith(SEGMENT_FILE_EXTENSION));
+        if (segmentFiles != null) {
+            for (File segmentFile : segmentFiles) {
+                if (!segmentFile.delete()) {
+                    log.warn("Cannot delete the event spill segment " + segmentFile.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Segments of a single Siddhi app in the order they were filled.
+     */
+    private class AppSpill {
+        private final String siddhiAppName;
+        private final ArrayDeque<SpillSegment> segments = new ArrayDeque<>();
+        private long lastControlMessageSequenceId = -1;
+
+        private AppSpill(String siddhiAppName) {
+            this.siddhiAppName = siddhiAppName;
+        }
+
+        private synchronized void append(long minSequenceId, long maxSequenceId, ByteBuffer block)
+                throws IOException {
+            if (maxSequenceId <= lastControlMessageSequenceId) {
+                return;
+            }
+            int recordSize = 4 + block.remaining();
+            SpillSegment tail = segments.peekLast();
+            if (tail == null || tail.buffer.remaining() < recordSize) {
+                tail = acquireSegment(recordSize);
+                segments.addLast(tail);
+            }
+            tail.append(minSequenceId, maxSequenceId, block);
+        }
+
+        private synchronized void trim(long controlMessageSequenceId) {
+            if (controlMessageSequenceId <= lastControlMessageSequenceId) {
+                return;
+            }
+            lastControlMessageSequenceId = controlMessageSequenceId;
+            for (Iterator<SpillSegment> iterator = segments.iterator(); iterator.hasNext(); ) {
+                SpillSegment segment = iterator.next();
+                if (segment.maxSequenceId <= controlMessageSequenceId) {
+                    iterator.remove();
+                    releaseSegment(segment);
+                }
+            }
+        }
+
+        private synchronized List<QueuedEvent> drainSegment() {
+            SpillSegment segment = segments.pollFirst();
+            if (segment == null) {
+                return null;
+            }
+            List<QueuedEvent> queuedEvents = new ArrayList<>();
+            boolean partiallyTrimmed = segment.minSequenceId <= lastControlMessageSequenceId;
+            ByteBuffer records = segment.buffer.duplicate();
+            records.flip();
+            while (records.hasRemaining()) {
+                int blockLength = records.getInt();
+                ByteBuffer block = records.slice();
+                block.limit(blockLength);
+                records.position(records.position() + blockLength);
+                eventFrameCodec.decodeBlock(block, (schema, sequenceId, event) -> {
+                    if (!partiallyTrimmed || sequenceId > lastControlMessageSequenceId) {
+                        queuedEvents.add(new QueuedEvent(siddhiAppName, schema.getSourceHandlerElementId(),
+                                sequenceId, event));
+                    }
+                });
+            }
+            releaseSegment(segment);
+            return queuedEvents;
+        }
+
+        private synchronized long getSpilledBytes() {
+            long spilledBytes = 0;
+            for (SpillSegment segment : segments) {
+                spilledBytes += segment.buffer.position();
+            }
+            return spilledBytes;
+        }
+    }
+
+    /**
+     * Memory mapped file holding length prefixed blocks.
+     */
+    private static class SpillSegment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private long minSequenceId = Long.MAX_VALUE;
+        private long maxSequenceId = Long.MIN_VALUE;
+
+        private SpillSegment(File file, int capacity) throws IOException {
+            this.file = file;
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                 FileChannel fileChannel = randomAccessFile.getChannel()) {
+                // the mapping stays valid after the channel is closed
+                this.buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        private void append(long minSequenceId, long maxSequenceId, ByteBuffer block) {
+            buffer.putInt(block.remaining());
+            buffer.put(block);
+            this.minSequenceId = Math.min(this.minSequenceId, minSequenceId);
+            this.maxSequenceId = Math.max(this.maxSequenceId, maxSequenceId);
+        }
+
+        private void reset() {
+            buffer.clear();
+            minSequenceId = Long.MAX_VALUE;
+            maxSequenceId = Long.MIN_VALUE;
+        }
+    }
+}
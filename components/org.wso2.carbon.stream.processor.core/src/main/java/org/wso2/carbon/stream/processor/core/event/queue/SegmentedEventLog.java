@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.event.queue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Append-only buffer of the events replicated to the passive node for a single Siddhi app.
+ * <p>
+ * Events are appended to fixed size segments in arrival order and every segment remembers the range of sequence ids
+ * it holds. A control message trims the log by dropping the segments that only hold events older than the persisted
+ * revision, without looking at individual events. Events of a partially trimmed segment are filtered when the log is
+ * drained for replay.
+ */
+public class SegmentedEventLog {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 4096;
+    private static final Comparator<QueuedEvent> SEQUENCE_ORDER =
+            (event1, event2) -> Long.compare(event1.getSequenceID(), event2.getSequenceID());
+
+    private final int segmentSize;
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long lastControlMessageSequenceId = -1;
+    private long size;
+
+    public SegmentedEventLog() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentedEventLog(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Appends an event unless it is already covered by the last control message received for the app.
+     *
+     * @param queuedEvent event to append
+     * @return true if the event was appended
+     */
+    public synchronized boolean append(QueuedEvent queuedEvent) {
+        if (queuedEvent.getSequenceID() <= lastControlMessageSequenceId) {
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.count == segmentSize) {
+            tail = new Segment(segmentSize);
+            segments.addLast(tail);
+        }
+        tail.add(queuedEvent);
+        size++;
+        return true;
+    }
+
+    /**
+     * Drops the events up to and including the given control message sequence id. Only whole segments are released,
+     * so the cost depends on the number of segments rather than the number of events.
+     *
+     * @param controlMessageSequenceId sequence id of the control message sent after the app was persisted
+     */
+    public synchronized void trim(long controlMessageSequenceId) {
+        if (controlMessageSequenceId <= lastControlMessageSequenceId) {
+            return;
+        }
+        lastControlMessageSequenceId = controlMessageSequenceId;
+        for (Iterator<Segment> iterator = segments.iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+            if (segment.maxSequenceId <= controlMessageSequenceId) {
+                iterator.remove();
+                size -= segment.count;
+            }
+        }
+    }
+
+    /**
+     * Removes all buffered events that are newer than the last control message and returns them ordered by sequence
+     * id.
+     */
+    public synchronized QueuedEvent[] drain() {
+        QueuedEvent[] drainedEvents = new QueuedEvent[(int) size];
+        int drainedCount = 0;
+        boolean ordered = true;
+        long previousSequenceId = Long.MIN_VALUE;
+        for (Segment segment : segments) {
+            boolean partiallyTrimmed = segment.minSequenceId <= lastControlMessageSequenceId;
+            for (int i = 0; i < segment.count; i++) {
+                QueuedEvent queuedEvent = segment.events[i];
+                long sequenceId = queuedEvent.getSequenceID();
+                if (partiallyTrimmed && sequenceId <= lastControlMessageSequenceId) {
+                    continue;
+                }
+                ordered &= sequenceId > previousSequenceId;
+                previousSequenceId = sequenceId;
+                drainedEvents[drainedCount++] = queuedEvent;
+            }
+        }
+        segments.clear();
+        size = 0;
+        if (drainedCount != drainedEvents.length) {
+            drainedEvents = Arrays.copyOf(drainedEvents, drainedCount);
+        }
+        if (!ordered) {
+            // events arrive nearly in order, which the merge sort used for objects handles in close to linear time
+            Arrays.sort(drainedEvents, SEQUENCE_ORDER);
+        }
+        return drainedEvents;
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getLastControlMessageSequenceId() {
+        return lastControlMessageSequenceId;
+    }
+
+    private static class Segment {
+        private final QueuedEvent[] events;
+        private int count;
+        private long minSequenceId = Long.MAX_VALUE;
+        private long maxSequenceId = Long.MIN_VALUE;
+
+        private Segment(int segmentSize) {
+            this.events = new QueuedEvent[segmentSize];
+        }
+
+        private void add(QueuedEvent queuedEvent) {
+            long sequenceId = queuedEvent.getSequenceID();
+            events[count++] = queuedEvent;
+            if (sequenceId < minSequenceId) {
+                minSequenceId = sequenceId;
+            }
+            if (sequenceId > maxSequenceId) {
+                maxSequenceId = sequenceId;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.ha;
+
+import org.apache.log4j.Logger;
+import org.wso2.carbon.stream.processor.core.event.queue.EventListMapManager;
+import org.wso2.carbon.stream.processor.core.ha.tcp.TCPServer;
+import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
+import org.wso2.carbon.stream.processor.core.internal.StreamProcessorDataHolder;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.core.exception.CannotRestoreSiddhiAppStateException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Brings the Siddhi apps of a passive node up to date when it becomes the active node.
+ * <p>
+ * Once the events received from the previous active node are drained into the event buffer, every app is restored
+ * from its last persisted revision, started without its sources in playback mode and fed with its buffered events.
+ * Apps go through these steps independently on a bounded pool, while the events of an app are replayed in sequence
+ * order by a single thread. Sources are started only after every app has caught up, as apps can feed each other.
+ */
+class FailoverEngine {
+
+    private static final Logger log = Logger.getLogger(FailoverEngine.class);
+
+    private final TCPServer tcpServer;
+    private final EventListMapManager eventListMapManager;
+    private final LongAdder restoreNanos = new LongAdder();
+    private final LongAdder startNanos = new LongAdder();
+    private final LongAdder replayNanos = new LongAdder();
+    private final LongAdder replayedEvents = new LongAdder();
+
+    FailoverEngine(TCPServer tcpServer, EventListMapManager eventListMapManager) {
+        this.tcpServer = tcpServer;
+        this.eventListMapManager = eventListMapManager;
+    }
+
+    /**
+     * Runs the failover up to, but not including, starting the sources of the Siddhi apps.
+     */
+    void catchUp() {
+        long failoverStart = System.nanoTime();
+        tcpServer.stop();
+        tcpServer.drainEventBuffer();
+        long drainEnd = System.nanoTime();
+
+        Map<String, SiddhiAppRuntime> siddhiAppRuntimeMap = StreamProcessorDataHolder.getSiddhiManager()
+                .getSiddhiAppRuntimeMap();
+        if (!siddhiAppRuntimeMap.isEmpty()) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService failoverExecutorService = Executors.newFixedThreadPool(
+                    Math.min(siddhiAppRuntimeMap.size(), HAConstants.FAILOVER_THREAD_POOL_SIZE), runnable -> {
+                        Thread thread = new Thread(runnable, "HAFailover-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            try {
+                List<Future<?>> futures = new ArrayList<>(siddhiAppRuntimeMap.size());
+                siddhiAppRuntimeMap.forEach((siddhiAppName, siddhiAppRuntime) -> futures.add(
+                        failoverExecutorService.submit(() -> {
+                            catchUp(siddhiAppName, siddhiAppRuntime);
+                            return null;
+                        })));
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        log.error("Error in bringing a Siddhi Application up to date " + e.getCause().getMessage(),
+                                e.getCause());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while bringing the Siddhi Applications up to date");
+            } finally {
+                failoverExecutorService.shutdownNow();
+            }
+        }
+        tcpServer.clearResources();
+        eventListMapManager.clearBufferedEvents();
+        long failoverEnd = System.nanoTime();
+
+        log.info("Siddhi Applications caught up in " + toMillis(failoverEnd - failoverStart) + " ms, draining " +
+                "event buffer: " + toMillis(drainEnd - failoverStart) + " ms, parallel restore and replay of " +
+                siddhiAppRuntimeMap.size() + " apps: " + toMillis(failoverEnd - drainEnd) + " ms (total restore: " +
+                toMillis(restoreNanos.sum()) + " ms, total start: " + toMillis(startNanos.sum()) + " ms, total " +
+                "replay of " + replayedEvents.sum() + " events: " + toMillis(replayNanos.sum()) + " ms)");
+    }
+
+    private void catchUp(String siddhiAppName, SiddhiAppRuntime siddhiAppRuntime) throws InterruptedException {
+        long restoreStart = System.nanoTime();
+        if (log.isDebugEnabled()) {
+            log.debug("Restoring state of Siddhi Application " + siddhiAppName);
+        }
+        try {
+            siddhiAppRuntime.restoreLastRevision();
+            StreamProcessorDataHolder.getNodeInfo().setLastSyncedTimestamp(System.currentTimeMillis());
+            StreamProcessorDataHolder.getNodeInfo().setInSync(true);
+        } catch (CannotRestoreSiddhiAppStateException e) {
+            log.error("Error in restoring Siddhi Application: " + siddhiAppName, e);
+        }
+        long startStart = System.nanoTime();
+        //change the system clock to work with event time
+        siddhiAppRuntime.enablePlayBack(true, null, null);
+        siddhiAppRuntime.startWithoutSources();
+        long replayStart = System.nanoTime();
+        long replayedCount;
+        try {
+            replayedCount = eventListMapManager.replay(siddhiAppName, siddhiAppRuntime);
+        } finally {
+            //change the system clock to work with current time
+            siddhiAppRuntime.enablePlayBack(false, null, null);
+        }
+        long replayEnd = System.nanoTime();
+
+        restoreNanos.add(startStart - restoreStart);
+        startNanos.add(replayStart - startStart);
+        replayNanos.add(replayEnd - replayStart);
+        replayedEvents.add(replayedCount);
+        if (log.isDebugEnabled()) {
+            log.debug("Siddhi Application " + siddhiAppName + " caught up, restore: " +
+                    toMillis(startStart - restoreStart) + " ms, start: " + toMillis(replayStart - startStart) +
+                    " ms, replay of " + replayedCount + " events: " + toMillis(replayEnd - replayStart) + " ms");
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -34,7 +34,6 @@ import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
 import org.wso2.carbon.stream.processor.core.internal.beans.EventSyncClientPoolConfig;
 import org.wso2.siddhi.core.SiddhiAppRuntime;
 import org.wso2.siddhi.core.SiddhiManager;
-import org.wso2.siddhi.core.exception.CannotRestoreSiddhiAppStateException;
 
 import java.util.HashMap;
 import java.util.List;
@@ -120,7 +119,7 @@ public class HAManager {
             passiveNodeDetailsPropertiesMap.put(HAConstants.ADVERTISED_PORT, deploymentConfig.eventSyncServerConfigs()
                     .getAdvertisedPort());
             clusterCoordinator.setPropertiesMap(passiveNodeDetailsPropertiesMap);
-            EventListMapManager.initializeEventListMap();
+            EventListMapManager.initializeEventListMap(deploymentConfig.getEventSpillConfig());
 
             //start tcp server
             tcpServerInstance.start(deploymentConfig);
@@ -152,29 +151,8 @@ public class HAManager {
             changeSiddhiAppState(true);
             NodeInfo nodeInfo = StreamProcessorDataHolder.getNodeInfo();
             nodeInfo.setActiveNode(isActiveNode);
-            tcpServerInstance.stop();
-            syncState();
-
-            //Give time for byte buffer queue to be empty
-            while (tcpServerInstance.getEventSyncServer().getEventByteBufferQueue().peek() != null) {
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    log.warn("Error in checking byte buffer queue empty");
-                }
-            }
-            tcpServerInstance.clearResources();
-            //change the system clock to work with event time
-            enableEventTimeClock(true);
-            startSiddhiAppRuntimeWithoutSources();
-            try {
-                eventListMapManager.trimAndSendToInputHandler();
-            } catch (InterruptedException e) {
-                log.warn("Error in sending events to input handler." + e.getMessage());
-            }
-
-            //change the system clock to work with current time
-            enableEventTimeClock(false);
+            //restore and replay buffered events of the Siddhi apps in parallel
+            new FailoverEngine(tcpServerInstance, eventListMapManager).catchUp();
             startSiddhiAppRuntimeSources();
 
             //start the databridge servers
@@ -200,6 +178,7 @@ public class HAManager {
     void changeToPassive() {
         isActiveNode = false;
         changeSiddhiAppState(false);
+        EventSyncConnectionPoolManager.stopEventSyncPublisher();
         passiveNodeDetailsPropertiesMap.put(HAConstants.HOST, deploymentConfig.eventSyncServerConfigs().getHost());
         passiveNodeDetailsPropertiesMap.put(HAConstants.PORT, deploymentConfig.eventSyncServerConfigs().getPort());
         passiveNodeDetailsPropertiesMap.put(HAConstants.ADVERTISED_HOST, deploymentConfig.eventSyncServerConfigs()
@@ -214,7 +193,7 @@ public class HAManager {
         }
         stopSiddhiAppRuntimes();
         //initialize event list map
-        EventListMapManager.initializeEventListMap();
+        EventListMapManager.initializeEventListMap(deploymentConfig.getEventSpillConfig());
 
         NodeInfo nodeInfo = StreamProcessorDataHolder.getNodeInfo();
         nodeInfo.setActiveNode(isActiveNode);
@@ -230,53 +209,6 @@ public class HAManager {
         log.info("Successfully Changed to Passive Mode ");
     }
 
-    private void syncState() {
-        ConcurrentMap<String, SiddhiAppRuntime> siddhiAppRuntimeMap
-                = StreamProcessorDataHolder.getSiddhiManager().getSiddhiAppRuntimeMap();
-
-        siddhiAppRuntimeMap.forEach((siddhiAppName, siddhiAppRuntime) -> {
-            if (log.isDebugEnabled()) {
-                log.debug("Restoring state of Siddhi Application " +
-                        siddhiAppRuntime.getName());
-            }
-            try {
-                siddhiAppRuntime.restoreLastRevision();
-                StreamProcessorDataHolder.getNodeInfo().setLastSyncedTimestamp(System.currentTimeMillis());
-                StreamProcessorDataHolder.getNodeInfo().setInSync(true);
-            } catch (CannotRestoreSiddhiAppStateException e) {
-                log.error("Error in restoring Siddhi Application: " + siddhiAppRuntime.getName(), e);
-            }
-        });
-        if (log.isDebugEnabled()) {
-            log.debug("Successfully Synced the state ");
-        }
-    }
-
-    private void enableEventTimeClock(boolean enablePlayBack) {
-        ConcurrentMap<String, SiddhiAppRuntime> siddhiAppRuntimeMap
-                = StreamProcessorDataHolder.getSiddhiManager().getSiddhiAppRuntimeMap();
-
-        siddhiAppRuntimeMap.forEach((siddhiAppName, siddhiAppRuntime) -> {
-            if (log.isDebugEnabled()) {
-                log.debug("Changed Event Play back mode '" + enablePlayBack + "' for Siddhi Application " +
-                        siddhiAppRuntime.getName());
-            }
-            siddhiAppRuntime.enablePlayBack(enablePlayBack, null, null);
-        });
-    }
-
-    private void startSiddhiAppRuntimeWithoutSources() {
-        ConcurrentMap<String, SiddhiAppRuntime> siddhiAppRuntimeMap
-                = StreamProcessorDataHolder.getSiddhiManager().getSiddhiAppRuntimeMap();
-
-        siddhiAppRuntimeMap.forEach((siddhiAppName, siddhiAppRuntime) -> {
-            if (log.isDebugEnabled()) {
-                log.debug("Starting without sources of Siddhi Application " + siddhiAppRuntime.getName());
-            }
-            siddhiAppRuntime.startWithoutSources();
-        });
-    }
-
     private void startSiddhiAppRuntimeSources() {
         ConcurrentMap<String, SiddhiAppRuntime> siddhiAppRuntimeMap
                 = StreamProcessorDataHolder.getSiddhiManager().getSiddhiAppRuntimeMap();
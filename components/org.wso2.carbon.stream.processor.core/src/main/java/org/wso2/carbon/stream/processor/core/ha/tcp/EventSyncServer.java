@@ -19,6 +19,9 @@
 package org.wso2.carbon.stream.processor.core.ha.tcp;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
@@ -28,23 +31,21 @@ import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.apache.log4j.Logger;
+import org.wso2.carbon.stream.processor.core.event.queue.BoundedHandoffQueue;
 import org.wso2.carbon.stream.processor.core.event.queue.EventListMapManager;
 import org.wso2.carbon.stream.processor.core.ha.transport.handlers.MessageDecoder;
 import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
 import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
 import org.wso2.carbon.stream.processor.core.internal.beans.EventSyncServerConfig;
-import org.wso2.carbon.stream.processor.core.util.BinaryMessageConverterUtil;
 
 import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Event Sync Server.
@@ -58,15 +59,23 @@ public class EventSyncServer {
     private String hostAndPort;
     private EventSyncServerConfig serverConfig;
     private static final Logger log = Logger.getLogger(EventSyncServer.class);
+    private static final long EXTRACTOR_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long EXTRACTOR_SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final long WORKER_SHUTDOWN_TIMEOUT_SECONDS = 30;
     private EventListMapManager eventListMapManager = new EventListMapManager();
-    private BlockingQueue<ByteBuffer> eventByteBufferQueue;
-    private ExecutorService eventBufferExtractorExecutorService = Executors.newFixedThreadPool(
-            HAConstants.EVENT_BUFFER_EXTRACTOR_THREAD_POOL_SIZE);
-    private EventBufferExtractor eventBufferExtractor = new EventBufferExtractor();
+    private BoundedHandoffQueue<ByteBuf> eventByteBufferQueue;
+    // messages the decoders held back for backpressure when their channels were closed
+    private Queue<ByteBuf> overflowMessageQueue;
+    private ExecutorService eventBufferExtractorExecutorService;
+    private EventBufferExtractor eventBufferExtractor;
 
     public void start(DeploymentConfig deploymentConfig) {
-        this.eventByteBufferQueue = new LinkedBlockingQueue<>(deploymentConfig.
+        eventBufferExtractorExecutorService = Executors.newFixedThreadPool(
+                HAConstants.EVENT_BUFFER_EXTRACTOR_THREAD_POOL_SIZE);
+        eventBufferExtractor = new EventBufferExtractor();
+        this.eventByteBufferQueue = new BoundedHandoffQueue<>(deploymentConfig.
                 getEventByteBufferQueueCapacity());
+        this.overflowMessageQueue = new ConcurrentLinkedQueue<>();
         serverConfig = deploymentConfig.eventSyncServerConfigs();
         bossGroup = new NioEventLoopGroup(serverConfig.getBossThreads());
         workerGroup = new NioEventLoopGroup(serverConfig.getWorkerThreads());
@@ -80,11 +89,12 @@ public class EventSyncServer {
                     @Override
                     protected void initChannel(Channel channel) throws Exception {
                         ChannelPipeline p = channel.pipeline();
-                        p.addLast(new MessageDecoder(eventByteBufferQueue));
+                        p.addLast(new MessageDecoder(eventByteBufferQueue, overflowMessageQueue));
                     }
                 })
                 .option(ChannelOption.TCP_NODELAY, true)
-                .childOption(ChannelOption.SO_KEEPALIVE, true);
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
 
         try {
             // Bind and start to accept incoming connections.
@@ -98,14 +108,20 @@ public class EventSyncServer {
         }
     }
 
+    /**
+     * Closes the server and waits for the worker event loops to terminate, so that no decoder hands off a message once
+     * this method returns.
+     */
     public void shutdownGracefully() {
         channelFuture.channel().close();
         try {
             channelFuture.channel().closeFuture().sync();
+            // the event loops close the connections from the active node, which hands off the held back messages
+            workerGroup.shutdownGracefully(0, WORKER_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS).sync();
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             log.error("Error when shutdowning the EventSyncServer " + e.getMessage(), e);
         }
-        workerGroup.shutdownGracefully();
         bossGroup.shutdownGracefully();
         log.info("EventSyncServer running on '" + hostAndPort + "' stopped.");
         workerGroup = null;
@@ -113,10 +129,44 @@ public class EventSyncServer {
 
     }
 
+    /**
+     * Stops the event buffer extractors once they finish the messages they are parsing and parses the messages left
+     * in the queues on the calling thread. When called after {@link #shutdownGracefully()}, every event decoded from
+     * the connections of the active node is buffered when this method returns.
+     */
+    public void drainEventBuffer() {
+        eventBufferExtractor.run = false;
+        eventBufferExtractorExecutorService.shutdown();
+        try {
+            if (!eventBufferExtractorExecutorService.awaitTermination(EXTRACTOR_SHUTDOWN_TIMEOUT_SECONDS,
+                    TimeUnit.SECONDS)) {
+                log.warn("EventSyncServer EventBufferExtractors did not stop within " +
+                        EXTRACTOR_SHUTDOWN_TIMEOUT_SECONDS + " seconds");
+                eventBufferExtractorExecutorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while waiting for the EventSyncServer EventBufferExtractors to stop");
+        }
+        ByteBuf message;
+        while ((message = eventByteBufferQueue.poll()) != null) {
+            eventBufferExtractor.process(message);
+        }
+        while ((message = overflowMessageQueue.poll()) != null) {
+            eventBufferExtractor.process(message);
+        }
+    }
+
     public void clearResources() {
         eventBufferExtractor.run = false;
         eventBufferExtractorExecutorService.shutdownNow();
-        eventByteBufferQueue.clear();
+        ByteBuf message;
+        while ((message = eventByteBufferQueue.poll()) != null) {
+            message.release();
+        }
+        while ((message = overflowMessageQueue.poll()) != null) {
+            message.release();
+        }
     }
 
     /**
@@ -126,43 +176,49 @@ public class EventSyncServer {
         volatile boolean run = true;
         @Override
         public void run() {
-            try {
-                while (run) {
-                    ByteBuffer in = eventByteBufferQueue.take();
-                    try {
-                        int channelIdSize = in.getInt();
-                        String channelId = BinaryMessageConverterUtil.getString(in, channelIdSize);
-                        int dataLength = in.getInt();
-                        byte[] bytes = new byte[dataLength];
-                        in.get(bytes);
-                        if (channelId.equals(HAConstants.CHANNEL_ID_CONTROL_MESSAGE)) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("Received a control message");
-                            }
-                            eventListMapManager.parseControlMessage(bytes);
-                        } else if (channelId.equals(HAConstants.CHANNEL_ID_MESSAGE)) {
-                            if (log.isDebugEnabled()) {
-                                log.debug("Received a event message");
-                            }
-                            eventListMapManager.parseMessage(bytes);
+            while (run) {
+                ByteBuf message = eventByteBufferQueue.poll();
+                if (message == null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        if (run) {
+                            log.error("EventSyncServer EventBufferExtractor Job is interrupted");
                         }
-                    } catch (UnsupportedEncodingException e) {
-                        log.warn("Error when converting bytes " + e.getMessage(), e);
-                    } catch (Throwable t) {
-                        log.error("Error occurred while processing eventByteBufferQueue " + t.getMessage(), t);
+                        return;
                     }
+                    LockSupport.parkNanos(EXTRACTOR_IDLE_PARK_NANOS);
+                    continue;
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                if (!run) {
-                    log.error("EventSyncServer EventBufferExtractor Job is interrupted");
-                }
+                process(message);
+            }
+        }
 
+        private void process(ByteBuf message) {
+            try {
+                byte channelId = message.readByte();
+                if (channelId == HAConstants.CHANNEL_ID_CONTROL_MESSAGE) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Received a control message");
+                    }
+                    eventListMapManager.parseControlMessage(ByteBufUtil.getBytes(message));
+                } else if (channelId == HAConstants.CHANNEL_ID_EVENT_FRAME) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Received a event frame");
+                    }
+                    eventListMapManager.parseEventFrame(message.nioBuffer());
+                } else {
+                    log.warn("Dropping a message received on unknown channel " + channelId);
+                }
+            } catch (UnsupportedEncodingException e) {
+                log.warn("Error when converting bytes " + e.getMessage(), e);
+            } catch (Throwable t) {
+                log.error("Error occurred while processing eventByteBufferQueue " + t.getMessage(), t);
+            } finally {
+                message.release();
             }
         }
     }
 
-    public BlockingQueue<ByteBuffer> getEventByteBufferQueue() {
+    public BoundedHandoffQueue<ByteBuf> getEventByteBufferQueue() {
         return eventByteBufferQueue;
     }
 }
@@ -52,6 +52,10 @@ public class TCPServer {
         }
     }
 
+    public void drainEventBuffer() {
+        eventSyncServer.drainEventBuffer();
+    }
+
     public void clearResources() {
         eventSyncServer.clearResources();
     }
@@ -24,17 +24,17 @@ import java.io.Serializable;
  * Class to hold the message and the corresponding getChannelId.
  */
 public class EventComposite implements Serializable {
-    private String channelId;
+    private byte channelId;
     private String sessionId;
     private byte[] message;
 
-    public EventComposite(String sessionId, String channelId, byte[] message) {
+    public EventComposite(String sessionId, byte channelId, byte[] message) {
         this.sessionId = sessionId;
         this.channelId = channelId;
         this.message = message.clone();
     }
 
-    public String getChannelId() {
+    public byte getChannelId() {
         return channelId;
     }
 
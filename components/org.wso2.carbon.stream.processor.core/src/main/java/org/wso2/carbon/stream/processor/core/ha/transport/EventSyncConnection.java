@@ -78,7 +78,7 @@ public class EventSyncConnection {
         }
     }
 
-    public ChannelFuture send(final String channelId, final byte[] message) throws ConnectionUnavailableException {
+    public ChannelFuture send(final byte channelId, final byte[] message) throws ConnectionUnavailableException {
         EventComposite eventComposite = new EventComposite(sessionId, channelId, message);
         ChannelFuture future = channel.writeAndFlush(eventComposite);
         future.addListener(new ChannelFutureListener() {
@@ -21,6 +21,7 @@ package org.wso2.carbon.stream.processor.core.ha.transport;
 import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
 import org.wso2.carbon.stream.processor.core.internal.beans.EventSyncClientPoolConfig;
+import org.wso2.carbon.stream.processor.core.internal.beans.EventSyncPublisherConfig;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -31,6 +32,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public class EventSyncConnectionPoolManager {
     private static GenericKeyedObjectPool connectionPool;
     private static AtomicLong sequenceID = new AtomicLong();
+    private static volatile EventSyncPublisher eventSyncPublisher;
 
 
     public static void initializeConnectionPool(String host, int port, DeploymentConfig deploymentConfig) {
@@ -39,6 +41,22 @@ public class EventSyncConnectionPoolManager {
         initializeConnectionPool(eventSyncConnectionPoolFactory, eventSyncClientPoolConfig.getMaxActive(), eventSyncClientPoolConfig.getMaxTotal(),
                 eventSyncClientPoolConfig.getMaxIdle(), eventSyncClientPoolConfig.getMaxWait(),
                 eventSyncClientPoolConfig.getMinEvictableIdleTimeMillis());
+        startEventSyncPublisher(deploymentConfig.getEventSyncPublisherConfig());
+    }
+
+    public synchronized static void startEventSyncPublisher(EventSyncPublisherConfig publisherConfig) {
+        if (eventSyncPublisher == null || !eventSyncPublisher.isRunning()) {
+            eventSyncPublisher = new EventSyncPublisher(publisherConfig.getBufferSize(),
+                    publisherConfig.getMaxBatchSize(), publisherConfig.getMaxBatchDelay());
+            eventSyncPublisher.start();
+        }
+    }
+
+    public synchronized static void stopEventSyncPublisher() {
+        if (eventSyncPublisher != null) {
+            eventSyncPublisher.stop();
+            eventSyncPublisher = null;
+        }
     }
 
     public synchronized static void initializeConnectionPool(EventSyncConnectionPoolFactory factory,
@@ -65,6 +83,10 @@ public class EventSyncConnectionPoolManager {
         return connectionPool;
     }
 
+    public static EventSyncPublisher getEventSyncPublisher() {
+        return eventSyncPublisher;
+    }
+
     public static AtomicLong getSequenceID() {
         return sequenceID;
     }
@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.ha.transport;
+
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
+import org.apache.log4j.Logger;
+import org.wso2.carbon.metrics.core.Counter;
+import org.wso2.carbon.metrics.core.Histogram;
+import org.wso2.carbon.metrics.core.Level;
+import org.wso2.carbon.metrics.core.Meter;
+import org.wso2.carbon.metrics.core.MetricService;
+import org.wso2.carbon.metrics.core.Timer;
+import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
+import org.wso2.carbon.stream.processor.core.internal.StreamProcessorDataHolder;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+import org.wso2.carbon.stream.processor.core.util.HAEventSchema;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.core.exception.ConnectionUnavailableException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes the events of all HA source handlers of the active node to the passive node.
+ * <p>
+ * Source handlers enqueue events into a lock-free, bounded, multi-producer single-consumer ring buffer and return
+ * immediately. A single drainer thread coalesces the enqueued events of all source handlers into frames of at most
+ * {@code maxBatchSize} events, waiting at most {@code maxBatchDelay} milliseconds for a frame to fill, and writes each
+ * frame to the passive node with a single borrow of an {@link EventSyncConnection} and a single flush. Producers only
+ * block when the ring buffer is full.
+ * <p>
+ * When the publisher is stopped, the drainer sends every event already enqueued before it exits. Events published
+ * after that are dropped and counted, as are the events of frames which could not be sent to the passive node.
+ */
+public class EventSyncPublisher implements Runnable {
+
+    private static final Logger log = Logger.getLogger(EventSyncPublisher.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long FULL_BUFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final int bufferSize;
+    private final int mask;
+    private final HAEventSchema[] schemas;
+    private final long[] sequenceIds;
+    private final Event[] events;
+    // Holds, per slot, the position of the entry that was last published to it
+    private final AtomicLongArray publishedPositions;
+    private final AtomicLong claimedPosition = new AtomicLong(-1);
+    private final AtomicLong consumedPosition = new AtomicLong(-1);
+
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final HAEventSchema[] batchSchemas;
+    private final long[] batchSequenceIds;
+    private final Event[] batchEvents;
+
+    private final PublisherMetrics metrics = new PublisherMetrics();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+    private volatile boolean running;
+    // set by the drainer when it stops accepting events, before it sends the events left in the ring buffer
+    private volatile boolean closed;
+    private volatile boolean droppedEventsLogged;
+    // accessed only by the drainer thread, set from a failed send until a frame is sent again
+    private boolean sendFailing;
+    private Thread drainerThread;
+
+    public EventSyncPublisher(int bufferSize, int maxBatchSize, long maxBatchDelay) {
+        this.bufferSize = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        this.mask = this.bufferSize - 1;
+        this.schemas = new HAEventSchema[this.bufferSize];
+        this.sequenceIds = new long[this.bufferSize];
+        this.events = new Event[this.bufferSize];
+        this.publishedPositions = new AtomicLongArray(this.bufferSize);
+        for (int i = 0; i < this.bufferSize; i++) {
+            publishedPositions.set(i, i - this.bufferSize);
+        }
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, this.bufferSize));
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelay);
+        this.batchSchemas = new HAEventSchema[this.maxBatchSize];
+        this.batchSequenceIds = new long[this.maxBatchSize];
+        this.batchEvents = new Event[this.maxBatchSize];
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            closed = false;
+            droppedEventsLogged = false;
+            running = true;
+            drainerThread = new Thread(this, "EventSyncPublisher");
+            drainerThread.setDaemon(true);
+            drainerThread.start();
+            log.info("Event sync publisher started with a buffer of " + bufferSize + " events");
+        }
+    }
+
+    public synchronized void stop() {
+        if (running) {
+            running = false;
+            LockSupport.unpark(drainerThread);
+            try {
+                drainerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drainerThread = null;
+            log.info("Event sync publisher stopped");
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return number of events dropped because they were published after the publisher was stopped or could not be
+     * sent to the passive node
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    /**
+     * Enqueues an event to be synced to the passive node.
+     *
+     * @param schema     schema of the source handler the event came from
+     * @param sequenceId sequence id assigned to the event
+     * @param event      event to sync
+     */
+    public void publish(HAEventSchema schema, long sequenceId, Event event) {
+        long position = claim(1);
+        if (position >= 0) {
+            write(position, schema, sequenceId, event);
+        } else {
+            dropped(1);
+        }
+    }
+
+    /**
+     * Enqueues events to be synced to the passive node. The events get consecutive sequence ids starting from
+     * {@code firstSequenceId}.
+     *
+     * @param schema          schema of the source handler the events came from
+     * @param firstSequenceId sequence id assigned to the first event
+     * @param events          events to sync
+     */
+    public void publish(HAEventSchema schema, long firstSequenceId, Event[] events) {
+        int offset = 0;
+        while (offset < events.length) {
+            int count = Math.min(events.length - offset, maxBatchSize);
+            long lastPosition = claim(count);
+            if (lastPosition < 0) {
+                dropped(events.length - offset);
+                return;
+            }
+            long firstPosition = lastPosition - count + 1;
+            for (int i = 0; i < count; i++) {
+                write(firstPosition + i, schema, firstSequenceId + offset + i, events[offset + i]);
+            }
+            offset += count;
+        }
+    }
+
+    /**
+     * Claims the next {@code count} positions of the ring buffer, waiting while the buffer is full.
+     *
+     * @return the last claimed position, or -1 if the publisher was stopped
+     */
+    private long claim(int count) {
+        boolean waited = false;
+        while (true) {
+            if (closed) {
+                return -1;
+            }
+            long current = claimedPosition.get();
+            long next = current + count;
+            if (next - bufferSize > consumedPosition.get()) {
+                if (!waited) {
+                    metrics.bufferFull();
+                    waited = true;
+                }
+                LockSupport.parkNanos(FULL_BUFFER_PARK_NANOS);
+            } else if (claimedPosition.compareAndSet(current, next)) {
+                if (closed) {
+                    // the drainer may have sent its last event already, so the positions are released without events
+                    for (long position = current + 1; position <= next; position++) {
+                        write(position, null, 0, null);
+                    }
+                    return -1;
+                }
+                return next;
+            }
+        }
+    }
+
+    private void write(long position, HAEventSchema schema, long sequenceId, Event event) {
+        int index = (int) position & mask;
+        schemas[index] = schema;
+        sequenceIds[index] = sequenceId;
+        events[index] = event;
+        publishedPositions.set(index, position);
+    }
+
+    @Override
+    public void run() {
+        sendFailing = false;
+        long nextPosition = consumedPosition.get() + 1;
+        int batchSize = 0;
+        long batchStartTime = 0;
+        while (running) {
+            int drained = 0;
+            while (batchSize < maxBatchSize) {
+                int index = (int) nextPosition & mask;
+                if (publishedPositions.get(index) != nextPosition) {
+                    break;
+                }
+                if (take(index, batchSize)) {
+                    if (batchSize == 0) {
+                        batchStartTime = System.nanoTime();
+                    }
+                    batchSize++;
+                }
+                nextPosition++;
+                drained++;
+            }
+            if (drained > 0) {
+                consumedPosition.lazySet(nextPosition - 1);
+            }
+            if (batchSize == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            long waitedTime = System.nanoTime() - batchStartTime;
+            if (batchSize >= maxBatchSize || waitedTime >= maxBatchDelayNanos) {
+                flush(batchSize);
+                batchSize = 0;
+            } else if (drained == 0) {
+                LockSupport.parkNanos(Math.min(IDLE_PARK_NANOS, maxBatchDelayNanos - waitedTime));
+            }
+        }
+        // stop accepting events and send the events left in the ring buffer, waiting for the producers that
+        // claimed positions before the publisher was closed to write their events
+        closed = true;
+        long lastPosition;
+        do {
+            lastPosition = claimedPosition.get();
+            while (nextPosition <= lastPosition) {
+                int index = (int) nextPosition & mask;
+                if (publishedPositions.get(index) != nextPosition) {
+                    LockSupport.parkNanos(FULL_BUFFER_PARK_NANOS);
+                    continue;
+                }
+                if (take(index, batchSize)) {
+                    batchSize++;
+                }
+                nextPosition++;
+                consumedPosition.lazySet(nextPosition - 1);
+                if (batchSize == maxBatchSize) {
+                    flush(batchSize);
+                    batchSize = 0;
+                }
+            }
+        } while (claimedPosition.get() != lastPosition);
+        if (batchSize > 0) {
+            flush(batchSize);
+        }
+    }
+
+    /**
+     * Moves the event of a slot of the ring buffer to the batch being built.
+     *
+     * @return false if the slot was released without an event
+     */
+    private boolean take(int index, int batchSize) {
+        Event event = events[index];
+        if (event != null) {
+            batchSchemas[batchSize] = schemas[index];
+            batchSequenceIds[batchSize] = sequenceIds[index];
+            batchEvents[batchSize] = event;
+        }
+        schemas[index] = null;
+        events[index] = null;
+        return event != null;
+    }
+
+    private void dropped(int count) {
+        droppedEventCount.addAndGet(count);
+        metrics.dropped(count);
+        if (!droppedEventsLogged) {
+            droppedEventsLogged = true;
+            log.warn("Event sync publisher is stopped, events published from now on are not synced to the " +
+                    "passive node");
+        }
+    }
+
+    private void flush(int batchSize) {
+        long startTime = System.nanoTime();
+        try {
+            ByteBuffer frame = EventFrameCodec.encode(toBlocks(batchSize));
+            sendFrame(frame);
+            metrics.flushed(batchSize, System.nanoTime() - startTime);
+            if (sendFailing) {
+                sendFailing = false;
+                log.info("Event sync publisher resumed sending events to the passive node");
+            }
+        } catch (Throwable t) {
+            droppedEventCount.addAndGet(batchSize);
+            metrics.dropped(batchSize);
+            if (!sendFailing) {
+                sendFailing = true;
+                log.error("Error in sending events to the passive node, events are dropped until they can be " +
+                        "sent again. " + t.getMessage(), t);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Dropped a batch of " + batchSize + " events which could not be sent to the passive " +
+                        "node. " + t.getMessage());
+            }
+        } finally {
+            for (int i = 0; i < batchSize; i++) {
+                batchSchemas[i] = null;
+                batchEvents[i] = null;
+            }
+        }
+    }
+
+    private List<EventFrameCodec.EventBlock> toBlocks(int batchSize) {
+        Map<HAEventSchema, Integer> blockSizes = new IdentityHashMap<>();
+        for (int i = 0; i < batchSize; i++) {
+            blockSizes.merge(batchSchemas[i], 1, Integer::sum);
+        }
+        if (blockSizes.size() == 1) {
+            return Collections.singletonList(new EventFrameCodec.EventBlock(batchSchemas[0],
+                    batchSequenceIds, batchEvents, batchSize));
+        }
+        Map<HAEventSchema, BlockBuilder> builders = new IdentityHashMap<>();
+        List<EventFrameCodec.EventBlock> blocks = new ArrayList<>(blockSizes.size());
+        for (int i = 0; i < batchSize; i++) {
+            HAEventSchema schema = batchSchemas[i];
+            BlockBuilder builder = builders.get(schema);
+            if (builder == null) {
+                builder = new BlockBuilder(blockSizes.get(schema));
+                builders.put(schema, builder);
+            }
+            builder.sequenceIds[builder.size] = batchSequenceIds[i];
+            builder.events[builder.size] = batchEvents[i];
+            builder.size++;
+        }
+        for (Map.Entry<HAEventSchema, BlockBuilder> entry : builders.entrySet()) {
+            BlockBuilder builder = entry.getValue();
+            blocks.add(new EventFrameCodec.EventBlock(entry.getKey(), builder.sequenceIds, builder.events,
+                    builder.size));
+        }
+        return blocks;
+    }
+
+    /**
+     * Writes an encoded frame to the passive node. Called only from the drainer thread.
+     *
+     * @param frame frame encoded with {@link EventFrameCodec}
+     * @throws Exception if the frame could not be sent, such as when there is no connection pool to the passive node
+     */
+    protected void sendFrame(ByteBuffer frame) throws Exception {
+        GenericKeyedObjectPool connectionPool = EventSyncConnectionPoolManager.getConnectionPool();
+        if (connectionPool == null) {
+            throw new ConnectionUnavailableException("Connection pool to the passive node is not initialized");
+        }
+        EventSyncConnection eventSyncConnection = (EventSyncConnection) connectionPool.borrowObject(
+                HAConstants.ACTIVE_NODE_CONNECTION_POOL_ID);
+        try {
+            eventSyncConnection.send(HAConstants.CHANNEL_ID_EVENT_FRAME, frame.array());
+        } finally {
+            connectionPool.returnObject(HAConstants.ACTIVE_NODE_CONNECTION_POOL_ID, eventSyncConnection);
+        }
+    }
+
+    private static class BlockBuilder {
+        private final long[] sequenceIds;
+        private final Event[] events;
+        private int size;
+
+        private BlockBuilder(int capacity) {
+            this.sequenceIds = new long[capacity];
+            this.events = new Event[capacity];
+        }
+    }
+
+    /**
+     * Throughput and latency metrics of the publisher, registered with the carbon metrics service when available.
+     */
+    private static class PublisherMetrics {
+        private Meter eventMeter;
+        private Histogram batchSizeHistogram;
+        private Timer flushTimer;
+        private Counter bufferFullCounter;
+        private Counter droppedEventCounter;
+
+        private PublisherMetrics() {
+            MetricService metricService = StreamProcessorDataHolder.getMetricService();
+            if (metricService != null) {
+                eventMeter = metricService.meter(HAConstants.EVENT_SYNC_PUBLISHER_METRIC_PREFIX + "Events",
+                        Level.INFO);
+                batchSizeHistogram = metricService.histogram(HAConstants.EVENT_SYNC_PUBLISHER_METRIC_PREFIX +
+                        "BatchSize", Level.INFO);
+                flushTimer = metricService.timer(HAConstants.EVENT_SYNC_PUBLISHER_METRIC_PREFIX + "FlushLatency",
+                        Level.INFO);
+                bufferFullCounter = metricService.counter(HAConstants.EVENT_SYNC_PUBLISHER_METRIC_PREFIX +
+                        "BufferFull", Level.INFO);
+                droppedEventCounter = metricService.counter(HAConstants.EVENT_SYNC_PUBLISHER_METRIC_PREFIX +
+                        "DroppedEvents", Level.INFO);
+            }
+        }
+
+        private void flushed(int batchSize, long flushTimeNanos) {
+            if (eventMeter != null) {
+                eventMeter.mark(batchSize);
+                batchSizeHistogram.update(batchSize);
+                flushTimer.update(flushTimeNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void bufferFull() {
+            if (bufferFullCounter != null) {
+                bufferFullCounter.inc();
+            }
+        }
+
+        private void dropped(int count) {
+            if (droppedEventCounter != null) {
+                droppedEventCounter.inc(count);
+            }
+        }
+    }
+}
@@ -20,65 +20,132 @@ package org.wso2.carbon.stream.processor.core.ha.transport.handlers;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import org.apache.log4j.Logger;
+import org.wso2.carbon.stream.processor.core.event.queue.BoundedHandoffQueue;
 import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
-import org.wso2.carbon.stream.processor.core.util.BinaryMessageConverterUtil;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Date;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Byte to message decoder.
+ * <p>
+ * Splits the stream written by {@link MessageEncoder} into messages and hands them to the event buffer extractors
+ * without copying: each message is a retained slice of the received buffer, positioned at its channel id, which the
+ * extractor releases once the message is parsed. When the handoff queue is full, reading from the channel is paused
+ * until the messages already decoded are accepted, which pushes back on the active node through TCP. The messages still
+ * held back when the channel is closed, such as when the event loops are shut down at failover, are moved to an
+ * unbounded overflow queue instead of being dropped.
  */
-public class MessageDecoder extends ByteToMessageDecoder {
-    private BlockingQueue<ByteBuffer> byteBufferQueue;
+public class MessageDecoder extends LengthFieldBasedFrameDecoder {
+    private static final int LENGTH_FIELD_OFFSET = 1;
+    private static final int LENGTH_FIELD_LENGTH = 4;
+    private static final long HANDOFF_RETRY_DELAY_MICROS = 100;
+    private final BoundedHandoffQueue<ByteBuf> messageQueue;
+    private final Queue<ByteBuf> overflowQueue;
+    private final ArrayDeque<ByteBuf> pendingMessages = new ArrayDeque<>();
     private static long startTime;
     private static long endTime;
     private static int count = 0;
     private static final int TPS_EVENT_BATCH_THRESHOLD = 10000;
     private static final Logger log = Logger.getLogger(MessageDecoder.class);
 
-    public MessageDecoder(BlockingQueue<ByteBuffer> byteBufferQueue) {
-        this.byteBufferQueue = byteBufferQueue;
+    public MessageDecoder(BoundedHandoffQueue<ByteBuf> messageQueue, Queue<ByteBuf> overflowQueue) {
+        super(HAConstants.MAX_MESSAGE_LENGTH, LENGTH_FIELD_OFFSET, LENGTH_FIELD_LENGTH);
+        this.messageQueue = messageQueue;
+        this.overflowQueue = overflowQueue;
     }
 
     @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-        if (in.readableBytes() < 5) {
-            return;
+    protected Object decode(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
+        ByteBuf message = (ByteBuf) super.decode(ctx, in);
+        if (message == null) {
+            return null;
+        }
+        byte protocol = message.readByte();
+        if (protocol != HAConstants.PROTOCOL_VERSION) {
+            message.release();
+            throw new CorruptedFrameException("Unsupported event sync protocol version " + protocol + ", expected " +
+                    HAConstants.PROTOCOL_VERSION);
+        }
+        message.skipBytes(LENGTH_FIELD_LENGTH);
+        handOff(ctx, message);
+        if (log.isDebugEnabled()) {
+            logThroughput();
         }
-        int protocol = in.readByte();
-        int messageSize = in.readInt();
-        if (protocol != 2 || messageSize > in.readableBytes()) {
-            in.resetReaderIndex();
+        return null;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // decodes the messages left in the cumulation buffer before the held back messages are moved
+        super.channelInactive(ctx);
+        moveToOverflowQueue();
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        moveToOverflowQueue();
+    }
+
+    private void handOff(ChannelHandlerContext ctx, ByteBuf message) {
+        if (pendingMessages.isEmpty() && messageQueue.offer(message)) {
             return;
         }
-        byte[] bytes = new byte[messageSize];
-        in.readBytes(bytes);
-        in.markReaderIndex();
-        in.resetReaderIndex();
-        try {
-            byteBufferQueue.put(ByteBuffer.wrap(bytes));
-        } catch (InterruptedException e) {
-            log.error("Error while waiting for the insertion of ByteBufferQueue " + e.getMessage(), e);
+        pendingMessages.add(message);
+        if (ctx.channel().config().isAutoRead()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Event buffer is full, pausing reads from " + ctx.channel().remoteAddress());
+            }
+            ctx.channel().config().setAutoRead(false);
+            scheduleRetry(ctx);
         }
-        if (log.isDebugEnabled()) {
-            synchronized (this) {
-                if (startTime == 0L) {
-                    startTime = new Date().getTime();
-                }
-                count++;
-                if (count % TPS_EVENT_BATCH_THRESHOLD == 0) {
-                    endTime = new Date().getTime();
-                    log.info("Server Event Batch TPS: " +
-                            (((TPS_EVENT_BATCH_THRESHOLD * 1000) / (endTime - startTime))));
-                    startTime = new Date().getTime();
-                }
+    }
+
+    private void scheduleRetry(ChannelHandlerContext ctx) {
+        ctx.executor().schedule(() -> retryPendingMessages(ctx), HANDOFF_RETRY_DELAY_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    private void retryPendingMessages(ChannelHandlerContext ctx) {
+        ByteBuf message;
+        while ((message = pendingMessages.peek()) != null) {
+            if (ctx.executor().isShuttingDown()) {
+                moveToOverflowQueue();
+                return;
             }
+            if (!messageQueue.offer(message)) {
+                scheduleRetry(ctx);
+                return;
+            }
+            pendingMessages.poll();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Resuming reads from " + ctx.channel().remoteAddress());
+        }
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    private void moveToOverflowQueue() {
+        ByteBuf message;
+        while ((message = pendingMessages.poll()) != null) {
+            overflowQueue.add(message);
+        }
+    }
+
+    private synchronized void logThroughput() {
+        if (startTime == 0L) {
+            startTime = new Date().getTime();
+        }
+        count++;
+        if (count % TPS_EVENT_BATCH_THRESHOLD == 0) {
+            endTime = new Date().getTime();
+            log.info("Server Event Batch TPS: " +
+                    (((TPS_EVENT_BATCH_THRESHOLD * 1000) / (endTime - startTime))));
+            startTime = new Date().getTime();
         }
-        in.markReaderIndex();
     }
 }
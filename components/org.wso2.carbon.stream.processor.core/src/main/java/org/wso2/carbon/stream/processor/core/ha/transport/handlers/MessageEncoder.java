@@ -22,26 +22,25 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.wso2.carbon.stream.processor.core.ha.transport.EventComposite;
+import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
 
 /**
  * message to bite converter.
+ * <pre>
+ * message : protocolVersion(byte) length(int) channelId(byte) data(byte[length - 1])
+ * </pre>
  */
 public class MessageEncoder extends MessageToByteEncoder<EventComposite> {
 
     @Override
     protected void encode(ChannelHandlerContext channelHandlerContext, EventComposite eventComposite,
                           ByteBuf byteBuf) throws Exception {
-        String streamId = eventComposite.getChannelId();
-        int dataLength = eventComposite.getMessage().length;
+        byte[] message = eventComposite.getMessage();
 
-        int messageSize = 4 + streamId.length() + 4 + dataLength;
-
-        byteBuf.writeByte((byte) 2);  //1
-        byteBuf.writeInt(messageSize); //4
-        byteBuf.writeInt(streamId.length()); //4
-        byteBuf.writeBytes(streamId.getBytes("UTF-8"));
-        byteBuf.writeInt(dataLength); //4
-        byteBuf.writeBytes(eventComposite.getMessage());
+        byteBuf.writeByte(HAConstants.PROTOCOL_VERSION);  //1
+        byteBuf.writeInt(1 + message.length); //4
+        byteBuf.writeByte(eventComposite.getChannelId()); //1
+        byteBuf.writeBytes(message);
     }
 
 }
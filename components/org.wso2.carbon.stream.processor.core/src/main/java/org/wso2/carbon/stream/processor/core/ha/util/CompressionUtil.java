@@ -20,8 +20,17 @@ package org.wso2.carbon.stream.processor.core.ha.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -30,6 +39,10 @@ import java.util.zip.GZIPOutputStream;
  */
 public class CompressionUtil {
 
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
     public static byte[] compressGZIP(byte[] data) throws IOException {
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         GZIPOutputStream gzip = new GZIPOutputStream(byteArrayOutputStream);
@@ -40,17 +53,100 @@ public class CompressionUtil {
     }
 
     public static byte[] decompressGZIP(byte[] data) throws IOException {
-        byte[] uncompressedBytes = new byte[1000000];
-        InputStream inputStream = new ByteArrayInputStream(data);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-        GZIPInputStream gzip = new GZIPInputStream(inputStream);
-        int len;
-        while ((len = gzip.read(uncompressedBytes)) > 0) {
-            out.write(uncompressedBytes, 0, len);
+        try (InputStream inputStream = new ByteArrayInputStream(data)) {
+            // data written by compressGZIP holds a single member, whose trailer gives the uncompressed size
+            return decompressGZIP(inputStream, data.length > GZIP_TRAILER_SIZE ? readGZIPUncompressedSize(data) : -1);
         }
-        gzip.close();
-        inputStream.close();
-        return out.toByteArray();
+    }
+
+    /**
+     * Returns a stream that compresses the data in GZIP format as it is read, producing the same format as
+     * {@link #compressGZIP(byte[])} without holding the compressed data in memory. The stream has to be closed to
+     * release the native resources of the deflater.
+     */
+    public static InputStream compressingGZIPStream(byte[] data) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        byte[] header = {(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+        byte[] trailer = new byte[GZIP_TRAILER_SIZE];
+        writeIntLE(trailer, 0, (int) crc32.getValue());
+        writeIntLE(trailer, 4, data.length);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        InputStream deflaterInputStream = new DeflaterInputStream(new ByteArrayInputStream(data), deflater,
+                STREAM_BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                deflater.end();
+            }
+        };
+        return new SequenceInputStream(Collections.enumeration(Arrays.asList(new ByteArrayInputStream(header),
+                deflaterInputStream, new ByteArrayInputStream(trailer))));
+    }
+
+    /**
+     * Decompresses GZIP data read from the given stream.
+     *
+     * @param inputStream      stream of GZIP data, which is not closed
+     * @param uncompressedSize size of the uncompressed data if known, which is then read without intermediate
+     *                         copies, or -1
+     */
+    public static byte[] decompressGZIP(InputStream inputStream, int uncompressedSize) throws IOException {
+        GZIPInputStream gzip = new GZIPInputStream(inputStream, STREAM_BUFFER_SIZE);
+        if (uncompressedSize >= 0) {
+            byte[] data = new byte[uncompressedSize];
+            int offset = 0;
+            while (offset < uncompressedSize) {
+                int len = gzip.read(data, offset, uncompressedSize - offset);
+                if (len < 0) {
+                    throw new EOFException("GZIP data ended after " + offset + " of " + uncompressedSize + " bytes");
+                }
+                offset += len;
+            }
+            if (gzip.read() != -1) {
+                throw new IOException("GZIP data is longer than " + uncompressedSize + " bytes");
+            }
+            return data;
+        }
+        List<byte[]> chunks = new ArrayList<>();
+        int totalSize = 0;
+        while (true) {
+            byte[] chunk = new byte[STREAM_BUFFER_SIZE];
+            int chunkSize = 0;
+            int len;
+            while (chunkSize < chunk.length && (len = gzip.read(chunk, chunkSize, chunk.length - chunkSize)) > 0) {
+                chunkSize += len;
+            }
+            if (chunkSize > 0) {
+                chunks.add(chunkSize == chunk.length ? chunk : Arrays.copyOf(chunk, chunkSize));
+                totalSize += chunkSize;
+            }
+            if (chunkSize < chunk.length) {
+                break;
+            }
+        }
+        byte[] data = new byte[totalSize];
+        int offset = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, data, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return data;
+    }
+
+    /**
+     * Reads the uncompressed size stored in the trailer of complete GZIP data.
+     */
+    public static int readGZIPUncompressedSize(byte[] trailer) {
+        int offset = trailer.length - 4;
+        return (trailer[offset] & 0xff) | (trailer[offset + 1] & 0xff) << 8 | (trailer[offset + 2] & 0xff) << 16 |
+                (trailer[offset + 3] & 0xff) << 24;
+    }
+
+    private static void writeIntLE(byte[] target, int offset, int value) {
+        target[offset] = (byte) value;
+        target[offset + 1] = (byte) (value >> 8);
+        target[offset + 2] = (byte) (value >> 16);
+        target[offset + 3] = (byte) (value >> 24);
     }
 }
@@ -20,16 +20,22 @@ package org.wso2.carbon.stream.processor.core.ha.util;
 public class HAConstants {
 
     public static final int EVENT_BUFFER_EXTRACTOR_THREAD_POOL_SIZE = 5;
-    public static final String CHANNEL_ID_MESSAGE = "eventMessage";
-    public static final String CHANNEL_ID_CONTROL_MESSAGE = "controlMessage";
+    public static final int FAILOVER_THREAD_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    public static final byte CHANNEL_ID_EVENT_FRAME = 2;
+    public static final byte CHANNEL_ID_CONTROL_MESSAGE = 3;
     public static final String PERSISTED_APP_SPLIT_DELIMITER = "__";
+    // nodes are paired only with nodes of the same protocol version, earlier versions are rejected by the decoder
+    public static final byte PROTOCOL_VERSION = 3;
     public static final int PROTOCOL_AND_MESSAGE_BYTE_LENGTH = 5;
+    public static final int MAX_MESSAGE_LENGTH = 128 * 1024 * 1024;
     public static final String DEFAULT_CHARSET = "UTF-8";
     public static final String ACTIVE_NODE_CONNECTION_POOL_ID = "activeNode_connection_pool";
     public static final String HOST = "host";
     public static final String PORT = "port";
     public static final String ADVERTISED_HOST = "advertisedHost";
     public static final String ADVERTISED_PORT = "advertisedPort";
+    public static final String EVENT_SYNC_PUBLISHER_METRIC_PREFIX =
+            "org.wso2.carbon.stream.processor.core.ha.EventSyncPublisher.";
 
 
 }
@@ -35,6 +35,7 @@ import org.wso2.carbon.databridge.commons.ServerEventListener;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.carbon.kernel.CarbonRuntime;
 import org.wso2.carbon.kernel.config.model.CarbonConfiguration;
+import org.wso2.carbon.metrics.core.MetricService;
 import org.wso2.carbon.siddhi.metrics.core.SiddhiMetricsFactory;
 import org.wso2.carbon.siddhi.metrics.core.internal.service.MetricsServiceComponent;
 import org.wso2.carbon.stream.processor.common.EventStreamService;
@@ -49,7 +50,7 @@ import org.wso2.carbon.stream.processor.core.ha.exception.HAModeException;
 import org.wso2.carbon.stream.processor.core.ha.util.CoordinationConstants;
 import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
 import org.wso2.carbon.stream.processor.core.internal.util.SiddhiAppProcessorConstants;
-import org.wso2.carbon.stream.processor.core.persistence.PersistenceManager;
+import org.wso2.carbon.stream.processor.core.persistence.PersistenceScheduler;
 import org.wso2.carbon.stream.processor.core.persistence.beans.PersistenceConfigurations;
 import org.wso2.carbon.stream.processor.core.persistence.exception.PersistenceStoreConfigurationException;
 import org.wso2.carbon.stream.processor.core.persistence.util.PersistenceConstants;
@@ -61,10 +62,6 @@ import org.wso2.siddhi.core.util.persistence.PersistenceStore;
 
 import java.io.File;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Service component to consume CarbonRuntime instance which has been registered as an OSGi service
@@ -79,8 +76,7 @@ public class ServiceComponent {
     private static final Logger log = LoggerFactory.getLogger(ServiceComponent.class);
     private ServiceRegistration streamServiceRegistration;
     private ServiceRegistration siddhiAppRuntimeServiceRegistration;
-    private ScheduledFuture<?> scheduledFuture = null;
-    private ScheduledExecutorService scheduledExecutorService = null;
+    private PersistenceScheduler persistenceScheduler = null;
     private boolean clusterComponentActivated;
     private boolean serviceComponentActivated;
 
@@ -139,12 +135,9 @@ public class ServiceComponent {
 
 
             int persistenceInterval = persistenceConfigurations.getIntervalInMin();
-            scheduledExecutorService = Executors.newScheduledThreadPool(1);
-
-            if (persistenceInterval > 0) {
-                scheduledFuture = scheduledExecutorService.scheduleAtFixedRate(new PersistenceManager(),
-                        persistenceInterval, persistenceInterval, TimeUnit.MINUTES);
-            }
+            persistenceScheduler = new PersistenceScheduler(persistenceConfigurations);
+            persistenceScheduler.start();
+            StreamProcessorDataHolder.setPersistenceScheduler(persistenceScheduler);
             StreamProcessorDataHolder.setIsPersistenceEnabled(true);
             log.info("Periodic state persistence started with an interval of " + String.valueOf(persistenceInterval) +
                     " using " + persistenceStoreClassName);
@@ -226,12 +219,9 @@ public class ServiceComponent {
             }
         }
 
-        if (scheduledFuture != null) {
-            scheduledFuture.cancel(false);
-        }
-
-        if (scheduledExecutorService != null) {
-            scheduledExecutorService.shutdown();
+        if (persistenceScheduler != null) {
+            StreamProcessorDataHolder.setPersistenceScheduler(null);
+            persistenceScheduler.stop();
         }
 
         streamServiceRegistration.unregister();
@@ -397,6 +387,21 @@ public class ServiceComponent {
         //do nothing
     }
 
+    @Reference(
+            name = "carbon.metrics.service",
+            service = MetricService.class,
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetMetricService"
+    )
+    protected void setMetricService(MetricService metricService) {
+        StreamProcessorDataHolder.setMetricService(metricService);
+    }
+
+    protected void unsetMetricService(MetricService metricService) {
+        StreamProcessorDataHolder.setMetricService(null);
+    }
+
     @Reference(
             name = "permission-manager",
             service = PermissionManager.class,
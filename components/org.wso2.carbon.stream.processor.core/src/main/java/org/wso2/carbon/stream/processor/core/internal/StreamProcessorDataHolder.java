@@ -25,12 +25,14 @@ import org.wso2.carbon.config.provider.ConfigProvider;
 import org.wso2.carbon.databridge.commons.ServerEventListener;
 import org.wso2.carbon.datasource.core.api.DataSourceService;
 import org.wso2.carbon.kernel.CarbonRuntime;
+import org.wso2.carbon.metrics.core.MetricService;
 import org.wso2.carbon.stream.processor.common.HAStateChangeListener;
 import org.wso2.carbon.stream.processor.core.NodeInfo;
 import org.wso2.carbon.stream.processor.core.distribution.DistributionService;
 import org.wso2.carbon.stream.processor.core.ha.HAManager;
 import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
 import org.wso2.carbon.stream.processor.core.internal.util.SiddhiAppProcessorConstants;
+import org.wso2.carbon.stream.processor.core.persistence.PersistenceScheduler;
 import org.wso2.siddhi.core.SiddhiManager;
 import org.wso2.siddhi.core.stream.input.source.SourceHandlerManager;
 import org.wso2.siddhi.core.stream.output.sink.SinkHandlerManager;
@@ -58,6 +60,8 @@ public class StreamProcessorDataHolder {
     private static DistributionService distributionService;
     private static RecordTableHandlerManager recordTableHandlerManager;
     private static PermissionProvider permissionProvider;
+    private static PersistenceScheduler persistenceScheduler;
+    private static MetricService metricService;
     private CarbonRuntime carbonRuntime;
     private SiddhiAppProcessorConstants.RuntimeMode runtimeMode = SiddhiAppProcessorConstants.RuntimeMode.ERROR;
     private BundleContext bundleContext;
@@ -255,4 +259,20 @@ public class StreamProcessorDataHolder {
     public static void setPermissionProvider(PermissionProvider permissionProvider) {
         StreamProcessorDataHolder.permissionProvider = permissionProvider;
     }
+
+    public static PersistenceScheduler getPersistenceScheduler() {
+        return StreamProcessorDataHolder.persistenceScheduler;
+    }
+
+    public static void setPersistenceScheduler(PersistenceScheduler persistenceScheduler) {
+        StreamProcessorDataHolder.persistenceScheduler = persistenceScheduler;
+    }
+
+    public static MetricService getMetricService() {
+        return StreamProcessorDataHolder.metricService;
+    }
+
+    public static void setMetricService(MetricService metricService) {
+        StreamProcessorDataHolder.metricService = metricService;
+    }
 }
@@ -31,6 +31,10 @@ public class DeploymentConfig {
     private int eventByteBufferQueueCapacity = 20000;
     @Element(description = "Event sync client pool configurations", required = false)
     private EventSyncClientPoolConfig eventSyncClientPool = new EventSyncClientPoolConfig();
+    @Element(description = "Event sync publisher configurations", required = false)
+    private EventSyncPublisherConfig eventSyncPublisher = new EventSyncPublisherConfig();
+    @Element(description = "Spilling of the events buffered in the passive node to disk", required = false)
+    private EventSpillConfig eventSpill = new EventSpillConfig();
     @Element(description = "Pool of threads to retrieve bytes from byte buffer queue", required = false)
     private int byteBufferExtractorThreadPoolSize = 5;
 
@@ -69,6 +73,22 @@ public class DeploymentConfig {
         this.eventSyncClientPool = eventSyncClientPool;
     }
 
+    public EventSyncPublisherConfig getEventSyncPublisherConfig() {
+        return eventSyncPublisher;
+    }
+
+    public void setEventSyncPublisherConfig(EventSyncPublisherConfig eventSyncPublisher) {
+        this.eventSyncPublisher = eventSyncPublisher;
+    }
+
+    public EventSpillConfig getEventSpillConfig() {
+        return eventSpill;
+    }
+
+    public void setEventSpillConfig(EventSpillConfig eventSpill) {
+        this.eventSpill = eventSpill;
+    }
+
     public int getByteBufferExtractorThreadPoolSize() {
 
         return byteBufferExtractorThreadPoolSize;
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.internal.beans;
+
+import org.wso2.carbon.config.annotation.Element;
+
+/**
+ * Bean class for the configurations of spilling the events buffered in the passive node to memory mapped files.
+ */
+public class EventSpillConfig {
+    @Element(description = "Enable spilling of the events received from the active node to memory mapped files",
+            required = false)
+    private boolean enabled = false;
+    @Element(description = "Directory the spill segment files are created in", required = false)
+    private String directory = "ha-event-spill";
+    @Element(description = "Size of a spill segment file in megabytes, at most 2047", required = false)
+    private int segmentSizeInMB = 64;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSizeInMB() {
+        return segmentSizeInMB;
+    }
+
+    public void setSegmentSizeInMB(int segmentSizeInMB) {
+        this.segmentSizeInMB = segmentSizeInMB;
+    }
+}
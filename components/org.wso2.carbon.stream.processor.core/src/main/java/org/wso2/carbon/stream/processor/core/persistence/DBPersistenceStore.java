@@ -33,16 +33,17 @@ import org.wso2.carbon.stream.processor.core.persistence.dto.RDBMSQueryConfigura
 import org.wso2.siddhi.core.util.persistence.PersistenceStore;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.util.Map;
 import javax.sql.DataSource;
-import javax.sql.rowset.serial.SerialBlob;
 
 /**
  * Implementation of Persistence Store that would persist snapshots to an RDBMS instance
@@ -52,6 +53,7 @@ public class DBPersistenceStore implements PersistenceStore {
     private static final Logger log = Logger.getLogger(DBPersistenceStore.class);
     private static final String MSSQL_DATABASE_TYPE = "microsoft sql server";
     private static final String POSTGRES_DATABASE_TYPE = "postgresql";
+    private static final int GZIP_TRAILER_SIZE = 8;
 
     private ExecutionInfo executionInfo;
     private String datasourceName;
@@ -65,17 +67,10 @@ public class DBPersistenceStore implements PersistenceStore {
     public void save(String siddhiAppName, String revision, byte[] snapshot) {
         createTableIfNotExist();
 
-        byte[] compressedSnapshot;
-        try {
-            compressedSnapshot = CompressionUtil.compressGZIP(snapshot);
-        } catch (IOException e) {
-            log.error("Error occurred while trying to compress the snapshot. Failed to " +
-                    "persist revision: " + revision + " of Siddhi app: " + siddhiAppName);
-            return;
-        }
         Connection con = null;
         PreparedStatement stmt = null;
-        try {
+        // the snapshot is compressed while the driver reads the stream
+        try (InputStream compressedSnapshot = CompressionUtil.compressingGZIPStream(snapshot)) {
             try {
                 con = datasource.getConnection();
             } catch (SQLException e) {
@@ -88,24 +83,26 @@ public class DBPersistenceStore implements PersistenceStore {
             stmt.setString(1, siddhiAppName);
             stmt.setString(2, revision);
             if (databaseType.equals(POSTGRES_DATABASE_TYPE)) {
-                stmt.setBlob(3, new SerialBlob(compressedSnapshot));
+                stmt.setBlob(3, compressedSnapshot);
             } else {
-                Blob blob = con.createBlob();
-                blob.setBytes(1, compressedSnapshot);
-                stmt.setBlob(3, blob);
+                stmt.setBinaryStream(3, compressedSnapshot);
             }
             stmt.executeUpdate();
+            cleanOldRevisions(con, siddhiAppName);
             con.commit();
             if (log.isDebugEnabled()) {
                 log.debug("Periodic persistence of " + siddhiAppName + " persisted successfully.");
             }
         } catch (SQLException e) {
+            rollback(con);
             log.error("Error while saving revision" + revision + " of the siddhiApp " +
                     siddhiAppName + " to the database with datasource name " + datasourceName, e);
+        } catch (IOException e) {
+            log.error("Error occurred while trying to compress the snapshot. Failed to " +
+                    "persist revision: " + revision + " of Siddhi app: " + siddhiAppName, e);
         } finally {
             DBPersistenceStoreUtils.cleanupConnections(stmt, con);
         }
-        cleanOldRevisions(siddhiAppName);
     }
 
     @Override
@@ -175,7 +172,6 @@ public class DBPersistenceStore implements PersistenceStore {
     public byte[] load(String siddhiAppName, String revision) {
         PreparedStatement stmt = null;
         Connection con = null;
-        byte[] blobAsBytes = null;
         byte[] decompressedSnapshot = null;
         try {
             try {
@@ -190,24 +186,16 @@ public class DBPersistenceStore implements PersistenceStore {
             stmt.setString(1, revision);
             stmt.setString(2, siddhiAppName);
             try (ResultSet resultSet = stmt.executeQuery()) {
-                con.commit();
                 if (resultSet.next()) {
-                    Blob blobSnapshot;
-                    if (databaseType.equals(MSSQL_DATABASE_TYPE)) {
-                        blobSnapshot = new SerialBlob(resultSet.getBytes("snapshot"));
-                    } else {
-                        blobSnapshot = resultSet.getBlob("snapshot");
-                    }
-                    int blobLength = (int) blobSnapshot.length();
-                    blobAsBytes = blobSnapshot.getBytes(1, blobLength);
                     try {
-                        decompressedSnapshot = CompressionUtil.decompressGZIP(blobAsBytes);
+                        decompressedSnapshot = readSnapshot(resultSet);
                     } catch (IOException e) {
                         throw new RuntimeException("Error occurred while trying to decompress the snapshot. " +
                                 "Failed to load revision: " + revision + " of Siddhi app: " + siddhiAppName, e);
                     }
                 }
             }
+            con.commit();
         } catch (SQLException e) {
             log.error("Error while retrieving revision " + revision + " of siddhiApp: " +
                     siddhiAppName + " from the database with datasource " + datasourceName, e);
@@ -313,33 +301,47 @@ public class DBPersistenceStore implements PersistenceStore {
     }
 
     /**
-     * Method to remove revisions that are older than the user specified amount
+     * Reads the snapshot column of the current row, decompressing it as it is streamed from the database
+     */
+    private byte[] readSnapshot(ResultSet resultSet) throws SQLException, IOException {
+        if (databaseType.equals(MSSQL_DATABASE_TYPE)) {
+            try (InputStream inputStream = resultSet.getBinaryStream("snapshot")) {
+                return CompressionUtil.decompressGZIP(inputStream, -1);
+            }
+        }
+        Blob blobSnapshot = resultSet.getBlob("snapshot");
+        long blobLength = blobSnapshot.length();
+        int uncompressedSize = -1;
+        if (blobLength >= GZIP_TRAILER_SIZE) {
+            uncompressedSize = CompressionUtil.readGZIPUncompressedSize(blobSnapshot.getBytes(blobLength - 3, 4));
+        }
+        try (InputStream inputStream = blobSnapshot.getBinaryStream()) {
+            return CompressionUtil.decompressGZIP(inputStream, uncompressedSize);
+        }
+    }
+
+    /**
+     * Method to remove revisions that are older than the user specified amount, as part of the transaction
+     * saving the latest revision. A failure leaves the old revisions to be removed by the next save.
      *
+     * @param con           connection holding the transaction
      * @param siddhiAppName is the name of the Siddhi Application whose old revisions to remove
      */
-    private void cleanOldRevisions(String siddhiAppName) {
-        PreparedStatement stmt = null;
-        Connection con = null;
+    private void cleanOldRevisions(Connection con, String siddhiAppName) throws SQLException {
+        Savepoint savepoint = con.setSavepoint();
         int count = 0;
-
         try {
-            con = datasource.getConnection();
-            con.setAutoCommit(false);
-        } catch (SQLException e) {
-            log.error("Cannot establish connection to data source " + datasourceName +
-                    " to clean old revisions", e);
-            return;
-        }
-        try {
-            stmt = con.prepareStatement(executionInfo.getPreparedCountStatement());
-            stmt.setString(1, siddhiAppName);
-            try (ResultSet resultSet = stmt.executeQuery()) {
-                if (resultSet.next()) {
-                    count = resultSet.getInt(1);
+            try (PreparedStatement stmt = con.prepareStatement(executionInfo.getPreparedCountStatement())) {
+                stmt.setString(1, siddhiAppName);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        count = resultSet.getInt(1);
+                    }
                 }
-                int numberOfRevisionsToClean = count - numberOfRevisionsToKeep;
-                if (numberOfRevisionsToClean > 0) {
-                    stmt = con.prepareStatement(executionInfo.getPreparedDeleteStatement());
+            }
+            int numberOfRevisionsToClean = count - numberOfRevisionsToKeep;
+            if (numberOfRevisionsToClean > 0) {
+                try (PreparedStatement stmt = con.prepareStatement(executionInfo.getPreparedDeleteStatement())) {
                     if (databaseType.equals(MSSQL_DATABASE_TYPE)) {
                         stmt.setInt(1, numberOfRevisionsToClean);
                         stmt.setString(2, siddhiAppName);
@@ -348,24 +350,24 @@ public class DBPersistenceStore implements PersistenceStore {
                         stmt.setInt(2, numberOfRevisionsToClean);
                     }
                     stmt.executeUpdate();
-                    con.commit();
                 }
             }
         } catch (SQLException e) {
+            con.rollback(savepoint);
             log.error("Error in cleaning old revisions of siddhiApp: " +
                     siddhiAppName + "from the database with datasource " + datasourceName, e);
-        } finally {
-            if (stmt != null) {
-                try {
-                    stmt.close();
-                } catch (SQLException e) {
-                    log.error("Unable to close statement." + e.getMessage(), e);
-                }
-            }
-            cleanupConnections(stmt, con);
         }
     }
 
+    private void rollback(Connection connection) {
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                log.error("Unable to rollback transaction." + e.getMessage(), e);
+            }
+        }
+    }
 
     private void cleanupConnections(Statement stmt, Connection connection) {
         if (stmt != null) {
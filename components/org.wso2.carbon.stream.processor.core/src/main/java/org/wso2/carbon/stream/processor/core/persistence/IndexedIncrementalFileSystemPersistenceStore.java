@@ -0,0 +1,529 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.persistence;
+
+import org.apache.log4j.Logger;
+import org.wso2.carbon.stream.processor.core.ha.util.CompressionUtil;
+import org.wso2.carbon.stream.processor.core.persistence.util.PersistenceConstants;
+import org.wso2.carbon.stream.processor.core.persistence.util.SnapshotCompression;
+import org.wso2.siddhi.core.util.persistence.IncrementalPersistenceStore;
+import org.wso2.siddhi.core.util.persistence.util.IncrementalSnapshotInfo;
+import org.wso2.siddhi.core.util.persistence.util.PersistenceHelper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of Incremental Persistence Store that would persist snapshots to the file system, keeping an
+ * append-only index of the revisions of every Siddhi app.
+ * <p>
+ * Snapshots are handed to a single I/O thread which writes every snapshot waiting at that time through a
+ * {@link FileChannel}, compressed in chunks with the configured {@link SnapshotCompression}, and then syncs the
+ * index and the directory of each app once for the whole batch. A save returns once its revision is durable.
+ * Restore planning and the cleanup of old revisions are served from the index, so the snapshot directory is never
+ * listed after the index is created.
+ */
+public class IndexedIncrementalFileSystemPersistenceStore implements IncrementalPersistenceStore {
+
+    private static final Logger log = Logger.getLogger(IndexedIncrementalFileSystemPersistenceStore.class);
+    private static final String INDEX_FILE_NAME = "revisions.idx";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final char ADDED_REVISION = '+';
+    private static final char REMOVED_REVISION = '-';
+    private static final int MIN_REMOVALS_BEFORE_COMPACTION = 1024;
+    private static final byte LEGACY_GZIP_MAGIC = (byte) 0x1f;
+    private static final int SNAPSHOT_HEADER_SIZE = 5;
+
+    private String folder;
+    private SnapshotCompression compression = SnapshotCompression.LZ4;
+    private final ConcurrentMap<String, AppRevisionIndex> revisionIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ExecutorService writerExecutorService = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "IncrementalPersistenceWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IndexedIncrementalFileSystemPersistenceStore() {
+    }
+
+    public IndexedIncrementalFileSystemPersistenceStore(String storageFilePath) {
+        folder = storageFilePath;
+    }
+
+    public IndexedIncrementalFileSystemPersistenceStore(String storageFilePath, SnapshotCompression compression) {
+        folder = storageFilePath;
+        this.compression = compression;
+    }
+
+    @Override
+    public void save(IncrementalSnapshotInfo snapshotInfo, byte[] snapshot) {
+        PendingWrite pendingWrite = new PendingWrite(snapshotInfo, snapshot);
+        pendingWrites.offer(pendingWrite);
+        writerExecutorService.execute(this::writePendingSnapshots);
+        try {
+            pendingWrite.future.get();
+            if (log.isDebugEnabled()) {
+                log.debug("Incremental persistence of '" + snapshotInfo.getSiddhiAppId() +
+                        "' with revision '" + snapshotInfo.getRevision() + "' persisted successfully.");
+            }
+        } catch (ExecutionException e) {
+            log.error("Cannot save the revision '" + snapshotInfo.getRevision() + "' of SiddhiApp: '" +
+                    snapshotInfo.getSiddhiAppId() + "' to the file system.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while saving the revision '" + snapshotInfo.getRevision() + "' of SiddhiApp: '" +
+                    snapshotInfo.getSiddhiAppId() + "' to the file system.");
+        }
+    }
+
+    @Override
+    public void setProperties(Map properties) {
+        Map configurationMap = (Map) properties.get(PersistenceConstants.STATE_PERSISTENCE_CONFIGS);
+
+        if (configurationMap != null) {
+            Object folderObject = configurationMap.get("location");
+            if (folderObject == null || !(folderObject instanceof String)) {
+                folder = PersistenceConstants.DEFAULT_FILE_PERSISTENCE_FOLDER;
+                if (log.isDebugEnabled()) {
+                    log.debug("File system persistence location not set. Default persistence location will be used.");
+                }
+            } else {
+                folder = String.valueOf(folderObject);
+            }
+            Object compressionObject = configurationMap.get("compression");
+            if (compressionObject instanceof String) {
+                try {
+                    compression = SnapshotCompression.valueOf(
+                            ((String) compressionObject).toUpperCase(Locale.ENGLISH));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unknown snapshot compression '" + compressionObject + "'. " + compression +
+                            " compression will be used.");
+                }
+            }
+        } else {
+            folder = PersistenceConstants.DEFAULT_FILE_PERSISTENCE_FOLDER;
+            if (log.isDebugEnabled()) {
+                log.debug("File system persistence config not set. Default persistence location will be used.");
+            }
+        }
+    }
+
+    @Override
+    public byte[] load(IncrementalSnapshotInfo snapshotInfo) {
+        Path path = getAppDirectory(snapshotInfo.getSiddhiAppId()).resolve(snapshotInfo.getRevision());
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(fileChannel), SnapshotCompression.CHUNK_SIZE));
+            byte codecId = inputStream.readByte();
+            byte[] snapshot;
+            if (codecId == LEGACY_GZIP_MAGIC) {
+                // written by IncrementalFileSystemPersistenceStore
+                snapshot = CompressionUtil.decompressGZIP(Files.readAllBytes(path));
+            } else {
+                SnapshotCompression snapshotCompression = SnapshotCompression.fromId(codecId);
+                if (snapshotCompression == null) {
+                    throw new IOException("Unknown snapshot compression id " + codecId);
+                }
+                snapshot = new byte[inputStream.readInt()];
+                snapshotCompression.decompress(inputStream, snapshot);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("State loaded for SiddhiApp '" + snapshotInfo.getSiddhiAppId() + "' revision '" +
+                        snapshotInfo.getRevision() + "' from file system.");
+            }
+            return snapshot;
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot load the revision '" + snapshotInfo.getRevision() + "' of SiddhiApp '" +
+                    snapshotInfo.getSiddhiAppId() + "' from file system.", e);
+        }
+    }
+
+    @Override
+    public List<IncrementalSnapshotInfo> getListOfRevisionsToLoad(long restoreTime, String siddhiAppName) {
+        AppRevisionIndex revisionIndex = getRevisionIndex(siddhiAppName, false);
+        if (revisionIndex == null) {
+            return null;
+        }
+        List<IncrementalSnapshotInfo> revisions = revisionIndex.getRevisions();
+        if (revisions.isEmpty()) {
+            return null;
+        }
+        List<IncrementalSnapshotInfo> results = new ArrayList<>();
+        for (IncrementalSnapshotInfo snapshotInfo : revisions) {
+            if (snapshotInfo.getTime() <= restoreTime &&
+                    siddhiAppName.equals(snapshotInfo.getSiddhiAppId()) &&
+                    snapshotInfo.getElementId() != null &&
+                    snapshotInfo.getQueryName() != null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("List of revisions to load : " + snapshotInfo.getRevision());
+                }
+                results.add(snapshotInfo);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public String getLastRevision(String siddhiAppName) {
+        AppRevisionIndex revisionIndex = getRevisionIndex(siddhiAppName, false);
+        if (revisionIndex == null) {
+            return null;
+        }
+        long restoreTime = -1;
+        for (IncrementalSnapshotInfo snapshotInfo : revisionIndex.getRevisions()) {
+            if (snapshotInfo.getTime() > restoreTime &&
+                    siddhiAppName.equals(snapshotInfo.getSiddhiAppId()) &&
+                    snapshotInfo.getElementId() != null &&
+                    snapshotInfo.getQueryName() != null) {
+                restoreTime = snapshotInfo.getTime();
+            }
+        }
+        if (restoreTime != -1) {
+            if (log.isDebugEnabled()) {
+                log.debug("Latest revision to load: " + restoreTime + PersistenceConstants.REVISION_SEPARATOR +
+                        siddhiAppName);
+            }
+            return restoreTime + PersistenceConstants.REVISION_SEPARATOR + siddhiAppName;
+        }
+        return null;
+    }
+
+    /**
+     * Writes every snapshot waiting at the time of the call and syncs the snapshots, the touched indexes and
+     * directories once for the whole batch.
+     */
+    private void writePendingSnapshots() {
+        List<PendingWrite> batch = new ArrayList<>();
+        PendingWrite pendingWrite;
+        while ((pendingWrite = pendingWrites.poll()) != null) {
+            batch.add(pendingWrite);
+        }
+        if (batch.isEmpty()) {
+            // already written along with an earlier batch
+            return;
+        }
+        List<PendingWrite> written = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            try {
+                // the index is opened first so that migrating an existing directory does not pick up this revision
+                write.revisionIndex = getRevisionIndex(write.snapshotInfo.getSiddhiAppId(), true);
+                write.tempPath = writeTempFile(write.snapshotInfo, write.snapshot);
+                written.add(write);
+            } catch (IOException | RuntimeException e) {
+                write.future.completeExceptionally(e);
+            }
+        }
+        Set<AppRevisionIndex> touchedIndexes = new LinkedHashSet<>();
+        for (PendingWrite write : written) {
+            IncrementalSnapshotInfo snapshotInfo = write.snapshotInfo;
+            try {
+                Files.move(write.tempPath, write.tempPath.resolveSibling(snapshotInfo.getRevision()),
+                        StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                AppRevisionIndex revisionIndex = write.revisionIndex;
+                touchedIndexes.add(revisionIndex);
+                revisionIndex.add(snapshotInfo);
+                cleanOldRevisions(revisionIndex, snapshotInfo);
+            } catch (IOException | RuntimeException e) {
+                write.future.completeExceptionally(e);
+            }
+        }
+        Map<AppRevisionIndex, IOException> syncFailures = new HashMap<>();
+        for (AppRevisionIndex revisionIndex : touchedIndexes) {
+            try {
+                revisionIndex.sync();
+            } catch (IOException e) {
+                syncFailures.put(revisionIndex, e);
+            }
+        }
+        for (PendingWrite write : written) {
+            IOException syncFailure = syncFailures.get(write.revisionIndex);
+            if (syncFailure != null) {
+                // the revision is not durable, so its save has to fail rather than be reported as persisted
+                write.future.completeExceptionally(syncFailure);
+            } else {
+                write.future.complete(null);
+            }
+        }
+    }
+
+    private Path writeTempFile(IncrementalSnapshotInfo snapshotInfo, byte[] snapshot) throws IOException {
+        Path directory = getAppDirectory(snapshotInfo.getSiddhiAppId());
+        Files.createDirectories(directory);
+        Path tempPath = directory.resolve(snapshotInfo.getRevision() + TEMP_FILE_EXTENSION);
+        try (FileChannel fileChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+            header.put(compression.getId()).putInt(snapshot.length).flip();
+            while (header.hasRemaining()) {
+                fileChannel.write(header);
+            }
+            // the channel stream is not closed here as that would close the channel before it is forced
+            OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(fileChannel),
+                    SnapshotCompression.CHUNK_SIZE);
+            compression.compress(snapshot, outputStream);
+            outputStream.flush();
+            fileChannel.force(false);
+        }
+        return tempPath;
+    }
+
+    private void cleanOldRevisions(AppRevisionIndex revisionIndex, IncrementalSnapshotInfo incrementalSnapshotInfo)
+            throws IOException {
+        if (incrementalSnapshotInfo.getType() == IncrementalSnapshotInfo.SnapshotType.INCREMENT) {
+            return;
+        }
+        long baseTimeStamp = incrementalSnapshotInfo.getTime();
+        for (IncrementalSnapshotInfo snapshotInfo : revisionIndex.getRevisions()) {
+            if (snapshotInfo.getTime() < baseTimeStamp &&
+                    incrementalSnapshotInfo.getSiddhiAppId().equals(snapshotInfo.getSiddhiAppId()) &&
+                    incrementalSnapshotInfo.getQueryName().equals(snapshotInfo.getQueryName()) &&
+                    incrementalSnapshotInfo.getElementId().equals(snapshotInfo.getElementId())) {
+                boolean isBaseCleanup = incrementalSnapshotInfo.getType() == IncrementalSnapshotInfo.SnapshotType.BASE
+                        && snapshotInfo.getType() != IncrementalSnapshotInfo.SnapshotType.PERIODIC;
+                boolean isPeriodicCleanup =
+                        incrementalSnapshotInfo.getType() == IncrementalSnapshotInfo.SnapshotType.PERIODIC &&
+                                snapshotInfo.getType() == IncrementalSnapshotInfo.SnapshotType.PERIODIC;
+                if (isBaseCleanup || isPeriodicCleanup) {
+                    try {
+                        Files.deleteIfExists(revisionIndex.directory.resolve(snapshotInfo.getRevision()));
+                        revisionIndex.remove(snapshotInfo.getRevision());
+                    } catch (IOException e) {
+                        log.error("Error deleting old revision " + snapshotInfo.getRevision(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private Path getAppDirectory(String siddhiAppName) {
+        return Paths.get(folder, siddhiAppName);
+    }
+
+    private AppRevisionIndex getRevisionIndex(String siddhiAppName, boolean create) {
+        AppRevisionIndex revisionIndex = revisionIndexes.get(siddhiAppName);
+        if (revisionIndex != null) {
+            return revisionIndex;
+        }
+        synchronized (revisionIndexes) {
+            revisionIndex = revisionIndexes.get(siddhiAppName);
+            if (revisionIndex == null) {
+                Path directory = getAppDirectory(siddhiAppName);
+                if (!create && !Files.isDirectory(directory)) {
+                    return null;
+                }
+                try {
+                    revisionIndex = new AppRevisionIndex(siddhiAppName, directory);
+                } catch (IOException e) {
+                    throw new RuntimeException("Cannot open the revision index of SiddhiApp '" + siddhiAppName +
+                            "' in " + directory, e);
+                }
+                revisionIndexes.put(siddhiAppName, revisionIndex);
+            }
+            return revisionIndex;
+        }
+    }
+
+    /**
+     * Snapshot waiting to be written by the I/O thread.
+     */
+    private static class PendingWrite {
+        private final IncrementalSnapshotInfo snapshotInfo;
+        private final byte[] snapshot;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private AppRevisionIndex revisionIndex;
+        private Path tempPath;
+
+        private PendingWrite(IncrementalSnapshotInfo snapshotInfo, byte[] snapshot) {
+            this.snapshotInfo = snapshotInfo;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Revisions of a single Siddhi app, backed by an index file holding a line per added or removed revision.
+     * <p>
+     * The index is rewritten with only the live revisions once enough removals have been appended to it. An app
+     * directory without an index, such as one written by {@link IncrementalFileSystemPersistenceStore}, is listed
+     * once to create the index.
+     */
+    private static class AppRevisionIndex {
+        private final String siddhiAppName;
+        private final Path directory;
+        private final Path indexPath;
+        private final LinkedHashMap<String, IncrementalSnapshotInfo> revisions = new LinkedHashMap<>();
+        private FileChannel indexChannel;
+        private int removedLineCount;
+        private boolean dirty;
+
+        private AppRevisionIndex(String siddhiAppName, Path directory) throws IOException {
+            this.siddhiAppName = siddhiAppName;
+            this.directory = directory;
+            this.indexPath = directory.resolve(INDEX_FILE_NAME);
+            Files.createDirectories(directory);
+            if (Files.exists(indexPath)) {
+                if (!readIndex()) {
+                    // the last line was cut short by a crash while appending
+                    rewriteIndex();
+                }
+            } else {
+                try (Stream<Path> files = Files.list(directory)) {
+                    files.map(path -> path.getFileName().toString())
+                            .filter(fileName -> !fileName.equals(INDEX_FILE_NAME) &&
+                                    !fileName.endsWith(TEMP_FILE_EXTENSION))
+                            .sorted()
+                            .forEach(fileName -> revisions.put(fileName, PersistenceHelper.convertRevision(fileName)));
+                }
+                rewriteIndex();
+                if (!revisions.isEmpty()) {
+                    log.info("Created the revision index of SiddhiApp '" + siddhiAppName + "' with " +
+                            revisions.size() + " revisions.");
+                }
+            }
+            if (indexChannel == null) {
+                indexChannel = FileChannel.open(indexPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+        }
+
+        /**
+         * @return false if the index does not end with a complete line
+         */
+        private boolean readIndex() throws IOException {
+            byte[] content = Files.readAllBytes(indexPath);
+            int lineStart = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == '\n') {
+                    if (i - lineStart > 1) {
+                        String revision = new String(content, lineStart + 1, i - lineStart - 1,
+                                StandardCharsets.UTF_8);
+                        if (content[lineStart] == ADDED_REVISION) {
+                            revisions.put(revision, PersistenceHelper.convertRevision(revision));
+                        } else if (content[lineStart] == REMOVED_REVISION) {
+                            revisions.remove(revision);
+                            removedLineCount++;
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            return lineStart == content.length;
+        }
+
+        private synchronized List<IncrementalSnapshotInfo> getRevisions() {
+            return new ArrayList<>(revisions.values());
+        }
+
+        private synchronized void add(IncrementalSnapshotInfo snapshotInfo) throws IOException {
+            if (revisions.put(snapshotInfo.getRevision(), snapshotInfo) == null) {
+                appendLine(ADDED_REVISION, snapshotInfo.getRevision());
+            }
+        }
+
+        private synchronized void remove(String revision) throws IOException {
+            if (revisions.remove(revision) != null) {
+                appendLine(REMOVED_REVISION, revision);
+                removedLineCount++;
+                if (removedLineCount > Math.max(MIN_REMOVALS_BEFORE_COMPACTION, revisions.size())) {
+                    rewriteIndex();
+                }
+            }
+        }
+
+        private void appendLine(char operation, String revision) throws IOException {
+            ByteBuffer line = ByteBuffer.wrap((operation + revision + '\n').getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                indexChannel.write(line);
+            }
+            dirty = true;
+        }
+
+        /**
+         * Replaces the index file with one holding only the live revisions.
+         */
+        private void rewriteIndex() throws IOException {
+            Path tempPath = directory.resolve(INDEX_FILE_NAME + TEMP_FILE_EXTENSION);
+            StringBuilder content = new StringBuilder();
+            for (String revision : revisions.keySet()) {
+                content.append(ADDED_REVISION).append(revision).append('\n');
+            }
+            try (FileChannel tempChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    tempChannel.write(buffer);
+                }
+                tempChannel.force(false);
+            }
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+            Files.move(tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            indexChannel = FileChannel.open(indexPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            removedLineCount = 0;
+            dirty = true;
+        }
+
+        /**
+         * Forces the appended lines and the renamed snapshot files of the app to the disk.
+         */
+        private synchronized void sync() throws IOException {
+            if (!dirty) {
+                return;
+            }
+            indexChannel.force(false);
+            try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                directoryChannel.force(true);
+            } catch (IOException e) {
+                // directories cannot be opened on every platform, where renames are durable without it
+                if (log.isDebugEnabled()) {
+                    log.debug("Cannot sync the directory " + directory + ", " + e.getMessage());
+                }
+            }
+            dirty = false;
+        }
+    }
+}
@@ -21,112 +21,118 @@ package org.wso2.carbon.stream.processor.core.persistence;
 import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wso2.carbon.cluster.coordinator.service.ClusterCoordinator;
 import org.wso2.carbon.stream.processor.core.ha.HAManager;
 import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncConnectionPoolManager;
 import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncConnection;
 import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
 import org.wso2.carbon.stream.processor.core.internal.StreamProcessorDataHolder;
-import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
 import org.wso2.siddhi.core.SiddhiAppRuntime;
 import org.wso2.siddhi.core.exception.ConnectionUnavailableException;
 import org.wso2.siddhi.core.util.snapshot.PersistenceReference;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Arrays;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Class that manages the periodic persistence of Siddhi Applications
+ * Class that manages the persistence of Siddhi Applications. In HA mode only the active node persists, and a control
+ * message is sent to the passive node for each app as soon as its revision is durable, so that the passive node can
+ * drop the events covered by that revision.
  */
 public class PersistenceManager implements Runnable {
 
     private static final Logger log = LoggerFactory.getLogger(PersistenceManager.class);
-    private HAManager haManager;
-    private DeploymentConfig deploymentConfig;
-    private EventSyncConnection eventSyncConnection;
-    private AtomicLong sequenceIDGenerator;
-    private ClusterCoordinator clusterCoordinator;
+    private static final long PERSISTENCE_TIMEOUT_MILLIS = 60000;
 
     public PersistenceManager() {
     }
 
+    /**
+     * Persists all deployed Siddhi Applications, in parallel when the {@link PersistenceScheduler} is running.
+     */
     @Override
     public void run() {
-        haManager = StreamProcessorDataHolder.getHAManager();
-        if (haManager != null) {
-            if (haManager.isActiveNode()) {
-                eventSyncConnection = getTCPConnection();
-                sequenceIDGenerator = EventSyncConnectionPoolManager.getSequenceID();
-                clusterCoordinator = StreamProcessorDataHolder.getClusterCoordinator();
-                persistAndSendControlMessage();
-            } //Passive node will not persist the state
+        HAManager haManager = StreamProcessorDataHolder.getHAManager();
+        if (haManager != null && !haManager.isActiveNode()) {
+            //Passive node will not persist the state
+            return;
+        }
+        PersistenceScheduler persistenceScheduler = StreamProcessorDataHolder.getPersistenceScheduler();
+        if (persistenceScheduler != null) {
+            persistenceScheduler.persistAll();
         } else {
-            persist();
+            StreamProcessorDataHolder.getSiddhiManager().getSiddhiAppRuntimeMap().forEach(this::persist);
         }
+        log.info("siddhi Apps are persisted successfully");
     }
 
-    private void persist() {
-        ConcurrentMap<String, SiddhiAppRuntime> siddhiAppRuntimeMap = StreamProcessorDataHolder.
-                getSiddhiManager().getSiddhiAppRuntimeMap();
-        for (SiddhiAppRuntime siddhiAppRuntime : siddhiAppRuntimeMap.values()) {
+    /**
+     * Persists a single Siddhi Application.
+     *
+     * @param siddhiAppName    name of the Siddhi Application
+     * @param siddhiAppRuntime runtime of the Siddhi Application
+     */
+    public void persist(String siddhiAppName, SiddhiAppRuntime siddhiAppRuntime) {
+        HAManager haManager = StreamProcessorDataHolder.getHAManager();
+        if (haManager == null) {
             PersistenceReference persistenceReference = siddhiAppRuntime.persist();
             if (log.isDebugEnabled()) {
                 log.debug("Revision " + persistenceReference.getRevision() +
-                        " of siddhi App " + siddhiAppRuntime.getName() + " persisted successfully");
+                        " of siddhi App " + siddhiAppName + " persisted successfully");
             }
-        }
-        if (StreamProcessorDataHolder.getNodeInfo() != null) {
-            StreamProcessorDataHolder.getNodeInfo().setLastPersistedTimestamp(System.currentTimeMillis());
-        }
+            updateLastPersistedTimestamp();
+        } else if (haManager.isActiveNode()) {
+            persistAndSendControlMessage(haManager, siddhiAppName, siddhiAppRuntime);
+        } //Passive node will not persist the state
     }
 
-    private void persistAndSendControlMessage() {
-        ConcurrentMap<String, SiddhiAppRuntime> siddhiAppRuntimeMap = StreamProcessorDataHolder.
-                getSiddhiManager().getSiddhiAppRuntimeMap();
-        String[] siddhiRevisionArray = new String[siddhiAppRuntimeMap.size()];
-        int siddhiAppCount = 0;
-        for (SiddhiAppRuntime siddhiAppRuntime : siddhiAppRuntimeMap.values()) {
-            PersistenceReference persistenceReference = siddhiAppRuntime.persist();
+    private void persistAndSendControlMessage(HAManager haManager, String siddhiAppName,
+                                              SiddhiAppRuntime siddhiAppRuntime) {
+        PersistenceReference persistenceReference = siddhiAppRuntime.persist();
+        // the snapshot is taken by the time persist returns, so it covers the events synced up to this sequence id
+        long sequenceId = EventSyncConnectionPoolManager.getSequenceID().incrementAndGet();
+        try {
             Future fullStateFuture = persistenceReference.getFullStateFuture();
-            try {
-                if (fullStateFuture != null) {
-                    fullStateFuture.get(60000, TimeUnit.MILLISECONDS);
-                } else {
-                    for (Future future : persistenceReference.getIncrementalStateFuture()) {
-                        future.get(60000, TimeUnit.MILLISECONDS);
-                    }
+            if (fullStateFuture != null) {
+                fullStateFuture.get(PERSISTENCE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } else {
+                for (Future future : persistenceReference.getIncrementalStateFuture()) {
+                    future.get(PERSISTENCE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
                 }
-            } catch (Throwable e) {
-                log.error("Active Node: Persisting of Siddhi app is not successful. Check if app deployed properly");
-            }
-            siddhiRevisionArray[siddhiAppCount] = sequenceIDGenerator.incrementAndGet() + HAConstants
-                    .PERSISTED_APP_SPLIT_DELIMITER + persistenceReference.getRevision();
-            siddhiAppCount++;
-            if (log.isDebugEnabled()) {
-                log.debug("Revision " + persistenceReference.getRevision() +
-                        " of siddhi App " + siddhiAppRuntime.getName() + " persisted successfully");
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Active Node: Interrupted while persisting Siddhi app " + siddhiAppName + ". Hence not " +
+                    "sending the control message to the passive node");
+            return;
+        } catch (Throwable e) {
+            log.error("Active Node: Persisting of Siddhi app " + siddhiAppName + " is not successful. Check if app " +
+                    "deployed properly. Hence not sending the control message to the passive node", e);
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Revision " + persistenceReference.getRevision() +
+                    " of siddhi App " + siddhiAppName + " persisted successfully");
         }
-        if (haManager != null && haManager.isActiveNode() && haManager.isPassiveNodeAdded()) {
+        if (haManager.isActiveNode() && haManager.isPassiveNodeAdded()) {
+            String[] siddhiRevisionArray = {sequenceId + HAConstants.PERSISTED_APP_SPLIT_DELIMITER +
+                    persistenceReference.getRevision()};
             if (log.isDebugEnabled()) {
                 log.debug("Control Message is sent to the passive node - " + Arrays.toString(siddhiRevisionArray));
             }
             sendControlMessageToPassiveNode(siddhiRevisionArray);
         }
+        updateLastPersistedTimestamp();
+    }
+
+    private void updateLastPersistedTimestamp() {
         if (StreamProcessorDataHolder.getNodeInfo() != null) {
             StreamProcessorDataHolder.getNodeInfo().setLastPersistedTimestamp(System.currentTimeMillis());
         }
-        log.info("siddhi Apps are persisted successfully");
     }
 
-
     private EventSyncConnection getTCPConnection() {
-        deploymentConfig = StreamProcessorDataHolder.getDeploymentConfig();
         GenericKeyedObjectPool tcpConnectionPool = EventSyncConnectionPoolManager.getConnectionPool();
         EventSyncConnection eventSyncConnection = null;
         try {
@@ -141,6 +147,7 @@ public class PersistenceManager implements Runnable {
     private void sendControlMessageToPassiveNode(String[] siddhiRevisionArray) {
         try {
             String siddhiAppRevisions = Arrays.toString(siddhiRevisionArray);
+            EventSyncConnection eventSyncConnection = getTCPConnection();
             if (eventSyncConnection != null) {
                 eventSyncConnection.send(HAConstants.CHANNEL_ID_CONTROL_MESSAGE,
                         siddhiAppRevisions.getBytes(HAConstants.DEFAULT_CHARSET));
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wso2.carbon.stream.processor.core.internal.SiddhiAppData;
+import org.wso2.carbon.stream.processor.core.internal.StreamProcessorDataHolder;
+import org.wso2.carbon.stream.processor.core.persistence.beans.PersistenceConfigurations;
+import org.wso2.carbon.stream.processor.core.persistence.util.PersistenceConstants;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.query.api.annotation.Element;
+import org.wso2.siddhi.query.api.util.AnnotationHelper;
+import org.wso2.siddhi.query.compiler.SiddhiCompiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Schedules the periodic persistence of each Siddhi Application on a bounded pool of threads.
+ * <p>
+ * Every app is persisted at its own interval, taken from the {@code siddhiAppIntervalsInMin} deployment config, the
+ * {@code @App:persistence(intervalInMin='...')} annotation of the app or the global {@code intervalInMin}, in that
+ * order. An interval of zero disables the periodic persistence of the app. The snapshots of an app are placed at a
+ * fixed phase of its interval derived from the app name, which spreads the snapshots of different apps across the
+ * interval instead of persisting all of them at the same instant.
+ */
+public class PersistenceScheduler implements Runnable {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceScheduler.class);
+    private static final long SYNC_INTERVAL_MILLIS = 5000;
+
+    private final PersistenceConfigurations persistenceConfigurations;
+    private final LongSupplier clock;
+    private final PersistenceManager persistenceManager = new PersistenceManager();
+    private final Map<String, AppSchedule> appSchedules = new HashMap<>();
+    private ScheduledThreadPoolExecutor scheduledExecutorService;
+
+    public PersistenceScheduler(PersistenceConfigurations persistenceConfigurations) {
+        this(persistenceConfigurations, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a scheduler which places the snapshots of the apps within their intervals by the given clock.
+     *
+     * @param persistenceConfigurations persistence configurations
+     * @param clock                     wall clock time in milliseconds
+     */
+    public PersistenceScheduler(PersistenceConfigurations persistenceConfigurations, LongSupplier clock) {
+        this.persistenceConfigurations = persistenceConfigurations;
+        this.clock = clock;
+    }
+
+    public synchronized void start() {
+        if (scheduledExecutorService == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            scheduledExecutorService = new ScheduledThreadPoolExecutor(
+                    Math.max(1, persistenceConfigurations.getThreadPoolSize()), runnable -> {
+                        Thread thread = new Thread(runnable, "PersistenceScheduler-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            scheduledExecutorService.setRemoveOnCancelPolicy(true);
+            scheduledExecutorService.scheduleWithFixedDelay(this, 0, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdown();
+            scheduledExecutorService = null;
+            appSchedules.clear();
+        }
+    }
+
+    /**
+     * Brings the schedules in line with the deployed Siddhi Applications.
+     */
+    @Override
+    public void run() {
+        try {
+            syncAppSchedules();
+        } catch (Throwable e) {
+            // an exception would stop the periodic execution
+            log.error("Error in scheduling the persistence of Siddhi Applications. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Persists all deployed Siddhi Applications in parallel and waits until they are persisted.
+     */
+    public void persistAll() {
+        List<Future<?>> futures = new ArrayList<>();
+        synchronized (this) {
+            if (scheduledExecutorService == null) {
+                return;
+            }
+            syncAppSchedules();
+            for (AppSchedule appSchedule : appSchedules.values()) {
+                futures.add(scheduledExecutorService.submit(appSchedule));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("Error in persisting Siddhi Application. " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while persisting Siddhi Applications");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the time of the next periodic snapshot of a Siddhi Application.
+     *
+     * @param siddhiAppName name of the Siddhi Application
+     * @return time of the next snapshot, or -1 if the app is not persisted periodically
+     */
+    public synchronized long getNextPersistenceTime(String siddhiAppName) {
+        syncAppSchedules();
+        AppSchedule appSchedule = appSchedules.get(siddhiAppName);
+        if (appSchedule == null || appSchedule.intervalInMillis <= 0) {
+            return -1;
+        }
+        long elapsedIntervals = Math.floorDiv(clock.getAsLong() - appSchedule.firstPersistenceTime,
+                appSchedule.intervalInMillis) + 1;
+        return appSchedule.firstPersistenceTime + Math.max(0, elapsedIntervals) * appSchedule.intervalInMillis;
+    }
+
+    private synchronized void syncAppSchedules() {
+        if (scheduledExecutorService == null) {
+            return;
+        }
+        Map<String, SiddhiAppRuntime> siddhiAppRuntimeMap = StreamProcessorDataHolder.getSiddhiManager()
+                .getSiddhiAppRuntimeMap();
+        for (Iterator<AppSchedule> iterator = appSchedules.values().iterator(); iterator.hasNext(); ) {
+            AppSchedule appSchedule = iterator.next();
+            if (siddhiAppRuntimeMap.get(appSchedule.siddhiAppName) != appSchedule.siddhiAppRuntime) {
+                // undeployed or redeployed
+                appSchedule.cancel();
+                iterator.remove();
+            }
+        }
+        long currentTime = clock.getAsLong();
+        siddhiAppRuntimeMap.forEach((siddhiAppName, siddhiAppRuntime) -> {
+            if (!appSchedules.containsKey(siddhiAppName)) {
+                long intervalInMillis = TimeUnit.MINUTES.toMillis(getIntervalInMin(siddhiAppName));
+                AppSchedule appSchedule = new AppSchedule(siddhiAppName, siddhiAppRuntime, intervalInMillis);
+                if (intervalInMillis > 0) {
+                    long initialDelay = Math.floorMod(getPhase(siddhiAppName, intervalInMillis) - currentTime,
+                            intervalInMillis);
+                    appSchedule.firstPersistenceTime = currentTime + initialDelay;
+                    appSchedule.scheduledFuture = scheduledExecutorService.scheduleAtFixedRate(appSchedule,
+                            initialDelay, intervalInMillis, TimeUnit.MILLISECONDS);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Persistence of Siddhi App " + siddhiAppName + " scheduled every " +
+                                intervalInMillis + " ms, starting in " + initialDelay + " ms");
+                    }
+                }
+                appSchedules.put(siddhiAppName, appSchedule);
+            }
+        });
+    }
+
+    private int getIntervalInMin(String siddhiAppName) {
+        Map<String, Integer> siddhiAppIntervals = persistenceConfigurations.getSiddhiAppIntervalsInMin();
+        if (siddhiAppIntervals != null && siddhiAppIntervals.get(siddhiAppName) != null) {
+            return siddhiAppIntervals.get(siddhiAppName);
+        }
+        SiddhiAppData siddhiAppData = StreamProcessorDataHolder.getStreamProcessorService().getSiddhiAppMap()
+                .get(siddhiAppName);
+        if (siddhiAppData != null && siddhiAppData.getSiddhiApp() != null) {
+            try {
+                Element intervalElement = AnnotationHelper.getAnnotationElement(
+                        PersistenceConstants.ANNOTATION_PERSISTENCE,
+                        PersistenceConstants.ANNOTATION_ELEMENT_INTERVAL_IN_MIN,
+                        SiddhiCompiler.parse(siddhiAppData.getSiddhiApp()).getAnnotations());
+                if (intervalElement != null) {
+                    return Integer.parseInt(intervalElement.getValue().trim());
+                }
+            } catch (Throwable e) {
+                log.error("Invalid persistence interval given for Siddhi App " + siddhiAppName + ". The default " +
+                        "interval of " + persistenceConfigurations.getIntervalInMin() + " min will be used.", e);
+            }
+        }
+        return persistenceConfigurations.getIntervalInMin();
+    }
+
+    /**
+     * Returns the offset of the snapshots of an app within its interval, which is spread evenly across apps and
+     * stays the same across restarts.
+     */
+    private static long getPhase(String siddhiAppName, long intervalInMillis) {
+        int hash = siddhiAppName.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod((long) hash, intervalInMillis);
+    }
+
+    /**
+     * Persistence task of a single Siddhi Application. Runs of the same app never overlap.
+     */
+    private class AppSchedule implements Runnable {
+        private final String siddhiAppName;
+        private final SiddhiAppRuntime siddhiAppRuntime;
+        private final long intervalInMillis;
+        private long firstPersistenceTime;
+        private ScheduledFuture<?> scheduledFuture;
+
+        private AppSchedule(String siddhiAppName, SiddhiAppRuntime siddhiAppRuntime, long intervalInMillis) {
+            this.siddhiAppName = siddhiAppName;
+            this.siddhiAppRuntime = siddhiAppRuntime;
+            this.intervalInMillis = intervalInMillis;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                try {
+                    persistenceManager.persist(siddhiAppName, siddhiAppRuntime);
+                } catch (Throwable e) {
+                    // an exception would stop the periodic execution
+                    log.error("Error in persisting Siddhi App " + siddhiAppName + ". " + e.getMessage(), e);
+                }
+            }
+        }
+
+        private void cancel() {
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+        }
+    }
+}
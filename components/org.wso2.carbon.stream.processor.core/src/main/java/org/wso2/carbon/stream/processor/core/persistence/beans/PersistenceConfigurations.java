@@ -21,6 +21,9 @@ package org.wso2.carbon.stream.processor.core.persistence.beans;
 import org.wso2.carbon.config.annotation.Configuration;
 import org.wso2.carbon.stream.processor.core.persistence.FileSystemPersistenceStore;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration(namespace = "state.persistence", description = "Query configurations for state persistence")
 public class PersistenceConfigurations {
     private boolean enabled = false;
@@ -28,6 +31,8 @@ public class PersistenceConfigurations {
     private int revisionsToKeep = 3;
     private String persistenceStore = FileSystemPersistenceStore.class.getName();
     private PersistenceStoreConfigs config;
+    private int threadPoolSize = 4;
+    private Map<String, Integer> siddhiAppIntervalsInMin = new HashMap<>();
 
     public boolean isEnabled() {
         return enabled;
@@ -68,4 +73,20 @@ public class PersistenceConfigurations {
     public void setConfig(PersistenceStoreConfigs config) {
         this.config = config;
     }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public Map<String, Integer> getSiddhiAppIntervalsInMin() {
+        return siddhiAppIntervalsInMin;
+    }
+
+    public void setSiddhiAppIntervalsInMin(Map<String, Integer> siddhiAppIntervalsInMin) {
+        this.siddhiAppIntervalsInMin = siddhiAppIntervalsInMin;
+    }
 }
@@ -26,6 +26,8 @@ public class PersistenceConstants {
     public static final String STATE_PERSISTENCE_NS = "state.persistence";
     public static final String STATE_PERSISTENCE_REVISIONS_TO_KEEP = "revisionsToKeep";
     public static final String STATE_PERSISTENCE_CONFIGS = "config";
+    public static final String ANNOTATION_PERSISTENCE = "persistence";
+    public static final String ANNOTATION_ELEMENT_INTERVAL_IN_MIN = "intervalInMin";
     public static final String DEFAULT_FILE_PERSISTENCE_FOLDER = "siddhi-app-persistence";
     public static final String REVISION_SEPARATOR = "__";
     public static final String DEFAULT_DB_PERSISTENCE_DATASOURCE = "WSO2_CARBON_DB";
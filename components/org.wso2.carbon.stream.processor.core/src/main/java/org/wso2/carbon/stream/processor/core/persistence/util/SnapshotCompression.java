@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.persistence.util;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Codecs used to compress snapshots while they are streamed to the persistence store. Data is compressed in chunks
+ * of {@link #CHUNK_SIZE} bytes, so neither side needs a second buffer holding the whole compressed snapshot.
+ */
+public enum SnapshotCompression {
+
+    NONE((byte) 0) {
+        @Override
+        public void compress(byte[] data, OutputStream out) throws IOException {
+            out.write(data);
+        }
+
+        @Override
+        public void decompress(InputStream in, byte[] target) throws IOException {
+            new DataInputStream(in).readFully(target);
+        }
+    },
+    DEFLATE((byte) 1) {
+        @Override
+        public void compress(byte[] data, OutputStream out) throws IOException {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(out, deflater, CHUNK_SIZE);
+                deflaterOutputStream.write(data);
+                deflaterOutputStream.finish();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public void decompress(InputStream in, byte[] target) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                new DataInputStream(new InflaterInputStream(in, inflater, CHUNK_SIZE)).readFully(target);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+    LZ4((byte) 2) {
+        @Override
+        public void compress(byte[] data, OutputStream out) throws IOException {
+            LZ4BlockOutputStream lz4OutputStream = new LZ4BlockOutputStream(out, CHUNK_SIZE,
+                    LZ4Factory.fastestJavaInstance().fastCompressor());
+            lz4OutputStream.write(data);
+            lz4OutputStream.finish();
+        }
+
+        @Override
+        public void decompress(InputStream in, byte[] target) throws IOException {
+            new DataInputStream(new LZ4BlockInputStream(in, LZ4Factory.fastestJavaInstance().fastDecompressor()))
+                    .readFully(target);
+        }
+    };
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private final byte id;
+
+    SnapshotCompression(byte id) {
+        this.id = id;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Compresses the data into the given stream without closing it.
+     */
+    public abstract void compress(byte[] data, OutputStream out) throws IOException;
+
+    /**
+     * Fills the target array with the data decompressed from the given stream.
+     */
+    public abstract void decompress(InputStream in, byte[] target) throws IOException;
+
+    public static SnapshotCompression fromId(byte id) {
+        for (SnapshotCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
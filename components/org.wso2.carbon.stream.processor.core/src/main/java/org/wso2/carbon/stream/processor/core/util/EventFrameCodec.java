@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.util;
+
+import org.wso2.carbon.stream.processor.core.ha.exception.InvalidByteMessageException;
+import org.wso2.siddhi.core.event.Event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versioned binary codec used to sync events from the active node to the passive node.
+ * <p>
+ * A frame is made of blocks, one per {@link HAEventSchema}. The schema (Siddhi app name, source handler element id
+ * and attribute types) is written once at the start of each block and every event in the block only carries its
+ * sequence id, timestamp, a null bitmap and the typed attribute values:
+ * <pre>
+ * frame  : version(byte) blockCount(int) block*
+ * block  : schemaId(int) headerLength(int) header(byte[]) eventCount(int) event*
+ * event  : sequenceId(long) timestamp(long) nullBitmap(byte[(attributeCount + 7) / 8]) value*
+ * </pre>
+ * The whole frame is sized up front and written into a single buffer. The decoding side caches parsed schemas by
+ * id so that the header of a known schema is only compared, not parsed, for each block.
+ */
+public class EventFrameCodec {
+
+    public static final byte VERSION = 1;
+
+    private final Map<Integer, HAEventSchema> schemaCache = new ConcurrentHashMap<>();
+
+    /**
+     * Callback receiving the events decoded from a frame, in the order they were encoded.
+     */
+    public interface EventFrameConsumer {
+        void onEvent(HAEventSchema schema, long sequenceId, Event event);
+    }
+
+    /**
+     * Callback receiving the raw blocks of a frame along with the range of sequence ids each block holds.
+     */
+    public interface EventBlockVisitor {
+        void onBlock(HAEventSchema schema, long minSequenceId, long maxSequenceId, ByteBuffer block);
+    }
+
+    /**
+     * Events of a single schema that are encoded together as one block of a frame.
+     */
+    public static class EventBlock {
+        private final HAEventSchema schema;
+        private final long[] sequenceIds;
+        private final Event[] events;
+        private final int size;
+
+        public EventBlock(HAEventSchema schema, long[] sequenceIds, Event[] events, int size) {
+            this.schema = schema;
+            this.sequenceIds = sequenceIds;
+            this.events = events;
+            this.size = size;
+        }
+
+        public HAEventSchema getSchema() {
+            return schema;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    public static ByteBuffer encode(HAEventSchema schema, long[] sequenceIds, Event[] events) {
+        return encode(Collections.singletonList(new EventBlock(schema, sequenceIds, events, events.length)));
+    }
+
+    public static ByteBuffer encode(List<EventBlock> blocks) {
+        int frameSize = 1 + 4;
+        for (int i = 0; i < blocks.size(); i++) {
+            frameSize += getBlockSize(blocks.get(i));
+        }
+        ByteBuffer frame = ByteBuffer.allocate(frameSize);
+        frame.put(VERSION);
+        frame.putInt(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            writeBlock(blocks.get(i), frame);
+        }
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Decodes a frame produced by {@link #encode(List)} and hands every event to the given consumer.
+     */
+    public void decode(ByteBuffer frame, EventFrameConsumer consumer) {
+        int blockCount = readFrameHeader(frame);
+        for (int i = 0; i < blockCount; i++) {
+            decodeBlock(frame, consumer);
+        }
+    }
+
+    /**
+     * Walks the blocks of a frame without creating events, so that the raw blocks can be stored and decoded later
+     * with {@link #decodeBlock(ByteBuffer, EventFrameConsumer)}.
+     */
+    public void scan(ByteBuffer frame, EventBlockVisitor visitor) {
+        int blockCount = readFrameHeader(frame);
+        for (int i = 0; i < blockCount; i++) {
+            int blockStart = frame.position();
+            HAEventSchema schema = readSchema(frame);
+            int attributeCount = schema.getAttributeCount();
+            int nullBitmapLength = (attributeCount + 7) >>> 3;
+            int eventCount = frame.getInt();
+            long minSequenceId = Long.MAX_VALUE;
+            long maxSequenceId = Long.MIN_VALUE;
+            for (int j = 0; j < eventCount; j++) {
+                long sequenceId = frame.getLong();
+                minSequenceId = Math.min(minSequenceId, sequenceId);
+                maxSequenceId = Math.max(maxSequenceId, sequenceId);
+                frame.position(frame.position() + 8);
+                skipData(frame, schema, attributeCount, nullBitmapLength);
+            }
+            ByteBuffer block = frame.duplicate();
+            block.position(blockStart);
+            block.limit(frame.position());
+            visitor.onBlock(schema, minSequenceId, maxSequenceId, block.slice());
+        }
+    }
+
+    /**
+     * Decodes a single block, positioned at its schema id, and hands every event to the given consumer.
+     */
+    public void decodeBlock(ByteBuffer block, EventFrameConsumer consumer) {
+        HAEventSchema schema = readSchema(block);
+        int attributeCount = schema.getAttributeCount();
+        int nullBitmapLength = (attributeCount + 7) >>> 3;
+        int eventCount = block.getInt();
+        for (int j = 0; j < eventCount; j++) {
+            long sequenceId = block.getLong();
+            Event event = new Event(block.getLong(), readData(block, schema, attributeCount, nullBitmapLength));
+            consumer.onEvent(schema, sequenceId, event);
+        }
+    }
+
+    private static int readFrameHeader(ByteBuffer frame) {
+        byte version = frame.get();
+        if (version != VERSION) {
+            throw new InvalidByteMessageException("Unsupported event frame version " + version + ", expected "
+                    + VERSION);
+        }
+        return frame.getInt();
+    }
+
+    private static int getBlockSize(EventBlock block) {
+        HAEventSchema schema = block.schema;
+        int attributeCount = schema.getAttributeCount();
+        int blockSize = 4 + 4 + schema.getHeader().length + 4;
+        int fixedEventSize = 8 + 8 + ((attributeCount + 7) >>> 3);
+        for (int i = 0; i < block.size; i++) {
+            blockSize += fixedEventSize;
+            Object[] data = block.events[i].getData();
+            for (int j = 0; j < attributeCount; j++) {
+                Object value = data[j];
+                if (value != null) {
+                    blockSize += getValueSize(schema.getTypeCode(j), value);
+                }
+            }
+        }
+        return blockSize;
+    }
+
+    private static int getValueSize(byte typeCode, Object value) {
+        switch (typeCode) {
+            case HAEventSchema.TYPE_STRING:
+                return 4 + utf8Length((String) value);
+            case HAEventSchema.TYPE_INT:
+            case HAEventSchema.TYPE_FLOAT:
+                return 4;
+            case HAEventSchema.TYPE_LONG:
+            case HAEventSchema.TYPE_DOUBLE:
+                return 8;
+            case HAEventSchema.TYPE_BOOL:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private static void writeBlock(EventBlock block, ByteBuffer frame) {
+        HAEventSchema schema = block.schema;
+        byte[] header = schema.getHeader();
+        int attributeCount = schema.getAttributeCount();
+        int nullBitmapLength = (attributeCount + 7) >>> 3;
+        frame.putInt(schema.getSchemaId());
+        frame.putInt(header.length);
+        frame.put(header);
+        frame.putInt(block.size);
+        for (int i = 0; i < block.size; i++) {
+            Event event = block.events[i];
+            Object[] data = event.getData();
+            frame.putLong(block.sequenceIds[i]);
+            frame.putLong(event.getTimestamp());
+            writeNullBitmap(data, schema, nullBitmapLength, frame);
+            for (int j = 0; j < attributeCount; j++) {
+                Object value = data[j];
+                if (value != null) {
+                    writeValue(schema.getTypeCode(j), value, frame);
+                }
+            }
+        }
+    }
+
+    private static void writeNullBitmap(Object[] data, HAEventSchema schema, int nullBitmapLength,
+                                        ByteBuffer frame) {
+        int attributeCount = schema.getAttributeCount();
+        for (int i = 0; i < nullBitmapLength; i++) {
+            int bits = 0;
+            int limit = Math.min(8, attributeCount - (i << 3));
+            for (int j = 0; j < limit; j++) {
+                int index = (i << 3) + j;
+                if (data[index] == null || schema.getTypeCode(index) == HAEventSchema.TYPE_OBJECT) {
+                    bits |= 1 << j;
+                }
+            }
+            frame.put((byte) bits);
+        }
+    }
+
+    private static void writeValue(byte typeCode, Object value, ByteBuffer frame) {
+        switch (typeCode) {
+            case HAEventSchema.TYPE_STRING:
+                String stringValue = (String) value;
+                frame.putInt(utf8Length(stringValue));
+                writeUtf8(stringValue, frame);
+                break;
+            case HAEventSchema.TYPE_INT:
+                frame.putInt(((Number) value).intValue());
+                break;
+            case HAEventSchema.TYPE_LONG:
+                frame.putLong(((Number) value).longValue());
+                break;
+            case HAEventSchema.TYPE_FLOAT:
+                frame.putFloat(((Number) value).floatValue());
+                break;
+            case HAEventSchema.TYPE_DOUBLE:
+                frame.putDouble(((Number) value).doubleValue());
+                break;
+            case HAEventSchema.TYPE_BOOL:
+                frame.put((byte) (((Boolean) value) ? 1 : 0));
+                break;
+            default:
+                // Objects are not synced, they are marked as null in the bitmap
+        }
+    }
+
+    private HAEventSchema readSchema(ByteBuffer frame) {
+        int schemaId = frame.getInt();
+        int headerLength = frame.getInt();
+        int headerStart = frame.position();
+        HAEventSchema schema = schemaCache.get(schemaId);
+        if (schema == null || !headerMatches(schema.getHeader(), frame, headerStart, headerLength)) {
+            ByteBuffer headerBuffer = frame.duplicate();
+            headerBuffer.limit(headerStart + headerLength);
+            schema = HAEventSchema.fromHeader(schemaId, headerBuffer);
+            schemaCache.put(schemaId, schema);
+        }
+        frame.position(headerStart + headerLength);
+        return schema;
+    }
+
+    private static boolean headerMatches(byte[] header, ByteBuffer frame, int offset, int length) {
+        if (header.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (header[i] != frame.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object[] readData(ByteBuffer frame, HAEventSchema schema, int attributeCount,
+                                     int nullBitmapLength) {
+        Object[] data = new Object[attributeCount];
+        int bitmapStart = frame.position();
+        frame.position(bitmapStart + nullBitmapLength);
+        for (int i = 0; i < attributeCount; i++) {
+            if ((frame.get(bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                continue;
+            }
+            switch (schema.getTypeCode(i)) {
+                case HAEventSchema.TYPE_STRING:
+                    data[i] = readUtf8(frame, frame.getInt());
+                    break;
+                case HAEventSchema.TYPE_INT:
+                    data[i] = frame.getInt();
+                    break;
+                case HAEventSchema.TYPE_LONG:
+                    data[i] = frame.getLong();
+                    break;
+                case HAEventSchema.TYPE_FLOAT:
+                    data[i] = frame.getFloat();
+                    break;
+                case HAEventSchema.TYPE_DOUBLE:
+                    data[i] = frame.getDouble();
+                    break;
+                case HAEventSchema.TYPE_BOOL:
+                    data[i] = frame.get() == 1;
+                    break;
+                default:
+                    // will not occur, objects are always marked as null
+            }
+        }
+        return data;
+    }
+
+    private static void skipData(ByteBuffer frame, HAEventSchema schema, int attributeCount, int nullBitmapLength) {
+        int bitmapStart = frame.position();
+        int position = bitmapStart + nullBitmapLength;
+        for (int i = 0; i < attributeCount; i++) {
+            if ((frame.get(bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0) {
+                continue;
+            }
+            switch (schema.getTypeCode(i)) {
+                case HAEventSchema.TYPE_STRING:
+                    position += 4 + frame.getInt(position);
+                    break;
+                case HAEventSchema.TYPE_INT:
+                case HAEventSchema.TYPE_FLOAT:
+                    position += 4;
+                    break;
+                case HAEventSchema.TYPE_LONG:
+                case HAEventSchema.TYPE_DOUBLE:
+                    position += 8;
+                    break;
+                case HAEventSchema.TYPE_BOOL:
+                    position += 1;
+                    break;
+                default:
+                    // will not occur, objects are always marked as null
+            }
+        }
+        frame.position(position);
+    }
+
+    static String readUtf8(ByteBuffer buffer, int length) {
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Computes the number of bytes {@link #writeUtf8(String, ByteBuffer)} writes for the given string, so that the
+     * frame can be sized without encoding each string twice. Unpaired surrogates are written as '?' the same way
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     */
+    static int utf8Length(String value) {
+        int length = value.length();
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                utf8Length += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                utf8Length += 2;
+            }
+        }
+        return utf8Length;
+    }
+
+    private static void writeUtf8(String value, ByteBuffer buffer) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
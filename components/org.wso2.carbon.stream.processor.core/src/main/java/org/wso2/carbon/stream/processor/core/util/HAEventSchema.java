@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied. See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.util;
+
+import org.wso2.siddhi.query.api.definition.Attribute;
+import org.wso2.siddhi.query.api.definition.StreamDefinition;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Describes the events of a single HA source handler (Siddhi app name, source handler element id and attribute
+ * types) so that {@link EventFrameCodec} can ship that information once per frame block instead of once per event.
+ */
+public final class HAEventSchema {
+
+    static final byte TYPE_STRING = 0;
+    static final byte TYPE_INT = 1;
+    static final byte TYPE_LONG = 2;
+    static final byte TYPE_FLOAT = 3;
+    static final byte TYPE_DOUBLE = 4;
+    static final byte TYPE_BOOL = 5;
+    static final byte TYPE_OBJECT = 6;
+
+    private static final AtomicInteger schemaIdGenerator = new AtomicInteger();
+
+    private final int schemaId;
+    private final String siddhiAppName;
+    private final String sourceHandlerElementId;
+    private final Attribute.Type[] attributeTypes;
+    private final byte[] typeCodes;
+    private final byte[] header;
+
+    public HAEventSchema(String siddhiAppName, String sourceHandlerElementId, StreamDefinition streamDefinition) {
+        this(schemaIdGenerator.incrementAndGet(), siddhiAppName, sourceHandlerElementId,
+                toAttributeTypes(streamDefinition));
+    }
+
+    public HAEventSchema(String siddhiAppName, String sourceHandlerElementId, Attribute.Type[] attributeTypes) {
+        this(schemaIdGenerator.incrementAndGet(), siddhiAppName, sourceHandlerElementId, attributeTypes);
+    }
+
+    HAEventSchema(int schemaId, String siddhiAppName, String sourceHandlerElementId,
+                  Attribute.Type[] attributeTypes) {
+        this.schemaId = schemaId;
+        this.siddhiAppName = siddhiAppName;
+        this.sourceHandlerElementId = sourceHandlerElementId;
+        this.attributeTypes = attributeTypes.clone();
+        this.typeCodes = new byte[attributeTypes.length];
+        for (int i = 0; i < attributeTypes.length; i++) {
+            typeCodes[i] = toTypeCode(attributeTypes[i]);
+        }
+        this.header = encodeHeader();
+    }
+
+    public int getSchemaId() {
+        return schemaId;
+    }
+
+    public String getSiddhiAppName() {
+        return siddhiAppName;
+    }
+
+    public String getSourceHandlerElementId() {
+        return sourceHandlerElementId;
+    }
+
+    public Attribute.Type[] getAttributeTypes() {
+        return attributeTypes.clone();
+    }
+
+    int getAttributeCount() {
+        return typeCodes.length;
+    }
+
+    byte getTypeCode(int index) {
+        return typeCodes[index];
+    }
+
+    /**
+     * @return the pre-encoded schema body (app name, source handler id and attribute type codes). Callers must not
+     * modify the returned array.
+     */
+    byte[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Rebuilds a schema from a header previously produced by {@link #getHeader()}.
+     */
+    static HAEventSchema fromHeader(int schemaId, ByteBuffer headerBuffer) {
+        String siddhiAppName = readString(headerBuffer);
+        String sourceHandlerElementId = readString(headerBuffer);
+        int attributeCount = headerBuffer.getInt();
+        Attribute.Type[] attributeTypes = new Attribute.Type[attributeCount];
+        for (int i = 0; i < attributeCount; i++) {
+            attributeTypes[i] = toAttributeType(headerBuffer.get());
+        }
+        return new HAEventSchema(schemaId, siddhiAppName, sourceHandlerElementId, attributeTypes);
+    }
+
+    private byte[] encodeHeader() {
+        byte[] appNameBytes = siddhiAppName.getBytes(StandardCharsets.UTF_8);
+        byte[] elementIdBytes = sourceHandlerElementId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer headerBuffer = ByteBuffer.allocate(4 + appNameBytes.length + 4 + elementIdBytes.length + 4
+                + typeCodes.length);
+        headerBuffer.putInt(appNameBytes.length);
+        headerBuffer.put(appNameBytes);
+        headerBuffer.putInt(elementIdBytes.length);
+        headerBuffer.put(elementIdBytes);
+        headerBuffer.putInt(typeCodes.length);
+        headerBuffer.put(typeCodes);
+        return headerBuffer.array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return EventFrameCodec.readUtf8(buffer, buffer.getInt());
+    }
+
+    private static Attribute.Type[] toAttributeTypes(StreamDefinition streamDefinition) {
+        List<Attribute> attributeList = streamDefinition.getAttributeList();
+        Attribute.Type[] attributeTypes = new Attribute.Type[attributeList.size()];
+        for (int i = 0; i < attributeTypes.length; i++) {
+            attributeTypes[i] = attributeList.get(i).getType();
+        }
+        return attributeTypes;
+    }
+
+    private static byte toTypeCode(Attribute.Type type) {
+        switch (type) {
+            case STRING:
+                return TYPE_STRING;
+            case INT:
+                return TYPE_INT;
+            case LONG:
+                return TYPE_LONG;
+            case FLOAT:
+                return TYPE_FLOAT;
+            case DOUBLE:
+                return TYPE_DOUBLE;
+            case BOOL:
+                return TYPE_BOOL;
+            default:
+                return TYPE_OBJECT;
+        }
+    }
+
+    private static Attribute.Type toAttributeType(byte typeCode) {
+        switch (typeCode) {
+            case TYPE_STRING:
+                return Attribute.Type.STRING;
+            case TYPE_INT:
+                return Attribute.Type.INT;
+            case TYPE_LONG:
+                return Attribute.Type.LONG;
+            case TYPE_FLOAT:
+                return Attribute.Type.FLOAT;
+            case TYPE_DOUBLE:
+                return Attribute.Type.DOUBLE;
+            case TYPE_BOOL:
+                return Attribute.Type.BOOL;
+            default:
+                return Attribute.Type.OBJECT;
+        }
+    }
+}
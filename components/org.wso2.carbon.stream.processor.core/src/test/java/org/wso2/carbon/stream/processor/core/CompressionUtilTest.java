@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.ha.util.CompressionUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+public class CompressionUtilTest {
+
+    private static byte[] snapshot(int size) {
+        byte[] snapshot = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = (byte) random.nextInt(16);
+        }
+        return snapshot;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int len;
+        while ((len = inputStream.read(buffer)) > 0) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testStreamedCompressionMatchesGZIPFormat() throws IOException {
+        for (int size : new int[]{0, 1, 70000, 300000}) {
+            byte[] snapshot = snapshot(size);
+            byte[] compressedSnapshot;
+            try (InputStream inputStream = CompressionUtil.compressingGZIPStream(snapshot)) {
+                compressedSnapshot = readFully(inputStream);
+            }
+            Assert.assertEquals(CompressionUtil.readGZIPUncompressedSize(compressedSnapshot), size);
+            Assert.assertEquals(CompressionUtil.decompressGZIP(compressedSnapshot), snapshot);
+        }
+    }
+
+    @Test
+    public void testStreamedDecompression() throws IOException {
+        byte[] snapshot = snapshot(200000);
+        byte[] compressedSnapshot = CompressionUtil.compressGZIP(snapshot);
+        Assert.assertEquals(CompressionUtil.decompressGZIP(new ByteArrayInputStream(compressedSnapshot), -1),
+                snapshot);
+        Assert.assertEquals(CompressionUtil.decompressGZIP(new ByteArrayInputStream(compressedSnapshot),
+                snapshot.length), snapshot);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testWrongUncompressedSize() throws IOException {
+        byte[] compressedSnapshot = CompressionUtil.compressGZIP(snapshot(1000));
+        CompressionUtil.decompressGZIP(new ByteArrayInputStream(compressedSnapshot), 999);
+    }
+}
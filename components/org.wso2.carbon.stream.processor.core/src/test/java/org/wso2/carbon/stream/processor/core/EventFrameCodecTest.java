@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.ha.exception.InvalidByteMessageException;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+import org.wso2.carbon.stream.processor.core.util.HAEventSchema;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EventFrameCodecTest {
+
+    private static final Attribute.Type[] TYPES = {Attribute.Type.STRING, Attribute.Type.INT, Attribute.Type.LONG,
+            Attribute.Type.FLOAT, Attribute.Type.DOUBLE, Attribute.Type.BOOL, Attribute.Type.OBJECT};
+
+    @Test
+    public void testRoundTrip() {
+        HAEventSchema schema = new HAEventSchema("TestApp", "source-1", TYPES);
+        Event[] events = {
+                new Event(1L, new Object[]{"WSO2", 10, 100L, 1.5f, 2.5d, true, new Object()}),
+                new Event(2L, new Object[]{"\u00e9v\u00e9nement \uD83D\uDE00", -1, Long.MAX_VALUE, 0f, -0.5d, false,
+                        null}),
+                new Event(3L, new Object[]{null, null, null, null, null, null, null})
+        };
+        ByteBuffer frame = EventFrameCodec.encode(schema, new long[]{7L, 8L, 9L}, events);
+        Assert.assertEquals(frame.remaining(), frame.capacity(), "Frame buffer should be sized exactly");
+
+        List<Object[]> decoded = new ArrayList<>();
+        new EventFrameCodec().decode(frame, (decodedSchema, sequenceId, event) -> {
+            Assert.assertEquals(decodedSchema.getSiddhiAppName(), "TestApp");
+            Assert.assertEquals(decodedSchema.getSourceHandlerElementId(), "source-1");
+            Assert.assertEquals(decodedSchema.getAttributeTypes(), TYPES);
+            decoded.add(new Object[]{sequenceId, event});
+        });
+
+        Assert.assertEquals(decoded.size(), 3);
+        for (int i = 0; i < events.length; i++) {
+            Event event = (Event) decoded.get(i)[1];
+            Assert.assertEquals(decoded.get(i)[0], 7L + i);
+            Assert.assertEquals(event.getTimestamp(), events[i].getTimestamp());
+            Object[] expected = Arrays.copyOf(events[i].getData(), TYPES.length);
+            expected[6] = null;
+            Assert.assertEquals(event.getData(), expected);
+        }
+    }
+
+    @Test
+    public void testMultipleBlocksAndSchemaReuse() {
+        HAEventSchema schemaOne = new HAEventSchema("AppOne", "source-1",
+                new Attribute.Type[]{Attribute.Type.STRING});
+        HAEventSchema schemaTwo = new HAEventSchema("AppTwo", "source-2",
+                new Attribute.Type[]{Attribute.Type.LONG, Attribute.Type.INT});
+        List<EventFrameCodec.EventBlock> blocks = new ArrayList<>();
+        blocks.add(new EventFrameCodec.EventBlock(schemaOne, new long[]{1L},
+                new Event[]{new Event(10L, new Object[]{"a"})}, 1));
+        blocks.add(new EventFrameCodec.EventBlock(schemaTwo, new long[]{2L, 3L, 0L},
+                new Event[]{new Event(20L, new Object[]{1L, 2}), new Event(30L, new Object[]{3L, 4}), null}, 2));
+
+        EventFrameCodec codec = new EventFrameCodec();
+        for (int round = 0; round < 2; round++) {
+            List<String> decoded = new ArrayList<>();
+            codec.decode(EventFrameCodec.encode(blocks), (schema, sequenceId, event) ->
+                    decoded.add(schema.getSiddhiAppName() + ":" + sequenceId + ":" + event.getTimestamp() + ":"
+                            + Arrays.toString(event.getData())));
+            Assert.assertEquals(decoded, Arrays.asList("AppOne:1:10:[a]", "AppTwo:2:20:[1, 2]",
+                    "AppTwo:3:30:[3, 4]"));
+        }
+    }
+
+    @Test(expectedExceptions = InvalidByteMessageException.class)
+    public void testUnsupportedVersion() {
+        ByteBuffer frame = ByteBuffer.allocate(5);
+        frame.put((byte) 99).putInt(0).flip();
+        new EventFrameCodec().decode(frame, (schema, sequenceId, event) -> Assert.fail());
+    }
+}
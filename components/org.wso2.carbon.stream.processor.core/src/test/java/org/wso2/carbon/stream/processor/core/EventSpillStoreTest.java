@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.event.queue.EventSpillStore;
+import org.wso2.carbon.stream.processor.core.event.queue.QueuedEvent;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+import org.wso2.carbon.stream.processor.core.util.HAEventSchema;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventSpillStoreTest {
+
+    private static final Attribute.Type[] TYPES = {Attribute.Type.STRING, Attribute.Type.LONG};
+
+    private File spillDirectory;
+    private EventSpillStore spillStore;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        spillDirectory = Files.createTempDirectory("event-spill").toFile();
+        spillStore = new EventSpillStore(spillDirectory.getAbsolutePath(), 1024);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        spillStore.close();
+        spillDirectory.delete();
+    }
+
+    private static ByteBuffer frame(HAEventSchema schema, long firstSequenceId, int count) {
+        long[] sequenceIds = new long[count];
+        Event[] events = new Event[count];
+        for (int i = 0; i < count; i++) {
+            sequenceIds[i] = firstSequenceId + i;
+            events[i] = new Event(sequenceIds[i], new Object[]{"WSO2", sequenceIds[i]});
+        }
+        return EventFrameCodec.encode(schema, sequenceIds, events);
+    }
+
+    private List<QueuedEvent> drainAll(String siddhiAppName) {
+        List<QueuedEvent> drainedEvents = new ArrayList<>();
+        List<QueuedEvent> segmentEvents;
+        while ((segmentEvents = spillStore.drainSegment(siddhiAppName)) != null) {
+            drainedEvents.addAll(segmentEvents);
+        }
+        return drainedEvents;
+    }
+
+    @Test
+    public void testSpilledEventsAreTrimmedAndDecodedPerApp() {
+        HAEventSchema schema1 = new HAEventSchema("App1", "source-1", TYPES);
+        HAEventSchema schema2 = new HAEventSchema("App2", "source-2", TYPES);
+        for (int i = 0; i < 20; i++) {
+            spillStore.append(frame(schema1, i * 10, 5));
+            spillStore.append(frame(schema2, i * 10 + 5, 5));
+        }
+        Assert.assertEquals(spillDirectory.listFiles().length > 2, true, "Frames should span several segments");
+
+        spillStore.trim("App1", 102);
+        List<QueuedEvent> app1Events = drainAll("App1");
+        Assert.assertEquals(app1Events.size(), 100 - 53);
+        long expectedSequenceId = 103;
+        for (QueuedEvent queuedEvent : app1Events) {
+            Assert.assertEquals(queuedEvent.getSequenceID(), expectedSequenceId);
+            Assert.assertEquals(queuedEvent.getSourceHandlerElementId(), "source-1");
+            Assert.assertEquals(queuedEvent.getEvent().getData()[1], expectedSequenceId);
+            expectedSequenceId += expectedSequenceId % 10 == 4 ? 6 : 1;
+        }
+        Assert.assertEquals(drainAll("App2").size(), 100);
+    }
+
+    @Test
+    public void testFramesOlderThanControlMessageAreNotSpilled() {
+        HAEventSchema schema = new HAEventSchema("App1", "source-1", TYPES);
+        spillStore.trim("App1", 100);
+        spillStore.append(frame(schema, 90, 5));
+        Assert.assertEquals(spillStore.getSpilledBytes(), 0);
+        spillStore.append(frame(schema, 98, 5));
+        Assert.assertEquals(drainAll("App1").size(), 2);
+    }
+}
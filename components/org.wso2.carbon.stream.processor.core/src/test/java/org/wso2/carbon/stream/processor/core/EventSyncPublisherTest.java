@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncConnectionPoolManager;
+import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncPublisher;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+import org.wso2.carbon.stream.processor.core.util.HAEventSchema;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.core.exception.ConnectionUnavailableException;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class EventSyncPublisherTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 20000;
+
+    @Test
+    public void testEventsFromAllProducersAreBatchedInOrder() throws Exception {
+        AtomicLong sequenceIdGenerator = new AtomicLong();
+        List<List<Long>> receivedPerProducer = new ArrayList<>();
+        AtomicInteger frameCount = new AtomicInteger();
+        AtomicInteger receivedCount = new AtomicInteger();
+        HAEventSchema[] schemas = new HAEventSchema[PRODUCERS];
+        for (int i = 0; i < PRODUCERS; i++) {
+            receivedPerProducer.add(new ArrayList<>());
+            schemas[i] = new HAEventSchema("App" + i, "source-" + i, new Attribute.Type[]{Attribute.Type.INT});
+        }
+        EventFrameCodec decoder = new EventFrameCodec();
+        EventSyncPublisher publisher = new EventSyncPublisher(1024, 100, 5) {
+            @Override
+            protected void sendFrame(ByteBuffer frame) {
+                frameCount.incrementAndGet();
+                decoder.decode(frame, (schema, sequenceId, event) -> {
+                    int producer = Integer.parseInt(schema.getSiddhiAppName().substring(3));
+                    receivedPerProducer.get(producer).add((long) (Integer) event.getData()[0]);
+                    receivedCount.incrementAndGet();
+                });
+            }
+        };
+        publisher.start();
+
+        CountDownLatch latch = new CountDownLatch(PRODUCERS);
+        for (int i = 0; i < PRODUCERS; i++) {
+            int producer = i;
+            new Thread(() -> {
+                for (int j = 0; j < EVENTS_PER_PRODUCER; j += 2) {
+                    if (j % 4 == 0) {
+                        publisher.publish(schemas[producer], sequenceIdGenerator.incrementAndGet(),
+                                new Event(j, new Object[]{j}));
+                        publisher.publish(schemas[producer], sequenceIdGenerator.incrementAndGet(),
+                                new Event(j + 1, new Object[]{j + 1}));
+                    } else {
+                        publisher.publish(schemas[producer], sequenceIdGenerator.addAndGet(2) - 1,
+                                new Event[]{new Event(j, new Object[]{j}), new Event(j + 1, new Object[]{j + 1})});
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (receivedCount.get() < PRODUCERS * EVENTS_PER_PRODUCER && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        publisher.stop();
+
+        Assert.assertEquals(receivedCount.get(), PRODUCERS * EVENTS_PER_PRODUCER);
+        Assert.assertTrue(frameCount.get() < receivedCount.get() / 10, "Events should be coalesced into frames");
+        for (List<Long> received : receivedPerProducer) {
+            for (int j = 0; j < EVENTS_PER_PRODUCER; j++) {
+                Assert.assertEquals((long) received.get(j), j);
+            }
+        }
+    }
+
+    @Test
+    public void testStopSendsAllEnqueuedEvents() throws Exception {
+        HAEventSchema schema = new HAEventSchema("App", "source", new Attribute.Type[]{Attribute.Type.INT});
+        List<Integer> received = new ArrayList<>();
+        EventFrameCodec decoder = new EventFrameCodec();
+        EventSyncPublisher publisher = new EventSyncPublisher(4096, 10, 5) {
+            @Override
+            protected void sendFrame(ByteBuffer frame) throws Exception {
+                // a slow passive node, so that most events are still in the ring buffer when the publisher stops
+                Thread.sleep(1);
+                decoder.decode(frame, (eventSchema, sequenceId, event) -> received.add((Integer) event.getData()[0]));
+            }
+        };
+        publisher.start();
+        for (int i = 0; i < 2000; i++) {
+            publisher.publish(schema, i, new Event(i, new Object[]{i}));
+        }
+        publisher.stop();
+
+        Assert.assertEquals(received.size(), 2000);
+        for (int i = 0; i < 2000; i++) {
+            Assert.assertEquals((int) received.get(i), i);
+        }
+        Assert.assertEquals(publisher.getDroppedEventCount(), 0);
+
+        publisher.publish(schema, 2000, new Event(2000, new Object[]{2000}));
+        publisher.publish(schema, 2001, new Event[]{new Event(2001, new Object[]{2001}),
+                new Event(2002, new Object[]{2002})});
+        Assert.assertEquals(publisher.getDroppedEventCount(), 3);
+        Assert.assertEquals(received.size(), 2000);
+    }
+
+    @Test
+    public void testEventsPublishedWhileStoppingAreSentOrCounted() throws Exception {
+        HAEventSchema schema = new HAEventSchema("App", "source", new Attribute.Type[]{Attribute.Type.INT});
+        AtomicInteger receivedCount = new AtomicInteger();
+        EventFrameCodec decoder = new EventFrameCodec();
+        EventSyncPublisher publisher = new EventSyncPublisher(256, 50, 1) {
+            @Override
+            protected void sendFrame(ByteBuffer frame) {
+                decoder.decode(frame, (eventSchema, sequenceId, event) -> receivedCount.incrementAndGet());
+            }
+        };
+        publisher.start();
+        AtomicInteger publishedCount = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(PRODUCERS);
+        CountDownLatch finished = new CountDownLatch(PRODUCERS);
+        for (int i = 0; i < PRODUCERS; i++) {
+            new Thread(() -> {
+                started.countDown();
+                for (int j = 0; j < EVENTS_PER_PRODUCER; j++) {
+                    publisher.publish(schema, j, new Event(j, new Object[]{j}));
+                    publishedCount.incrementAndGet();
+                }
+                finished.countDown();
+            }).start();
+        }
+        started.await();
+        while (publishedCount.get() < EVENTS_PER_PRODUCER) {
+            Thread.sleep(1);
+        }
+        publisher.stop();
+        finished.await();
+
+        Assert.assertTrue(publisher.getDroppedEventCount() > 0, "Events published after the stop should be dropped");
+        Assert.assertEquals(receivedCount.get() + publisher.getDroppedEventCount(), PRODUCERS * EVENTS_PER_PRODUCER);
+    }
+
+    @Test
+    public void testEventsOfFramesThatCannotBeSentAreDropped() throws Exception {
+        HAEventSchema schema = new HAEventSchema("App", "source", new Attribute.Type[]{Attribute.Type.INT});
+        List<Integer> received = new ArrayList<>();
+        AtomicInteger failedFrameCount = new AtomicInteger();
+        EventFrameCodec decoder = new EventFrameCodec();
+        EventSyncPublisher publisher = new EventSyncPublisher(1024, 10, 5) {
+            @Override
+            protected void sendFrame(ByteBuffer frame) throws Exception {
+                // the passive node is unreachable for the first frames
+                if (failedFrameCount.getAndIncrement() < 3) {
+                    throw new ConnectionUnavailableException("Passive node is unreachable");
+                }
+                decoder.decode(frame, (eventSchema, sequenceId, event) -> received.add((Integer) event.getData()[0]));
+            }
+        };
+        publisher.start();
+        for (int i = 0; i < 100; i++) {
+            publisher.publish(schema, i, new Event(i, new Object[]{i}));
+        }
+        publisher.stop();
+
+        Assert.assertEquals(received.size() + publisher.getDroppedEventCount(), 100);
+        Assert.assertTrue(publisher.getDroppedEventCount() > 0, "Events of the failed frames should be dropped");
+        Assert.assertEquals((int) received.get(received.size() - 1), 99);
+    }
+
+    @Test
+    public void testEventsAreDroppedWithoutAConnectionPool() {
+        if (EventSyncConnectionPoolManager.getConnectionPool() != null) {
+            throw new SkipException("Connection pool to the passive node is already initialized");
+        }
+        HAEventSchema schema = new HAEventSchema("App", "source", new Attribute.Type[]{Attribute.Type.INT});
+        EventSyncPublisher publisher = new EventSyncPublisher(256, 10, 5);
+        publisher.start();
+        for (int i = 0; i < 50; i++) {
+            publisher.publish(schema, i, new Event(i, new Object[]{i}));
+        }
+        publisher.stop();
+
+        Assert.assertEquals(publisher.getDroppedEventCount(), 50);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.persistence.IncrementalFileSystemPersistenceStore;
+import org.wso2.carbon.stream.processor.core.persistence.IndexedIncrementalFileSystemPersistenceStore;
+import org.wso2.carbon.stream.processor.core.persistence.util.SnapshotCompression;
+import org.wso2.siddhi.core.util.persistence.util.IncrementalSnapshotInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class IndexedIncrementalFileSystemPersistenceStoreTest {
+
+    private static final String SIDDHI_APP_NAME = "TestApp";
+    private static final String INDEX_FILE_NAME = "revisions.idx";
+
+    private Path persistenceDirectory;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        persistenceDirectory = Files.createTempDirectory("incremental-persistence");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(persistenceDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static IncrementalSnapshotInfo snapshotInfo(long time, IncrementalSnapshotInfo.SnapshotType type) {
+        return new IncrementalSnapshotInfo(SIDDHI_APP_NAME, "query1", "element1", time, type);
+    }
+
+    private static byte[] snapshot(int size, long seed) {
+        byte[] snapshot = new byte[size];
+        Random random = new Random(seed);
+        // half random and half repeated bytes, so that the compressing codecs have work to do
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = i % 2 == 0 ? (byte) random.nextInt() : (byte) (i % 7);
+        }
+        return snapshot;
+    }
+
+    private static List<String> revisionsOf(List<IncrementalSnapshotInfo> snapshotInfos) {
+        List<String> revisions = new ArrayList<>();
+        if (snapshotInfos != null) {
+            for (IncrementalSnapshotInfo snapshotInfo : snapshotInfos) {
+                revisions.add(snapshotInfo.getRevision());
+            }
+        }
+        return revisions;
+    }
+
+    private Path appDirectory() {
+        return persistenceDirectory.resolve(SIDDHI_APP_NAME);
+    }
+
+    @DataProvider(name = "compressions")
+    public Object[][] compressions() {
+        return new Object[][]{{SnapshotCompression.NONE}, {SnapshotCompression.DEFLATE}, {SnapshotCompression.LZ4}};
+    }
+
+    @Test(dataProvider = "compressions")
+    public void testSaveAndLoadWithEachCompression(SnapshotCompression compression) {
+        IndexedIncrementalFileSystemPersistenceStore persistenceStore =
+                new IndexedIncrementalFileSystemPersistenceStore(persistenceDirectory.toString(), compression);
+        // larger than a compression chunk, so that the snapshot is streamed in several chunks
+        byte[] baseSnapshot = snapshot(3 * SnapshotCompression.CHUNK_SIZE + 17, 1);
+        byte[] incrementSnapshot = new byte[0];
+        IncrementalSnapshotInfo baseInfo = snapshotInfo(100, IncrementalSnapshotInfo.SnapshotType.BASE);
+        IncrementalSnapshotInfo incrementInfo = snapshotInfo(200, IncrementalSnapshotInfo.SnapshotType.INCREMENT);
+        persistenceStore.save(baseInfo, baseSnapshot);
+        persistenceStore.save(incrementInfo, incrementSnapshot);
+
+        Assert.assertEquals(persistenceStore.load(baseInfo), baseSnapshot);
+        Assert.assertEquals(persistenceStore.load(incrementInfo), incrementSnapshot);
+        Assert.assertEquals(revisionsOf(persistenceStore.getListOfRevisionsToLoad(200, SIDDHI_APP_NAME)),
+                Arrays.asList(baseInfo.getRevision(), incrementInfo.getRevision()));
+        Assert.assertEquals(persistenceStore.getLastRevision(SIDDHI_APP_NAME), "200__" + SIDDHI_APP_NAME);
+        Assert.assertNull(persistenceStore.getLastRevision("UnknownApp"));
+    }
+
+    @Test
+    public void testIndexIsRebuiltFromAddedAndRemovedRevisions() throws IOException {
+        String first = snapshotInfo(100, IncrementalSnapshotInfo.SnapshotType.BASE).getRevision();
+        String second = snapshotInfo(200, IncrementalSnapshotInfo.SnapshotType.INCREMENT).getRevision();
+        String third = snapshotInfo(300, IncrementalSnapshotInfo.SnapshotType.INCREMENT).getRevision();
+        String cutShort = snapshotInfo(400, IncrementalSnapshotInfo.SnapshotType.INCREMENT).getRevision();
+        Files.createDirectories(appDirectory());
+        // the last line was cut short by a crash while it was appended
+        String index = "+" + first + "\n+" + second + "\n+" + third + "\n-" + second + "\n+" + cutShort;
+        Files.write(appDirectory().resolve(INDEX_FILE_NAME), index.getBytes(StandardCharsets.UTF_8));
+
+        IndexedIncrementalFileSystemPersistenceStore persistenceStore =
+                new IndexedIncrementalFileSystemPersistenceStore(persistenceDirectory.toString());
+        List<String> revisions = revisionsOf(persistenceStore.getListOfRevisionsToLoad(1000, SIDDHI_APP_NAME));
+        Assert.assertEquals(revisions, Arrays.asList(first, third));
+        Assert.assertEquals(persistenceStore.getLastRevision(SIDDHI_APP_NAME), "300__" + SIDDHI_APP_NAME);
+
+        String rewrittenIndex = new String(Files.readAllBytes(appDirectory().resolve(INDEX_FILE_NAME)),
+                StandardCharsets.UTF_8);
+        Assert.assertEquals(rewrittenIndex, "+" + first + "\n+" + third + "\n");
+    }
+
+    @Test
+    public void testIndexIsCompactedAfterManyRemovals() throws IOException {
+        IndexedIncrementalFileSystemPersistenceStore persistenceStore =
+                new IndexedIncrementalFileSystemPersistenceStore(persistenceDirectory.toString());
+        int snapshotCount = 1030;
+        byte[] snapshot = snapshot(16, 1);
+        for (int i = 1; i <= snapshotCount; i++) {
+            // every periodic snapshot replaces the previous one
+            persistenceStore.save(snapshotInfo(i, IncrementalSnapshotInfo.SnapshotType.PERIODIC), snapshot);
+        }
+        String lastRevision = snapshotInfo(snapshotCount, IncrementalSnapshotInfo.SnapshotType.PERIODIC)
+                .getRevision();
+        Assert.assertEquals(revisionsOf(persistenceStore.getListOfRevisionsToLoad(snapshotCount, SIDDHI_APP_NAME)),
+                Collections.singletonList(lastRevision));
+
+        List<String> indexLines = Files.readAllLines(appDirectory().resolve(INDEX_FILE_NAME), StandardCharsets.UTF_8);
+        Assert.assertTrue(indexLines.size() < 16, "Index was not compacted, it has " + indexLines.size() +
+                " lines");
+        Assert.assertEquals(indexLines.get(indexLines.size() - 1), "-" +
+                snapshotInfo(snapshotCount - 1, IncrementalSnapshotInfo.SnapshotType.PERIODIC).getRevision());
+
+        IndexedIncrementalFileSystemPersistenceStore reopenedStore =
+                new IndexedIncrementalFileSystemPersistenceStore(persistenceDirectory.toString());
+        Assert.assertEquals(revisionsOf(reopenedStore.getListOfRevisionsToLoad(snapshotCount, SIDDHI_APP_NAME)),
+                Collections.singletonList(lastRevision));
+        try (Stream<Path> files = Files.list(appDirectory())) {
+            Assert.assertEquals(files.count(), 2);
+        }
+    }
+
+    @Test
+    public void testDirectoryWrittenByIncrementalFileSystemPersistenceStoreIsMigrated() throws IOException {
+        IncrementalFileSystemPersistenceStore legacyStore =
+                new IncrementalFileSystemPersistenceStore(persistenceDirectory.toString());
+        IncrementalSnapshotInfo baseInfo = snapshotInfo(100, IncrementalSnapshotInfo.SnapshotType.BASE);
+        IncrementalSnapshotInfo incrementInfo = snapshotInfo(200, IncrementalSnapshotInfo.SnapshotType.INCREMENT);
+        byte[] baseSnapshot = snapshot(1000, 1);
+        byte[] incrementSnapshot = snapshot(100, 2);
+        legacyStore.save(baseInfo, baseSnapshot);
+        legacyStore.save(incrementInfo, incrementSnapshot);
+        Assert.assertFalse(Files.exists(appDirectory().resolve(INDEX_FILE_NAME)));
+
+        IndexedIncrementalFileSystemPersistenceStore persistenceStore =
+                new IndexedIncrementalFileSystemPersistenceStore(persistenceDirectory.toString());
+        Assert.assertEquals(revisionsOf(persistenceStore.getListOfRevisionsToLoad(200, SIDDHI_APP_NAME)),
+                Arrays.asList(baseInfo.getRevision(), incrementInfo.getRevision()));
+        Assert.assertTrue(Files.exists(appDirectory().resolve(INDEX_FILE_NAME)));
+        Assert.assertEquals(persistenceStore.load(baseInfo), baseSnapshot);
+        Assert.assertEquals(persistenceStore.load(incrementInfo), incrementSnapshot);
+
+        // a new base revision replaces the migrated ones
+        IncrementalSnapshotInfo newBaseInfo = snapshotInfo(300, IncrementalSnapshotInfo.SnapshotType.BASE);
+        persistenceStore.save(newBaseInfo, baseSnapshot);
+        Assert.assertEquals(revisionsOf(persistenceStore.getListOfRevisionsToLoad(300, SIDDHI_APP_NAME)),
+                Collections.singletonList(newBaseInfo.getRevision()));
+        Assert.assertFalse(Files.exists(appDirectory().resolve(baseInfo.getRevision())));
+        Assert.assertFalse(Files.exists(appDirectory().resolve(incrementInfo.getRevision())));
+    }
+
+    @Test
+    public void testOldRevisionsAreCleanedWithoutListingTheDirectory() throws IOException {
+        IndexedIncrementalFileSystemPersistenceStore persistenceStore =
+                new IndexedIncrementalFileSystemPersistenceStore(persistenceDirectory.toString());
+        IncrementalSnapshotInfo baseInfo = snapshotInfo(100, IncrementalSnapshotInfo.SnapshotType.BASE);
+        IncrementalSnapshotInfo incrementInfo = snapshotInfo(200, IncrementalSnapshotInfo.SnapshotType.INCREMENT);
+        persistenceStore.save(baseInfo, snapshot(100, 1));
+        persistenceStore.save(incrementInfo, snapshot(100, 2));
+
+        // a revision file the index does not know of, which would only be found by listing the directory
+        IncrementalSnapshotInfo unindexedInfo = snapshotInfo(150, IncrementalSnapshotInfo.SnapshotType.INCREMENT);
+        Path unindexedPath = appDirectory().resolve(unindexedInfo.getRevision());
+        Files.write(unindexedPath, snapshot(100, 3));
+
+        IncrementalSnapshotInfo newBaseInfo = snapshotInfo(300, IncrementalSnapshotInfo.SnapshotType.BASE);
+        persistenceStore.save(newBaseInfo, snapshot(100, 4));
+        Assert.assertFalse(Files.exists(appDirectory().resolve(baseInfo.getRevision())));
+        Assert.assertFalse(Files.exists(appDirectory().resolve(incrementInfo.getRevision())));
+        Assert.assertTrue(Files.exists(unindexedPath));
+        Assert.assertEquals(revisionsOf(persistenceStore.getListOfRevisionsToLoad(300, SIDDHI_APP_NAME)),
+                Collections.singletonList(newBaseInfo.getRevision()));
+    }
+}
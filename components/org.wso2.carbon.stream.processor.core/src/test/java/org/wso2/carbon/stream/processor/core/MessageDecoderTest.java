@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.event.queue.BoundedHandoffQueue;
+import org.wso2.carbon.stream.processor.core.ha.transport.handlers.MessageDecoder;
+import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class MessageDecoderTest {
+
+    private static final int MESSAGE_COUNT = 10;
+
+    @Test
+    public void testHeldBackMessagesAreKeptWhenEventLoopsShutDown() throws Exception {
+        // nothing consumes the handoff queue, so the decoder holds back the messages that do not fit into it
+        BoundedHandoffQueue<ByteBuf> messageQueue = new BoundedHandoffQueue<>(2);
+        Queue<ByteBuf> overflowQueue = new ConcurrentLinkedQueue<>();
+        AtomicReference<Channel> childChannel = new AtomicReference<>();
+        EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+        EventLoopGroup workerGroup = new NioEventLoopGroup(1);
+        try {
+            Channel serverChannel = new ServerBootstrap().group(bossGroup, workerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel channel) {
+                            childChannel.set(channel);
+                            channel.pipeline().addLast(new MessageDecoder(messageQueue, overflowQueue));
+                        }
+                    }).bind("localhost", 0).sync().channel();
+
+            try (Socket socket = new Socket()) {
+                socket.connect(serverChannel.localAddress());
+                DataOutputStream outputStream = new DataOutputStream(socket.getOutputStream());
+                outputStream.write(encodeMessages());
+                outputStream.flush();
+
+                long deadline = System.currentTimeMillis() + 10000;
+                while ((childChannel.get() == null || childChannel.get().config().isAutoRead())
+                        && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                Assert.assertFalse(childChannel.get().config().isAutoRead(), "Reads should be paused");
+                // wait for the decoder to finish the read it was handling
+                childChannel.get().eventLoop().submit(() -> { }).sync();
+                Assert.assertEquals(messageQueue.size(), 2);
+                Assert.assertTrue(overflowQueue.isEmpty());
+
+                // what the event sync server does at failover, while the active node is still connected
+                workerGroup.shutdownGracefully(0, 10, TimeUnit.SECONDS).sync();
+            }
+            serverChannel.close().sync();
+        } finally {
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+        }
+
+        List<Integer> received = new ArrayList<>();
+        ByteBuf message;
+        while ((message = messageQueue.poll()) != null) {
+            received.add(readMessage(message));
+        }
+        while ((message = overflowQueue.poll()) != null) {
+            received.add(readMessage(message));
+        }
+        Assert.assertEquals(received.size(), MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            Assert.assertEquals((int) received.get(i), i);
+        }
+    }
+
+    private static byte[] encodeMessages() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(bytes);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            outputStream.writeByte(HAConstants.PROTOCOL_VERSION);
+            outputStream.writeInt(1 + 4);
+            outputStream.writeByte(HAConstants.CHANNEL_ID_EVENT_FRAME);
+            outputStream.writeInt(i);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int readMessage(ByteBuf message) {
+        try {
+            Assert.assertEquals(message.readByte(), HAConstants.CHANNEL_ID_EVENT_FRAME);
+            return message.readInt();
+        } finally {
+            message.release();
+        }
+    }
+}
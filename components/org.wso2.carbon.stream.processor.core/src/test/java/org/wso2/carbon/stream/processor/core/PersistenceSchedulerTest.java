@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import io.netty.channel.ChannelFuture;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.ha.HAManager;
+import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncConnection;
+import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncConnectionPoolFactory;
+import org.wso2.carbon.stream.processor.core.ha.transport.EventSyncConnectionPoolManager;
+import org.wso2.carbon.stream.processor.core.ha.util.HAConstants;
+import org.wso2.carbon.stream.processor.core.internal.SiddhiAppData;
+import org.wso2.carbon.stream.processor.core.internal.StreamProcessorDataHolder;
+import org.wso2.carbon.stream.processor.core.internal.StreamProcessorService;
+import org.wso2.carbon.stream.processor.core.internal.beans.DeploymentConfig;
+import org.wso2.carbon.stream.processor.core.persistence.PersistenceScheduler;
+import org.wso2.carbon.stream.processor.core.persistence.beans.PersistenceConfigurations;
+import org.wso2.siddhi.core.SiddhiAppRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.core.util.persistence.PersistenceStore;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PersistenceSchedulerTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    // control messages sent to the passive node, by all the connections of the pool
+    private static final List<String> CONTROL_MESSAGES = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong clock = new AtomicLong(1514764800000L);
+    private FakePersistenceStore persistenceStore;
+    private SiddhiManager siddhiManager;
+    private StreamProcessorService streamProcessorService;
+    private PersistenceScheduler persistenceScheduler;
+
+    @BeforeMethod
+    public void setUp() {
+        persistenceStore = new FakePersistenceStore();
+        siddhiManager = new SiddhiManager();
+        siddhiManager.setPersistenceStore(persistenceStore);
+        streamProcessorService = new StreamProcessorService();
+        StreamProcessorDataHolder.setSiddhiManager(siddhiManager);
+        StreamProcessorDataHolder.setStreamProcessorService(streamProcessorService);
+        CONTROL_MESSAGES.clear();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        if (persistenceScheduler != null) {
+            persistenceScheduler.stop();
+        }
+        siddhiManager.shutdown();
+        StreamProcessorDataHolder.setHaManager(null);
+        StreamProcessorDataHolder.setStreamProcessorService(null);
+        StreamProcessorDataHolder.setSiddhiManager(null);
+    }
+
+    private void deploy(String siddhiAppName, String annotations) {
+        String siddhiApp = "@App:name('" + siddhiAppName + "') " + annotations +
+                " define stream InputStream (id int); define table InputTable (id int); " +
+                "from InputStream insert into InputTable;";
+        SiddhiAppRuntime siddhiAppRuntime = siddhiManager.createSiddhiAppRuntime(siddhiApp);
+        siddhiAppRuntime.start();
+        streamProcessorService.getSiddhiAppMap().put(siddhiAppName, new SiddhiAppData(siddhiApp, true));
+    }
+
+    private long getIntervalInMillis(String siddhiAppName) {
+        long currentTime = clock.get();
+        long nextPersistenceTime = persistenceScheduler.getNextPersistenceTime(siddhiAppName);
+        clock.set(nextPersistenceTime);
+        long intervalInMillis = persistenceScheduler.getNextPersistenceTime(siddhiAppName) - nextPersistenceTime;
+        clock.set(currentTime);
+        return intervalInMillis;
+    }
+
+    @Test
+    public void testIntervalsOfApps() {
+        PersistenceConfigurations persistenceConfigurations = new PersistenceConfigurations();
+        persistenceConfigurations.setIntervalInMin(3);
+        persistenceConfigurations.setSiddhiAppIntervalsInMin(Collections.singletonMap("ConfiguredApp", 2));
+        deploy("ConfiguredApp", "@App:persistence(intervalInMin='7')");
+        deploy("AnnotatedApp", "@App:persistence(intervalInMin='7')");
+        deploy("DefaultApp", "");
+        deploy("DisabledApp", "@App:persistence(intervalInMin='0')");
+        persistenceScheduler = new PersistenceScheduler(persistenceConfigurations, clock::get);
+        persistenceScheduler.start();
+
+        // the deployment config comes before the annotation, which comes before the global interval
+        Assert.assertEquals(getIntervalInMillis("ConfiguredApp"), 2 * MINUTE);
+        Assert.assertEquals(getIntervalInMillis("AnnotatedApp"), 7 * MINUTE);
+        Assert.assertEquals(getIntervalInMillis("DefaultApp"), 3 * MINUTE);
+        Assert.assertEquals(persistenceScheduler.getNextPersistenceTime("DisabledApp"), -1);
+        Assert.assertEquals(persistenceScheduler.getNextPersistenceTime("UndeployedApp"), -1);
+    }
+
+    @Test
+    public void testSnapshotsOfAppsAreStaggered() {
+        PersistenceConfigurations persistenceConfigurations = new PersistenceConfigurations();
+        persistenceConfigurations.setIntervalInMin(5);
+        List<String> siddhiAppNames = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            siddhiAppNames.add("App" + i);
+            deploy("App" + i, "");
+        }
+        persistenceScheduler = new PersistenceScheduler(persistenceConfigurations, clock::get);
+        persistenceScheduler.start();
+
+        long interval = 5 * MINUTE;
+        Set<Long> phases = new HashSet<>();
+        List<Long> nextPersistenceTimes = new ArrayList<>();
+        for (String siddhiAppName : siddhiAppNames) {
+            long nextPersistenceTime = persistenceScheduler.getNextPersistenceTime(siddhiAppName);
+            Assert.assertTrue(nextPersistenceTime > clock.get() && nextPersistenceTime <= clock.get() + interval);
+            phases.add(nextPersistenceTime % interval);
+            nextPersistenceTimes.add(nextPersistenceTime);
+        }
+        Assert.assertEquals(phases.size(), siddhiAppNames.size(), "Apps should not be persisted at the same instant");
+
+        // the snapshots of an app keep their place in the interval when the scheduler restarts at another time
+        persistenceScheduler.stop();
+        clock.addAndGet(MINUTE + 12345);
+        persistenceScheduler = new PersistenceScheduler(persistenceConfigurations, clock::get);
+        persistenceScheduler.start();
+        for (int i = 0; i < siddhiAppNames.size(); i++) {
+            long nextPersistenceTime = persistenceScheduler.getNextPersistenceTime(siddhiAppNames.get(i));
+            Assert.assertTrue(nextPersistenceTime > clock.get());
+            Assert.assertEquals((nextPersistenceTime - nextPersistenceTimes.get(i)) % interval, 0);
+        }
+    }
+
+    @Test
+    public void testActiveNodePersistsAppsInParallelAndSendsAControlMessagePerApp() {
+        PersistenceConfigurations persistenceConfigurations = new PersistenceConfigurations();
+        persistenceConfigurations.setThreadPoolSize(2);
+        List<String> siddhiAppNames = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            siddhiAppNames.add("App" + i);
+            deploy("App" + i, "");
+        }
+        StreamProcessorDataHolder.setHaManager(new HAManager(null, "node-1", "cluster-1", new DeploymentConfig()) {
+            @Override
+            public boolean isActiveNode() {
+                return true;
+            }
+
+            @Override
+            public boolean isPassiveNodeAdded() {
+                return true;
+            }
+        });
+        EventSyncConnectionPoolManager.initializeConnectionPool(new FakeConnectionPoolFactory(), 10, 10, 10, 1000,
+                MINUTE);
+        persistenceScheduler = new PersistenceScheduler(persistenceConfigurations, clock::get);
+        persistenceScheduler.start();
+        // the active node waits for each snapshot to be saved, so the saves run on the threads of the pool
+        persistenceStore.concurrentSaves = new CountDownLatch(2);
+
+        persistenceScheduler.persistAll();
+
+        Assert.assertEquals(persistenceStore.maxConcurrentSaveCount.get(), 2);
+        Assert.assertEquals(persistenceStore.revisions.keySet(), new HashSet<>(siddhiAppNames));
+        Assert.assertEquals(CONTROL_MESSAGES.size(), siddhiAppNames.size());
+        for (String siddhiAppName : siddhiAppNames) {
+            Assert.assertEquals(persistenceStore.revisions.get(siddhiAppName).size(), 1);
+            String revision = persistenceStore.revisions.get(siddhiAppName).get(0);
+            int controlMessageCount = 0;
+            for (String controlMessage : CONTROL_MESSAGES) {
+                if (controlMessage.endsWith(HAConstants.PERSISTED_APP_SPLIT_DELIMITER + revision + "]")) {
+                    controlMessageCount++;
+                }
+            }
+            Assert.assertEquals(controlMessageCount, 1, "Control message of " + siddhiAppName);
+        }
+    }
+
+    /**
+     * Persistence store keeping the revisions it saves, which can hold each save until others run alongside it.
+     */
+    private static class FakePersistenceStore implements PersistenceStore {
+        private final Map<String, List<String>> revisions = new ConcurrentHashMap<>();
+        private final AtomicInteger concurrentSaveCount = new AtomicInteger();
+        private final AtomicInteger maxConcurrentSaveCount = new AtomicInteger();
+        private volatile CountDownLatch concurrentSaves;
+
+        @Override
+        public void save(String siddhiAppId, String revision, byte[] snapshot) {
+            maxConcurrentSaveCount.accumulateAndGet(concurrentSaveCount.incrementAndGet(), Math::max);
+            try {
+                CountDownLatch latch = concurrentSaves;
+                if (latch != null) {
+                    latch.countDown();
+                    latch.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrentSaveCount.decrementAndGet();
+            }
+            revisions.computeIfAbsent(siddhiAppId, key -> new CopyOnWriteArrayList<>()).add(revision);
+        }
+
+        @Override
+        public void setProperties(Map properties) {
+        }
+
+        @Override
+        public byte[] load(String siddhiAppId, String revision) {
+            return null;
+        }
+
+        @Override
+        public String getLastRevision(String siddhiAppId) {
+            return null;
+        }
+    }
+
+    /**
+     * Connections to a passive node which record the control messages sent to it.
+     */
+    private static class FakeConnectionPoolFactory extends EventSyncConnectionPoolFactory {
+
+        private FakeConnectionPoolFactory() {
+            super("localhost", 0);
+        }
+
+        @Override
+        public Object makeObject(Object key) {
+            return new EventSyncConnection(1, true, true) {
+                @Override
+                public ChannelFuture send(byte channelId, byte[] message) {
+                    if (channelId == HAConstants.CHANNEL_ID_CONTROL_MESSAGE) {
+                        CONTROL_MESSAGES.add(new String(message, StandardCharsets.UTF_8));
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean isActive() {
+                    return true;
+                }
+            };
+        }
+    }
+}
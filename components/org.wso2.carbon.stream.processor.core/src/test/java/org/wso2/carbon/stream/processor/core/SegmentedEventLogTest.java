@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.stream.processor.core.event.queue.QueuedEvent;
+import org.wso2.carbon.stream.processor.core.event.queue.SegmentedEventLog;
+import org.wso2.siddhi.core.event.Event;
+
+public class SegmentedEventLogTest {
+
+    private static QueuedEvent queuedEvent(long sequenceId) {
+        return new QueuedEvent("TestApp", "source-1", sequenceId, new Event(sequenceId, new Object[]{sequenceId}));
+    }
+
+    @Test
+    public void testTrimReleasesWholeSegments() {
+        SegmentedEventLog eventLog = new SegmentedEventLog(4);
+        for (long i = 1; i <= 10; i++) {
+            eventLog.append(queuedEvent(i));
+        }
+        Assert.assertEquals(eventLog.getSegmentCount(), 3);
+
+        eventLog.trim(6);
+        Assert.assertEquals(eventLog.getSegmentCount(), 2);
+        Assert.assertEquals(eventLog.size(), 6);
+
+        QueuedEvent[] drainedEvents = eventLog.drain();
+        Assert.assertEquals(drainedEvents.length, 4);
+        for (int i = 0; i < drainedEvents.length; i++) {
+            Assert.assertEquals(drainedEvents[i].getSequenceID(), 7 + i);
+        }
+        Assert.assertEquals(eventLog.size(), 0);
+    }
+
+    @Test
+    public void testTrimReleasesSegmentEndingAtControlMessage() {
+        SegmentedEventLog eventLog = new SegmentedEventLog(4);
+        for (long i = 1; i <= 8; i++) {
+            eventLog.append(queuedEvent(i));
+        }
+        // the event at the control message sequence id is covered by the persisted revision, as in EventSpillStore
+        eventLog.trim(4);
+        Assert.assertEquals(eventLog.getSegmentCount(), 1);
+        Assert.assertEquals(eventLog.size(), 4);
+        Assert.assertEquals(eventLog.drain()[0].getSequenceID(), 5);
+    }
+
+    @Test
+    public void testEventsOlderThanControlMessageAreDropped() {
+        SegmentedEventLog eventLog = new SegmentedEventLog(4);
+        eventLog.trim(5);
+        Assert.assertFalse(eventLog.append(queuedEvent(3)));
+        Assert.assertFalse(eventLog.append(queuedEvent(5)));
+        Assert.assertTrue(eventLog.append(queuedEvent(6)));
+        eventLog.trim(2);
+        Assert.assertEquals(eventLog.getLastControlMessageSequenceId(), 5);
+        Assert.assertEquals(eventLog.drain().length, 1);
+    }
+
+    @Test
+    public void testOutOfOrderEventsAreDrainedInSequenceOrder() {
+        SegmentedEventLog eventLog = new SegmentedEventLog(3);
+        long[] sequenceIds = {2, 1, 4, 3, 6, 5, 8, 7};
+        for (long sequenceId : sequenceIds) {
+            eventLog.append(queuedEvent(sequenceId));
+        }
+        eventLog.trim(2);
+        QueuedEvent[] drainedEvents = eventLog.drain();
+        Assert.assertEquals(drainedEvents.length, 6);
+        for (int i = 0; i < drainedEvents.length; i++) {
+            Assert.assertEquals(drainedEvents[i].getSequenceID(), 3 + i);
+        }
+    }
+}
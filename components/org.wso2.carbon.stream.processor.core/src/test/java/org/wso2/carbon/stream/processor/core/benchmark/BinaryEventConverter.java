@@ -16,11 +16,12 @@
  *  under the License.
  */
 
-package org.wso2.carbon.stream.processor.core.util;
+package org.wso2.carbon.stream.processor.core.benchmark;
 
 import org.wso2.carbon.stream.processor.core.event.queue.EventDataMetaInfo;
 import org.wso2.carbon.stream.processor.core.event.queue.EventMetaInfo;
 import org.wso2.carbon.stream.processor.core.event.queue.QueuedEvent;
+import org.wso2.carbon.stream.processor.core.util.BinaryMessageConverterUtil;
 import org.wso2.siddhi.core.event.Event;
 import org.wso2.siddhi.query.api.definition.Attribute;
 
@@ -33,6 +34,8 @@ import java.util.Arrays;
 
 /**
  * This is a Util class help to convert from Siddhi event to Binary message.
+ * It is the per-event encoding the HA event sync used before event frames, kept as the baseline of
+ * {@link EventCodecBenchmark}.
  */
 public class BinaryEventConverter {
 
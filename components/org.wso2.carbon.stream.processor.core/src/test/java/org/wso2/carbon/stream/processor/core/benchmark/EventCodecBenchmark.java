@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.stream.processor.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.stream.processor.core.event.queue.QueuedEvent;
+import org.wso2.carbon.stream.processor.core.util.BinaryMessageConverterUtil;
+import org.wso2.carbon.stream.processor.core.util.EventFrameCodec;
+import org.wso2.carbon.stream.processor.core.util.HAEventSchema;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.query.api.definition.Attribute;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-event {@link BinaryEventConverter} with the batch framed {@link EventFrameCodec} used to sync
+ * events to the passive node. Run through {@link #main(String[])} with the test classpath.
+ * <p>
+ * {@link BinaryEventConverter} only returns the buffer of the last event of an array, so the legacy benchmarks encode
+ * one message per event, which is how the source handler used it for correct results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventCodecBenchmark {
+
+    private static final Attribute.Type[] TYPES = {Attribute.Type.STRING, Attribute.Type.INT, Attribute.Type.LONG,
+            Attribute.Type.DOUBLE, Attribute.Type.BOOL};
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private HAEventSchema schema;
+    private Event[] events;
+    private long[] sequenceIds;
+    private QueuedEvent[][] queuedEvents;
+    private ByteBuffer[] legacyMessages;
+    private ByteBuffer frame;
+    private EventFrameCodec decoder;
+
+    @Setup
+    public void setup() throws IOException {
+        schema = new HAEventSchema("StockAnalysisApp", "source-StockStream-1", TYPES);
+        events = new Event[batchSize];
+        sequenceIds = new long[batchSize];
+        queuedEvents = new QueuedEvent[batchSize][];
+        legacyMessages = new ByteBuffer[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            events[i] = new Event(System.currentTimeMillis(), new Object[]{"WSO2", i, 1000L + i, 55.6 + i,
+                    i % 2 == 0});
+            sequenceIds[i] = i;
+            queuedEvents[i] = new QueuedEvent[]{new QueuedEvent(schema.getSiddhiAppName(),
+                    schema.getSourceHandlerElementId(), i, events[i])};
+            legacyMessages[i] = BinaryEventConverter.convertToBinaryMessage(queuedEvents[i]);
+        }
+        frame = EventFrameCodec.encode(schema, sequenceIds, events);
+        decoder = new EventFrameCodec();
+    }
+
+    @Benchmark
+    public void legacyEncode(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < batchSize; i++) {
+            blackhole.consume(BinaryEventConverter.convertToBinaryMessage(queuedEvents[i]));
+        }
+    }
+
+    @Benchmark
+    public void frameEncode(Blackhole blackhole) {
+        blackhole.consume(EventFrameCodec.encode(schema, sequenceIds, events));
+    }
+
+    @Benchmark
+    public void legacyDecode(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < batchSize; i++) {
+            // mirrors EventListMapManager.parseMessage without buffering the events
+            ByteBuffer message = ByteBuffer.wrap(legacyMessages[i].array());
+            message.getInt();
+            blackhole.consume(message.getLong());
+            blackhole.consume(BinaryMessageConverterUtil.getString(message, message.getInt()));
+            blackhole.consume(BinaryMessageConverterUtil.getString(message, message.getInt()));
+            String attributes = BinaryMessageConverterUtil.getString(message, message.getInt());
+            String[] attributeTypes = attributes.substring(1, attributes.length() - 1).split(", ");
+            blackhole.consume(SiddhiEventConverter.getEvent(message, attributeTypes));
+        }
+    }
+
+    @Benchmark
+    public void frameDecode(Blackhole blackhole) {
+        decoder.decode(frame.duplicate(), (eventSchema, sequenceId, event) -> blackhole.consume(event));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EventCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
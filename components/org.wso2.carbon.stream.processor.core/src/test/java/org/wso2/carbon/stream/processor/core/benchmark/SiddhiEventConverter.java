@@ -15,7 +15,7 @@
  *  specific language governing permissions and limitations
  *  under the License.
  */
-package org.wso2.carbon.stream.processor.core.ha.tcp;
+package org.wso2.carbon.stream.processor.core.benchmark;
 
 
 import org.apache.log4j.Logger;
@@ -31,7 +31,7 @@ import java.util.zip.Inflater;
 
 /**
  * This class is a implementation EventConverter to create the event from the Binary message.
- * This is used within data bridge to create the event from the row message received.
+ * It decodes the events of {@link BinaryEventConverter}, as the baseline of {@link EventCodecBenchmark}.
  */
 public class SiddhiEventConverter {//todo
     static final Logger LOG = Logger.getLogger(SiddhiEventConverter.class);